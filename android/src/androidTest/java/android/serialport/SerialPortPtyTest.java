@@ -0,0 +1,279 @@
+package android.serialport;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import android.os.Build;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.laoapps.plugins.serialconnectioncapacitor.SerialWriter;
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Drives {@link SerialPort}'s blocking read through a pseudo-terminal, so no
+ * hardware is needed: the test writes to the pty master and the port reads the slave.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SerialPortPtyTest {
+    private static final String TAG = "SerialPortPtyTest";
+    private static final int TIOCGPTN = 0x80045430;
+    private static final int TIOCSPTLCK = 0x40045431;
+
+    private FileDescriptor master;
+    private SerialPort port;
+
+    @Before
+    public void openPty() throws Exception {
+        assumeTrue("Os.ioctlInt(fd, cmd) needs API 27", Build.VERSION.SDK_INT >= 27);
+        master = Os.open("/dev/ptmx", OsConstants.O_RDWR | OsConstants.O_NOCTTY, 0);
+        Os.ioctlInt(master, TIOCSPTLCK); // unlockpt
+        int ptyNumber = Os.ioctlInt(master, TIOCGPTN); // ptsname
+        port = new SerialPort("/dev/pts/" + ptyNumber, 9600);
+    }
+
+    @After
+    public void closePty() throws Exception {
+        if (port != null) port.shutdown();
+        if (master != null) Os.close(master);
+    }
+
+    @Test
+    public void wakesUpPromptlyWhenBytesArrive() throws Exception {
+        final int rounds = 50;
+        final BlockingQueue<Long> wakeTimes = new ArrayBlockingQueue<>(rounds);
+        Thread reader = new Thread(() -> {
+            byte[] buffer = new byte[64];
+            try {
+                for (int i = 0; i < rounds; i++) {
+                    int len = port.read(buffer, 0, buffer.length, -1);
+                    if (len > 0) wakeTimes.put(System.nanoTime());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "reader failed", e);
+            }
+        });
+        reader.start();
+
+        long[] latencyUs = new long[rounds];
+        byte[] one = {0x41};
+        for (int i = 0; i < rounds; i++) {
+            Thread.sleep(5); // let the reader go back to sleep in poll()
+            long sent = System.nanoTime();
+            Os.write(master, one, 0, 1);
+            Long woke = wakeTimes.poll(1, TimeUnit.SECONDS);
+            assertNotNull("reader did not wake up", woke);
+            latencyUs[i] = (woke - sent) / 1000;
+        }
+        reader.join(1000);
+
+        Arrays.sort(latencyUs);
+        long median = latencyUs[rounds / 2];
+        long p95 = latencyUs[rounds * 95 / 100];
+        Log.i(TAG, "pty wake-up latency: median=" + median + "us p95=" + p95 + "us max=" + latencyUs[rounds - 1] + "us");
+        // The old available()+sleep(10) loop averaged ~5ms and peaked at 10ms
+        assertTrue("median wake-up latency " + median + "us", median < 5000);
+    }
+
+    @Test
+    public void timesOutAndWakesUpWithoutData() throws Exception {
+        byte[] buffer = new byte[16];
+        long start = System.nanoTime();
+        assertEquals(0, port.read(buffer, 0, buffer.length, 50));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(45));
+
+        Thread waker = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            port.wakeup();
+        });
+        waker.start();
+        start = System.nanoTime();
+        assertEquals(0, port.read(buffer, 0, buffer.length, 5000));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        waker.join();
+    }
+
+    @Test
+    public void interByteTimeoutCollectsBurst() throws Exception {
+        port.setInterByteTimeout(30);
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 4; i++) {
+                    Os.write(master, new byte[]{(byte) i}, 0, 1);
+                    Thread.sleep(5);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "writer failed", e);
+            }
+        });
+        writer.start();
+
+        byte[] buffer = new byte[16];
+        int len = port.read(buffer, 0, buffer.length, 1000);
+        writer.join();
+        assertEquals(4, len);
+    }
+
+    @Test
+    public void byteBufferReadAndWriteUseTheFdDirectly() throws Exception {
+        Os.write(master, new byte[]{1, 2, 3}, 0, 3);
+        ByteBuffer dst = ByteBuffer.allocateDirect(16);
+        dst.position(4);
+        assertEquals(3, port.read(dst, 1000));
+        assertEquals(7, dst.position());
+        assertEquals(3, dst.get(6));
+
+        ByteBuffer src = ByteBuffer.allocateDirect(4);
+        src.put(new byte[]{9, 8, 7, 6}).flip();
+        assertEquals(4, port.write(src));
+        assertFalse(src.hasRemaining());
+        byte[] echoed = new byte[4];
+        Thread.sleep(20);
+        assertEquals(4, Os.read(master, echoed, 0, echoed.length));
+        assertArrayEquals(new byte[]{9, 8, 7, 6}, echoed);
+    }
+
+    @Test
+    public void receiveFillsTheOwnedBufferInPlace() throws Exception {
+        SerialPort owned = new SerialPort(port.getDevicePath(), 9600, 0, 8, 1, "none", 0, 64);
+        try {
+            assertNull(port.getReceiveBuffer());
+            ByteBuffer rx = owned.getReceiveBuffer();
+            assertTrue(rx.isDirect());
+            assertFalse(rx.hasRemaining());
+
+            Os.write(master, new byte[]{0x41, 0x42}, 0, 2);
+            assertEquals(2, owned.receive(1000));
+            assertSame(rx, owned.getReceiveBuffer());
+            assertEquals(0, rx.position());
+            assertEquals(2, rx.limit());
+            assertEquals(0x42, rx.get(1));
+        } finally {
+            owned.shutdown();
+        }
+    }
+
+    @Test
+    public void lowLatencyProfileFlushesStaleInputAndReadsBack() throws Exception {
+        Os.write(master, new byte[]{1, 2, 3, 4}, 0, 4);
+        Thread.sleep(20);
+        port.setLatencyProfile(SerialPort.PROFILE_LOW_LATENCY);
+        assertEquals(0, port.read(new byte[8], 0, 8, 50));
+
+        SerialPort.LatencySettings settings = port.getLatencySettings();
+        assertEquals(SerialPort.PROFILE_LOW_LATENCY, settings.profile);
+        assertEquals(0, settings.interByteTimeoutMs);
+        assertTrue(settings.drainAfterWrite);
+        assertEquals(-1, settings.usbLatencyTimerMs); // a pty has no USB adapter behind it
+    }
+
+    @Test
+    public void roundTripLatencyByProfile() throws Exception {
+        final int rounds = 40;
+        port.setLatencyProfile(SerialPort.PROFILE_LOW_LATENCY);
+        long lowLatency = medianRoundTripUs(rounds);
+        port.setLatencyProfile(SerialPort.PROFILE_THROUGHPUT);
+        assertEquals(10, port.getLatencySettings().interByteTimeoutMs);
+        long throughput = medianRoundTripUs(rounds);
+
+        Log.i(TAG, "pty round trip median: low-latency=" + lowLatency + "us throughput=" + throughput + "us");
+        assertTrue("low-latency round trip " + lowLatency + "us", lowLatency < 5000);
+        // throughput waits out the 10ms inter-byte gap before handing bytes over
+        assertTrue("throughput round trip " + throughput + "us", throughput >= 9000);
+    }
+
+    /** The port echoes every byte back; times master write to master read */
+    private long medianRoundTripUs(int rounds) throws Exception {
+        Thread echo = new Thread(() -> {
+            byte[] buffer = new byte[16];
+            try {
+                for (int i = 0; i < rounds; ) {
+                    int len = port.read(buffer, 0, buffer.length, 1000);
+                    if (len < 0) break;
+                    if (len == 0) continue;
+                    port.getOutputStream().write(buffer, 0, len);
+                    port.getOutputStream().flush();
+                    i += len;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "echo failed", e);
+            }
+        });
+        echo.start();
+
+        long[] roundTripUs = new long[rounds];
+        byte[] one = {0x5A};
+        byte[] back = new byte[1];
+        for (int i = 0; i < rounds; i++) {
+            Thread.sleep(2);
+            long sent = System.nanoTime();
+            Os.write(master, one, 0, 1);
+            assertEquals(1, Os.read(master, back, 0, 1));
+            roundTripUs[i] = (System.nanoTime() - sent) / 1000;
+        }
+        echo.join(1000);
+        Arrays.sort(roundTripUs);
+        return roundTripUs[rounds / 2];
+    }
+
+    @Test
+    public void writerIsNotHeldUpByReaderBlockedInRead() throws Exception {
+        final int[] result = {Integer.MIN_VALUE};
+        Thread reader = new Thread(() -> {
+            try {
+                result[0] = port.read(new byte[16], 0, 16, -1);
+            } catch (Exception e) {
+                Log.e(TAG, "reader failed", e);
+            }
+        });
+        reader.start();
+        Thread.sleep(50); // reader is in poll(), holding the read lock
+
+        SerialWriter writer = new SerialWriter(port.getOutputStream(), "pty-writer");
+        try {
+            writer.write(new byte[]{0x11, 0x22, 0x33}).get(1, TimeUnit.SECONDS);
+            byte[] sent = new byte[3];
+            assertEquals(3, Os.read(master, sent, 0, sent.length));
+            assertArrayEquals(new byte[]{0x11, 0x22, 0x33}, sent);
+            assertTrue("reader should still be waiting for input", reader.isAlive());
+        } finally {
+            writer.close();
+        }
+
+        Os.write(master, new byte[]{0x44}, 0, 1);
+        reader.join(1000);
+        assertEquals(1, result[0]);
+    }
+
+    @Test
+    public void shutdownReleasesBlockedReader() throws Exception {
+        final int[] result = {Integer.MIN_VALUE};
+        Thread reader = new Thread(() -> {
+            try {
+                result[0] = port.read(new byte[16], 0, 16, -1);
+            } catch (Exception e) {
+                Log.e(TAG, "reader failed", e);
+            }
+        });
+        reader.start();
+        Thread.sleep(50);
+        port.shutdown();
+        port = null;
+        reader.join(1000);
+        assertFalse(reader.isAlive());
+        assertEquals(-1, result[0]);
+    }
+}
@@ -0,0 +1,180 @@
+package android.serialport;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import android.os.Build;
+import android.os.Process;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs {@link SerialReactor} over several pseudo-terminals, and compares its
+ * wakeups and CPU time with one blocked reader thread per port.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SerialReactorPtyTest {
+    private static final String TAG = "SerialReactorPtyTest";
+    private static final int TIOCGPTN = 0x80045430;
+    private static final int TIOCSPTLCK = 0x40045431;
+    private static final int PORTS = 4;
+
+    private final List<FileDescriptor> masters = new ArrayList<>();
+    private final List<SerialPort> ports = new ArrayList<>();
+    private SerialReactor reactor;
+
+    @Before
+    public void openPtys() throws Exception {
+        assumeTrue("Os.ioctlInt(fd, cmd) needs API 27", Build.VERSION.SDK_INT >= 27);
+        for (int i = 0; i < PORTS; i++) {
+            FileDescriptor master = Os.open("/dev/ptmx", OsConstants.O_RDWR | OsConstants.O_NOCTTY, 0);
+            Os.ioctlInt(master, TIOCSPTLCK); // unlockpt
+            int ptyNumber = Os.ioctlInt(master, TIOCGPTN); // ptsname
+            masters.add(master);
+            ports.add(new SerialPort("/dev/pts/" + ptyNumber, 9600));
+        }
+        reactor = new SerialReactor(2);
+    }
+
+    @After
+    public void closePtys() throws Exception {
+        if (reactor != null) reactor.shutdown();
+        for (SerialPort port : ports) port.shutdown();
+        for (FileDescriptor master : masters) {
+            if (master.valid()) Os.close(master);
+        }
+    }
+
+    @Test
+    public void deliversEachPortInOrderToItsOwnHandler() throws Exception {
+        final int bytesPerPort = 200;
+        List<ByteArrayOutputStream> received = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(PORTS);
+        for (int i = 0; i < PORTS; i++) {
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            received.add(sink);
+            reactor.register(ports.get(i), (data, length) -> {
+                sink.write(data, 0, length);
+                if (sink.size() == bytesPerPort) done.countDown();
+            });
+        }
+
+        for (int b = 0; b < bytesPerPort; b++) {
+            for (int i = 0; i < PORTS; i++) {
+                Os.write(masters.get(i), new byte[]{(byte) (i * 50 + b)}, 0, 1);
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < PORTS; i++) {
+            byte[] bytes = received.get(i).toByteArray();
+            for (int b = 0; b < bytesPerPort; b++) assertEquals((byte) (i * 50 + b), bytes[b]);
+        }
+    }
+
+    @Test
+    public void unregisterStopsDeliveryAndHangupCallsOnClosed() throws Exception {
+        AtomicInteger afterUnregister = new AtomicInteger();
+        CountDownLatch closed = new CountDownLatch(1);
+        reactor.register(ports.get(0), (data, length) -> afterUnregister.addAndGet(length));
+        reactor.register(ports.get(1), new SerialReactor.Handler() {
+            @Override
+            public void onData(byte[] data, int length) {
+            }
+
+            @Override
+            public void onClosed() {
+                closed.countDown();
+            }
+        });
+
+        reactor.unregister(ports.get(0));
+        assertFalse(reactor.isRegistered(ports.get(0)));
+        Os.write(masters.get(0), new byte[]{1, 2, 3}, 0, 3);
+        // The port is back to blocking reads and gets the bytes itself
+        byte[] buffer = new byte[8];
+        assertEquals(3, ports.get(0).read(buffer, 0, buffer.length, 1000));
+        assertEquals(0, afterUnregister.get());
+
+        Os.close(masters.get(1)); // slave sees POLLHUP
+        assertTrue(closed.await(2, TimeUnit.SECONDS));
+        assertFalse(reactor.isRegistered(ports.get(1)));
+    }
+
+    @Test
+    public void benchmarkAgainstThreadPerPort() throws Exception {
+        final int rounds = 300;
+        final int total = rounds * PORTS;
+
+        // Thread per port, as the plugin's read loops run by default
+        AtomicLong threadWakeups = new AtomicLong();
+        AtomicInteger threadBytes = new AtomicInteger();
+        List<Thread> readers = new ArrayList<>();
+        for (SerialPort port : ports) {
+            Thread reader = new Thread(() -> {
+                byte[] buffer = new byte[1024];
+                try {
+                    while (threadBytes.get() < total) {
+                        int len = port.read(buffer, 0, buffer.length, 200);
+                        if (len < 0) break;
+                        threadWakeups.incrementAndGet();
+                        threadBytes.addAndGet(len);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "reader failed", e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        long threadCpuMs = drive(rounds, () -> threadBytes.get() >= total);
+        for (Thread reader : readers) reader.join(1000);
+        assertEquals(total, threadBytes.get());
+
+        // Reactor
+        AtomicInteger reactorBytes = new AtomicInteger();
+        for (SerialPort port : ports) reactor.register(port, (data, length) -> reactorBytes.addAndGet(length));
+        long wakeupsBefore = reactor.getWakeups();
+        long reactorCpuMs = drive(rounds, () -> reactorBytes.get() >= total);
+        long reactorWakeups = reactor.getWakeups() - wakeupsBefore;
+        assertEquals(total, reactorBytes.get());
+
+        Log.i(TAG, PORTS + " ports x " + rounds + " rounds: thread-per-port threads=" + PORTS
+                + " wakeups=" + threadWakeups.get() + " cpu=" + threadCpuMs + "ms; reactor threads=3"
+                + " wakeups=" + reactorWakeups + " chunks=" + reactor.getChunks() + " cpu=" + reactorCpuMs + "ms");
+        // One poll() can return several ready ports, so the reactor should never wake more often
+        assertTrue("reactor woke " + reactorWakeups + " times vs " + threadWakeups.get(),
+                reactorWakeups <= threadWakeups.get() + PORTS);
+    }
+
+    private interface Done {
+        boolean done();
+    }
+
+    /** Writes one byte to every master per round, 1ms apart; returns process CPU time used */
+    private long drive(int rounds, Done done) throws Exception {
+        long cpuStart = Process.getElapsedCpuTime();
+        byte[] one = {0x55};
+        for (int r = 0; r < rounds; r++) {
+            for (FileDescriptor master : masters) Os.write(master, one, 0, 1);
+            Thread.sleep(1);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!done.done() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        return Process.getElapsedCpuTime() - cpuStart;
+    }
+}
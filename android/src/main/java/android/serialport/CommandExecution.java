@@ -1,10 +1,7 @@
 package android.serialport;
 
 import android.util.Log;
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
-import java.io.InputStreamReader;
-import java.io.IOException;
+
 public class CommandExecution {
     public static class CommandResult {
         public int result;
@@ -23,44 +20,26 @@ public class CommandExecution {
     }
 
     private static final String TAG = "CommandExecution";
+    private static final long DEFAULT_TIMEOUT_MS = 10000;
 
-    public static CommandResult execCommand(String command, boolean isRoot) {
-        Process process = null;
-        DataOutputStream os = null;
-        BufferedReader successReader = null;
-        BufferedReader errorReader = null;
-        StringBuilder successMsg = new StringBuilder();
-        StringBuilder errorMsg = new StringBuilder();
-
-        try {
-            process = Runtime.getRuntime().exec(isRoot ? "su" : "sh");
-            os = new DataOutputStream(process.getOutputStream());
-            os.write(command.getBytes());
-            os.writeBytes("\n");
-            os.flush();
-            os.writeBytes("exit\n");
-            os.flush();
+    // One long-lived shell of each kind, started on first use
+    private static final ShellSession rootShell = new ShellSession("su");
+    private static final ShellSession userShell = new ShellSession("sh");
 
-            successReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-            String line;
-            while ((line = successReader.readLine()) != null) successMsg.append(line).append("\n");
-            while ((line = errorReader.readLine()) != null) errorMsg.append(line).append("\n");
+    /**
+     * Runs {@code command} in a shared long-lived shell ({@code su} when
+     * {@code isRoot}), so only the first call pays for starting it. The command
+     * must not {@code exit}; see {@link ShellSession}.
+     */
+    public static CommandResult execCommand(String command, boolean isRoot) {
+        return execCommand(command, isRoot, DEFAULT_TIMEOUT_MS);
+    }
 
-            int result = process.waitFor();
-            return new CommandResult(result, successMsg.toString(), errorMsg.toString());
-        } catch (Exception e) {
-            Log.e(TAG, "Command execution failed: " + e.getMessage());
-            return new CommandResult(-1, null, e.getMessage());
-        } finally {
-            try {
-                if (os != null) os.close();
-                if (successReader != null) successReader.close();
-                if (errorReader != null) errorReader.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to close streams: " + e.getMessage());
-            }
-            if (process != null) process.destroy();
+    public static CommandResult execCommand(String command, boolean isRoot, long timeoutMs) {
+        CommandResult result = (isRoot ? rootShell : userShell).exec(command, timeoutMs);
+        if (result.result == -1) {
+            Log.e(TAG, "Command execution failed: " + result.errorMsg);
         }
+        return result;
     }
-}
\ No newline at end of file
+}
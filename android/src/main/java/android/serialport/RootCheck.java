@@ -8,7 +8,19 @@ import java.io.File;
 public class RootCheck {
     private static final String TAG = "RootUtil";
 
+    // su does not come and go while the app runs, so look once
+    private static volatile Boolean sIsRoot;
+
     public static boolean isRoot() {
+        Boolean cached = sIsRoot;
+        if (cached == null) {
+            cached = findSu();
+            sIsRoot = cached;
+        }
+        return cached;
+    }
+
+    private static boolean findSu() {
         String binPath = "/system/bin/su";
         String xBinPath = "/system/xbin/su";
         return (new File(binPath)).exists() && isExecutable(binPath) ||
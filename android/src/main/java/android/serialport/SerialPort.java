@@ -1,5 +1,9 @@
 package android.serialport;
 
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
 import android.util.Log;
 import java.io.File;
 import java.io.FileDescriptor;
@@ -10,6 +14,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class SerialPort {
     private static final String TAG = "SerialPort";
@@ -18,6 +27,31 @@ public class SerialPort {
     private OutputStream mFileOutputStream; // Changed from FileOutputStream
     private String devicePath;
 
+    // Blocking reads: poll() on the tty fd plus a self-pipe so another thread can wake the reader
+    private volatile FileDescriptor[] mWakePipe;
+    private StructPollfd[] mPollFds;
+    private final byte[] mWakeByte = new byte[1];
+    private final byte[] mWakeDrain = new byte[16];
+    private final Object mReadLock = new Object();
+    private volatile boolean mShutdown = false;
+    private volatile int mInterByteTimeout = 0; // ms, 0 = return as soon as any bytes arrive
+    // Off-heap receive buffer owned by the port, see receive(); null unless opened with one
+    private ByteBuffer mReceiveBuffer;
+
+    // Latency profiles, see setLatencyProfile()
+    public static final String PROFILE_DEFAULT = "default";
+    public static final String PROFILE_LOW_LATENCY = "low-latency";
+    public static final String PROFILE_THROUGHPUT = "throughput";
+    private static final int THROUGHPUT_INTER_BYTE_MS = 10;
+    private static final int USB_LATENCY_TIMER_LOW = 1;       // ms, FTDI minimum
+    private static final int USB_LATENCY_TIMER_DEFAULT = 16;  // ms, FTDI power-on value
+    private volatile String mLatencyProfile = PROFILE_DEFAULT;
+    private volatile boolean mDrainAfterWrite = false;
+
+    // Permission checks by device node, see ensureAccess()
+    private static final Map<String, NodeAccess> sNodeAccess = new ConcurrentHashMap<>();
+    private static final long ACCESS_DENIED_RETRY_MS = 30000;
+
     // Default values matching the original native implementation
     private static final int DEFAULT_DATA_BITS = 8;    // Matches cfmakeraw default
     private static final int DEFAULT_STOP_BITS = 1;    // Matches cfmakeraw default
@@ -43,20 +77,22 @@ public class SerialPort {
 
     // New constructor with configurable parameters
     public SerialPort(File device, int baudrate, int flags, int dataBits, int stopBits, String parity, int bufferSize) throws SecurityException, IOException {
+        this(device, baudrate, flags, dataBits, stopBits, parity, bufferSize, 0);
+    }
+
+    /**
+     * @param receiveBufferSize when &gt; 0, the port owns a direct buffer of this size
+     *                          that {@link #receive(int)} fills straight from the fd
+     */
+    public SerialPort(File device, int baudrate, int flags, int dataBits, int stopBits, String parity, int bufferSize, int receiveBufferSize) throws SecurityException, IOException {
         this.devicePath = device.getPath();
-        if (!device.canRead() || !device.canWrite()) {
-            try {
-                String cmd = "chmod 777 " + device.getAbsolutePath() + "\nexit\n";
-                CommandExecution.CommandResult result = CommandExecution.execCommand(cmd, RootCheck.isRoot());
-                if (result.result != 0 || !device.canRead() || !device.canWrite()) {
-                    throw new SecurityException("Root permission denied or chmod failed");
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to gain permissions: " + e.getMessage());
-                throw new SecurityException("Failed to gain read/write permissions: " + e.getMessage());
-            }
+        ensureAccess(device);
+        try {
+            mFd = open(device.getAbsolutePath(), baudrate, flags, dataBits, stopBits, parityToInt(parity));
+        } finally {
+            // A cached grant may be stale; check again next time
+            if (mFd == null) sNodeAccess.remove(device.getAbsolutePath());
         }
-        mFd = open(device.getAbsolutePath(), baudrate, flags, dataBits, stopBits, parityToInt(parity));
         if (mFd == null) {
             Log.e(TAG, "Native open returns null");
             throw new IOException("Failed to open serial port");
@@ -69,6 +105,78 @@ public class SerialPort {
             mFileInputStream = new FileInputStream(mFd);
             mFileOutputStream = new FileOutputStream(mFd);
         }
+        mFileOutputStream = new DrainingOutputStream(mFileOutputStream);
+        initPoll();
+        if (receiveBufferSize > 0) {
+            mReceiveBuffer = ByteBuffer.allocateDirect(receiveBufferSize);
+            mReceiveBuffer.limit(0);
+        }
+    }
+
+    private void initPoll() {
+        StructPollfd data = new StructPollfd();
+        data.fd = mFd;
+        data.events = (short) OsConstants.POLLIN;
+        try {
+            mWakePipe = Os.pipe2(OsConstants.O_CLOEXEC | OsConstants.O_NONBLOCK);
+            StructPollfd wake = new StructPollfd();
+            wake.fd = mWakePipe[0];
+            wake.events = (short) OsConstants.POLLIN;
+            mPollFds = new StructPollfd[]{data, wake};
+        } catch (ErrnoException e) {
+            // Reads still block with a timeout, they just cannot be woken early
+            Log.w(TAG, "Wake pipe unavailable: " + e.getMessage());
+            mWakePipe = null;
+            mPollFds = new StructPollfd[]{data};
+        }
+    }
+
+    /**
+     * Makes sure the device node is readable and writable, running chmod through the
+     * shared root shell if it is not. The outcome is remembered per node (path and
+     * inode), so reopening a port skips the shell; a node recreated by a USB replug
+     * gets a new inode and is checked again. Refusals are retried after a while.
+     */
+    private static void ensureAccess(File device) throws SecurityException {
+        String path = device.getAbsolutePath();
+        long inode = inodeOf(path);
+        NodeAccess known = sNodeAccess.get(path);
+        if (known != null && inode != -1 && known.inode == inode) {
+            if (known.error == null) return;
+            if (System.nanoTime() - known.checkedAt < TimeUnit.MILLISECONDS.toNanos(ACCESS_DENIED_RETRY_MS)) {
+                throw new SecurityException(known.error);
+            }
+        }
+
+        String error = null;
+        if (!device.canRead() || !device.canWrite()) {
+            CommandExecution.CommandResult result = CommandExecution.execCommand("chmod 777 " + path, RootCheck.isRoot());
+            if (result.result != 0 || !device.canRead() || !device.canWrite()) {
+                error = "Failed to gain read/write permissions: Root permission denied or chmod failed";
+                Log.e(TAG, error + " for " + path + (result.errorMsg != null ? ": " + result.errorMsg.trim() : ""));
+            }
+        }
+        if (inode != -1) sNodeAccess.put(path, new NodeAccess(inode, error));
+        if (error != null) throw new SecurityException(error);
+    }
+
+    private static long inodeOf(String path) {
+        try {
+            return Os.stat(path).st_ino;
+        } catch (ErrnoException e) {
+            return -1;
+        }
+    }
+
+    private static final class NodeAccess {
+        final long inode;
+        final String error; // null when access was granted
+        final long checkedAt = System.nanoTime();
+
+        NodeAccess(long inode, String error) {
+            this.inode = inode;
+            this.error = error;
+        }
     }
 
     // Convenience constructor for string path with configurable parameters
@@ -76,6 +184,10 @@ public class SerialPort {
         this(new File(devicePath), baudrate, flags, dataBits, stopBits, parity, bufferSize);
     }
 
+    public SerialPort(String devicePath, int baudrate, int flags, int dataBits, int stopBits, String parity, int bufferSize, int receiveBufferSize) throws SecurityException, IOException {
+        this(new File(devicePath), baudrate, flags, dataBits, stopBits, parity, bufferSize, receiveBufferSize);
+    }
+
     public String getDevicePath() { // Fixed typo from gettDdevicePath to getDevicePath
         return devicePath;
     }
@@ -88,6 +200,371 @@ public class SerialPort {
         return mFileOutputStream;
     }
 
+    /**
+     * Blocks until bytes arrive, the timeout expires or {@link #wakeup()} is called.
+     * Once the first bytes are in, keeps collecting while the gap between bytes stays
+     * under the inter-byte timeout (like termios VTIME).
+     *
+     * @param timeoutMs maximum time to wait for the first byte, -1 to wait forever
+     * @return number of bytes read, 0 on timeout or wakeup, -1 once the port is shut down
+     */
+    public int read(byte[] buffer, int offset, int length, int timeoutMs) throws IOException {
+        if (length == 0) return 0;
+        synchronized (mReadLock) {
+            if (mShutdown) return -1;
+            try {
+                if (!awaitReadable(timeoutMs)) {
+                    return mShutdown ? -1 : 0;
+                }
+                int total = Os.read(mFd, buffer, offset, length);
+                if (total <= 0) return -1; // EOF / hangup
+                int gap = mInterByteTimeout;
+                while (gap > 0 && total < length && awaitReadable(gap)) {
+                    int n = Os.read(mFd, buffer, offset + total, length - total);
+                    if (n <= 0) break;
+                    total += n;
+                }
+                return total;
+            } catch (ErrnoException e) {
+                throw new IOException("Serial read failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #read(byte[], int, int, int)}, reading into {@code dst} from its
+     * position up to its limit and advancing the position. A direct buffer is filled
+     * straight from the fd, with no copy through the Java heap.
+     */
+    public int read(ByteBuffer dst, int timeoutMs) throws IOException {
+        if (!dst.hasRemaining()) return 0;
+        synchronized (mReadLock) {
+            if (mShutdown) return -1;
+            try {
+                if (!awaitReadable(timeoutMs)) {
+                    return mShutdown ? -1 : 0;
+                }
+                int total = Os.read(mFd, dst);
+                if (total <= 0) return -1; // EOF / hangup
+                int gap = mInterByteTimeout;
+                while (gap > 0 && dst.hasRemaining() && awaitReadable(gap)) {
+                    int n = Os.read(mFd, dst);
+                    if (n <= 0) break;
+                    total += n;
+                }
+                return total;
+            } catch (ErrnoException e) {
+                throw new IOException("Serial read failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Reads into the port's own receive buffer, replacing what it held. On return the
+     * buffer's position is 0 and its limit is the number of bytes read, so decoders can
+     * parse it in place; it stays valid until the next call.
+     *
+     * @return as {@link #read(byte[], int, int, int)}
+     * @throws IllegalStateException if the port was opened without a receive buffer
+     */
+    public int receive(int timeoutMs) throws IOException {
+        ByteBuffer rx = mReceiveBuffer;
+        if (rx == null) throw new IllegalStateException("Port was opened without a receive buffer");
+        rx.clear();
+        int n = read(rx, timeoutMs);
+        rx.flip();
+        return n;
+    }
+
+    /** The buffer {@link #receive(int)} fills, or null if the port was opened without one */
+    public ByteBuffer getReceiveBuffer() {
+        return mReceiveBuffer;
+    }
+
+    /**
+     * Writes all of {@code src} from its position to its limit. A direct buffer goes
+     * to the fd with no heap copy. Like the OutputStream, use one writer at a time.
+     * Under the low-latency profile it returns once the bytes have left the UART.
+     *
+     * @return number of bytes written
+     */
+    public int write(ByteBuffer src) throws IOException {
+        int total = 0;
+        try {
+            while (src.hasRemaining()) {
+                total += Os.write(mFd, src);
+            }
+            if (mDrainAfterWrite) drain();
+            return total;
+        } catch (ErrnoException e) {
+            throw new IOException("Serial write failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Single read with no poll() first, for callers that poll the fd themselves
+     * (see {@link SerialReactor}). Only call it once the fd is readable; the fd is
+     * in blocking mode, so otherwise it waits like a plain stream read.
+     *
+     * @return number of bytes read, 0 if none were ready, -1 once the port is shut down or hung up
+     */
+    public int readNow(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        synchronized (mReadLock) {
+            if (mShutdown) return -1;
+            try {
+                int n = Os.read(mFd, buffer, offset, length);
+                return n <= 0 ? -1 : n;
+            } catch (ErrnoException e) {
+                if (e.errno == OsConstants.EAGAIN || e.errno == OsConstants.EINTR) return 0;
+                throw new IOException("Serial read failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    FileDescriptor getFileDescriptor() {
+        return mFd;
+    }
+
+    boolean isShutdown() {
+        return mShutdown;
+    }
+
+    private boolean awaitReadable(int timeoutMs) throws ErrnoException {
+        StructPollfd data = mPollFds[0];
+        data.revents = 0;
+        if (mPollFds.length > 1) mPollFds[1].revents = 0;
+
+        int ready;
+        try {
+            ready = Os.poll(mPollFds, timeoutMs);
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.EINTR) return false;
+            throw e;
+        }
+        if (ready == 0) return false;
+
+        if (mPollFds.length > 1 && (mPollFds[1].revents & OsConstants.POLLIN) != 0) {
+            drainWakePipe();
+            return false;
+        }
+        if ((data.revents & OsConstants.POLLIN) != 0) return true;
+        if ((data.revents & (OsConstants.POLLERR | OsConstants.POLLHUP | OsConstants.POLLNVAL)) != 0) {
+            throw new ErrnoException("poll", OsConstants.EIO);
+        }
+        return false;
+    }
+
+    private void drainWakePipe() {
+        try {
+            while (Os.read(mWakePipe[0], mWakeDrain, 0, mWakeDrain.length) > 0) {
+                // discard
+            }
+        } catch (ErrnoException | IOException e) {
+            // EAGAIN once the pipe is empty
+        }
+    }
+
+    /**
+     * Wakes a thread blocked in {@link #read(byte[], int, int, int)}; that call returns 0.
+     */
+    public void wakeup() {
+        FileDescriptor[] pipe = mWakePipe;
+        if (pipe == null) return;
+        try {
+            Os.write(pipe[1], mWakeByte, 0, 1);
+        } catch (ErrnoException | IOException e) {
+            // EAGAIN means a wakeup is already pending
+        }
+    }
+
+    /**
+     * Wakes and stops any blocked reader, releases the wake pipe and closes the port.
+     */
+    public void shutdown() throws IOException {
+        mShutdown = true;
+        wakeup();
+        synchronized (mReadLock) {
+            if (mWakePipe != null) {
+                for (FileDescriptor fd : mWakePipe) {
+                    try {
+                        Os.close(fd);
+                    } catch (ErrnoException e) {
+                        Log.w(TAG, "Failed to close wake pipe: " + e.getMessage());
+                    }
+                }
+                mWakePipe = null;
+                mPollFds = new StructPollfd[]{mPollFds[0]};
+            }
+        }
+        close();
+    }
+
+    /**
+     * Applies a latency profile. Reads here poll the fd rather than block in the
+     * driver, so termios VMIN/VTIME are replaced by the inter-byte timeout.
+     * <ul>
+     * <li>{@code low-latency}: bytes are handed over as soon as they arrive, stale
+     * input is discarded (tcflush), each flush of the OutputStream waits for the
+     * bytes to leave the UART (tcdrain), and an FTDI-style USB adapter's latency
+     * timer drops to 1ms.</li>
+     * <li>{@code throughput}: bursts are collected until the line has been idle
+     * 10ms, writes return once queued, and the USB latency timer goes back to 16ms.</li>
+     * <li>{@code default}: leaves the port as it was opened.</li>
+     * </ul>
+     * Call it before starting a read loop; it may run a root shell to set the USB
+     * latency timer.
+     */
+    public void setLatencyProfile(String profile) throws IOException {
+        switch (checkLatencyProfile(profile)) {
+            case PROFILE_LOW_LATENCY:
+                setInterByteTimeout(0);
+                mDrainAfterWrite = true;
+                flushInput();
+                setUsbLatencyTimer(USB_LATENCY_TIMER_LOW);
+                break;
+            case PROFILE_THROUGHPUT:
+                setInterByteTimeout(THROUGHPUT_INTER_BYTE_MS);
+                mDrainAfterWrite = false;
+                setUsbLatencyTimer(USB_LATENCY_TIMER_DEFAULT);
+                break;
+            default:
+                break;
+        }
+        mLatencyProfile = profile;
+    }
+
+    /** @return {@code profile} if it names a latency profile */
+    public static String checkLatencyProfile(String profile) {
+        if (PROFILE_DEFAULT.equals(profile) || PROFILE_LOW_LATENCY.equals(profile) || PROFILE_THROUGHPUT.equals(profile)) {
+            return profile;
+        }
+        throw new IllegalArgumentException("Invalid latency profile: " + profile);
+    }
+
+    /** The settings in effect now, read back from the port where the kernel exposes them */
+    public LatencySettings getLatencySettings() {
+        return new LatencySettings(mLatencyProfile, mInterByteTimeout, mDrainAfterWrite, readUsbLatencyTimer());
+    }
+
+    public static class LatencySettings {
+        public final String profile;
+        public final int interByteTimeoutMs;
+        public final boolean drainAfterWrite;
+        /** USB adapter latency timer from sysfs, -1 if the port has none */
+        public final int usbLatencyTimerMs;
+
+        public LatencySettings(String profile, int interByteTimeoutMs, boolean drainAfterWrite, int usbLatencyTimerMs) {
+            this.profile = profile;
+            this.interByteTimeoutMs = interByteTimeoutMs;
+            this.drainAfterWrite = drainAfterWrite;
+            this.usbLatencyTimerMs = usbLatencyTimerMs;
+        }
+
+        @Override
+        public String toString() {
+            return profile + " (interByteTimeout=" + interByteTimeoutMs + "ms, drainAfterWrite=" + drainAfterWrite
+                    + ", usbLatencyTimer=" + usbLatencyTimerMs + "ms)";
+        }
+    }
+
+    /**
+     * Discards input the driver has buffered but nobody has read, like tcflush(TCIFLUSH).
+     *
+     * @return number of bytes discarded
+     */
+    public int flushInput() throws IOException {
+        int discarded = 0;
+        synchronized (mReadLock) {
+            if (mShutdown) return 0;
+            StructPollfd[] dataOnly = {mPollFds[0]};
+            byte[] scratch = new byte[256];
+            try {
+                while (true) {
+                    dataOnly[0].revents = 0;
+                    if (Os.poll(dataOnly, 0) <= 0 || (dataOnly[0].revents & OsConstants.POLLIN) == 0) break;
+                    int n = Os.read(mFd, scratch, 0, scratch.length);
+                    if (n <= 0) break;
+                    discarded += n;
+                }
+            } catch (ErrnoException e) {
+                throw new IOException("Serial flush failed: " + e.getMessage(), e);
+            }
+        }
+        return discarded;
+    }
+
+    /** Waits until everything written has left the UART (tcdrain) */
+    public void drain() throws IOException {
+        try {
+            Os.tcdrain(mFd);
+        } catch (ErrnoException e) {
+            throw new IOException("Serial drain failed: " + e.getMessage(), e);
+        }
+    }
+
+    // usb-serial adapters (FTDI and friends) hold input for this many ms before sending it up
+    private File usbLatencyTimerFile() {
+        String name = new File(devicePath).getName();
+        if (!name.startsWith("ttyUSB")) return null;
+        File timer = new File("/sys/bus/usb-serial/devices/" + name + "/latency_timer");
+        return timer.exists() ? timer : null;
+    }
+
+    private int readUsbLatencyTimer() {
+        File timer = usbLatencyTimerFile();
+        if (timer == null) return -1;
+        try (FileInputStream in = new FileInputStream(timer)) {
+            byte[] text = new byte[16];
+            int n = in.read(text);
+            return n > 0 ? Integer.parseInt(new String(text, 0, n).trim()) : -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void setUsbLatencyTimer(int ms) {
+        File timer = usbLatencyTimerFile();
+        if (timer == null || readUsbLatencyTimer() == ms) return;
+        try (FileOutputStream out = new FileOutputStream(timer)) {
+            out.write(Integer.toString(ms).getBytes());
+            return;
+        } catch (IOException e) {
+            // sysfs is root-only on most images; fall back to su like the chmod in the constructor
+        }
+        if (RootCheck.isRoot()) {
+            CommandExecution.CommandResult result = CommandExecution.execCommand("echo " + ms + " > " + timer.getAbsolutePath(), true);
+            if (result.result == 0) return;
+        }
+        Log.w(TAG, "Could not set USB latency timer on " + devicePath + " to " + ms + "ms");
+    }
+
+    // flush() also waits for the UART when the latency profile asks for it
+    private class DrainingOutputStream extends FilterOutputStream {
+        DrainingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            if (mDrainAfterWrite) drain();
+        }
+    }
+
+    public void setInterByteTimeout(int timeoutMs) {
+        mInterByteTimeout = Math.max(0, timeoutMs);
+    }
+
+    public int getInterByteTimeout() {
+        return mInterByteTimeout;
+    }
+
     private int parityToInt(String parity) {
         switch (parity.toLowerCase()) {
             case "none": return 0;
@@ -0,0 +1,337 @@
+package android.serialport;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+import android.util.Log;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One poll() loop over every registered {@link SerialPort}, instead of one blocked
+ * reader thread per port.
+ *
+ * The reactor thread only polls and reads. Each chunk it reads goes to that port's
+ * {@link Handler} on a small shared worker pool. A port's chunks are handled one at
+ * a time and in order, so a handler can keep decoder state without locking, and a
+ * slow handler on one port never holds up reading from another.
+ */
+public class SerialReactor {
+    private static final String TAG = "SerialReactor";
+    private static final int READ_CHUNK = 1024;
+    private static final long UNREGISTER_WAIT_MS = 1000;
+
+    public interface Handler {
+        /** Bytes read from the port; {@code data} belongs to the handler */
+        void onData(byte[] data, int length);
+
+        /** The port hung up or was shut down while registered; nothing follows */
+        default void onClosed() {
+        }
+    }
+
+    private final Map<SerialPort, Lane> lanes = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final Thread thread;
+    private final FileDescriptor[] mWakePipe;
+    private final byte[] mWakeByte = new byte[1];
+    private final byte[] mWakeDrain = new byte[16];
+    private volatile boolean running = true;
+
+    // register()/unregister() bump the requested generation; the loop publishes the
+    // one its poll set reflects, so unregister() can wait until the fd is out of it
+    private final Object generationLock = new Object();
+    private long requestedGeneration;
+    private long appliedGeneration;
+
+    private final AtomicLong wakeups = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+
+    public SerialReactor(int workerThreads) throws IOException {
+        try {
+            mWakePipe = Os.pipe2(OsConstants.O_CLOEXEC | OsConstants.O_NONBLOCK);
+        } catch (ErrnoException e) {
+            throw new IOException("Reactor wake pipe unavailable: " + e.getMessage(), e);
+        }
+        AtomicInteger workerIds = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, workerThreads), r -> {
+            Thread worker = new Thread(r, "SerialReactor-worker-" + workerIds.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        thread = new Thread(this::loop, "SerialReactor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Starts delivering the port's input to {@code handler}; replaces any earlier handler */
+    public void register(SerialPort port, Handler handler) {
+        Lane previous = lanes.put(port, new Lane(handler));
+        if (previous != null) previous.detached = true;
+        requestRebuild();
+    }
+
+    /**
+     * Stops watching the port. Returns once the poll loop no longer includes its fd,
+     * so the caller may close the port straight after. Chunks already read but not yet
+     * handled are dropped.
+     */
+    public void unregister(SerialPort port) {
+        Lane lane = lanes.remove(port);
+        if (lane == null) return;
+        lane.detached = true;
+        long generation = requestRebuild();
+        if (Thread.currentThread() == thread) return;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(UNREGISTER_WAIT_MS);
+        synchronized (generationLock) {
+            while (appliedGeneration < generation) {
+                long waitMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (waitMs <= 0) {
+                    Log.w(TAG, "Poll loop did not drop " + port.getDevicePath() + " in time");
+                    return;
+                }
+                try {
+                    generationLock.wait(waitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public boolean isRegistered(SerialPort port) {
+        return lanes.containsKey(port);
+    }
+
+    public int getPortCount() {
+        return lanes.size();
+    }
+
+    /** Times the poll loop has woken up, for data, a hangup or a registration change */
+    public long getWakeups() {
+        return wakeups.get();
+    }
+
+    /** Chunks read and handed to handlers */
+    public long getChunks() {
+        return chunks.get();
+    }
+
+    /** Stops the loop and the workers. Registered ports are left open. */
+    public void shutdown() {
+        running = false;
+        wakeup();
+        try {
+            thread.join(UNREGISTER_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        for (Lane lane : lanes.values()) lane.detached = true;
+        lanes.clear();
+        for (FileDescriptor fd : mWakePipe) {
+            try {
+                Os.close(fd);
+            } catch (ErrnoException e) {
+                Log.w(TAG, "Failed to close wake pipe: " + e.getMessage());
+            }
+        }
+    }
+
+    private long requestRebuild() {
+        long generation;
+        synchronized (generationLock) {
+            generation = ++requestedGeneration;
+        }
+        wakeup();
+        return generation;
+    }
+
+    private void wakeup() {
+        try {
+            Os.write(mWakePipe[1], mWakeByte, 0, 1);
+        } catch (ErrnoException | IOException e) {
+            // EAGAIN means a wakeup is already pending
+        }
+    }
+
+    private void loop() {
+        byte[] buffer = new byte[READ_CHUNK];
+        StructPollfd[] pollFds = null;
+        List<SerialPort> polledPorts = new ArrayList<>();
+        List<Lane> polledLanes = new ArrayList<>();
+        long built = -1;
+
+        try {
+            while (running) {
+                long generation;
+                synchronized (generationLock) {
+                    generation = requestedGeneration;
+                }
+                if (generation != built) {
+                    polledPorts.clear();
+                    polledLanes.clear();
+                    for (Map.Entry<SerialPort, Lane> entry : lanes.entrySet()) {
+                        polledPorts.add(entry.getKey());
+                        polledLanes.add(entry.getValue());
+                    }
+                    pollFds = new StructPollfd[polledPorts.size() + 1];
+                    pollFds[0] = pollFd(mWakePipe[0]);
+                    for (int i = 0; i < polledPorts.size(); i++) {
+                        pollFds[i + 1] = pollFd(polledPorts.get(i).getFileDescriptor());
+                    }
+                    built = generation;
+                    synchronized (generationLock) {
+                        appliedGeneration = generation;
+                        generationLock.notifyAll();
+                    }
+                }
+
+                for (StructPollfd fd : pollFds) fd.revents = 0;
+                try {
+                    Os.poll(pollFds, -1);
+                } catch (ErrnoException e) {
+                    if (e.errno == OsConstants.EINTR) continue;
+                    throw e;
+                }
+                wakeups.incrementAndGet();
+
+                if ((pollFds[0].revents & OsConstants.POLLIN) != 0) drainWakePipe();
+                for (int i = 1; i < pollFds.length; i++) {
+                    short revents = pollFds[i].revents;
+                    if (revents == 0) continue;
+                    SerialPort port = polledPorts.get(i - 1);
+                    Lane lane = polledLanes.get(i - 1);
+                    if (lane.detached) continue;
+
+                    if ((revents & OsConstants.POLLIN) != 0) {
+                        int n;
+                        try {
+                            n = port.readNow(buffer, 0, buffer.length);
+                        } catch (IOException e) {
+                            Log.e(TAG, "Read failed on " + port.getDevicePath() + ": " + e.getMessage());
+                            n = -1;
+                        }
+                        if (n > 0) {
+                            chunks.incrementAndGet();
+                            lane.post(Arrays.copyOf(buffer, n));
+                            continue;
+                        }
+                        if (n == 0) continue;
+                    }
+                    // POLLERR/POLLHUP/POLLNVAL, EOF or a port shut down under us
+                    hangUp(port, lane);
+                }
+            }
+        } catch (ErrnoException e) {
+            Log.e(TAG, "Poll loop failed: " + e.getMessage());
+            for (Map.Entry<SerialPort, Lane> entry : lanes.entrySet()) hangUp(entry.getKey(), entry.getValue());
+        } finally {
+            // Nobody waits on a loop that has stopped
+            synchronized (generationLock) {
+                appliedGeneration = Long.MAX_VALUE;
+                generationLock.notifyAll();
+            }
+        }
+    }
+
+    private void hangUp(SerialPort port, Lane lane) {
+        if (lanes.remove(port, lane)) {
+            synchronized (generationLock) {
+                requestedGeneration++;
+            }
+            lane.hangUp();
+        }
+    }
+
+    private static StructPollfd pollFd(FileDescriptor fd) {
+        StructPollfd pollFd = new StructPollfd();
+        pollFd.fd = fd;
+        pollFd.events = (short) OsConstants.POLLIN;
+        return pollFd;
+    }
+
+    private void drainWakePipe() {
+        try {
+            while (Os.read(mWakePipe[0], mWakeDrain, 0, mWakeDrain.length) > 0) {
+                // discard
+            }
+        } catch (ErrnoException | IOException e) {
+            // EAGAIN once the pipe is empty
+        }
+    }
+
+    /** One port's chunks, handled in order by at most one worker at a time */
+    private final class Lane implements Runnable {
+        private final Handler handler;
+        private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean detached; // unregistered: drop what is left, no onClosed
+        private volatile boolean hungUp; // deliver what is left, then onClosed
+        private boolean closedNotified;
+
+        Lane(Handler handler) {
+            this.handler = handler;
+        }
+
+        void post(byte[] chunk) {
+            pending.add(chunk);
+            schedule();
+        }
+
+        void hangUp() {
+            hungUp = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                workers.execute(this);
+            } catch (RuntimeException e) {
+                scheduled.set(false); // reactor shut down
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                byte[] chunk;
+                while ((chunk = pending.poll()) != null) {
+                    if (detached) {
+                        pending.clear();
+                        break;
+                    }
+                    try {
+                        handler.onData(chunk, chunk.length);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Handler failed: " + e.getMessage(), e);
+                    }
+                }
+                // hungUp is set after the last post, so an empty queue here is final
+                if (hungUp && !detached && !closedNotified && pending.isEmpty()) {
+                    closedNotified = true;
+                    handler.onClosed();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            if (!pending.isEmpty() || (hungUp && !closedNotified && !detached)) schedule();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package android.serialport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived {@code su} or {@code sh} process that runs one command at a time.
+ *
+ * Each command is followed by an {@code echo} of a unique marker on stdout
+ * (with the exit status) and on stderr, so the end of its output is known
+ * without the shell exiting. Both streams are drained by their own threads,
+ * so a command that writes a lot to either one can never block the shell.
+ * A command that times out kills the shell; the next command starts a new one.
+ *
+ * Commands share the shell's state (working directory, variables) and must
+ * not {@code exit}.
+ */
+public class ShellSession {
+    // Queued by a drainer when its stream hits EOF
+    private static final String EOF = new String("<eof>");
+
+    private final String[] shellCommand;
+    private Process process;
+    private OutputStream stdin;
+    private BlockingQueue<String> stdout;
+    private BlockingQueue<String> stderr;
+    private long commands;
+    private int starts;
+
+    /** @param shellCommand e.g. {@code "su"} or {@code "sh"} */
+    public ShellSession(String... shellCommand) {
+        this.shellCommand = shellCommand;
+    }
+
+    /**
+     * Runs {@code command} and waits for it to finish.
+     *
+     * @return exit status and output; status -1 with the reason in errorMsg if the
+     *         shell could not be started, died or the command timed out
+     */
+    public synchronized CommandExecution.CommandResult exec(String command, long timeoutMs) {
+        String marker = "__serialport_done_" + (++commands) + "_" + System.nanoTime();
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        try {
+            ensureStarted();
+            String script = command + "\necho \"" + marker + " $?\"\necho \"" + marker + "\" >&2\n";
+            stdin.write(script.getBytes(StandardCharsets.UTF_8));
+            stdin.flush();
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            String statusLine = collect(stdout, marker, out, deadline);
+            collect(stderr, marker, err, deadline);
+            int result = Integer.parseInt(statusLine.trim());
+            return new CommandExecution.CommandResult(result, out.toString(), err.toString());
+        } catch (IOException | NumberFormatException e) {
+            destroy();
+            err.append(e.getMessage());
+            return new CommandExecution.CommandResult(-1, out.toString(), err.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroy();
+            return new CommandExecution.CommandResult(-1, out.toString(), "Interrupted");
+        }
+    }
+
+    /** True while the shell process is alive */
+    public synchronized boolean isRunning() {
+        return process != null && process.isAlive();
+    }
+
+    /** Number of shell processes started so far */
+    public synchronized int getStarts() {
+        return starts;
+    }
+
+    /** Kills the shell; the next {@link #exec} starts a new one */
+    public synchronized void destroy() {
+        if (process == null) return;
+        process.destroy();
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        process = null;
+        stdin = null;
+    }
+
+    private void ensureStarted() throws IOException {
+        if (process != null && process.isAlive()) return;
+        destroy();
+        process = new ProcessBuilder(shellCommand).start();
+        starts++;
+        stdin = process.getOutputStream();
+        stdout = new LinkedBlockingQueue<>();
+        stderr = new LinkedBlockingQueue<>();
+        drain(process.getInputStream(), stdout, "stdout");
+        drain(process.getErrorStream(), stderr, "stderr");
+    }
+
+    private void drain(InputStream stream, BlockingQueue<String> lines, String name) {
+        Thread drainer = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) lines.add(line);
+            } catch (IOException e) {
+                // shell destroyed
+            }
+            lines.add(EOF);
+        }, "ShellSession-" + shellCommand[0] + "-" + name);
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Appends lines to {@code output} until the marker line.
+     *
+     * @return whatever follows the marker on its line
+     */
+    private static String collect(BlockingQueue<String> lines, String marker, StringBuilder output, long deadline)
+            throws IOException, InterruptedException {
+        while (true) {
+            long waitNs = deadline - System.nanoTime();
+            String line = waitNs > 0 ? lines.poll(waitNs, TimeUnit.NANOSECONDS) : null;
+            if (line == null) throw new IOException("Command timed out");
+            if (line == EOF) throw new IOException("Shell exited");
+            int at = line.indexOf(marker);
+            if (at < 0) {
+                output.append(line).append("\n");
+                continue;
+            }
+            // Output without a trailing newline ends up in front of the marker
+            if (at > 0) output.append(line, 0, at).append("\n");
+            return line.substring(at + marker.length());
+        }
+    }
+}
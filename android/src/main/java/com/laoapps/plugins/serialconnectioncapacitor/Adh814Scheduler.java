@@ -0,0 +1,274 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event-driven command scheduler for the ADH814 motor board.
+ *
+ * One command is in flight at a time. The next one goes out as soon as the
+ * reader reports the matching response (the board echoes the command byte),
+ * or when the in-flight command's deadline expires: 2200ms for RUN, 300ms for
+ * everything else. An unanswered command is re-sent up to {@link #MAX_ATTEMPTS}
+ * times before it is dropped. Each {@link PendingCommand} completes with its
+ * response frame, or fails once dropped or past its own deadline.
+ *
+ * Motor status gating:
+ * - RUN (0xA5) is held back while the motor status is not idle (0).
+ * - A RUN held back for {@link #RUN_BLOCKED_TIMEOUT_MS} is dropped and the
+ *   status is optimistically reset to idle.
+ * - While the status is not idle and nothing else can be sent, a POLL (0xA3)
+ *   goes out every {@link #FORCED_POLL_INTERVAL_MS} to refresh it.
+ *
+ * All scheduling state is confined to the scheduler thread. Other threads only
+ * post events through {@link #submit}, {@link #responseReceived} and
+ * {@link #motorStatusChanged}, so nothing ever sleeps holding a lock.
+ */
+public class Adh814Scheduler {
+  public static final int CMD_POLL = 0xA3;
+  public static final int CMD_RUN = 0xA5;
+  public static final int CMD_ACK = 0xA6;
+
+  public static final long RUN_RESPONSE_TIMEOUT_MS = 2200;
+  public static final long RESPONSE_TIMEOUT_MS = 300;
+  public static final long RUN_BLOCKED_TIMEOUT_MS = 4000;
+  public static final long FORCED_POLL_INTERVAL_MS = 800;
+  public static final int MAX_ATTEMPTS = 3;
+
+  /** Returned by {@link #advance} when nothing is scheduled */
+  static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  public interface Callbacks {
+    /** Hands a packet to the port. Called on the scheduler thread; must not block. */
+    void send(byte[] command, int attempt);
+
+    /** Builds the POLL packet used to refresh the motor status */
+    byte[] buildPoll() throws Exception;
+
+    /** A command got no response after {@link #MAX_ATTEMPTS} sends, or passed its deadline */
+    void onCommandTimeout(PendingCommand command);
+
+    /** A RUN was held back by motor status for too long and dropped */
+    void onRunDropped(PendingCommand command, int motorStatus);
+  }
+
+  private final Callbacks callbacks;
+  private final LinkedBlockingQueue<Runnable> inbox = new LinkedBlockingQueue<>();
+  private volatile Thread thread;
+  private volatile boolean running = false;
+
+  // Scheduler-thread state
+  private final ArrayDeque<PendingCommand> queue = new ArrayDeque<>();
+  private PendingCommand inFlight;
+  private long inFlightDeadline;
+  private int attempts;
+  private long runBlockedSince = -1;
+  private long lastForcedPoll = Long.MIN_VALUE / 2;
+  private volatile int motorStatus = 0; // 0=idle, 1=delivering, 2=delivery end
+
+  public Adh814Scheduler(Callbacks callbacks) {
+    this.callbacks = callbacks;
+  }
+
+  // ─── Thread-safe API ─────────────────────────────────────────
+
+  public synchronized void start() {
+    if (running) return;
+    running = true;
+    thread = new Thread(this::run, "ADH814Scheduler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Stops the scheduler thread. Queued commands are kept for the next start(). */
+  public synchronized void stop() {
+    if (!running) return;
+    running = false;
+    Thread t = thread;
+    thread = null;
+    t.interrupt();
+    if (t != Thread.currentThread()) {
+      try {
+        t.join(1000); // so a quick restart never has two threads on the state
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Queues a command behind those already waiting */
+  public void submit(PendingCommand command) {
+    inbox.add(() -> enqueue(command));
+  }
+
+  /** Reports a parsed response frame from the board by its command byte */
+  public void responseReceived(int commandCode, byte[] frame) {
+    inbox.add(() -> onResponse(commandCode, frame));
+  }
+
+  /**
+   * Fails every queued and in-flight command, e.g. when the port closes.
+   * Only valid while the scheduler is stopped.
+   */
+  public synchronized void cancelAll(Exception cause) {
+    if (running) throw new IllegalStateException("Scheduler is running");
+    Runnable event;
+    while ((event = inbox.poll()) != null) event.run();
+    if (inFlight != null) {
+      inFlight.fail(cause);
+      inFlight = null;
+    }
+    PendingCommand command;
+    while ((command = queue.poll()) != null) command.fail(cause);
+  }
+
+  public void motorStatusChanged(int status) {
+    inbox.add(() -> setMotorStatus(status));
+  }
+
+  public int getMotorStatus() {
+    return motorStatus;
+  }
+
+  private void run() {
+    Thread self = Thread.currentThread();
+    long deadline = NO_DEADLINE;
+    try {
+      while (thread == self) {
+        long wait = deadline == NO_DEADLINE ? Long.MAX_VALUE : deadline - PendingCommand.now();
+        Runnable event = wait > 0 ? inbox.poll(wait, TimeUnit.MILLISECONDS) : inbox.poll();
+        try {
+          while (event != null) {
+            event.run();
+            event = inbox.poll();
+          }
+          if (thread != self) break;
+          deadline = advance(PendingCommand.now());
+        } catch (RuntimeException e) {
+          // A failing callback must not take the scheduler down; retry shortly
+          deadline = PendingCommand.now() + RESPONSE_TIMEOUT_MS;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // ─── State machine (scheduler thread only) ───────────────────
+
+  void enqueue(PendingCommand command) {
+    queue.add(command);
+  }
+
+  void onResponse(int commandCode, byte[] frame) {
+    if (inFlight != null && inFlight.matches(commandCode, commandCode(inFlight.packet))) {
+      inFlight.complete(frame);
+      inFlight = null;
+      attempts = 0;
+    }
+  }
+
+  void setMotorStatus(int status) {
+    motorStatus = status;
+  }
+
+  int queued() {
+    return queue.size();
+  }
+
+  boolean hasInFlight() {
+    return inFlight != null;
+  }
+
+  /**
+   * Sends whatever is due at {@code now}.
+   *
+   * @return the time the scheduler next needs to act, or {@link #NO_DEADLINE}
+   */
+  long advance(long now) {
+    while (true) {
+      if (inFlight != null) {
+        long due = Math.min(inFlightDeadline, inFlight.deadline);
+        if (now < due) return due;
+        if (attempts < MAX_ATTEMPTS && !inFlight.isExpired(now)) {
+          send(inFlight, now);
+          return Math.min(inFlightDeadline, inFlight.deadline);
+        }
+        PendingCommand timedOut = inFlight;
+        inFlight = null;
+        attempts = 0;
+        timedOut.expire();
+        callbacks.onCommandTimeout(timedOut);
+        continue;
+      }
+
+      PendingCommand next = queue.peek();
+      if (next != null && next.isExpired(now)) {
+        queue.poll();
+        if (commandCode(next.packet) == CMD_RUN) runBlockedSince = -1;
+        next.expire();
+        callbacks.onCommandTimeout(next);
+        continue;
+      }
+      boolean runBlocked = next != null && commandCode(next.packet) == CMD_RUN && motorStatus != 0;
+      if (next != null && !runBlocked) {
+        if (commandCode(next.packet) == CMD_RUN) runBlockedSince = -1;
+        queue.poll();
+        attempts = 0;
+        send(next, now);
+        return Math.min(inFlightDeadline, next.deadline);
+      }
+
+      long wakeAt = NO_DEADLINE;
+      if (next != null) {
+        // RUN held back by motor status
+        if (runBlockedSince < 0) runBlockedSince = now;
+        long dropAt = runBlockedSince + RUN_BLOCKED_TIMEOUT_MS;
+        if (now >= dropAt) {
+          queue.poll();
+          int status = motorStatus;
+          motorStatus = 0; // optimistic reset
+          runBlockedSince = -1;
+          next.fail(new IllegalStateException("RUN blocked by motor status " + status));
+          callbacks.onRunDropped(next, status);
+          continue;
+        }
+        wakeAt = Math.min(dropAt, next.deadline);
+      }
+
+      if (motorStatus != 0) {
+        long pollAt = lastForcedPoll + FORCED_POLL_INTERVAL_MS;
+        if (now >= pollAt) {
+          lastForcedPoll = now;
+          byte[] poll;
+          try {
+            poll = callbacks.buildPoll();
+          } catch (Exception e) {
+            return Math.min(wakeAt, now + FORCED_POLL_INTERVAL_MS);
+          }
+          attempts = 0;
+          send(new PendingCommand(poll), now);
+          return inFlightDeadline;
+        }
+        wakeAt = Math.min(wakeAt, pollAt);
+      }
+      return wakeAt;
+    }
+  }
+
+  private void send(PendingCommand command, long now) {
+    inFlight = command;
+    attempts++;
+    inFlightDeadline = now + (commandCode(command.packet) == CMD_RUN ? RUN_RESPONSE_TIMEOUT_MS : RESPONSE_TIMEOUT_MS);
+    callbacks.send(command.packet, attempts);
+  }
+
+  private static int commandCode(byte[] command) {
+    return command.length >= 2 ? command[1] & 0xFF : -1;
+  }
+}
@@ -0,0 +1,232 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+/**
+ * Front door for high-rate plugin events (dataReceived, serialWriteSuccess...).
+ *
+ * - Filters drop noisy events before anything is sent: a whole event type,
+ *   or only the events whose {@code data} equals a given hex string (e.g. the
+ *   VMC ACK echo).
+ * - With batching off, which is the default, every other event goes straight
+ *   to {@link Sink#emit}.
+ * - With batching on, events collect in a ring buffer. They are flushed as
+ *   one {@link Sink#emitBatch} every {@code intervalMs}, or as soon as
+ *   {@code maxEvents} are waiting. If the ring fills before a flush, the
+ *   oldest events are dropped and counted.
+ */
+public class BridgeEmitter {
+  public static final long DEFAULT_INTERVAL_MS = 50;
+  public static final int DEFAULT_MAX_EVENTS = 64;
+  public static final int RING_CAPACITY = 1024;
+
+  /** Where events go; called on the emitting thread, or on the flush thread for batches */
+  public interface Sink {
+    void emit(String event, JSONObject data);
+
+    /** @param dropped events lost to ring overflow since the previous batch */
+    void emitBatch(List<Entry> entries, long dropped);
+  }
+
+  /** One buffered event */
+  public static final class Entry {
+    public final String event;
+    public final JSONObject data;
+    public final long timestamp;
+
+    Entry(String event, JSONObject data, long timestamp) {
+      this.event = event;
+      this.data = data;
+      this.timestamp = timestamp;
+    }
+  }
+
+  private final Sink sink;
+  private final Set<String> suppressedEvents = ConcurrentHashMap.newKeySet();
+  private final Map<String, Set<String>> suppressedData = new ConcurrentHashMap<>();
+
+  // Ring buffer, guarded by this
+  private final Entry[] ring = new Entry[RING_CAPACITY];
+  private int head;
+  private int count;
+  private long dropped;
+  private boolean flushScheduled;
+
+  private volatile boolean batching;
+  private volatile long intervalMs = DEFAULT_INTERVAL_MS;
+  private volatile int maxEvents = DEFAULT_MAX_EVENTS;
+  private ScheduledExecutorService flusher;
+  // Serialises setBatching calls
+  private final Object configLock = new Object();
+
+  public BridgeEmitter(Sink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Turns batching on or off. Turning it off sends what is buffered as a last
+   * batch, after any batch already on its way and before any event emitted
+   * once this returns, then stops the flush thread.
+   *
+   * @param intervalMs longest time an event waits in the buffer
+   * @param maxEvents  buffered events that trigger an early flush
+   */
+  public void setBatching(boolean enabled, long intervalMs, int maxEvents) {
+    synchronized (configLock) {
+      this.intervalMs = Math.max(1, intervalMs);
+      this.maxEvents = Math.max(1, Math.min(maxEvents, RING_CAPACITY));
+      ScheduledExecutorService stopping;
+      synchronized (this) {
+        if (enabled) {
+          if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+              Thread t = new Thread(task, "bridge-batch");
+              t.setDaemon(true);
+              return t;
+            });
+          }
+          batching = true;
+          return;
+        }
+        stopping = flusher;
+        if (stopping == null) {
+          batching = false;
+          return;
+        }
+      }
+
+      // Runs after any flush already queued or running on the flusher, so batches stay in order
+      try {
+        stopping.submit(this::finalFlush).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        finalFlush();
+      } catch (ExecutionException e) {
+        finalFlush();
+      } finally {
+        stopping.shutdownNow(); // only no-op flushes can still be queued
+      }
+    }
+  }
+
+  /** Sends the last batch and leaves batching mode in one step, so a direct emit can't overtake it */
+  private synchronized void finalFlush() {
+    if (!batching) return;
+    flushScheduled = false;
+    List<Entry> entries = takeBuffered();
+    long lost = dropped;
+    dropped = 0;
+    if (!entries.isEmpty() || lost > 0) sink.emitBatch(Collections.unmodifiableList(entries), lost);
+    // Last: emitters that read false from here on find the buffer already sent
+    flusher = null;
+    batching = false;
+  }
+
+  public boolean isBatching() {
+    return batching;
+  }
+
+  public long getIntervalMs() {
+    return intervalMs;
+  }
+
+  public int getMaxEvents() {
+    return maxEvents;
+  }
+
+  /** Drops every {@code event}, or with {@code data} set only those whose data equals it */
+  public void suppress(String event, String data) {
+    if (data == null) {
+      suppressedEvents.add(event);
+    } else {
+      suppressedData.computeIfAbsent(event, e -> ConcurrentHashMap.newKeySet()).add(normalizeHex(data));
+    }
+  }
+
+  public void clearFilters() {
+    suppressedEvents.clear();
+    suppressedData.clear();
+  }
+
+  public boolean isSuppressed(String event, JSONObject data) {
+    if (suppressedEvents.contains(event)) return true;
+    Set<String> values = suppressedData.get(event);
+    return values != null && data != null && values.contains(normalizeHex(data.optString("data")));
+  }
+
+  private static String normalizeHex(String hex) {
+    return hex.replace(" ", "").toUpperCase();
+  }
+
+  /** Sends or buffers {@code event}, unless a filter drops it */
+  public void emit(String event, JSONObject data) {
+    if (isSuppressed(event, data)) return;
+    if (!batching) {
+      sink.emit(event, data);
+      return;
+    }
+
+    synchronized (this) {
+      if (batching) {
+        if (count == RING_CAPACITY) {
+          head = (head + 1) % RING_CAPACITY;
+          count--;
+          dropped++;
+        }
+        ring[(head + count) % RING_CAPACITY] = new Entry(event, data, System.currentTimeMillis());
+        count++;
+        if (count >= maxEvents) {
+          flusher.execute(this::flush);
+        } else if (!flushScheduled) {
+          flushScheduled = true;
+          flusher.schedule(this::flush, intervalMs, TimeUnit.MILLISECONDS);
+        }
+        return;
+      }
+    }
+    // Batching was turned off after the check above
+    sink.emit(event, data);
+  }
+
+  /** Sends everything buffered as one batch, if anything is */
+  public void flush() {
+    List<Entry> entries;
+    long lost;
+    synchronized (this) {
+      flushScheduled = false;
+      if (count == 0 && dropped == 0) return;
+      entries = takeBuffered();
+      lost = dropped;
+      dropped = 0;
+    }
+    sink.emitBatch(Collections.unmodifiableList(entries), lost);
+  }
+
+  // Caller holds the monitor
+  private List<Entry> takeBuffered() {
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int slot = (head + i) % RING_CAPACITY;
+      entries.add(ring[slot]);
+      ring[slot] = null;
+    }
+    head = 0;
+    count = 0;
+    return entries;
+  }
+
+  /** Events waiting for the next flush */
+  public synchronized int pending() {
+    return count;
+  }
+}
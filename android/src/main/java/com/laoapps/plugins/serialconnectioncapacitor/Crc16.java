@@ -0,0 +1,91 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+/**
+ * Table-driven CRC-16 engines for the protocols this plugin speaks.
+ *
+ * SSP (eSSP / NV9): poly 0x8005, MSB first, seed 0xFFFF, sent low byte first.
+ * Modbus (ADH814 / MT102): reflected poly 0xA001, seed 0xFFFF, sent low byte first.
+ *
+ * Every method works on an (array, offset, length) range so callers can check a
+ * frame in place. The {@code update*} methods take and return the running CRC,
+ * which lets a parser fold bytes in as they arrive:
+ *
+ * <pre>
+ *   int crc = Crc16.SSP_SEED;
+ *   crc = Crc16.updateSsp(crc, chunk1, 0, n1);
+ *   crc = Crc16.updateSsp(crc, chunk2, 0, n2);
+ * </pre>
+ */
+public final class Crc16 {
+  public static final int SSP_SEED = 0xFFFF;
+  public static final int SSP_POLY = 0x8005;
+  public static final int MODBUS_SEED = 0xFFFF;
+  public static final int MODBUS_POLY = 0xA001;
+
+  private static final int[] SSP_TABLE = new int[256];
+  private static final int[] MODBUS_TABLE = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i << 8;
+      for (int j = 0; j < 8; j++) {
+        crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ SSP_POLY) & 0xFFFF : (crc << 1) & 0xFFFF;
+      }
+      SSP_TABLE[i] = crc;
+
+      crc = i;
+      for (int j = 0; j < 8; j++) {
+        crc = (crc & 0x0001) != 0 ? (crc >>> 1) ^ MODBUS_POLY : crc >>> 1;
+      }
+      MODBUS_TABLE[i] = crc;
+    }
+  }
+
+  private Crc16() {
+  }
+
+  // ─── SSP ─────────────────────────────────────────────────────
+
+  public static int updateSsp(int crc, byte b) {
+    return ((crc << 8) ^ SSP_TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+  }
+
+  public static int updateSsp(int crc, byte[] data, int offset, int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      crc = ((crc << 8) ^ SSP_TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+    }
+    return crc;
+  }
+
+  public static int ssp(byte[] data, int offset, int length) {
+    return updateSsp(SSP_SEED, data, offset, length);
+  }
+
+  // ─── Modbus ──────────────────────────────────────────────────
+
+  public static int updateModbus(int crc, byte b) {
+    return (crc >>> 8) ^ MODBUS_TABLE[(crc ^ b) & 0xFF];
+  }
+
+  public static int updateModbus(int crc, byte[] data, int offset, int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      crc = (crc >>> 8) ^ MODBUS_TABLE[(crc ^ data[i]) & 0xFF];
+    }
+    return crc;
+  }
+
+  public static int modbus(byte[] data, int offset, int length) {
+    return updateModbus(MODBUS_SEED, data, offset, length);
+  }
+
+  /** Writes {@code crc} low byte first, the order all three protocols use on the wire. */
+  public static void putLowFirst(int crc, byte[] dest, int offset) {
+    dest[offset] = (byte) crc;
+    dest[offset + 1] = (byte) (crc >>> 8);
+  }
+
+  /** Reads a low-byte-first CRC from the wire. */
+  public static int getLowFirst(byte[] src, int offset) {
+    return (src[offset] & 0xFF) | ((src[offset + 1] & 0xFF) << 8);
+  }
+}
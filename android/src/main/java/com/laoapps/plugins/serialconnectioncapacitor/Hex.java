@@ -0,0 +1,162 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven hex codec shared by the plugin, SSP and the log helpers.
+ *
+ * Encoding looks each byte up in a 512-entry pair table instead of going
+ * through {@code String.format}, and can write into a caller's
+ * {@link StringBuilder} or {@code char[]} so hot paths don't allocate per byte.
+ * Decoding reads any {@link CharSequence} directly and rejects non-hex input.
+ */
+public final class Hex {
+  private static final char[] LOWER_PAIRS = pairs("0123456789abcdef");
+  private static final char[] UPPER_PAIRS = pairs("0123456789ABCDEF");
+  private static final byte[] DIGITS = new byte[128];
+
+  static {
+    Arrays.fill(DIGITS, (byte) -1);
+    for (int i = 0; i < 10; i++) DIGITS['0' + i] = (byte) i;
+    for (int i = 0; i < 6; i++) {
+      DIGITS['a' + i] = (byte) (10 + i);
+      DIGITS['A' + i] = (byte) (10 + i);
+    }
+  }
+
+  private static char[] pairs(String alphabet) {
+    char[] table = new char[512];
+    for (int i = 0; i < 256; i++) {
+      table[i * 2] = alphabet.charAt(i >>> 4);
+      table[i * 2 + 1] = alphabet.charAt(i & 0x0F);
+    }
+    return table;
+  }
+
+  private Hex() {
+  }
+
+  // ─── Encode ──────────────────────────────────────────────────
+
+  /** Lower-case hex without separators, e.g. {@code fafb410040} */
+  public static String encode(byte[] bytes) {
+    return encode(bytes, 0, bytes.length);
+  }
+
+  public static String encode(byte[] bytes, int offset, int length) {
+    char[] out = new char[length * 2];
+    encode(bytes, offset, length, out, 0);
+    return new String(out);
+  }
+
+  /**
+   * Writes lower-case hex into {@code dest}.
+   *
+   * @return number of chars written ({@code length * 2})
+   */
+  public static int encode(byte[] bytes, int offset, int length, char[] dest, int destOffset) {
+    int d = destOffset;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      int p = (bytes[i] & 0xFF) << 1;
+      dest[d++] = LOWER_PAIRS[p];
+      dest[d++] = LOWER_PAIRS[p + 1];
+    }
+    return d - destOffset;
+  }
+
+  public static StringBuilder appendTo(StringBuilder sb, byte[] bytes, int offset, int length) {
+    sb.ensureCapacity(sb.length() + length * 2);
+    for (int i = offset, end = offset + length; i < end; i++) {
+      int p = (bytes[i] & 0xFF) << 1;
+      sb.append(LOWER_PAIRS[p]).append(LOWER_PAIRS[p + 1]);
+    }
+    return sb;
+  }
+
+  /** Upper-case, space separated dump for logs, e.g. {@code 7F 80 01 11} */
+  public static String dump(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) return "";
+    return dump(bytes, 0, bytes.length);
+  }
+
+  public static String dump(byte[] bytes, int offset, int length) {
+    if (length <= 0) return "";
+    char[] out = new char[length * 3 - 1];
+    int d = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      if (d > 0) out[d++] = ' ';
+      int p = (bytes[i] & 0xFF) << 1;
+      out[d++] = UPPER_PAIRS[p];
+      out[d++] = UPPER_PAIRS[p + 1];
+    }
+    return new String(out);
+  }
+
+  // ─── Decode ──────────────────────────────────────────────────
+
+  /**
+   * Decodes hex digits, either case. Spaces between bytes are skipped so log
+   * dumps round-trip.
+   *
+   * @throws IllegalArgumentException on a non-hex character or an odd digit count
+   */
+  public static byte[] decode(CharSequence s) {
+    int n = s.length();
+    if ((n & 1) == 0) {
+      // Fast path: plain digit pairs, the form JS sends
+      byte[] out = new byte[n >> 1];
+      if (decodePairs(s, n, out)) return out;
+    }
+
+    int digits = 0;
+    for (int i = 0; i < n; i++) {
+      if (s.charAt(i) != ' ') digits++;
+    }
+    if ((digits & 1) != 0) {
+      throw new IllegalArgumentException("Odd number of hex digits: " + digits);
+    }
+    byte[] out = new byte[digits >> 1];
+    decode(s, out, 0);
+    return out;
+  }
+
+  private static boolean decodePairs(CharSequence s, int n, byte[] out) {
+    for (int i = 0; i < n; i += 2) {
+      char c1 = s.charAt(i);
+      char c2 = s.charAt(i + 1);
+      if ((c1 | c2) >= 128) return false;
+      int v = (DIGITS[c1] << 4) | DIGITS[c2];
+      if (v < 0) return false;
+      out[i >> 1] = (byte) v;
+    }
+    return true;
+  }
+
+  /**
+   * Decodes into {@code dest} starting at {@code destOffset}.
+   *
+   * @return number of bytes written
+   */
+  public static int decode(CharSequence s, byte[] dest, int destOffset) {
+    int d = destOffset;
+    int high = -1;
+    for (int i = 0, n = s.length(); i < n; i++) {
+      char c = s.charAt(i);
+      if (c == ' ') continue;
+      int v = c < 128 ? DIGITS[c] : -1;
+      if (v < 0) {
+        throw new IllegalArgumentException("Invalid hex character '" + c + "' at index " + i);
+      }
+      if (high < 0) {
+        high = v;
+      } else {
+        dest[d++] = (byte) ((high << 4) | v);
+        high = -1;
+      }
+    }
+    if (high >= 0) {
+      throw new IllegalArgumentException("Odd number of hex digits");
+    }
+    return d - destOffset;
+  }
+}
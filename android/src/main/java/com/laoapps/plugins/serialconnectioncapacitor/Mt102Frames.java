@@ -0,0 +1,59 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Queue;
+
+/**
+ * MT102 reply framing and command correlation.
+ *
+ * Frame format: [ADDR][CMD][DATA(16)][CRC16 Modbus over the first 18 bytes, low byte first]
+ *
+ * A reply answers the command at the head of the queue. By default the reply
+ * carries the same command byte as the request; {@code expectCommand} overrides it.
+ */
+public final class Mt102Frames {
+  public static final int FRAME_LENGTH = 20;
+
+  public interface FrameHandler {
+    void onFrame(byte[] buffer, int offset);
+  }
+
+  private Mt102Frames() {
+  }
+
+  public static boolean crcValid(byte[] buffer, int offset) {
+    return Crc16.getLowFirst(buffer, offset + FRAME_LENGTH - 2) == Crc16.modbus(buffer, offset, FRAME_LENGTH - 2);
+  }
+
+  /**
+   * Hands every CRC-valid frame in {@code buffer[0, length)} to {@code handler}.
+   * A valid frame consumes its 20 bytes; otherwise the scan moves on one byte.
+   *
+   * @return number of leading bytes consumed; fewer than {@link #FRAME_LENGTH} are left
+   */
+  public static int scan(byte[] buffer, int length, FrameHandler handler) {
+    int i = 0;
+    while (i <= length - FRAME_LENGTH) {
+      if (crcValid(buffer, i)) {
+        handler.onFrame(buffer, i);
+        i += FRAME_LENGTH;
+      } else {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Completes the head of the queue with {@code frame} if the frame's command byte
+   * answers it. Caller holds the queue.
+   *
+   * @return the completed command, or null if the head is not answered by this frame
+   */
+  public static PendingCommand completeHead(Queue<PendingCommand> queue, byte[] frame) {
+    PendingCommand head = queue.peek();
+    if (head == null || !head.matches(frame[1] & 0xFF, head.packet[1] & 0xFF)) return null;
+    queue.poll();
+    head.complete(frame);
+    return head;
+  }
+}
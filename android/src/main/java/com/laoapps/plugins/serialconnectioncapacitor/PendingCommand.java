@@ -0,0 +1,83 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queued device command: the packet to send, a correlation ID, a deadline
+ * and a future that completes with the matching response frame.
+ *
+ * The future fails with {@link TimeoutException} once the deadline passes, and
+ * with another exception if the command is dropped or the port closes.
+ * Deadlines use the monotonic clock from {@link #now()}.
+ */
+public final class PendingCommand {
+  /** Deadline of commands nobody is waiting on */
+  public static final long NO_DEADLINE = Long.MAX_VALUE;
+  /** {@link #expectedResponse} value meaning "the protocol's usual reply" */
+  public static final int ANY_RESPONSE = -1;
+
+  private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+  public final int id;
+  public final byte[] packet;
+  public final long deadline;
+  public final int expectedResponse;
+  public final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+  public PendingCommand(byte[] packet) {
+    this(packet, 0L, ANY_RESPONSE);
+  }
+
+  /**
+   * @param timeoutMs        time allowed for the response, counted from now; 0 for no deadline
+   * @param expectedResponse command byte of the frame that answers this one, or {@link #ANY_RESPONSE}
+   */
+  public PendingCommand(byte[] packet, long timeoutMs, int expectedResponse) {
+    this(packet, expectedResponse, timeoutMs > 0 ? now() + timeoutMs : NO_DEADLINE);
+  }
+
+  private PendingCommand(byte[] packet, int expectedResponse, long deadline) {
+    this.id = NEXT_ID.getAndIncrement();
+    this.packet = packet;
+    this.deadline = deadline;
+    this.expectedResponse = expectedResponse;
+  }
+
+  /** A command due by an absolute {@link #now()} time */
+  static PendingCommand atDeadline(byte[] packet, long deadline, int expectedResponse) {
+    return new PendingCommand(packet, expectedResponse, deadline);
+  }
+
+  public static long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  public boolean isExpired(long now) {
+    return now >= deadline;
+  }
+
+  public boolean isDone() {
+    return response.isDone();
+  }
+
+  /** Whether a response frame with this command byte answers the command */
+  public boolean matches(int responseCommand, int defaultResponse) {
+    int expected = expectedResponse != ANY_RESPONSE ? expectedResponse : defaultResponse;
+    return expected == ANY_RESPONSE || expected == responseCommand;
+  }
+
+  public boolean complete(byte[] frame) {
+    return response.complete(frame);
+  }
+
+  public boolean expire() {
+    return response.completeExceptionally(new TimeoutException("Command " + id + " timed out"));
+  }
+
+  public boolean fail(Exception cause) {
+    return response.completeExceptionally(cause);
+  }
+}
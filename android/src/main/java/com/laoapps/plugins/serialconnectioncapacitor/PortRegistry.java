@@ -0,0 +1,68 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Open {@link PortSession}s by session ID.
+ *
+ * Lookups and registration are lock-free, so finding a session never waits on
+ * another session being opened or closed. Calls that name no session get the
+ * most recently opened one that is still open, which keeps single-port apps
+ * working unchanged.
+ */
+public class PortRegistry {
+  private final Map<String, PortSession> sessions = new ConcurrentHashMap<>();
+  // Open order, oldest first
+  private final ConcurrentLinkedDeque<PortSession> order = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger nextId = new AtomicInteger();
+
+  /** Creates and registers a session with a new ID such as {@code native-1} */
+  public PortSession open(String portName, String connectionType,
+                          Function<PortSession, Adh814Scheduler.Callbacks> adh814Callbacks) {
+    String id = connectionType + "-" + nextId.incrementAndGet();
+    PortSession session = new PortSession(id, portName, connectionType, adh814Callbacks);
+    sessions.put(id, session);
+    order.addLast(session);
+    return session;
+  }
+
+  /** The session with this ID, or null */
+  public PortSession get(String id) {
+    return sessions.get(id);
+  }
+
+  /** The session with this ID, or with a null ID the most recently opened one; null if there is none */
+  public PortSession resolve(String id) {
+    return id != null ? sessions.get(id) : order.peekLast();
+  }
+
+  /** The open session on {@code portName}, or null */
+  public PortSession findByPort(String portName) {
+    for (PortSession session : order) {
+      if (session.portName.equals(portName)) return session;
+    }
+    return null;
+  }
+
+  /** Unregisters the session; the caller closes it */
+  public PortSession remove(String id) {
+    PortSession session = sessions.remove(id);
+    if (session != null) order.remove(session);
+    return session;
+  }
+
+  /** Open sessions, oldest first */
+  public List<PortSession> all() {
+    return new ArrayList<>(order);
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+}
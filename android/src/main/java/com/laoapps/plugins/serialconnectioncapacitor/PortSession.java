@@ -0,0 +1,177 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import android.serialport.SerialPort;
+import android.serialport.SerialReactor;
+import android.util.Log;
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * One open port and everything that talks to it: the native or USB port, its
+ * writer, its read loop flag, its command queue and its protocol state.
+ *
+ * Sessions share no state and no monitor. A VMC board, an ADH814 lift and an
+ * MT102 board can each run on their own port at full speed; one session's
+ * read loop, queue lock or scheduler never waits on another's.
+ */
+public class PortSession {
+  private static final String TAG = "SerialConnCap";
+  public static final String NATIVE = "native";
+  public static final String USB = "usb";
+
+  final String id;
+  final String portName;
+  final String connectionType;
+
+  volatile SerialPort serialPort;
+  // Owns serialPort's OutputStream; read loops and JS calls only enqueue
+  volatile SerialWriter serialWriter;
+  volatile UsbSerialPort usbSerialPort;
+  volatile boolean reading;
+  // Set while the shared reactor, not a thread of this session's own, reads the port
+  volatile SerialReactor reactor;
+  volatile boolean vmcDebug; // per-frame debug logging in the VMC loop
+
+  /** VMC and MT102 command queue. Its monitor also guards the fields below it. */
+  final Queue<PendingCommand> commandQueue = new LinkedList<>();
+  /** VMC commands sent on a POLL whose caller waits for the ACK or an expected frame */
+  final List<PendingCommand> vmcAwaiting = new ArrayList<>();
+  long lastVmcCommandEnqueueTime;
+  /** MT102 head command last written and when (PendingCommand.now()), to pace re-sends */
+  PendingCommand mt102LastSent;
+  long mt102LastSendTime;
+  private byte packNoCounter;
+
+  final Adh814Scheduler adh814Scheduler;
+
+  /**
+   * @param adh814Callbacks builds this session's ADH814 callbacks; they usually
+   *                        write through the session, hence the factory
+   */
+  PortSession(String id, String portName, String connectionType,
+              Function<PortSession, Adh814Scheduler.Callbacks> adh814Callbacks) {
+    this.id = id;
+    this.portName = portName;
+    this.connectionType = connectionType;
+    this.adh814Scheduler = new Adh814Scheduler(adh814Callbacks.apply(this));
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getPortName() {
+    return portName;
+  }
+
+  public String getConnectionType() {
+    return connectionType;
+  }
+
+  public boolean isReading() {
+    return reading;
+  }
+
+  /** Next VMC packet number, 1-255 */
+  byte nextPackNo() {
+    synchronized (commandQueue) {
+      packNoCounter = (byte) ((packNoCounter + 1) % 256);
+      return packNoCounter == 0 ? (byte) 1 : packNoCounter;
+    }
+  }
+
+  /** VMC SYNC: drops everything queued or awaited and restarts packet numbering */
+  void resetVmc(String reason) {
+    synchronized (commandQueue) {
+      failAll(commandQueue, reason);
+      failAll(vmcAwaiting, reason);
+      packNoCounter = 0;
+      lastVmcCommandEnqueueTime = 0;
+    }
+  }
+
+  /**
+   * Queues bytes on the native port's writer thread. Never blocks, so it is safe
+   * to call from a read loop.
+   */
+  CompletableFuture<Void> writeSerial(byte[] bytes) {
+    SerialWriter writer = serialWriter;
+    if (writer == null) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new IOException("No serial connection open on " + id));
+      return failed;
+    }
+    return writer.write(bytes);
+  }
+
+  /** Releases a read loop blocked waiting for bytes */
+  void wakeup() {
+    SerialPort port = serialPort;
+    if (port != null) port.wakeup();
+  }
+
+  /** Stops the read loop and the ADH814 scheduler; the port stays open */
+  void stopReading() {
+    reading = false;
+    adh814Scheduler.stop();
+    detachReactor();
+    wakeup();
+  }
+
+  /** Takes the port out of the shared reactor's poll set, if it is in it */
+  void detachReactor() {
+    SerialReactor shared = reactor;
+    reactor = null;
+    SerialPort port = serialPort;
+    if (shared != null && port != null) shared.unregister(port);
+  }
+
+  /** Stops everything and closes the port. Pending commands fail with "Connection closed". */
+  void close() {
+    reading = false;
+    adh814Scheduler.stop();
+    adh814Scheduler.cancelAll(new IOException("Connection closed"));
+    synchronized (commandQueue) {
+      failAll(commandQueue, "Connection closed");
+      failAll(vmcAwaiting, "Connection closed");
+    }
+
+    SerialWriter writer = serialWriter;
+    serialWriter = null;
+    if (writer != null) writer.close();
+
+    detachReactor(); // before the fd is closed under the poll loop
+    SerialPort port = serialPort;
+    serialPort = null;
+    if (port != null) {
+      try {
+        port.shutdown(); // also wakes the read loop
+      } catch (IOException e) {
+        Log.e(TAG, "Error closing native port " + portName + ": " + e.getMessage());
+      }
+    }
+
+    UsbSerialPort usbPort = usbSerialPort;
+    usbSerialPort = null;
+    if (usbPort != null) {
+      try {
+        usbPort.close();
+      } catch (IOException e) {
+        Log.e(TAG, "Error closing USB port " + portName + ": " + e.getMessage());
+      }
+    }
+  }
+
+  static void failAll(Collection<PendingCommand> commands, String reason) {
+    IOException cause = new IOException(reason);
+    for (PendingCommand pending : commands) pending.fail(cause);
+    commands.clear();
+  }
+}
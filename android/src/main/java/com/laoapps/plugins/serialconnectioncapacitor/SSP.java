@@ -6,16 +6,18 @@ import android.util.Log;
 import androidx.annotation.RequiresApi;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
+import java.security.GeneralSecurityException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -37,16 +39,20 @@ public class SSP {
   private final byte id = 0x00;
   public  boolean debug = false;
   private final int timeout = 10000; // milliseconds
+  /** SYNC is answered at once by a ready device; a short wait lets a booting one be retried sooner */
+  static final int SYNC_TIMEOUT_MS = 1000;
+  /** Pause before retrying an init step the device rejected */
+  static final long INIT_RETRY_DELAY_MS = 100;
   private final String fixedKey = "0123456701234567"; // Match Node.js version
 
   // State
   public byte[] encryptKey = null;
+  private SspCrypto crypto;
   public int eCount = 0;
   private byte sequence = (byte) 0x80;
   private boolean enabled = false;
   public int protocolVersion = 6;
   String unitType = null;
-  private SSPParser parser = new SSPParser();
 
   // Encryption keys
   private BigInteger generator;
@@ -55,12 +61,36 @@ public class SSP {
   private BigInteger hostInter;
 
   // Event listeners
-  private final Map<String, Consumer<JSONObject>> eventListeners = new HashMap<>();
+  // Delivered off the I/O thread; on() keeps one listener per name on top of it
+  private final SspEventBus events = new SspEventBus("SSP-events");
+  private final Map<String, SspEventBus.Subscription> onListeners = new HashMap<>();
 
   // Command definitions (from SSPUtils)
   private final Map<String, SSPUtils.CommandInfo> commandList = SSPUtils.commands;
   private boolean polling = false;
   private Thread pollThread;
+  private final SspPollScheduler pollScheduler = new SspPollScheduler();
+  private volatile SspInitTimeline lastInitTimeline;
+
+  // POLL decoding, reused on the I/O thread
+  private static final JSONObject NO_ARGS = new JSONObject();
+  private final SspPollDecoder pollDecoder = new SspPollDecoder();
+  private volatile SspPollDecoder.Sink pollEventListener;
+  private int polledEvents;
+  private boolean polledNoteInFlight;
+  private boolean polledDisabled;
+  private final SspPollDecoder.Sink pollSink = event -> {
+    polledEvents++;
+    polledNoteInFlight |= event.status().noteInFlight;
+    polledDisabled |= event.status() == SspStatus.DISABLED;
+    dispatchPollEvent(event);
+  };
+
+  // Owns the port: every exchange runs on its one I/O thread
+  private final SspSession session = new SspSession("SSP-IO");
+  private final SspLink link = new SspLink();
+  private volatile SspLink.Transport transportOverride;
+  private final SspFrameEncoder encoder = new SspFrameEncoder();
 
   // Constructor
   public SSP() {
@@ -116,10 +146,7 @@ public class SSP {
         + " - " + port.getSystemPortName());
     }
 
-    // Give the device time to initialize
-    System.out.println("Waiting for device to initialize...");
-    Thread.sleep(1000);
-
+    // No settle delay: initSSP() retries SYNC until the device answers
     // Clear any pending data
     port.flushIOBuffers();
 
@@ -173,6 +200,7 @@ public class SSP {
     Log.d(TAG, "SSP.close() called - cleaning up");
 
     stopPoll();
+    session.close(new IllegalStateException("SSP connection closed"));
 
     // Close USB port
     if (usbSerialPort != null) {
@@ -199,6 +227,7 @@ public class SSP {
 
     enabled = false;
     encryptKey = null;
+    crypto = null;
     eCount = 0;
     sequence = (byte) 0x80;
 
@@ -206,13 +235,35 @@ public class SSP {
     Log.d(TAG, "SSP closed successfully");
   }
   /**
-   * Registers an event listener.
+   * Registers an event listener, replacing the one set by an earlier {@code on}
+   * for the same name. Use {@link #subscribe} to add listeners alongside it.
    *
    * @param eventName The event name (e.g., "NOTE_REJECTED")
-   * @param listener The callback to handle the event
+   * @param listener The callback to handle the event, on the event thread
    */
   public void on(String eventName, Consumer<JSONObject> listener) {
-    eventListeners.put(eventName.toUpperCase(), listener);
+    SspEventBus.Subscription subscription = events.subscribe(eventName, (name, data) -> listener.accept(data));
+    SspEventBus.Subscription previous;
+    synchronized (onListeners) {
+      previous = onListeners.put(eventName.toUpperCase(), subscription);
+    }
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  /**
+   * Adds a listener for {@code eventName}, or for every event with
+   * {@link SspEventBus#WILDCARD}. Listeners run on the event thread, never the
+   * I/O thread.
+   */
+  public SspEventBus.Subscription subscribe(String eventName, SspEventBus.Listener listener) {
+    return events.subscribe(eventName, listener);
+  }
+
+  /** Event delivery queue: overflow policy, dropped and late counters */
+  public SspEventBus getEventBus() {
+    return events;
   }
 
   /**
@@ -223,10 +274,7 @@ public class SSP {
    */
   @RequiresApi(api = Build.VERSION_CODES.N)
   private void emitEvent(String eventName, JSONObject data) {
-    Consumer<JSONObject> listener = eventListeners.get(eventName.toUpperCase());
-    if (listener != null) {
-      listener.accept(data);
-    }
+    events.publish(eventName, data);
     if (debug) {
       System.out.println(eventName + ": " + data.toString());
     }
@@ -241,195 +289,189 @@ public class SSP {
    */
   @RequiresApi(api = Build.VERSION_CODES.N)
   public CompletableFuture<JSONObject> command(String command, JSONObject args) {
-    return CompletableFuture.supplyAsync(() -> {
-      int maxRetries = (command.equals("SYNC")) ? 3 : 1;
-      Exception lastException = null;
+    int priority = "POLL".equalsIgnoreCase(command) ? SspSession.PRIORITY_POLL : SspSession.PRIORITY_COMMAND;
+    return session.submit(priority, () -> exchange(command, args));
+  }
 
-      for (int attempt = 1; attempt <= maxRetries; attempt++) {
-        try {
-          int preECount = eCount;
-          SSPParser localParser = new SSPParser();
-          byte[] packet = getPacket(command, args);
-          if (this.debug) {
-            System.out.println("→ Tx: " + bytesToHex(packet));
-          }
+  /**
+   * Minimum pause between a reply and the next command, in milliseconds.
+   * Replaces the fixed 100ms sleep after every reply.
+   */
+  public void setMinCommandGap(long ms) {
+    link.setMinCommandGap(ms);
+  }
 
-          // Send command based on port type
-          if (usingUsbPort) {
-            if (usbSerialPort == null) {
-              throw new RuntimeException("USB serial port is null");
-            }
-            usbSerialPort.write(packet, 1000);
-          } else {
-            if (port == null) {
-              throw new RuntimeException("Native serial port is null");
-            }
-            port.writeBytes(packet, packet.length);
-          }
+  /** The open port, USB or native */
+  private SspLink.Transport transport() {
+    SspLink.Transport override = transportOverride;
+    if (override != null) {
+      return override;
+    }
+    if (usingUsbPort) {
+      UsbSerialPort usb = usbSerialPort;
+      if (usb == null) {
+        throw new IllegalStateException("USB serial port is null");
+      }
+      return new SspLink.Transport() {
+        @Override
+        public void write(byte[] data) throws IOException {
+          usb.write(data, 1000);
+        }
 
-          // Read response
-          ByteArrayOutputStream response = new ByteArrayOutputStream();
-          long start = System.currentTimeMillis();
-          List<byte[]> packets = new java.util.ArrayList<>();
-
-          while (System.currentTimeMillis() - start < timeout) {
-            int avail = 0;
-            byte[] chunk = null;
-
-            if (usingUsbPort) {
-              if (usbSerialPort == null) continue;
-              chunk = new byte[1024];
-              int len = usbSerialPort.read(chunk, 1000);
-              if (len > 0) {
-                if (len < chunk.length) {
-                  byte[] trimmed = new byte[len];
-                  System.arraycopy(chunk, 0, trimmed, 0, len);
-                  chunk = trimmed;
-                }
-                avail = len;
-              }
-            } else {
-              if (port == null) continue;
-              avail = port.bytesAvailable();
-              if (avail > 0) {
-                chunk = new byte[avail];
-                int len = port.readBytes(chunk, chunk.length);
-                if (len > 0) {
-                  if (len < avail) {
-                    byte[] trimmed = new byte[len];
-                    System.arraycopy(chunk, 0, trimmed, 0, len);
-                    chunk = trimmed;
-                  }
-                  avail = len;
-                }
-              }
-            }
+        @Override
+        public int read(byte[] buffer, int timeoutMs) throws IOException {
+          return usb.read(buffer, Math.max(1, timeoutMs)); // 0 would mean "forever"
+        }
+      };
+    }
+    SerialPort serial = port;
+    if (serial == null) {
+      throw new IllegalStateException("Native serial port is null");
+    }
+    return new SspLink.Transport() {
+      @Override
+      public void write(byte[] data) throws IOException {
+        if (serial.writeBytes(data, data.length) < 0) throw new IOException("Write failed");
+      }
 
-            if (avail > 0 && chunk != null) {
-              response.write(chunk, 0, chunk.length);
-              if (this.debug) {
-                System.out.println("← Rx chunk (" + chunk.length + "): " + bytesToHex(chunk));
-              }
-              packets = localParser.parse(chunk);
-              if (!packets.isEmpty()) {
-                break;
-              }
-            } else {
-              Thread.sleep(10);
-            }
-          }
+      @Override
+      public int read(byte[] buffer, int timeoutMs) throws IOException {
+        // Semi-blocking: returns on the first bytes, or after the port's 100ms read timeout
+        int n = serial.readBytes(buffer, buffer.length);
+        if (n < 0) throw new IOException("Read failed");
+        return n;
+      }
+    };
+  }
+
+  /** Talks to {@code transport} instead of the opened port (simulated devices) */
+  void setTransport(SspLink.Transport transport) {
+    this.transportOverride = transport;
+  }
+
+  /** Sends one command and reads its reply. Runs on the session's I/O thread. */
+  @RequiresApi(api = Build.VERSION_CODES.N)
+  private JSONObject exchange(String command, JSONObject args) {
+    int maxRetries = (command.equals("SYNC")) ? 3 : 1;
+    Exception lastException = null;
 
-          if (response.size() == 0) {
+    for (int attempt = 1; attempt <= maxRetries; attempt++) {
+      try {
+        int preECount = eCount;
+        byte[] packet = getPacket(command, args);
+        if (this.debug) {
+          System.out.println("→ Tx: " + bytesToHex(packet));
+        }
+
+        // Send and wait for the first CRC-valid reply
+        int replyTimeout = command.equals("SYNC") ? SYNC_TIMEOUT_MS : timeout;
+        byte[] pkt = link.exchange(transport(), packet, replyTimeout);
+
+        if (pkt == null) {
+          if (link.lastBytesReceived() == 0) {
             if (attempt < maxRetries) {
               System.out.println(command + " attempt " + attempt + " failed, retrying...");
               Thread.sleep(200 * attempt); // Exponential backoff
               continue;
             }
-            throw new RuntimeException("No bytes received after " + timeout + " ms");
-          }
-
-          if (packets.isEmpty()) {
-            packets = localParser.flush();
-          }
-
-          if (packets.isEmpty()) {
-            throw new RuntimeException("No valid SSP packet found in response");
+            throw new RuntimeException("No bytes received after " + replyTimeout + " ms");
           }
+          throw new RuntimeException("No valid SSP packet found in response");
+        }
+        if (this.debug) {
+          System.out.println("← Rx: " + bytesToHex(pkt));
+        }
 
-          byte[] pkt = packets.get(0);
-
-          // Handle SYNC response more flexibly
-          if (command.equals("SYNC")) {
-            // Try multiple ways to detect SYNC success
+        // Handle SYNC response more flexibly
+        if (command.equals("SYNC")) {
+          // Try multiple ways to detect SYNC success
 
-            // Method 1: Check specific byte positions
-            boolean syncSuccess = false;
+          // Method 1: Check specific byte positions
+          boolean syncSuccess = false;
 
-            if (pkt.length >= 4) {
-              // Check for typical SYNC response pattern
-              if (pkt[1] == (byte) 0x80 && (pkt[3] == (byte) 0xF0 || pkt[3] == (byte) 0x00)) {
-                syncSuccess = true;
-              }
+          if (pkt.length >= 4) {
+            // Check for typical SYNC response pattern
+            if (pkt[1] == (byte) 0x80 && (pkt[3] == (byte) 0xF0 || pkt[3] == (byte) 0x00)) {
+              syncSuccess = true;
             }
+          }
 
-            // Method 2: Look for success status byte anywhere
-            if (!syncSuccess) {
-              for (byte b : pkt) {
-                if ((b & 0xFF) == 0xF0) {
-                  syncSuccess = true;
-                  break;
-                }
+          // Method 2: Look for success status byte anywhere
+          if (!syncSuccess) {
+            for (byte b : pkt) {
+              if ((b & 0xFF) == 0xF0) {
+                syncSuccess = true;
+                break;
               }
             }
+          }
 
-            // Method 3: If we got any response at all, assume success
-            if (!syncSuccess && pkt.length > 2) {
-              System.out.println("SYNC: Assuming success based on received response");
-              syncSuccess = true;
-            }
+          // Method 3: If we got any response at all, assume success
+          if (!syncSuccess && pkt.length > 2) {
+            System.out.println("SYNC: Assuming success based on received response");
+            syncSuccess = true;
+          }
 
-            if (syncSuccess) {
-              JSONObject result = new JSONObject();
-              result.put("success", true);
-              result.put("status", "OK");
-              result.put("command", command);
-              result.put("info", new JSONObject());
-              System.out.println("SYNC successful!");
-              return result;
-            }
+          if (syncSuccess) {
+            JSONObject result = new JSONObject();
+            result.put("success", true);
+            result.put("status", "OK");
+            result.put("command", command);
+            result.put("info", new JSONObject());
+            System.out.println("SYNC successful!");
+            return result;
           }
+        }
 
-          // Try to extract packet data for other commands
-          try {
-            byte[] data = SSPUtils.extractPacketData(pkt, encryptKey, preECount, debug);
-            JSONObject result = parseData(data, command);
+        // Try to extract packet data for other commands
+        try {
+          byte[] data = SSPUtils.extractPacketData(pkt, encryptKey != null ? crypto() : null, preECount, debug);
+          JSONObject result = parseData(data, command);
 
-            if (this.debug) {
-              System.out.println("Response for " + command + ": " + result.toString(2));
-            }
+          if (this.debug) {
+            System.out.println("Response for " + command + ": " + result.toString(2));
+          }
 
-            Thread.sleep(100);
-            return result;
+          return result;
 
-          } catch (Exception e) {
-            // If extraction fails, check if it's a simple OK response
-            if (pkt.length >= 4 && pkt[3] == (byte) 0xF0) {
-              JSONObject result = new JSONObject();
-              result.put("success", true);
-              result.put("status", "OK");
-              result.put("command", command);
-              result.put("info", new JSONObject());
-              return result;
-            }
-            throw e;
+        } catch (Exception e) {
+          // If extraction fails, check if it's a simple OK response
+          if (pkt.length >= 4 && pkt[3] == (byte) 0xF0) {
+            JSONObject result = new JSONObject();
+            result.put("success", true);
+            result.put("status", "OK");
+            result.put("command", command);
+            result.put("info", new JSONObject());
+            return result;
           }
+          throw e;
+        }
 
-        } catch (Exception e) {
-          lastException = e;
-          System.out.println("Attempt " + attempt + " failed for " + command + ": " + e.getMessage());
+      } catch (Exception e) {
+        lastException = e;
+        System.out.println("Attempt " + attempt + " failed for " + command + ": " + e.getMessage());
 
-          if (attempt < maxRetries) {
-            try {
-              long waitTime = 200 * attempt; // Exponential backoff
-              Thread.sleep(waitTime);
-            } catch (InterruptedException ie) {
-              Thread.currentThread().interrupt();
-            }
+        if (attempt < maxRetries) {
+          try {
+            long waitTime = 200 * attempt; // Exponential backoff
+            Thread.sleep(waitTime);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
           }
         }
       }
+    }
 
-      // All retries failed, return error
-      JSONObject error = new JSONObject();
-      try {
-        error.put("success", false);
-        error.put("error", lastException != null ? lastException.getMessage() : "Command failed after " + maxRetries + " attempts");
-        error.put("command", command);
-      } catch (JSONException e) {
-        throw new RuntimeException(e);
-      }
-      return error;
-    });
+    // All retries failed, return error
+    JSONObject error = new JSONObject();
+    try {
+      error.put("success", false);
+      error.put("error", lastException != null ? lastException.getMessage() : "Command failed after " + maxRetries + " attempts");
+      error.put("command", command);
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+    return error;
   }
 
 
@@ -444,7 +486,7 @@ public class SSP {
   @RequiresApi(api = Build.VERSION_CODES.N)
 
   public CompletableFuture<byte[]> sendRaw(byte[] data) {
-    return CompletableFuture.supplyAsync(() -> {
+    return session.submit(SspSession.PRIORITY_COMMAND, () -> {
       try {
         System.out.println("→ Raw Tx: " + bytesToHex(data));
 
@@ -508,14 +550,7 @@ public class SSP {
 
   // Make bytesToHex public
   public String bytesToHex(byte[] bytes) {
-    if (bytes == null || bytes.length == 0) {
-      return "";
-    }
-    StringBuilder sb = new StringBuilder();
-    for (byte b : bytes) {
-      sb.append(String.format("%02X ", b));
-    }
-    return sb.toString().trim();
+    return Hex.dump(bytes);
   }
 
   /**
@@ -553,197 +588,49 @@ public class SSP {
   }
 
 
-  /**
-   * Initializes the SSP connection sequence.
-   *
-   * @return CompletableFuture indicating completion
-   */
   /**
    * Initializes the SSP connection sequence (automatic like Node.js version).
+   * Runs on its own thread; each step is a command on the session's I/O thread
+   * and starts as soon as the previous reply arrives. Failed steps are retried
+   * after {@link #INIT_RETRY_DELAY_MS}. The INITIALIZED event carries the
+   * duration of each phase under {@code timing}.
    */
   @RequiresApi(api = Build.VERSION_CODES.N)
   public CompletableFuture<Void> initSSP() {
     return CompletableFuture.runAsync(() -> {
+      SspInitTimeline timeline = new SspInitTimeline();
+      lastInitTimeline = timeline;
       try {
         System.out.println("Starting SSP initialization...");
 
-        // 1. SYNC - with retries
-        JSONObject syncRes = null;
-        for (int i = 0; i < 3; i++) {
-          try {
-            syncRes = command("SYNC").get(timeout, TimeUnit.MILLISECONDS);
-            if (syncRes != null && syncRes.optBoolean("success", false)) {
-              System.out.println("SYNC successful on attempt " + (i + 1));
-              break;
-            }
-          } catch (Exception e) {
-            System.out.println("SYNC attempt " + (i + 1) + " failed: " + e.getMessage());
-          }
-
-          if (i < 2) { // Don't sleep after last attempt
-            Thread.sleep(1000 * (i + 1)); // Increasing delay: 1s, 2s
-          }
-        }
-
-        if (syncRes == null || !syncRes.optBoolean("success", false)) {
-          throw new RuntimeException("SYNC failed after 3 attempts");
-        }
-        System.out.println("SYNC → " + syncRes.toString(2));
-
-        Thread.sleep(500);
-
-        // 2. Set protocol version - with retries
-        JSONObject protoRes = null;
-        for (int i = 0; i < 3; i++) {
-          try {
-            JSONObject protoArgs = new JSONObject().put("version", protocolVersion);
-            protoRes = command("HOST_PROTOCOL_VERSION", protoArgs).get(timeout, TimeUnit.MILLISECONDS);
-            if (protoRes != null && protoRes.optBoolean("success", false)) {
-              System.out.println("HOST_PROTOCOL_VERSION successful on attempt " + (i + 1));
-              break;
-            }
-          } catch (Exception e) {
-            System.out.println("HOST_PROTOCOL_VERSION attempt " + (i + 1) + " failed: " + e.getMessage());
-          }
-
-          if (i < 2) {
-            Thread.sleep(500);
-          }
-        }
-
-        if (protoRes == null || !protoRes.optBoolean("success", false)) {
-          throw new RuntimeException("HOST_PROTOCOL_VERSION failed after 3 attempts");
-        }
-        System.out.println("HOST_PROTOCOL_VERSION → " + protoRes.toString(2));
-
-        Thread.sleep(500);
-
-        // 3. Get serial number - with retries (non-critical)
-        JSONObject serialRes = null;
-        int serialAttempts = 0;
-        while (serialAttempts < 5) {
-          try {
-            serialRes = command("GET_SERIAL_NUMBER").get(timeout, TimeUnit.MILLISECONDS);
-            if (serialRes != null && serialRes.optBoolean("success", false)) {
-              JSONObject info = serialRes.optJSONObject("info");
-              if (info != null && info.has("serial_number")) {
-                System.out.println("Serial number: " + info.getInt("serial_number"));
-                break;
-              }
-            }
-          } catch (Exception e) {
-            System.out.println("GET_SERIAL_NUMBER attempt " + (serialAttempts + 1) + " failed: " + e.getMessage());
-          }
-
-          serialAttempts++;
-          if (serialAttempts < 5) {
-            System.out.println("Retrying GET_SERIAL_NUMBER in 1 second...");
-            Thread.sleep(1000);
-          }
-        }
+        // 1. SYNC
+        initStep(timeline, "SYNC", 3, true, () -> command("SYNC"));
 
-        if (serialAttempts >= 5) {
-          System.out.println("WARNING: GET_SERIAL_NUMBER failed after 5 attempts, continuing...");
-          // Continue initialization - not critical
-        }
+        // 2. Set protocol version
+        JSONObject protoArgs = new JSONObject().put("version", protocolVersion);
+        initStep(timeline, "HOST_PROTOCOL_VERSION", 3, true, () -> command("HOST_PROTOCOL_VERSION", protoArgs));
 
-        Thread.sleep(500);
+        // 3. Get serial number (non-critical)
+        initStep(timeline, "GET_SERIAL_NUMBER", 5, false, () -> command("GET_SERIAL_NUMBER"));
 
         // 4. DISPLAY_ON - optional, don't fail if it doesn't work
-        try {
-          JSONObject displayRes = command("DISPLAY_ON").get(timeout / 2, TimeUnit.MILLISECONDS);
-          if (displayRes != null && displayRes.optBoolean("success", false)) {
-            System.out.println("DISPLAY_ON → " + displayRes.toString(2));
-          } else {
-            System.out.println("DISPLAY_ON returned non-success, continuing...");
-          }
-        } catch (Exception e) {
-          System.out.println("DISPLAY_ON failed (non-critical): " + e.getMessage());
-        }
+        initStep(timeline, "DISPLAY_ON", 1, false, () -> command("DISPLAY_ON"));
 
-        Thread.sleep(500);
-
-        // 5. Setup request - with retries (CRITICAL)
-        JSONObject setupRes = null;
-        int setupAttempts = 0;
-        while (setupAttempts < 5) {
-          try {
-            setupRes = command("SETUP_REQUEST").get(timeout, TimeUnit.MILLISECONDS);
-            if (setupRes != null && setupRes.optBoolean("success", false)) {
-              System.out.println("SETUP_REQUEST successful on attempt " + (setupAttempts + 1));
-              break;
-            }
-          } catch (Exception e) {
-            System.out.println("SETUP_REQUEST attempt " + (setupAttempts + 1) + " failed: " + e.getMessage());
-          }
+        // 5. Setup request (CRITICAL)
+        initStep(timeline, "SETUP_REQUEST", 5, true, () -> command("SETUP_REQUEST"));
 
-          setupAttempts++;
-          if (setupAttempts < 5) {
-            System.out.println("Retrying SETUP_REQUEST in 1 second...");
-            Thread.sleep(1000);
-          }
-        }
-
-        if (setupRes == null || !setupRes.optBoolean("success", false)) {
-          throw new RuntimeException("SETUP_REQUEST failed after 5 attempts");
-        }
-        System.out.println("SETUP_REQUEST → " + setupRes.toString(2));
-
-        Thread.sleep(500);
-
-        // 6. Set channel inhibits - with retries
+        // 6. Set channel inhibits
         JSONObject inhibitsArgs = new JSONObject();
         inhibitsArgs.put("channels", new JSONArray("[1,1,1,1,1,1,1]"));
-        JSONObject inhibitsRes = null;
-
-        for (int i = 0; i < 3; i++) {
-          try {
-            inhibitsRes = command("SET_CHANNEL_INHIBITS", inhibitsArgs).get(timeout, TimeUnit.MILLISECONDS);
-            if (inhibitsRes != null && inhibitsRes.optBoolean("success", false)) {
-              System.out.println("SET_CHANNEL_INHIBITS successful on attempt " + (i + 1));
-              break;
-            }
-          } catch (Exception e) {
-            System.out.println("SET_CHANNEL_INHIBITS attempt " + (i + 1) + " failed: " + e.getMessage());
-          }
-
-          if (i < 2) {
-            Thread.sleep(500);
-          }
-        }
-
-        if (inhibitsRes == null || !inhibitsRes.optBoolean("success", false)) {
-          throw new RuntimeException("SET_CHANNEL_INHIBITS failed after 3 attempts");
-        }
-        System.out.println("SET_CHANNEL_INHIBITS → " + inhibitsRes.toString(2));
+        initStep(timeline, "SET_CHANNEL_INHIBITS", 3, true, () -> command("SET_CHANNEL_INHIBITS", inhibitsArgs));
 
-        Thread.sleep(500);
-
-        // 7. Enable - with retries
-        JSONObject enableRes = null;
-        for (int i = 0; i < 3; i++) {
-          try {
-            enableRes = enable().get(timeout, TimeUnit.MILLISECONDS);
-            if (enableRes != null && enableRes.optBoolean("success", false)) {
-              System.out.println("ENABLE successful on attempt " + (i + 1));
-              break;
-            }
-          } catch (Exception e) {
-            System.out.println("ENABLE attempt " + (i + 1) + " failed: " + e.getMessage());
-          }
-
-          if (i < 2) {
-            Thread.sleep(500);
-          }
-        }
-
-        if (enableRes == null || !enableRes.optBoolean("success", false)) {
-          throw new RuntimeException("ENABLE failed after 3 attempts");
-        }
+        // 7. Enable
+        JSONObject enableRes = initStep(timeline, "ENABLE", 3, true, this::enable);
         System.out.println("Device is active → " + enableRes.toString(2));
 
-        System.out.println("✅ Initialization sequence completed successfully!");
-        emitEvent("INITIALIZED", new JSONObject().put("success", true));
+        JSONObject timing = timeline.toJson();
+        System.out.println("✅ Initialization sequence completed in " + timing.getLong("totalMs") + " ms");
+        emitEvent("INITIALIZED", new JSONObject().put("success", true).put("timing", timing));
 
       } catch (Exception e) {
         System.err.println("❌ Initialization failed: " + e.getMessage());
@@ -752,13 +639,57 @@ public class SSP {
           JSONObject errorEvent = new JSONObject();
           errorEvent.put("success", false);
           errorEvent.put("error", e.getMessage());
+          errorEvent.put("timing", timeline.toJson());
           emitEvent("INITIALIZED", errorEvent);
         } catch (JSONException ex) {
           // Ignore
         }
         throw new RuntimeException("initSSP failed: " + e.getMessage(), e);
       }
-    });
+    }, task -> new Thread(task, "SSP-init").start()); // only waits on the session; keeps the common pool free
+  }
+
+  /**
+   * Runs one init phase: sends until a successful reply or {@code attempts} runs out.
+   *
+   * @return the last reply (null if every attempt threw)
+   * @throws RuntimeException if a {@code required} phase never succeeds
+   */
+  @RequiresApi(api = Build.VERSION_CODES.N)
+  private JSONObject initStep(SspInitTimeline timeline, String name, int attempts, boolean required,
+                              Supplier<CompletableFuture<JSONObject>> send) throws InterruptedException {
+    long start = System.nanoTime();
+    JSONObject res = null;
+    int attempt = 0;
+    while (attempt < attempts) {
+      attempt++;
+      try {
+        res = send.get().get(timeout, TimeUnit.MILLISECONDS);
+        if (res != null && res.optBoolean("success", false)) {
+          SspInitTimeline.Phase phase = timeline.record(name, start, attempt, true);
+          System.out.println(name + " OK in " + phase.durationMs + " ms (attempt " + attempt + ")");
+          return res;
+        }
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        System.out.println(name + " attempt " + attempt + " failed: " + e.getMessage());
+      }
+      if (attempt < attempts) {
+        Thread.sleep(INIT_RETRY_DELAY_MS);
+      }
+    }
+    timeline.record(name, start, attempt, false);
+    if (required) {
+      throw new RuntimeException(name + " failed after " + attempts + " attempts");
+    }
+    System.out.println("WARNING: " + name + " failed after " + attempts + " attempts, continuing...");
+    return res;
+  }
+
+  /** Phase timings of the last {@link #initSSP()}, or null */
+  public SspInitTimeline getLastInitTimeline() {
+    return lastInitTimeline;
   }
 
   /**
@@ -771,19 +702,106 @@ public class SSP {
       return;
     }
     polling = true;
+    pollScheduler.reset();
     pollThread = new Thread(() -> {
       while (polling) {
+        long pollStart = System.currentTimeMillis();
+        long interval;
         try {
-          command("POLL").get(timeout, TimeUnit.MILLISECONDS);
-          Thread.sleep(200);
+          interval = session.submit(SspSession.PRIORITY_POLL, this::pollOnce).get(timeout, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
           System.err.println("Poll failed: " + e.getMessage());
+          interval = pollScheduler.onPollFailed();
+        }
+        try {
+          // The interval runs from the start of this poll, so the exchange time counts toward it
+          long wait = pollStart + interval - System.currentTimeMillis();
+          if (wait > 0) Thread.sleep(wait);
+        } catch (InterruptedException e) {
+          // stopPoll(): the loop condition decides
         }
       }
-    });
+    }, "SSP-Poll");
     pollThread.start();
   }
 
+  /** Poll rate and event latency of the polling loop */
+  public SspPollScheduler getPollScheduler() {
+    return pollScheduler;
+  }
+
+  /**
+   * One POLL on the I/O thread: events are decoded into a reused
+   * {@link SspPollEvent} and dispatched without building the JSON reply.
+   *
+   * @return delay before the next POLL
+   */
+  private long pollOnce() throws Exception {
+    int preECount = eCount;
+    byte[] packet = getPacket("POLL", NO_ARGS);
+    if (debug) {
+      System.out.println("→ Tx: " + bytesToHex(packet));
+    }
+    byte[] pkt = link.exchange(transport(), packet, timeout);
+    if (pkt == null) {
+      throw new IOException("No POLL reply after " + timeout + " ms");
+    }
+    if (debug) {
+      System.out.println("← Rx: " + bytesToHex(pkt));
+    }
+
+    polledEvents = 0;
+    polledNoteInFlight = false;
+    polledDisabled = false;
+    byte[] data;
+    try {
+      data = SSPUtils.extractPacketData(pkt, encryptKey != null ? crypto() : null, preECount, debug);
+    } catch (Exception e) {
+      // A bare OK still counts as an answer, as in exchange()
+      if (pkt.length >= 4 && pkt[3] == (byte) 0xF0) {
+        return pollScheduler.onPollAnswered(System.currentTimeMillis(), 0, false, false);
+      }
+      throw e;
+    }
+    if (data.length > 0 && data[0] == (byte) 0xF0) {
+      pollDecoder.decode(data, 1, data.length - 1, pollSink);
+    }
+    return pollScheduler.onPollAnswered(System.currentTimeMillis(), polledEvents, polledNoteInFlight, polledDisabled);
+  }
+
+  /**
+   * Registers a typed listener for every POLL event. It runs on the I/O
+   * thread, so it must be quick, and the event object is reused. Listeners
+   * registered with {@link #on} or {@link #subscribe} still get their events
+   * too, on the event thread.
+   */
+  public void onPollEvent(SspPollDecoder.Sink listener) {
+    this.pollEventListener = listener;
+  }
+
+  /** Hands a POLL event to the typed listener, and as JSON to the event bus if anyone listens for it */
+  private void dispatchPollEvent(SspPollEvent event) {
+    SspPollDecoder.Sink typed = pollEventListener;
+    if (typed != null) {
+      typed.onEvent(event);
+    }
+    boolean subscribed = events.hasSubscribers(event.name());
+    if (!subscribed && !debug) {
+      return;
+    }
+    try {
+      JSONObject json = event.toJson();
+      if (subscribed) {
+        events.publish(event.name(), json);
+      }
+      if (debug) {
+        System.out.println(event.name() + ": " + json);
+      }
+    } catch (Exception e) {
+      System.err.println("Error emitting event " + event.name() + ": " + e.getMessage());
+    }
+  }
+
   /**
    * Stops the polling loop.
    */
@@ -801,7 +819,7 @@ public class SSP {
   @RequiresApi(api = Build.VERSION_CODES.N)
 
   private void initEncryption() throws Exception {
-    SSPUtils.Keys keys = SSPUtils.generateKeys();
+    SSPUtils.Keys keys = SspKeyPool.shared().take();
     this.generator = keys.generator;
     this.modulus = keys.modulus;
     this.hostRandom = keys.hostRandom;
@@ -832,6 +850,7 @@ public class SSP {
         .put(SSPUtils.hexStringToByteArray(fixedKey))
         .put(SSPUtils.uInt64LE(key))
         .array();
+      this.crypto = new SspCrypto(encryptKey);
       if (debug) {
         System.out.println("Encryption key set: " + bytesToHex(encryptKey));
       }
@@ -840,7 +859,21 @@ public class SSP {
     }
   }
 
-  // In SSP.java - Fix getPacket method
+  /** Crypto context for the current {@link #encryptKey}, rebuilt only when the key changes */
+  private SspCrypto crypto() throws GeneralSecurityException {
+    SspCrypto c = crypto;
+    if (c == null || !c.isFor(encryptKey)) {
+      c = new SspCrypto(encryptKey);
+      crypto = c;
+    }
+    return c;
+  }
+
+  /**
+   * Builds the stuffed frame for a command and advances the sequence bit (and
+   * eCount when encrypted). Frames of argument-less, unencrypted commands are
+   * shared templates and must not be modified.
+   */
   byte[] getPacket(String command, JSONObject args) throws Exception {
     SSPUtils.CommandInfo cmdInfo = commandList.get(command.toUpperCase());
     if (cmdInfo == null) {
@@ -854,66 +887,44 @@ public class SSP {
     // Get current sequence WITHOUT toggling yet (Node.js does this)
     byte currentSeq = (byte) (id | sequence);
 
-    // Build command data
-    ByteArrayOutputStream dataStream = new ByteArrayOutputStream();
-    dataStream.write(cmdInfo.code);
-    if (argBytes != null && argBytes.length > 0) {
-      dataStream.write(argBytes);
-    }
-    byte[] data = dataStream.toByteArray();
-
-    byte[] packetData;
-    int dataLength;
+    int argLength = argBytes != null ? argBytes.length : 0;
+    byte[] stuffed;
 
     if (shouldEncrypt) {
-      // Build encrypted packet (same as before)
-      ByteArrayOutputStream eCountBuf = new ByteArrayOutputStream();
-      eCountBuf.write(SSPUtils.uInt32LE(eCount));
-
-      ByteArrayOutputStream toEncrypt = new ByteArrayOutputStream();
-      toEncrypt.write(data.length);
-      toEncrypt.write(eCountBuf.toByteArray());
-      toEncrypt.write(data);
-
-      int paddingLength = (16 - ((toEncrypt.size() + 2) % 16)) % 16;
-      byte[] padding = new byte[paddingLength];
-      new SecureRandom().nextBytes(padding);
-      toEncrypt.write(padding);
-
-      byte[] crcInput = toEncrypt.toByteArray();
-      byte[] crc = SSPUtils.crc16(crcInput);
-      toEncrypt.write(crc);
-
-      byte[] encrypted = SSPUtils.encrypt(encryptKey, toEncrypt.toByteArray());
-
-      ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-      encryptedData.write(0x7E);
-      encryptedData.write(encrypted);
-      packetData = encryptedData.toByteArray();
-      dataLength = packetData.length;
-    } else {
-      packetData = data;
-      dataLength = packetData.length;
-    }
-
-    // Build packet core (SEQ + LENGTH + DATA) - Node.js order
-    ByteArrayOutputStream packetCore = new ByteArrayOutputStream();
-    packetCore.write(currentSeq);
-    packetCore.write(dataLength);
-    packetCore.write(packetData);
-    byte[] core = packetCore.toByteArray();
-
-    // Calculate CRC on core only - Node.js CRC16 returns [low, high]
-    byte[] crc = SSPUtils.crc16(core);
+      // [0x7E] then AES over [LEN][eCOUNT x4][CODE][ARGS][PADDING][CRC x2], padded to whole blocks
+      int dataLength = 1 + argLength;
+      int plainLength = 1 + 4 + dataLength + 2;
+      int paddingLength = (SspCrypto.BLOCK_SIZE - (plainLength % SspCrypto.BLOCK_SIZE)) % SspCrypto.BLOCK_SIZE;
+      int encryptedLength = plainLength + paddingLength;
+      byte[] packetData = new byte[1 + encryptedLength];
+      packetData[0] = 0x7E;
+      int pos = 1;
+      packetData[pos++] = (byte) dataLength;
+      packetData[pos++] = (byte) eCount;
+      packetData[pos++] = (byte) (eCount >>> 8);
+      packetData[pos++] = (byte) (eCount >>> 16);
+      packetData[pos++] = (byte) (eCount >>> 24);
+      packetData[pos++] = (byte) cmdInfo.code;
+      if (argLength > 0) {
+        System.arraycopy(argBytes, 0, packetData, pos, argLength);
+        pos += argLength;
+      }
 
-    // Build full packet with STX and CRC - Node.js adds CRC after data
-    ByteArrayOutputStream fullPacket = new ByteArrayOutputStream();
-    fullPacket.write(0x7F); // STX
-    fullPacket.write(core);
-    fullPacket.write(crc); // crc[0] is low, crc[1] is high
+      SspCrypto crypto = crypto();
+      crypto.pad(packetData, pos, paddingLength);
+      pos += paddingLength;
+      Crc16.putLowFirst(Crc16.ssp(packetData, 1, pos - 1), packetData, pos);
 
-    // Apply byte stuffing (excluding STX)
-    byte[] stuffed = SSPUtils.stuffBuffer(fullPacket.toByteArray());
+      crypto.encrypt(packetData, 1, encryptedLength);
+      stuffed = encoder.frame(currentSeq, packetData, 0, packetData.length);
+    } else if (argLength == 0) {
+      stuffed = encoder.template(currentSeq, cmdInfo.code);
+    } else {
+      byte[] data = new byte[1 + argLength];
+      data[0] = (byte) cmdInfo.code;
+      System.arraycopy(argBytes, 0, data, 1, argLength);
+      stuffed = encoder.frame(currentSeq, data, 0, data.length);
+    }
 
     // Update sequence for NEXT command (AFTER using current sequence) - Node.js does this
     if (command.equalsIgnoreCase("SYNC")) {
@@ -937,7 +948,7 @@ public class SSP {
     return (byte) (id | sequence);
   }
 
-  private byte[] argsToByte(String command, JSONObject args) throws Exception {
+  byte[] argsToByte(String command, JSONObject args) throws Exception {
     switch (command.toUpperCase()) {
       case "SET_GENERATOR":
       case "SET_MODULUS":
@@ -974,7 +985,8 @@ public class SSP {
     JSONObject result = new JSONObject();
     try {
       result.put("success", data[0] == (byte) 0xF0);
-      String status = SSPUtils.statusDesc.getOrDefault(data[0] & 0xFF, "UNDEFINED");
+      SspStatus code = SspStatus.of(data[0]);
+      String status = code == SspStatus.UNKNOWN ? "UNDEFINED" : code.name();
       result.put("status", status);
       result.put("command", command);
       JSONObject info = new JSONObject();
@@ -1132,97 +1144,19 @@ public class SSP {
             break;
           case "POLL":
             JSONArray events = new JSONArray();
-            int k = 0;
-            int disabledCount =0;
-            while (k < dataSub.length) {
-              int code = dataSub[k] & 0xFF;
-              String eventName = SSPUtils.statusDesc.getOrDefault(code, "UNKNOWN");
-              JSONObject event = new JSONObject();
-              event.put("code", code);
-              event.put("name", eventName);
-
-              // Log every event for debugging
-              System.out.println("Processing POLL event: code=" + code + " (" + eventName + ")");
-
-              switch (eventName) {
-                case "READ_NOTE":
-                case "CREDIT_NOTE":  // Make sure this is handled
-                case "NOTE_STACKED":  // Add this too
-                  if (k + 1 < dataSub.length) {
-                    event.put("channel", dataSub[k + 1] & 0xFF);
-                    System.out.println(eventName + " on channel: " + (dataSub[k + 1] & 0xFF));
-                    k += 2;
-                  } else {
-                    k += 1;
-                  }
-                  break;
-
-                case "FRAUD_ATTEMPT":
-                case "NOTE_CLEARED_FROM_FRONT":
-                case "NOTE_CLEARED_TO_CASHBOX":
-                  if (k + 1 < dataSub.length) {
-                    event.put("channel", dataSub[k + 1] & 0xFF);
-                    k += 2;
-                  } else {
-                    k += 1;
-                  }
-                  break;
-
-                case "NOTE_HELD_IN_BEZEL":
-                  if (k + 9 < dataSub.length) {
-                    event.put("position", dataSub[k + 1] & 0xFF);
-                    // Value is 4 bytes (little-endian)
-                    int value = ((dataSub[k + 2] & 0xFF) |
-                      ((dataSub[k + 3] & 0xFF) << 8) |
-                      ((dataSub[k + 4] & 0xFF) << 16) |
-                      ((dataSub[k + 5] & 0xFF) << 24));
-                    event.put("value", value);
-
-                    // Country code is 3 bytes ASCII
-                    String countryCode = new String(dataSub, k + 6, 3, StandardCharsets.US_ASCII);
-                    event.put("country_code", countryCode);
-                    k += 9;
-                  } else {
-                    k += 1;
-                  }
-                  break;
-
-                case "DISABLED":
-                case "STACKER_FULL":
-                case "CASHBOX_REMOVED":
-                case "CASHBOX_REPLACED":
-                  // These are just status events with no extra data
-
-//                  if(disabledCount++>=10){
-//                    enable();
-//                    disabledCount=0;
-//                  }
-                  k += 1;
-                  break;
-
-                default:
-                  // Unknown event, log it and skip
-                  System.out.println("Unknown POLL event code: " + code);
-                  k += 1;
-                  break;
-              }
-
-              // Add event to array
-              events.put(event);
-
-              // Emit individual event for immediate handling
+            pollDecoder.decode(dataSub, 0, dataSub.length, event -> {
               try {
-                emitEvent(eventName, event);
-                System.out.println("Emitted event: " + eventName);
-              } catch (Exception e) {
-                System.err.println("Error emitting event " + eventName + ": " + e.getMessage());
+                events.put(event.toJson());
+              } catch (JSONException e) {
+                throw new RuntimeException(e);
               }
-            }
+              dispatchPollEvent(event);
+            });
             info.put("events", events);
             break;
           case "LAST_REJECT_CODE":
             int rejectCode = dataSub[0] & 0xFF;
-            SSPUtils.RejectInfo rejectInfo = SSPUtils.rejectNote.getOrDefault(rejectCode, new SSPUtils.RejectInfo("UNKNOWN", ""));
+            SSPUtils.RejectInfo rejectInfo = SSPUtils.rejectInfo(rejectCode);
             info.put("code", rejectCode);
             info.put("name", rejectInfo.name);
             info.put("description", rejectInfo.description);
@@ -1331,42 +1265,16 @@ public class SSP {
 
         if (port.openPort()) {
           System.out.println("Port opened with settings: " + setting[0] + "/" + setting[1] + parityName.charAt(0) + setting[2]);
-          Thread.sleep(1000);
           port.flushIOBuffers();
 
-          // Test with SYNC
+          // Test with SYNC: done as soon as a valid reply arrives, giving up after 2s
           System.out.println("Testing SYNC with these settings...");
           byte[] sync = new byte[]{(byte) 0x7F, (byte) 0x80, 0x01, 0x11, (byte) 0x82, 0x65};
+          byte[] reply = new SspLink().exchange(transport(), sync, 2000);
 
-          // Clear input buffer
-          while (port.bytesAvailable() > 0) {
-            byte[] flush = new byte[port.bytesAvailable()];
-            port.readBytes(flush, flush.length);
-          }
-
-          // Send SYNC
-          port.writeBytes(sync, sync.length);
-          port.flushIOBuffers();
-
-          // Wait for response
-          ByteArrayOutputStream response = new ByteArrayOutputStream();
-          long start = System.currentTimeMillis();
-
-          while (System.currentTimeMillis() - start < 2000) {
-            if (port.bytesAvailable() > 0) {
-              byte[] buffer = new byte[port.bytesAvailable()];
-              int read = port.readBytes(buffer, buffer.length);
-              if (read > 0) {
-                response.write(buffer, 0, read);
-              }
-            }
-            Thread.sleep(50);
-          }
-
-          byte[] result = response.toByteArray();
-          if (result.length > 0) {
+          if (reply != null) {
             System.out.println("✅ Got response! Settings work.");
-            System.out.println("Response: " + bytesToHex(result));
+            System.out.println("Response: " + bytesToHex(reply));
             emitEvent("OPEN", new JSONObject());
             return; // Success, keep this connection
           } else {
@@ -4,9 +4,30 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Streaming SSP frame parser.
+ *
+ * Bytes are un-stuffed into one fixed buffer and the CRC runs as they
+ * arrive, so a complete frame is checked without a second pass or a copy.
+ * Valid frames go to a {@link PacketSink} as a view of that buffer. Keep one
+ * parser per port: a frame split across reads, or across two commands,
+ * completes on the next feed. A lone 0x7F inside a frame is a new STX, so
+ * the parser resyncs on it.
+ */
 public class SSPParser {
   private static final byte STX = 0x7F;      // Start of packet
   private static final byte ESCAPE = 0x7F;   // Escape byte (same as STX in SSP)
+  /** [STX][SEQ][LEN][DATA x255][CRC x2] */
+  private static final int MAX_PACKET_LENGTH = 255 + 5;
+
+  /** Receives complete, CRC-valid frames */
+  public interface PacketSink {
+    /**
+     * @param packet {@code [STX][SEQ][LEN][DATA...][CRC_LO][CRC_HI]}, un-stuffed, in
+     *               {@code packet[0..length)}; only valid during the call
+     */
+    void onPacket(byte[] packet, int length);
+  }
 
   // Parser states
   private enum State {
@@ -16,173 +37,117 @@ public class SSPParser {
   }
 
   private State state = State.WAIT_FOR_STX;
-  private ByteArrayBuilder packetBuffer = new ByteArrayBuilder();
+  private final byte[] packet = new byte[MAX_PACKET_LENGTH];
+  private int size = 0;
   private int expectedLength = 0;
-  private final List<byte[]> completePackets = new ArrayList<>();
+  private int crc;
 
   /**
-   * Parses incoming data and returns any complete SSP packets found.
-   * This is a streaming parser - call it repeatedly as data arrives.
+   * Feeds {@code length} bytes from {@code offset} and hands each complete,
+   * CRC-valid frame to {@code sink}.
    *
-   * @param data New data chunk to parse
-   * @return List of complete packets found in this chunk
+   * @return number of frames delivered
    */
-  public List<byte[]> parse(byte[] data) {
-    completePackets.clear();
-
-    for (byte b : data) {
-      processByte(b & 0xFF); // Convert to unsigned int for easier comparison
+  public int feed(byte[] data, int offset, int length, PacketSink sink) {
+    int delivered = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      byte b = data[i];
+      switch (state) {
+        case WAIT_FOR_STX:
+          if (b == STX) start();
+          break;
+
+        case IN_PACKET:
+          if (b == ESCAPE) {
+            // Escape byte found - next byte tells a stuffed 0x7F from a new STX
+            state = State.ESCAPE_NEXT;
+          } else if (append(b, sink)) {
+            delivered++;
+          }
+          break;
+
+        case ESCAPE_NEXT:
+          if (b == ESCAPE) {
+            // In SSP, when 0x7F appears in data, it's sent as 0x7F 0x7F
+            state = State.IN_PACKET;
+            if (append(b, sink)) delivered++;
+          } else {
+            // A lone 0x7F starts a new frame; the partial one is dropped
+            start();
+            if (append(b, sink)) delivered++;
+          }
+          break;
+      }
     }
-
-    return new ArrayList<>(completePackets);
+    return delivered;
   }
 
-  private void processByte(int b) {
-    switch (state) {
-      case WAIT_FOR_STX:
-        if (b == (STX & 0xFF)) {
-          // Found start of packet
-          packetBuffer.reset();
-          packetBuffer.append((byte) b);
-          state = State.IN_PACKET;
-        }
-        break;
-
-      case IN_PACKET:
-        if (b == (ESCAPE & 0xFF)) {
-          // Escape byte found - next byte is escaped
-          state = State.ESCAPE_NEXT;
-        } else {
-          // Normal byte
-          packetBuffer.append((byte) b);
-
-          // Check if we have enough bytes to determine packet length
-          if (packetBuffer.size() == 3) {
-            // We have STX + SEQ + LEN
-            expectedLength = (packetBuffer.get(2) & 0xFF) + 5; // LEN + STX + SEQ + LEN + CRC(2)
-          }
+  private void start() {
+    packet[0] = STX;
+    size = 1;
+    expectedLength = 0;
+    crc = Crc16.SSP_SEED;
+    state = State.IN_PACKET;
+  }
 
-          // Check if packet is complete
-          if (expectedLength > 0 && packetBuffer.size() == expectedLength) {
-            // Complete packet received
-            byte[] packet = packetBuffer.toByteArray();
-            // Verify CRC before accepting
-            if (verifyCRC(packet)) {
-              completePackets.add(packet);
-            }
-            reset();
-          }
-        }
-        break;
-
-      case ESCAPE_NEXT:
-        // This byte is escaped (should be the byte that follows an 0x7F)
-        // In SSP, when 0x7F appears in data, it's sent as 0x7F 0x7F
-        // So we just add the byte (which is the actual data value)
-        packetBuffer.append((byte) b);
-
-        // Check packet length if we just completed the third byte
-        if (packetBuffer.size() == 3) {
-          expectedLength = (packetBuffer.get(2) & 0xFF) + 5;
-        }
-
-        // Check if packet is complete
-        if (expectedLength > 0 && packetBuffer.size() == expectedLength) {
-          byte[] packet = packetBuffer.toByteArray();
-          if (verifyCRC(packet)) {
-            completePackets.add(packet);
-          }
-          reset();
-        } else {
-          state = State.IN_PACKET;
-        }
-        break;
+  /** Adds one un-stuffed byte; true if it completed a valid frame */
+  private boolean append(byte b, PacketSink sink) {
+    packet[size++] = b;
+    if (size == 3) {
+      // We have STX + SEQ + LEN
+      expectedLength = (b & 0xFF) + 5; // LEN + STX + SEQ + LEN + CRC(2)
+    }
+    if (expectedLength == 0 || size <= expectedLength - 2) {
+      // SEQ, LEN and DATA are covered by the CRC
+      crc = Crc16.updateSsp(crc, b);
+      return false;
     }
+    if (size < expectedLength) return false;
+
+    boolean valid = Crc16.getLowFirst(packet, size - 2) == crc;
+    if (valid) sink.onPacket(packet, size);
+    reset();
+    return valid;
   }
 
   /**
-   * Verifies the CRC16 of a complete packet.
-   * Packet format: [STX][SEQ][LEN][DATA...][CRC_LOW][CRC_HIGH]
+   * Parses incoming data and returns any complete SSP packets found.
+   * This is a streaming parser - call it repeatedly as data arrives.
+   *
+   * @param data New data chunk to parse
+   * @return List of complete packets found in this chunk
    */
-  private boolean verifyCRC(byte[] packet) {
-    if (packet.length < 4) return false;
-
-    // Extract CRC from packet (last 2 bytes)
-    int packetCRC = ((packet[packet.length - 2] & 0xFF) << 8) |
-      (packet[packet.length - 1] & 0xFF);
-
-    // Calculate CRC on packet data (excluding STX and the CRC bytes)
-    byte[] crcData = Arrays.copyOfRange(packet, 1, packet.length - 2);
-    byte[] calculated = SSPUtils.crc16(crcData);
-    int calculatedCRC = ((calculated[0] & 0xFF) << 8) | (calculated[1] & 0xFF);
+  public List<byte[]> parse(byte[] data) {
+    return parse(data, 0, data.length);
+  }
 
-    return packetCRC == calculatedCRC;
+  /** Parses {@code length} bytes of {@code data} from {@code offset}, copying each frame out */
+  public List<byte[]> parse(byte[] data, int offset, int length) {
+    List<byte[]> packets = new ArrayList<>(1);
+    feed(data, offset, length, (p, n) -> packets.add(Arrays.copyOf(p, n)));
+    return packets;
   }
 
   /**
-   * Resets the parser state.
+   * Resets the parser state, dropping any partial packet.
    */
-  private void reset() {
+  public void reset() {
     state = State.WAIT_FOR_STX;
-    packetBuffer.reset();
+    size = 0;
     expectedLength = 0;
   }
 
-  /**
-   * Flushes any pending data and returns any complete packet that might be in the buffer.
-   * Useful at end of stream.
-   */
-  public List<byte[]> flush() {
-    completePackets.clear();
-
-    // If we have a complete packet in the buffer, try to use it
-    if (packetBuffer.size() > 0 && expectedLength > 0 && packetBuffer.size() == expectedLength) {
-      byte[] packet = packetBuffer.toByteArray();
-      if (verifyCRC(packet)) {
-        completePackets.add(packet);
-      }
-    }
-
-    reset();
-    return new ArrayList<>(completePackets);
+  /** Whether part of a frame has been received */
+  public boolean hasPartialPacket() {
+    return state != State.WAIT_FOR_STX;
   }
 
   /**
-   * Helper class for building byte arrays efficiently.
+   * Drops any partial packet. Complete packets are always delivered as soon
+   * as their last byte arrives, so there is never one left to flush.
    */
-  private static class ByteArrayBuilder {
-    private byte[] buffer = new byte[256];
-    private int length = 0;
-
-    public void append(byte b) {
-      ensureCapacity(length + 1);
-      buffer[length++] = b;
-    }
-
-    private void ensureCapacity(int minCapacity) {
-      if (minCapacity > buffer.length) {
-        int newCapacity = Math.max(buffer.length * 2, minCapacity);
-        buffer = Arrays.copyOf(buffer, newCapacity);
-      }
-    }
-
-    public byte get(int index) {
-      if (index < 0 || index >= length) {
-        throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
-      }
-      return buffer[index];
-    }
-
-    public int size() {
-      return length;
-    }
-
-    public byte[] toByteArray() {
-      return Arrays.copyOf(buffer, length);
-    }
-
-    public void reset() {
-      length = 0;
-    }
+  public List<byte[]> flush() {
+    reset();
+    return new ArrayList<>();
   }
 }
@@ -5,6 +5,7 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,43 +34,14 @@ public class SSPUtils {
   }
 
   // status_desc from doc (poll events + general responses)
+  /** Status names by code; {@link SspStatus#of} is the allocation-free lookup */
   public static final Map<Integer, String> statusDesc;
 
   static {
     statusDesc = new HashMap<>();
-    statusDesc.put(0xF0, "OK");
-    statusDesc.put(0xF1, "SLAVE_RESET");
-    statusDesc.put(0xEF, "READ_NOTE");
-    statusDesc.put(0xEE, "CREDIT_NOTE");
-    statusDesc.put(0xED, "NOTE_REJECTING");
-    statusDesc.put(0xEC, "NOTE_REJECTED");
-    statusDesc.put(0xEB, "NOTE_STACKED");
-    statusDesc.put(0xEA, "SAFE_NOTE_JAM");
-    statusDesc.put(0xE9, "UNSAFE_NOTE_JAM");
-    statusDesc.put(0xE8, "DISABLED");
-    statusDesc.put(0xE7, "STACKER_FULL");
-    statusDesc.put(0xE6, "FRAUD_ATTEMPT");
-    statusDesc.put(0xE5, "BAR_CODE_TICKET_VALIDATED");
-    statusDesc.put(0xE4, "CASHBOX_REPLACED");
-    statusDesc.put(0xE3, "CASHBOX_REMOVED");
-    statusDesc.put(0xCE, "NOTE_HELD_IN_BEZEL");
-    statusDesc.put(0xCC, "NOTE_STACKING");
-    statusDesc.put(0xB5, "CHANNEL_DISABLE");
-
-    // Common additional poll events from ITL docs (GA138 / GA973)
-    statusDesc.put(0xDA, "DISPENSING");           // SMART Payout / Hopper
-    statusDesc.put(0xD2, "DISPENSED");
-    statusDesc.put(0xD5, "JAMMED");
-    statusDesc.put(0xD6, "HALTED");
-    statusDesc.put(0xD7, "FLOATING");
-    statusDesc.put(0xD8, "FLOATED");
-    statusDesc.put(0xD9, "TIME_OUT");
-    statusDesc.put(0xDC, "INCOMPLETE_PAYOUT");
-    statusDesc.put(0xDD, "INCOMPLETE_FLOAT");
-    statusDesc.put(0xC2, "EMPTYING");
-    statusDesc.put(0xC3, "EMPTY");
-    statusDesc.put(0xDB, "NOTE_STORED_IN_PAYOUT");
-    // Add more if you support specific devices
+    for (SspStatus status : SspStatus.values()) {
+      if (status != SspStatus.UNKNOWN) statusDesc.put(status.code, status.name());
+    }
   }
 
   // reject_note from doc
@@ -100,6 +72,21 @@ public class SSPUtils {
     // Add more reject codes from ITL GA138 / device manual if needed
   }
 
+  private static final RejectInfo UNKNOWN_REJECT = new RejectInfo("UNKNOWN", "");
+  private static final RejectInfo[] REJECT_BY_CODE = new RejectInfo[256];
+
+  static {
+    Arrays.fill(REJECT_BY_CODE, UNKNOWN_REJECT);
+    for (Map.Entry<Integer, RejectInfo> e : rejectNote.entrySet()) {
+      REJECT_BY_CODE[e.getKey()] = e.getValue();
+    }
+  }
+
+  /** Reject reason for a LAST_REJECT_CODE byte; UNKNOWN if unlisted */
+  public static RejectInfo rejectInfo(int code) {
+    return REJECT_BY_CODE[code & 0xFF];
+  }
+
   public static class RejectInfo {
 
     public String name;
@@ -164,19 +151,7 @@ public class SSPUtils {
   // The rest of your code remains unchanged
   // ──────────────────────────────────────────────────────────────
   public static byte[] crc16(byte[] source) {
-    int crc = 0xFFFF;
-    int poly = 0x8005;
-
-    for (byte b : source) {
-      crc ^= (b & 0xFF) << 8;
-      for (int i = 0; i < 8; i++) {
-        if ((crc & 0x8000) != 0) {
-          crc = ((crc << 1) & 0xFFFF) ^ poly;
-        } else {
-          crc = (crc << 1) & 0xFFFF;
-        }
-      }
-    }
+    int crc = Crc16.ssp(source, 0, source.length);
 
     // Return low byte first, then high byte (Node.js style)
     return new byte[]{
@@ -185,6 +160,10 @@ public class SSPUtils {
     };
   }
 
+  // Seeding a SecureRandom is the expensive part; share one
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  /** One-shot AES; sessions use {@link SspCrypto} to keep the cipher */
   public static byte[] encrypt(byte[] key, byte[] data) throws Exception {
     SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
     Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
@@ -228,7 +207,7 @@ public class SSPUtils {
       ByteBuffer eCountBuf = ByteBuffer.allocate(4).putInt(eCount);
       int paddingLength = (16 - ((data.length + 7) % 16)) % 16;
       byte[] padding = new byte[paddingLength];
-      new SecureRandom().nextBytes(padding);
+      RANDOM.nextBytes(padding);
       byte[] crcPacket = ByteBuffer.allocate(1 + 4 + data.length + padding.length)
         .put((byte) data.length).put(eCountBuf.array()).put(data).put(padding).array();
       byte[] crc = crc16(crcPacket);
@@ -237,13 +216,24 @@ public class SSPUtils {
       data = ByteBuffer.allocate(1 + encrypted.length).put(STEX).put(encrypted).array();
     }
 
-    byte[] crcPacket = ByteBuffer.allocate(2 + data.length).put(sequence).put((byte) data.length).put(data).array();
-    byte[] crc = crc16(crcPacket);
-    byte[] packet = ByteBuffer.allocate(crcPacket.length + crc.length).put(crcPacket).put(crc).array();
-    return ByteBuffer.allocate(1 + packet.length).put(STX).put(stuffBuffer(packet)).array();
+    byte[] frame = new byte[SspFrameEncoder.MAX_FRAME_LENGTH];
+    int length = SspFrameEncoder.encode(sequence, data, 0, data.length, frame, 0);
+    return Arrays.copyOf(frame, length);
   }
 
   public static byte[] extractPacketData(byte[] buffer, byte[] encryptKey, int count,boolean debug) throws Exception {
+    boolean encrypted = encryptKey != null && buffer.length > 3 && buffer[3] == STEX;
+    return extractPacketData(buffer, encrypted ? new SspCrypto(encryptKey) : null, count, debug);
+  }
+
+  /**
+   * Returns the DATA of a response frame, decrypting an eSSP payload with
+   * {@code crypto} in place in {@code buffer}. Callers pass null until
+   * SSP.initEncryption is wired into init; today no reply is decrypted.
+   *
+   * @param count the eCount the request was sent with; the slave echoes it
+   */
+  public static byte[] extractPacketData(byte[] buffer, SspCrypto crypto, int count, boolean debug) throws Exception {
     if (buffer[0] != STX) {
       throw new IllegalArgumentException("Unknown response");
     }
@@ -252,31 +242,21 @@ public class SSPUtils {
     byte seq = buffer[1];
     int dataLength = buffer[2] & 0xFF;
 
-    // Get the data portion
-    byte[] data = new byte[dataLength];
-    System.arraycopy(buffer, 3, data, 0, dataLength);
-
     // Get the CRC from the packet
-    byte[] packetCrc = new byte[2];
-    System.arraycopy(buffer, buffer.length - 2, packetCrc, 0, 2);
-
-    // Calculate CRC on (SEQ + LENGTH + DATA)
-    byte[] crcData = new byte[2 + dataLength];
-    crcData[0] = seq;
-    crcData[1] = buffer[2];
-    System.arraycopy(data, 0, crcData, 2, dataLength);
+    int packetCrc = Crc16.getLowFirst(buffer, buffer.length - 2);
 
-    byte[] calculatedCrc = crc16(crcData);
+    // Calculate CRC on (SEQ + LENGTH + DATA), in place
+    int calculatedCrc = Crc16.ssp(buffer, 1, 2 + dataLength);
 
     // For debugging
     if(debug) {
-      System.out.println("CRC Check - Received: " + bytesToHex(packetCrc)
-        + " Calculated: " + bytesToHex(calculatedCrc));
+      System.out.println("CRC Check - Received: " + String.format("%04X", packetCrc)
+        + " Calculated: " + String.format("%04X", calculatedCrc));
     }
 
     // Check CRC (allow for both byte orders)
-    boolean crcValid = (packetCrc[0] == calculatedCrc[0] && packetCrc[1] == calculatedCrc[1])
-      || (packetCrc[0] == calculatedCrc[1] && packetCrc[1] == calculatedCrc[0]);
+    boolean crcValid = packetCrc == calculatedCrc
+      || packetCrc == (((calculatedCrc & 0xFF) << 8) | (calculatedCrc >>> 8));
 
     if (!crcValid) {
       // Don't throw exception, just log and continue for now
@@ -285,23 +265,53 @@ public class SSPUtils {
     }
 
     // Check if it's an encrypted response
-    if (encryptKey != null && data.length > 0 && data[0] == STEX) {
-      // Handle encrypted response (to be implemented)
-      return data; // Return as-is for now
+    if (crypto != null && dataLength > 0 && buffer[3] == STEX) {
+      return decryptPayload(buffer, 4, dataLength - 1, crypto, count);
     }
 
+    // Get the data portion
+    byte[] data = new byte[dataLength];
+    System.arraycopy(buffer, 3, data, 0, dataLength);
     return data;
   }
 
+  /**
+   * Decrypts {@code [LEN][eCOUNT x4][DATA][PADDING][CRC x2]} in place and
+   * returns DATA after checking the CRC and the eCount.
+   */
+  static byte[] decryptPayload(byte[] buffer, int offset, int length, SspCrypto crypto, int count) throws Exception {
+    if (length < SspCrypto.BLOCK_SIZE || length % SspCrypto.BLOCK_SIZE != 0) {
+      throw new IllegalArgumentException("Encrypted payload is not whole blocks: " + length);
+    }
+    crypto.decrypt(buffer, offset, length);
+
+    int crcAt = offset + length - 2;
+    if (Crc16.getLowFirst(buffer, crcAt) != Crc16.ssp(buffer, offset, length - 2)) {
+      throw new IllegalArgumentException("Wrong CRC16 in encrypted payload");
+    }
+    int innerLength = buffer[offset] & 0xFF;
+    if (innerLength > length - 7) {
+      throw new IllegalArgumentException("Encrypted payload length " + innerLength + " exceeds block");
+    }
+    int responseCount = (buffer[offset + 1] & 0xFF)
+      | (buffer[offset + 2] & 0xFF) << 8
+      | (buffer[offset + 3] & 0xFF) << 16
+      | (buffer[offset + 4] & 0xFF) << 24;
+    if (responseCount != count) {
+      throw new IllegalArgumentException("eCount mismatch: sent " + count + ", got " + responseCount);
+    }
+    return Arrays.copyOfRange(buffer, offset + 5, offset + 5 + innerLength);
+  }
+
   public static Keys generateKeys() {
-    BigInteger generator = BigInteger.probablePrime(64, new SecureRandom());
-    BigInteger modulus = BigInteger.probablePrime(64, new SecureRandom());
+    BigInteger generator = BigInteger.probablePrime(64, RANDOM);
+    BigInteger modulus = BigInteger.probablePrime(64, RANDOM);
     if (generator.compareTo(modulus) < 0) {
       BigInteger temp = generator;
       generator = modulus;
       modulus = temp;
     }
-    BigInteger hostRandom = BigInteger.probablePrime(64, new SecureRandom());
+    BigInteger hostRandom = BigInteger.probablePrime(64, RANDOM);
     BigInteger hostInter = generator.modPow(hostRandom, modulus);
     return new Keys(generator, modulus, hostRandom, hostInter);
   }
@@ -344,13 +354,7 @@ public class SSPUtils {
   }
 
   public static byte[] hexStringToByteArray(String s) {
-    s = s.replace(" ", "");
-    int len = s.length();
-    byte[] data = new byte[len / 2];
-    for (int i = 0; i < len; i += 2) {
-      data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) + Character.digit(s.charAt(i + 1), 16));
-    }
-    return data;
+    return Hex.decode(s);
   }
 
   public static void debugCRC() {
@@ -372,10 +376,6 @@ public class SSPUtils {
   }
 
   private static String bytesToHex(byte[] bytes) {
-    StringBuilder sb = new StringBuilder();
-    for (byte b : bytes) {
-      sb.append(String.format("%02X ", b));
-    }
-    return sb.toString();
+    return Hex.dump(bytes);
   }
 }
@@ -10,6 +10,7 @@ import android.hardware.usb.UsbManager;
 import android.app.PendingIntent;
 import android.os.Build;
 import android.util.Log;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
@@ -26,6 +27,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
 
 import android.serialport.SerialPort; // Updated version
+import android.serialport.SerialReactor;
 
 
 import androidx.annotation.RequiresApi;
@@ -35,16 +37,18 @@ import org.json.JSONException;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.LinkedList;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -54,16 +58,19 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
 
 
+  // NV9 validator link (openUSB, autoDetectAndOpenNV9); other ports are sessions in `ports`
   private UsbSerialPort usbSerialPort;
-  private SerialPort serialPort;
-  private volatile boolean isReading = false;
+  // Guards the NV9 link fields only; sessions never take it
+  private final Object nv9Lock = new Object();
+  private final PortRegistry ports = new PortRegistry();
+  // Shared poll loop for read loops started with reactor: true; created on first use
+  private SerialReactor reactor;
+  private static final int REACTOR_WORKERS = 2;
   private UsbManager usbManager;
   private BroadcastReceiver usbPermissionReceiver;
   private BroadcastReceiver usbAttachReceiver;
   private PendingIntent usbPermissionIntent;
   private PluginCall pendingPermissionCall;
-  private final Queue<byte[]> commandQueue = new LinkedList<>();
-  private byte packNoCounter = 0;
   private SSP sspDevice;
   private Thread pollThread;
   private boolean isNV9AutoDetectEnabled = false;
@@ -71,7 +78,42 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     System.loadLibrary("serial_port");
   }
   private static final String NV9_DEVICE_HINT = "NV9";
+  // Reinit looks for the NV9 for up to this long instead of sleeping a fixed 2s first
+  private static final long REINIT_SCAN_MS = 2000;
+  private static final long REINIT_SCAN_INTERVAL_MS = 100;
   private volatile boolean autoReadingStarted = false;
+  // High-rate events go through here so JS can batch or filter them (see setEventBatching)
+  private final BridgeEmitter bridge = new BridgeEmitter(new BridgeEmitter.Sink() {
+    @Override
+    public void emit(String event, JSONObject data) {
+      if (data instanceof JSObject) {
+        notifyListeners(event, (JSObject) data);
+        return;
+      }
+      try {
+        notifyListeners(event, JSObject.fromJSONObject(data));
+      } catch (JSONException e) {
+        Log.e(TAG, "Dropping " + event + ": " + e.getMessage());
+      }
+    }
+
+    @Override
+    public void emitBatch(List<BridgeEmitter.Entry> entries, long dropped) {
+      JSONArray events = new JSONArray();
+      for (BridgeEmitter.Entry entry : entries) {
+        JSObject item = new JSObject();
+        item.put("event", entry.event);
+        item.put("data", entry.data);
+        item.put("timestamp", entry.timestamp);
+        events.put(item);
+      }
+      JSObject batch = new JSObject();
+      batch.put("events", events);
+      batch.put("count", entries.size());
+      batch.put("dropped", dropped);
+      notifyListeners("eventBatch", batch);
+    }
+  });
   @RequiresApi(api = Build.VERSION_CODES.N)
   @SuppressLint("UnspecifiedRegisterReceiverFlag")
   @Override
@@ -317,9 +359,9 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       }
 
       // Check current connection status
-      ret.put("usbSerialPortOpen", usbSerialPort != null);
+      ret.put("usbSerialPortOpen", usbSerialPort != null || firstSession(PortSession.USB) != null);
 //      ret.put("isPolling", isPolling);
-      ret.put("serialPortOpen", serialPort != null);
+      ret.put("serialPortOpen", firstSession(PortSession.NATIVE) != null);
 
       Log.d(TAG, "USB Status: " + ret.toString());
 
@@ -332,16 +374,18 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
   }
 
   private void handleUsbDetached(UsbDevice device) {
-    if (device != null && usbSerialPort != null &&
+    if (device == null) return;
+    PortSession session = ports.findByPort(device.getDeviceName());
+    if (session != null) {
+      Log.d(TAG, "USB device of session " + session.id + " detached → closing it");
+      closeSession(session);
+    }
+    if (usbSerialPort != null &&
       usbSerialPort.getDriver().getDevice().equals(device)) {
       Log.d(TAG, "NV9 detached → cleaning up");
 
-      // Close the connection
-      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-        close(null);
-      }
-
-      usbSerialPort = null;
+      // Close the NV9 link only; serial sessions keep running
+      closeNV9();
 
       JSObject event = new JSObject();
       event.put("event", "usbDetached");
@@ -406,7 +450,7 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     Log.d(TAG, "autoDetectAndOpenNV9 called");
 
     // First, check if serial port is already open for controller board
-    if (serialPort != null) {
+    if (firstSession(PortSession.NATIVE) != null) {
       Log.d(TAG, "Serial connection active, NV9 will be secondary");
     }
 
@@ -663,15 +707,26 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
           }
         });
 
-        // Run initialization sequence
+        // Startup timing breakdown, success or not
+        sspDevice.on("INITIALIZED", (event) -> {
+          JSObject jsEvent = new JSObject();
+          jsEvent.put("event", "nv9InitTiming");
+          jsEvent.put("success", event.optBoolean("success", false));
+          JSONObject timing = event.optJSONObject("timing");
+          if (timing != null) {
+            jsEvent.put("totalMs", timing.optLong("totalMs"));
+            jsEvent.put("phases", timing.optJSONArray("phases"));
+          }
+          jsEvent.put("timestamp", System.currentTimeMillis());
+          notifyListeners("nv9Event", jsEvent);
+        });
+
+        // Run initialization sequence (ends with ENABLE)
         Log.d(TAG, "Running SSP init sequence...");
         sspDevice.initSSP().get(30000, TimeUnit.MILLISECONDS);
 
         Log.d(TAG, "SSP auto-initialization complete");
 
-        // Auto-enable and start polling
-        Log.d(TAG, "Enabling SSP device...");
-        sspDevice.enable().get(5000, TimeUnit.MILLISECONDS);
         // ============ START POLLING HERE ============
         Log.d(TAG, "Starting SSP polling...");
         sspDevice.startPoll();  // <-- START POLLING HERE
@@ -704,10 +759,12 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     JSObject ret = new JSObject();
 
     // Serial status
-    ret.put("serialConnected", serialPort != null);
-    if (serialPort != null) {
-      ret.put("serialPort", "/dev/ttyS1");
+    PortSession serial = firstSession(PortSession.NATIVE);
+    ret.put("serialConnected", serial != null);
+    if (serial != null) {
+      ret.put("serialPort", serial.portName);
     }
+    ret.put("sessions", describeSessions());
 
     // USB status
     ret.put("usbConnected", usbSerialPort != null);
@@ -717,6 +774,25 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
     // SSP status
     ret.put("sspInitialized", sspDevice != null && sspDevice.isEnabled());
+    if (sspDevice != null) {
+      SspPollScheduler poll = sspDevice.getPollScheduler();
+      JSObject pollStats = new JSObject();
+      pollStats.put("intervalMs", poll.getIntervalMs());
+      pollStats.put("polls", poll.getPolls());
+      pollStats.put("events", poll.getEvents());
+      pollStats.put("lastEventLatencyMs", poll.getLastEventLatencyMs());
+      pollStats.put("maxEventLatencyMs", poll.getMaxEventLatencyMs());
+      pollStats.put("avgEventLatencyMs", poll.getAverageEventLatencyMs());
+      ret.put("sspPoll", pollStats);
+
+      SspEventBus bus = sspDevice.getEventBus();
+      JSObject eventStats = new JSObject();
+      eventStats.put("queued", bus.getQueued());
+      eventStats.put("delivered", bus.getDelivered());
+      eventStats.put("dropped", bus.getDropped());
+      eventStats.put("late", bus.getLate());
+      ret.put("sspEvents", eventStats);
+    }
 
     Log.d(TAG, "Both connections status: " + ret.toString());
     call.resolve(ret);
@@ -759,6 +835,13 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
       close(null);
     }
+
+    synchronized (this) {
+      if (reactor != null) {
+        reactor.shutdown();
+        reactor = null;
+      }
+    }
   }
 
   @PluginMethod
@@ -825,6 +908,9 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     String parity = call.getString("parity", "none");
     int bufferSize = call.getInt("bufferSize", 1024);
     int flags = call.getInt("flags", 0);
+    int interByteTimeout = call.getInt("interByteTimeout", 0);
+    int receiveBufferSize = call.getInt("receiveBufferSize", 0);
+    String latencyProfile = call.getString("latencyProfile", SerialPort.PROFILE_DEFAULT);
     boolean isNV9 = call.getBoolean("isNV9", true);
     boolean autoConnectUSB = call.getBoolean("autoConnectUSB", true); // New parameter
 
@@ -832,49 +918,139 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       call.reject("Port name is required");
       return;
     }
+    try {
+      SerialPort.checkLatencyProfile(latencyProfile);
+    } catch (IllegalArgumentException e) {
+      call.reject(e.getMessage());
+      return;
+    }
 
-    synchronized (this) {
-      // Close any existing connection first
-      if (serialPort != null || usbSerialPort != null) {
-        Log.d(TAG, "Closing existing connection before opening new one");
-        close(null);
-      }
+    // Reopening a port replaces its session; sessions on other ports keep running
+    PortSession existing = ports.findByPort(portName);
+    if (existing != null) {
+      Log.d(TAG, "Closing existing session " + existing.id + " before reopening " + portName);
+      closeSession(existing);
+    }
+
+    // Try to open native serial port
+    try {
+      Log.d(TAG, "Attempting to open native serial port: " + portName);
 
-      // Try to open native serial port
+      SerialPort port = new SerialPort(portName, baudRate, flags, dataBits, stopBits, parity, bufferSize, receiveBufferSize);
       try {
-        Log.d(TAG, "Attempting to open native serial port: " + portName);
+        port.setLatencyProfile(latencyProfile);
+      } catch (IOException e) {
+        port.shutdown();
+        throw e;
+      }
+      // An explicit interByteTimeout wins over the profile's
+      if (call.getData().has("interByteTimeout")) port.setInterByteTimeout(interByteTimeout);
+      SerialPort.LatencySettings latency = port.getLatencySettings();
+      PortSession session = ports.open(portName, PortSession.NATIVE, this::adh814Callbacks);
+      session.serialPort = port;
+      session.serialWriter = new SerialWriter(port.getOutputStream(), "SerialWriter-" + portName);
 
-        serialPort = new SerialPort(portName, baudRate, flags, dataBits, stopBits, parity, bufferSize);
+      Log.d(TAG, "✓ Native serial opened successfully on " + portName + " with baudRate=" + baudRate
+        + " as session " + session.id + ", latency " + latency);
 
-        Log.d(TAG, "✓ Native serial opened successfully on " + portName + " with baudRate=" + baudRate);
+      JSObject ret = new JSObject();
+      ret.put("success", true);
+      ret.put("message", "Serial connection opened for " + portName);
+      ret.put("sessionId", session.id);
+      ret.put("portName", portName);
+      ret.put("baudRate", baudRate);
+      ret.put("connectionType", "native");
+      ret.put("isNV9", isNV9);
+      JSObject latencyInfo = new JSObject();
+      latencyInfo.put("profile", latency.profile);
+      latencyInfo.put("interByteTimeout", latency.interByteTimeoutMs);
+      latencyInfo.put("drainAfterWrite", latency.drainAfterWrite);
+      latencyInfo.put("usbLatencyTimer", latency.usbLatencyTimerMs);
+      ret.put("latency", latencyInfo);
 
-        JSObject ret = new JSObject();
-        ret.put("success", true);
-        ret.put("message", "Serial connection opened for " + portName);
-        ret.put("portName", portName);
-        ret.put("baudRate", baudRate);
-        ret.put("connectionType", "native");
-        ret.put("isNV9", isNV9);
+      notifyListeners("serialOpened", ret);
 
-        notifyListeners("serialOpened", ret);
 
+      call.resolve(ret);
 
-        call.resolve(ret);
-        return;
+    } catch (SecurityException e) {
+      Log.e(TAG, "✗ Permission denied for serial port: " + e.getMessage());
+      call.reject("Permission denied for serial port: " + e.getMessage());
 
-      } catch (SecurityException e) {
-        Log.e(TAG, "✗ Permission denied for serial port: " + e.getMessage());
-        call.reject("Permission denied for serial port: " + e.getMessage());
+    } catch (IOException e) {
+      Log.e(TAG, "✗ IO Exception for serial port: " + e.getMessage());
+      call.reject("Failed to open serial connection - port may not exist or is busy: " + e.getMessage());
 
-      } catch (IOException e) {
-        Log.e(TAG, "✗ IO Exception for serial port: " + e.getMessage());
-        call.reject("Failed to open serial connection - port may not exist or is busy: " + e.getMessage());
+    } catch (IllegalArgumentException e) {
+      Log.e(TAG, "✗ Invalid parameter for serial port: " + e.getMessage());
+      call.reject("Invalid parameter for serial connection: " + e.getMessage());
+    }
+  }
 
-      } catch (IllegalArgumentException e) {
-        Log.e(TAG, "✗ Invalid parameter for serial port: " + e.getMessage());
-        call.reject("Invalid parameter for serial connection: " + e.getMessage());
-      }
+  // Sessions
+
+  /**
+   * The session named by the call's {@code sessionId}, or the most recently
+   * opened one when it names none. Rejects the call and returns null if there
+   * is no such session.
+   */
+  private PortSession sessionFor(PluginCall call) {
+    String id = call.getString("sessionId");
+    PortSession session = ports.resolve(id);
+    if (session == null) {
+      call.reject(id != null ? "Unknown session: " + id : "No serial connection open");
+    }
+    return session;
+  }
+
+  /** Like {@link #sessionFor}, but the session must be a native serial port */
+  private PortSession nativeSessionFor(PluginCall call) {
+    PortSession session = sessionFor(call);
+    if (session != null && session.serialPort == null) {
+      call.reject("Session " + session.id + " is not an open native serial port");
+      return null;
+    }
+    return session;
+  }
+
+  private PortSession firstSession(String connectionType) {
+    for (PortSession session : ports.all()) {
+      if (session.connectionType.equals(connectionType)) return session;
     }
+    return null;
+  }
+
+  private JSONArray describeSessions() {
+    JSONArray list = new JSONArray();
+    for (PortSession session : ports.all()) {
+      JSObject info = new JSObject();
+      info.put("sessionId", session.id);
+      info.put("portName", session.portName);
+      info.put("connectionType", session.connectionType);
+      info.put("reading", session.reading);
+      list.put(info);
+    }
+    return list;
+  }
+
+  /** Event payload tagged with the session it came from */
+  private static JSObject sessionEvent(PortSession session) {
+    JSObject event = new JSObject();
+    event.put("sessionId", session.id);
+    return event;
+  }
+
+  private void closeSession(PortSession session) {
+    ports.remove(session.id);
+    session.close();
+    Log.d(TAG, "Session " + session.id + " on " + session.portName + " closed");
+  }
+
+  @PluginMethod
+  public void listSessions(PluginCall call) {
+    JSObject ret = new JSObject();
+    ret.put("sessions", describeSessions());
+    call.resolve(ret);
   }
 
   /**
@@ -937,10 +1113,10 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
     Log.d(TAG, "Explicitly opening USB device: " + portName);
 
-    // First, close any existing connection
-    if (serialPort != null || usbSerialPort != null) {
-      Log.d(TAG, "Closing existing connection before opening USB");
-      close(null);
+    // First, close any existing NV9 link; serial sessions keep running
+    if (usbSerialPort != null) {
+      Log.d(TAG, "Closing existing NV9 connection before opening USB");
+      closeNV9();
     }
 
     // Find the device
@@ -1244,74 +1420,75 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       return;
     }
 
-    synchronized (this) {
-      if (usbSerialPort != null) {
-        call.reject("USB serial connection already open");
-        return;
-      }
-      if (serialPort != null) {
-        call.reject("Serial connection is already open; close it first");
-        return;
-      }
+    if (ports.findByPort(portName) != null) {
+      call.reject("USB serial connection already open on " + portName);
+      return;
+    }
 
-      UsbDevice device = null;
-      HashMap<String, UsbDevice> deviceList = usbManager.getDeviceList();
-      for (UsbDevice d : deviceList.values()) {
-        if (d.getDeviceName().equals(portName)) {
-          device = d;
-          break;
-        }
+    UsbDevice device = null;
+    HashMap<String, UsbDevice> deviceList = usbManager.getDeviceList();
+    for (UsbDevice d : deviceList.values()) {
+      if (d.getDeviceName().equals(portName)) {
+        device = d;
+        break;
       }
+    }
 
-      if (device == null) {
-        call.reject("Device not found: " + portName);
-        return;
-      }
+    if (device == null) {
+      call.reject("Device not found: " + portName);
+      return;
+    }
 
-      if (!usbManager.hasPermission(device)) {
-        Log.d(TAG, "Requesting USB permission for: " + portName);
-        usbManager.requestPermission(device, PendingIntent.getBroadcast(getContext(), 0, new Intent("com.laoapps.plugins.USB_PERMISSION"), PendingIntent.FLAG_UPDATE_CURRENT));
-        call.reject("USB permission pending for: " + portName);
-        return;
-      }
+    if (!usbManager.hasPermission(device)) {
+      Log.d(TAG, "Requesting USB permission for: " + portName);
+      usbManager.requestPermission(device, PendingIntent.getBroadcast(getContext(), 0, new Intent("com.laoapps.plugins.USB_PERMISSION"), PendingIntent.FLAG_UPDATE_CURRENT));
+      call.reject("USB permission pending for: " + portName);
+      return;
+    }
 
-      List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber().findAllDrivers(usbManager);
-      UsbSerialDriver driver = null;
-      for (UsbSerialDriver d : availableDrivers) {
-        if (d.getDevice().getDeviceName().equals(portName)) {
-          driver = d;
-          break;
-        }
+    List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber().findAllDrivers(usbManager);
+    UsbSerialDriver driver = null;
+    for (UsbSerialDriver d : availableDrivers) {
+      if (d.getDevice().getDeviceName().equals(portName)) {
+        driver = d;
+        break;
       }
+    }
 
-      if (driver == null) {
-        call.reject("No compatible driver found for: " + portName);
-        return;
-      }
+    if (driver == null) {
+      call.reject("No compatible driver found for: " + portName);
+      return;
+    }
 
-      usbSerialPort = driver.getPorts().get(0);
+    UsbSerialPort port = driver.getPorts().get(0);
+    try {
+      port.open(usbManager.openDevice(device));
+      int parityValue = parityToUsbSerialParity(parity);
+      port.setParameters(baudRate, dataBits, stopBits, parityValue);
+      port.setDTR(true);
+      port.setRTS(true);
+    } catch (Exception e) {
       try {
-        usbSerialPort.open(usbManager.openDevice(device));
-        int parityValue = parityToUsbSerialParity(parity);
-        usbSerialPort.setParameters(baudRate, dataBits, stopBits, parityValue);
-        usbSerialPort.setDTR(true);
-        usbSerialPort.setRTS(true);
-
-        Log.d(TAG, "USB serial opened successfully on " + portName);
+        port.close();
+      } catch (Exception ignored) {
+        // Not open
+      }
+      call.reject("Failed to open USB serial: " + e.getMessage());
+      return;
+    }
 
-        JSObject ret = new JSObject();
-        ret.put("message", "USB serial connection opened");
-        ret.put("portName", portName);
-        ret.put("baudRate", baudRate);
-        notifyListeners("usbSerialOpened", ret);
+    PortSession session = ports.open(portName, PortSession.USB, this::adh814Callbacks);
+    session.usbSerialPort = port;
+    Log.d(TAG, "USB serial opened successfully on " + portName + " as session " + session.id);
 
-        call.resolve(ret);
+    JSObject ret = new JSObject();
+    ret.put("message", "USB serial connection opened");
+    ret.put("sessionId", session.id);
+    ret.put("portName", portName);
+    ret.put("baudRate", baudRate);
+    notifyListeners("usbSerialOpened", ret);
 
-      } catch (Exception e) {
-        usbSerialPort = null;
-        call.reject("Failed to open USB serial: " + e.getMessage());
-      }
-    }
+    call.resolve(ret);
   }
 
 
@@ -1324,44 +1501,53 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       return;
     }
 
-    byte[] bytes = hexStringToByteArray(data);
+    byte[] bytes;
+    try {
+      bytes = hexStringToByteArray(data);
+    } catch (IllegalArgumentException e) {
+      call.reject("Invalid hex data: " + e.getMessage());
+      return;
+    }
+    String sessionId = call.getString("sessionId");
+    PortSession session = ports.resolve(sessionId);
+    if (session == null && sessionId != null) {
+      call.reject("Unknown session: " + sessionId);
+      return;
+    }
     JSObject ret = new JSObject();
 
-    synchronized (this) {
-      if (serialPort != null) {
-        try {
-          serialPort.getOutputStream().write(bytes);
-          serialPort.getOutputStream().flush();
-          Log.d(TAG, "Data written to serial: " + data);
-          ret.put("message", "Data written successfully to serial");
-          ret.put("data", data);
-          ret.put("bytes", bytesToHex(bytes, bytes.length));
-          notifyListeners("serialWriteSuccess", ret);
-          call.resolve(ret);
-          try {
-            Thread.sleep(2200);
-          } catch (InterruptedException e) {
-
-          }
-
-        } catch (IOException e) {
-          call.reject("Failed to write to serial: " + e.getMessage());
-        }
-      } else if (usbSerialPort != null) {
-        try {
-          usbSerialPort.write(bytes, 2000);
-          Log.d(TAG, "Data written to USB serial: " + data);
-          ret.put("message", "Data written successfully to USB serial");
-          ret.put("data", data);
-          ret.put("bytes", bytesToHex(bytes, bytes.length));
-          notifyListeners("usbWriteSuccess", ret);
-          call.resolve(ret);
-        } catch (Exception e) {
-          call.reject("Failed to write to USB serial: " + e.getMessage());
+    // Without any session, fall back to the NV9 link
+    SerialWriter writer = session != null ? session.serialWriter : null;
+    UsbSerialPort usbPort = session != null ? session.usbSerialPort : usbSerialPort;
+    if (session != null) ret.put("sessionId", session.id);
+    if (writer != null) {
+      // Completes on the writer thread once the bytes are flushed
+      writer.write(bytes).whenComplete((ignored, error) -> {
+        if (error != null) {
+          call.reject("Failed to write to serial: " + error.getMessage());
+          return;
         }
-      } else {
-        call.reject("No serial connection open");
+        Log.d(TAG, "Data written to serial: " + data);
+        ret.put("message", "Data written successfully to serial");
+        ret.put("data", data);
+        ret.put("bytes", bytesToHex(bytes, bytes.length));
+        bridge.emit("serialWriteSuccess", ret);
+        call.resolve(ret);
+      });
+    } else if (usbPort != null) {
+      try {
+        usbPort.write(bytes, 2000);
+        Log.d(TAG, "Data written to USB serial: " + data);
+        ret.put("message", "Data written successfully to USB serial");
+        ret.put("data", data);
+        ret.put("bytes", bytesToHex(bytes, bytes.length));
+        bridge.emit("usbWriteSuccess", ret);
+        call.resolve(ret);
+      } catch (Exception e) {
+        call.reject("Failed to write to USB serial: " + e.getMessage());
       }
+    } else {
+      call.reject("No serial connection open");
     }
   }
 
@@ -1402,7 +1588,7 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       future.thenAccept(result -> {
         JSObject ret = null;
         try {
-          ret = new JSObject(result.toString());
+          ret = JSObject.fromJSONObject(result);
         } catch (JSONException e) {
           throw new RuntimeException(e);
         }
@@ -1464,13 +1650,14 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
           }
         }
 
-        // Give hardware time to reset
-        Log.d(TAG, "Waiting for hardware reset...");
-        Thread.sleep(2000);
-
-        // Scan for NV9 devices
+        // Scan for NV9 devices, giving one that is re-enumerating up to REINIT_SCAN_MS to come back
         Log.d(TAG, "Scanning for NV9 devices...");
         List<UsbSerialDriver> drivers = findNV9Drivers();
+        long scanDeadline = System.currentTimeMillis() + REINIT_SCAN_MS;
+        while (drivers.isEmpty() && System.currentTimeMillis() < scanDeadline) {
+          Thread.sleep(REINIT_SCAN_INTERVAL_MS);
+          drivers = findNV9Drivers();
+        }
 
         if (drivers.isEmpty()) {
           Log.e(TAG, "No NV9 devices found after reinit");
@@ -1570,8 +1757,9 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
   // VMC
 
-  private long lastVmcCommandEnqueueTime = 0;
   private static final long VMC_STUCK_TIMEOUT_MS = 10000; // 10 seconds - safe & generous
+  private static final byte[] VMC_ACK_FRAME = {(byte) 0xFA, (byte) 0xFB, 0x42, 0x00, 0x43};
+  private static final String VMC_ACK_HEX = "fafb420043";
   @PluginMethod
   public void writeVMC(PluginCall call) {
     Log.d(TAG, "writeVMC invoked: " + call.getData().toString());
@@ -1580,6 +1768,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       call.reject("Data required");
       return;
     }
+    PortSession session = sessionFor(call);
+    if (session == null) return;
 
     try {
       JSObject jsonData = new JSObject(data);
@@ -1590,10 +1780,11 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
         return;
       }
 
-      byte[] packet = buildPacket(command, params);
+      byte[] packet = buildPacket(session, command, params);
+      PendingCommand pending = newPendingCommand(call, packet);
       Log.d(TAG, "Packet for " + command + ": " + bytesToHex(packet, packet.length));
-      synchronized (commandQueue) {
-        commandQueue.add(packet);
+      synchronized (session.commandQueue) {
+        session.commandQueue.add(pending);
 //        if (commandQueue.size() > 10) { // or 8–15 depending on your tolerance
 //          Log.w(TAG, "VMC queue overflow (" + commandQueue.size() + ") → dropping oldest");
 //          commandQueue.poll(); // drop oldest
@@ -1601,15 +1792,16 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
         Log.d(TAG, "Queued command for VMC: " + bytesToHex(packet, packet.length));
 
         // Start timeout timer for ANY command (prevents any stuck packet)
-        lastVmcCommandEnqueueTime = System.currentTimeMillis();
+        session.lastVmcCommandEnqueueTime = System.currentTimeMillis();
         Log.d(TAG, "VMC command enqueued → 10s safety timeout started");
       }
 
-      JSObject ret = new JSObject();
+      JSObject ret = sessionEvent(session);
       ret.put("message", "Command queued for VMC");
       ret.put("data", bytesToHex(packet, packet.length));
+      ret.put("id", pending.id);
       notifyListeners("commandQueued", ret);
-      call.resolve(ret);
+      resolveWrite(call, pending, ret);
     } catch (Exception e) {
       call.reject("Failed to parse data or build packet: " + e.getMessage());
     }
@@ -1625,10 +1817,10 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     }
   }
 
-  private byte[] buildPacket(String command, JSObject params) {
+  private byte[] buildPacket(PortSession session, String command, JSObject params) {
     byte[] stx = {(byte) 0xFA, (byte) 0xFB};
     byte cmdByte = (byte) Integer.parseInt(command.length() > 2 ? command.substring(2) : command, 16);
-    byte packNo = getNextPackNo();
+    byte packNo = session.nextPackNo();
 
     byte[] text;
     Log.d(TAG, "Input command " + command);
@@ -1638,12 +1830,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
         break;
       case "31": // Sync
         cmdByte = (byte) 0x31;
-        synchronized (commandQueue) {
-          commandQueue.clear();
-          packNoCounter = 0;
-          lastVmcCommandEnqueueTime = 0;  // ← reset timer too
-          Log.d(TAG, "SYNC received → queue cleared + timeout timer reset");
-        }
+        session.resetVmc("Queue cleared by SYNC"); // ← resets the timeout timer too
+        Log.d(TAG, "SYNC received → queue cleared + timeout timer reset");
         text = new byte[]{packNo};
         break;
       case "06": // Dispense
@@ -1773,13 +1961,6 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     return data;
   }
 
-  private byte getNextPackNo() {
-    synchronized (this) {
-      packNoCounter = (byte) ((packNoCounter + 1) % 256);
-      return packNoCounter == 0 ? (byte) 1 : packNoCounter;
-    }
-  }
-
   private int clampToByte(Integer value) {
     if (value == null) return 0;
     return Math.min(Math.max(value, 0), 255);
@@ -1788,208 +1969,395 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
   @PluginMethod
   public void startReadingVMC(PluginCall call) {
     Log.d(TAG, "startReadingVMC invoked: " + call.getData().toString());
-    if (serialPort == null) {
-      call.reject("No serial connection open");
-      return;
-    }
+    PortSession session = nativeSessionFor(call);
+    if (session == null) return;
 
-    isReading = true;
-    JSObject ret = new JSObject();
+    session.vmcDebug = call.getBoolean("debug", false);
+    session.reading = true;
+    JSObject ret = sessionEvent(session);
     ret.put("message", "VMC reading started");
     notifyListeners("readingStarted", ret);
     call.resolve(ret);
 
-    new Thread(() -> {
-      byte[] buffer = new byte[1024];
-      ByteArrayOutputStream packetBuffer = new ByteArrayOutputStream();
+    VmcFrameDecoder decoder = new VmcFrameDecoder();
+    VmcFrameDecoder.FrameHandler frameHandler = (frame, offset, length) -> handleVmcFrame(session, frame, offset, length);
+    // Chunks arrive one at a time, so only one thread is ever in the decoder; replies go through the session's writer
+    startReadLoop(call, session, "VMC", (data, len) -> decoder.feed(data, 0, len, frameHandler),
+      rx -> decoder.feed(rx, frameHandler));
+  }
+
+  /**
+   * Feeds the session's input to {@code handler} until reading stops. By default
+   * the loop gets a thread of its own, blocked in {@link SerialPort#read}; with
+   * {@code reactor: true} the port joins the shared {@link SerialReactor}, whose
+   * one poll loop serves every port started that way. Either way a session's
+   * chunks reach the handler one at a time and in order. The data array is only
+   * valid during the call.
+   */
+  private void startReadLoop(PluginCall call, PortSession session, String name, SerialReactor.Handler handler) {
+    startReadLoop(call, session, name, handler, null);
+  }
+
+  /**
+   * As above; when the port was opened with a receive buffer and reads on its own
+   * thread, {@code direct} gets that off-heap buffer instead and parses it in place.
+   */
+  private void startReadLoop(PluginCall call, PortSession session, String name, SerialReactor.Handler handler,
+                             Consumer<ByteBuffer> direct) {
+    SerialReactor.Handler guarded = new SerialReactor.Handler() {
+      @Override
+      public void onData(byte[] data, int length) {
+        try {
+          handler.onData(data, length);
+        } catch (Exception e) {
+          if (session.reading) Log.e(TAG, name + " read error on " + session.id + ": " + e.getMessage());
+        }
+      }
+
+      @Override
+      public void onClosed() {
+        Log.w(TAG, "Serial port closed, stopping " + name + " read loop on " + session.id);
+      }
+    };
 
-      while (isReading) {
-        synchronized (this) {
-          if (serialPort == null) {
-            Log.w(TAG, "Serial port closed, stopping read thread");
+    SerialPort port = session.serialPort;
+    if (call != null && call.getBoolean("reactor", false) && port != null) {
+      try {
+        SerialReactor shared = sharedReactor();
+        session.reactor = shared;
+        shared.register(port, guarded);
+        Log.d(TAG, name + " reading on the shared reactor for " + session.id);
+        return;
+      } catch (IOException e) {
+        session.reactor = null;
+        Log.w(TAG, "Reactor unavailable, using a read thread: " + e.getMessage());
+      }
+    }
+
+    boolean receiveInPlace = direct != null && port != null && port.getReceiveBuffer() != null;
+    new Thread(() -> {
+      Log.d(TAG, name + " reading thread started" + (receiveInPlace ? " on the direct receive buffer" : ""));
+      byte[] buffer = receiveInPlace ? null : new byte[1024];
+      while (session.reading) {
+        SerialPort current = session.serialPort;
+        if (current == null) {
+          guarded.onClosed();
+          break;
+        }
+        try {
+          // Blocks until bytes arrive; stopReading()/close() wake it up
+          int len = receiveInPlace ? current.receive(-1) : current.read(buffer, 0, buffer.length, -1);
+          if (len < 0) {
+            guarded.onClosed();
             break;
           }
-          try {
-            int available = serialPort.getInputStream().available();
-            if (available > 0) {
-              int len = serialPort.getInputStream().read(buffer, 0, Math.min(available, buffer.length));
-              if (len > 0) {
-                packetBuffer.write(buffer, 0, len);
-                byte[] accumulated = packetBuffer.toByteArray();
-                int start = 0;
-
-                while (start <= accumulated.length - 5) {
-                  if ((accumulated[start] & 0xFF) == 0xFA && (accumulated[start + 1] & 0xFF) == 0xFB) {
-                    int packetLength = (accumulated[start + 3] & 0xFF) + 5;
-                    if (start + packetLength > accumulated.length) break;
-
-                    byte[] packet = new byte[packetLength];
-                    System.arraycopy(accumulated, start, packet, 0, packetLength);
-                    String packetHex = bytesToHex(packet, packetLength);
-
-                    byte calculatedXor = calculateXOR(packet, packetLength - 1);
-                    if (calculatedXor != packet[packetLength - 1]) {
-                      Log.w(TAG, "Invalid checksum: " + packetHex);
-                      start++;
-                      continue;
-                    }
-
-                    if (packetHex.equals("fafb410040")) { // POLL
-                      synchronized (commandQueue) {
-                        if (!commandQueue.isEmpty()) {
-                          byte[] response = commandQueue.peek(); // peek first to check
-
-                          long now = System.currentTimeMillis();
-                          if (now - lastVmcCommandEnqueueTime > VMC_STUCK_TIMEOUT_MS) {
-                            Log.w(TAG, "VMC command stuck >10s → dropping it (safety timeout). "
-                              + "Command: " + bytesToHex(response, response.length)
-                              + ", Queue size was: " + commandQueue.size());
-                            commandQueue.poll();
-                            lastVmcCommandEnqueueTime = 0;
-                          } else {
-                            // Normal send
-                            byte[] toSend = commandQueue.poll(); // now remove it
-                            assert toSend != null;
-                            Log.d(TAG, "POLL received, sending command: " + bytesToHex(toSend, toSend.length));
-
-                            try {
-                              serialPort.getOutputStream().write(toSend);
-                              serialPort.getOutputStream().flush();
-                              notifyListeners("serialWriteSuccess", new JSObject().put("data", bytesToHex(toSend, toSend.length)));
-                              // Success → reset stuck timer
-                              lastVmcCommandEnqueueTime = 0;
-                              Log.d(TAG, "Command sent successfully → timeout timer reset");
-                            } catch (Exception e) {
-                              Log.e(TAG, "Failed to send VMC command: " + e.getMessage());
-                              // If send fails → you can decide to re-queue or drop
-                              // For safety: drop it after failure (prevents re-try loop)
-                              // commandQueue.addFirst(toSend); // ← uncomment if you want retry
-                            }
-                          }
-                        } else {
-                          byte[] ack = hexStringToByteArray("fafb420043");
-                          Log.d(TAG, "POLL received, sending ACK: fafb420043");
-                          serialPort.getOutputStream().write(ack);
-                          serialPort.getOutputStream().flush();
-                          notifyListeners("serialWriteSuccess", new JSObject().put("data", "fafb420043"));
-                        }
-                      }
-                    } else if (packetHex.equals("fafb420043") || packetHex.equals("fafb420143")) { // ACK
-                      synchronized (commandQueue) {
-                        if (!commandQueue.isEmpty()) {
-                          byte[] ack = hexStringToByteArray("fafb420043");
-                          Log.d(TAG, "ACK received, dequeued command: " + bytesToHex(ack, ack.length));
-                          JSObject ackEvent = new JSObject();
-                          ackEvent.put("data", bytesToHex(ack, ack.length));
-                          notifyListeners("commandAcknowledged", ackEvent);
-                        }
-                      }
-                    } else { // Responses all data with ack
-                      Log.d(TAG, "Response received: " + packetHex);
-                      JSObject dataEvent = new JSObject();
-                      dataEvent.put("data", packetHex);
-                      notifyListeners("dataReceived", dataEvent);
-
-                      byte[] ack = hexStringToByteArray("fafb420043");
-                      Log.d(TAG, "Sending ACK: fafb420043");
-                      serialPort.getOutputStream().write(ack);
-                      serialPort.getOutputStream().flush();
-                    }
-
-                    start += packetLength;
-                  } else {
-                    start++;
-                  }
-                }
-
-                int remaining = accumulated.length - start;
-                if (remaining > 0) {
-                  byte[] remainder = new byte[remaining];
-                  System.arraycopy(accumulated, start, remainder, 0, remaining);
-                  packetBuffer.reset();
-                  packetBuffer.write(remainder);
-                } else {
-                  packetBuffer.reset();
-                }
-              }
+          if (len == 0) continue;
+          if (receiveInPlace) {
+            try {
+              direct.accept(current.getReceiveBuffer());
+            } catch (Exception e) {
+              if (session.reading) Log.e(TAG, name + " read error on " + session.id + ": " + e.getMessage());
             }
-            Thread.sleep(10);
-          } catch (Exception e) {
-            if (isReading) Log.e(TAG, "VMC read error: " + e.getMessage());
+          } else {
+            guarded.onData(buffer, len);
           }
+        } catch (IOException e) {
+          if (session.reading) Log.e(TAG, name + " read error on " + session.id + ": " + e.getMessage());
         }
       }
-    }).start();
+      Log.d(TAG, name + " reading thread stopped");
+    }, name + "-" + session.id).start();
   }
 
-  @PluginMethod
-  public void startReading(PluginCall call) {
-    if (serialPort == null) {
-      call.reject("No serial connection open");
+  private synchronized SerialReactor sharedReactor() throws IOException {
+    if (reactor == null) reactor = new SerialReactor(REACTOR_WORKERS);
+    return reactor;
+  }
+
+  /**
+   * Handles one checksum-valid VMC frame. The frame is a view into the decoder's
+   * ring buffer and must not be kept after this method returns.
+   */
+  private void handleVmcFrame(PortSession session, byte[] frame, int offset, int packetLength) {
+    switch (VmcFrameDecoder.classify(frame, offset, packetLength)) {
+      case VmcFrameDecoder.FRAME_POLL:
+        onVmcPoll(session);
+        break;
+      case VmcFrameDecoder.FRAME_ACK:
+        onVmcAck(session);
+        break;
+      default:
+        onVmcResponse(session, frame, offset, packetLength);
+        break;
+    }
+  }
+
+  private void onVmcPoll(PortSession session) {
+    boolean debug = session.vmcDebug;
+    synchronized (session.commandQueue) {
+      expireVmcCommands(session, PendingCommand.now());
+      if (!session.commandQueue.isEmpty()) {
+        PendingCommand head = session.commandQueue.peek(); // peek first to check
+        byte[] response = head.packet;
+
+        long now = System.currentTimeMillis();
+        if (now - session.lastVmcCommandEnqueueTime > VMC_STUCK_TIMEOUT_MS) {
+          Log.w(TAG, "VMC command stuck >10s → dropping it (safety timeout). "
+            + "Command: " + bytesToHex(response, response.length)
+            + ", Queue size was: " + session.commandQueue.size());
+          session.commandQueue.poll();
+          head.expire();
+          session.lastVmcCommandEnqueueTime = 0;
+        } else {
+          // Normal send
+          session.commandQueue.poll(); // now remove it
+          byte[] toSend = head.packet;
+          if (head.deadline != PendingCommand.NO_DEADLINE) {
+            session.vmcAwaiting.add(head); // someone waits for the ACK / expected frame
+          }
+          String toSendHex = bytesToHex(toSend, toSend.length);
+          if (debug) Log.d(TAG, "POLL received, sending command: " + toSendHex);
+
+          // Handed to the writer → reset stuck timer
+          session.lastVmcCommandEnqueueTime = 0;
+          session.writeSerial(toSend).whenComplete((ignored, error) -> {
+            if (error != null) {
+              // For safety: drop it after failure (prevents re-try loop)
+              Log.e(TAG, "Failed to send VMC command: " + error.getMessage());
+              head.fail(new IOException("Failed to send VMC command", error));
+              return;
+            }
+            bridge.emit("serialWriteSuccess", sessionEvent(session).put("data", toSendHex));
+            if (debug) Log.d(TAG, "Command sent successfully → timeout timer reset");
+          });
+        }
+      } else {
+        if (debug) Log.d(TAG, "POLL received, sending ACK: " + VMC_ACK_HEX);
+        session.writeSerial(VMC_ACK_FRAME).thenRun(() ->
+          bridge.emit("serialWriteSuccess", sessionEvent(session).put("data", VMC_ACK_HEX)));
+      }
+    }
+  }
+
+  private void onVmcAck(PortSession session) {
+    synchronized (session.commandQueue) {
+      completeVmcCommand(session, VmcFrameDecoder.CMD_ACK, VMC_ACK_FRAME);
+      if (!session.commandQueue.isEmpty()) {
+        if (session.vmcDebug) Log.d(TAG, "ACK received, dequeued command: " + VMC_ACK_HEX);
+        JSObject ackEvent = sessionEvent(session);
+        ackEvent.put("data", VMC_ACK_HEX);
+        bridge.emit("commandAcknowledged", ackEvent);
+      }
+    }
+  }
+
+  private void onVmcResponse(PortSession session, byte[] frame, int offset, int packetLength) {
+    boolean debug = session.vmcDebug;
+    synchronized (session.commandQueue) {
+      completeVmcCommand(session, frame[offset + 2] & 0xFF, frame, offset, packetLength);
+    }
+    if (debug || hasListeners("dataReceived")) {
+      String packetHex = bytesToHex(frame, offset, packetLength);
+      if (debug) Log.d(TAG, "Response received: " + packetHex);
+      JSObject dataEvent = sessionEvent(session);
+      dataEvent.put("data", packetHex);
+      bridge.emit("dataReceived", dataEvent);
+    }
+
+    if (debug) Log.d(TAG, "Sending ACK: " + VMC_ACK_HEX);
+    session.writeSerial(VMC_ACK_FRAME);
+  }
+
+  /** Completes the oldest sent VMC command answered by a frame with this command byte. Caller holds the session's commandQueue. */
+  private void completeVmcCommand(PortSession session, int responseCommand, byte[] frame) {
+    completeVmcCommand(session, responseCommand, frame, 0, frame.length);
+  }
+
+  private void completeVmcCommand(PortSession session, int responseCommand, byte[] frame, int offset, int length) {
+    List<PendingCommand> vmcAwaiting = session.vmcAwaiting;
+    for (int i = 0; i < vmcAwaiting.size(); i++) {
+      PendingCommand pending = vmcAwaiting.get(i);
+      // By default a VMC command is answered by its ACK
+      if (pending.matches(responseCommand, VmcFrameDecoder.CMD_ACK)) {
+        vmcAwaiting.remove(i);
+        // The frame is a view into the decoder's ring buffer
+        pending.complete(Arrays.copyOfRange(frame, offset, offset + length));
+        return;
+      }
+    }
+  }
+
+  /** Fails queued or sent VMC commands past their deadline. Caller holds the session's commandQueue. */
+  private void expireVmcCommands(PortSession session, long now) {
+    session.vmcAwaiting.removeIf(pending -> pending.isExpired(now) && pending.expire());
+    session.commandQueue.removeIf(pending -> pending.isExpired(now) && pending.expire());
+  }
+
+  /** Default for {@code timeout} when a write call sets {@code awaitResponse} */
+  private static final long DEFAULT_RESPONSE_TIMEOUT_MS = 10000;
+
+  /**
+   * Wraps a packet with the call's correlation options:
+   * {@code awaitResponse}, {@code timeout} (ms) and {@code expectCommand} (hex command byte of the answer).
+   */
+  private PendingCommand newPendingCommand(PluginCall call, byte[] packet) {
+    boolean await = call.getBoolean("awaitResponse", false);
+    long timeoutMs = call.getInt("timeout", await ? (int) DEFAULT_RESPONSE_TIMEOUT_MS : 0);
+    String expect = call.getString("expectCommand");
+    int expected = expect != null && !expect.isEmpty() ? Integer.parseInt(expect, 16) : PendingCommand.ANY_RESPONSE;
+    return new PendingCommand(packet, timeoutMs, expected);
+  }
+
+  /** Resolves now, or with the response frame when the call asked to await it */
+  private void resolveWrite(PluginCall call, PendingCommand pending, JSObject queued) {
+    if (!call.getBoolean("awaitResponse", false)) {
+      call.resolve(queued);
       return;
     }
+    pending.response.whenComplete((frame, error) -> {
+      if (error != null) {
+        if (error instanceof TimeoutException) {
+          call.reject("Timed out waiting for response to command " + pending.id, "TIMEOUT");
+        } else {
+          call.reject(error.getMessage() != null ? error.getMessage() : error.toString());
+        }
+        return;
+      }
+      JSObject ret = new JSObject();
+      ret.put("id", pending.id);
+      ret.put("data", bytesToHex(pending.packet, pending.packet.length));
+      ret.put("response", bytesToHex(frame, frame.length));
+      call.resolve(ret);
+    });
+  }
 
-    isReading = true;
-    JSObject ret = new JSObject();
+  @PluginMethod
+  public void startReading(PluginCall call) {
+    PortSession session = nativeSessionFor(call);
+    if (session == null) return;
+
+    session.reading = true;
+    JSObject ret = sessionEvent(session);
     ret.put("message", "Reading started");
     notifyListeners("readingStarted", ret);
     call.resolve(ret);
 
-    new Thread(() -> {
-      byte[] buffer = new byte[1024];
-      String lastSentData = null;
-      long lastSentTime = 0;
-      long debounceInterval = 100;
-
-      while (isReading) {
-        synchronized (this) {
-          if (serialPort == null) {
-            Log.w(TAG, "Serial port closed, stopping read thread");
-            break;
-          }
-          try {
-            int available = serialPort.getInputStream().available();
-            if (available > 0) {
-              int len = serialPort.getInputStream().read(buffer, 0, Math.min(available, buffer.length));
-              if (len > 0) {
-                String receivedData = bytesToHex(buffer, len);
-                long currentTime = System.currentTimeMillis();
-
-                if (!receivedData.equals(lastSentData) && (currentTime - lastSentTime >= debounceInterval)) {
-                  JSObject dataEvent = new JSObject();
-                  dataEvent.put("data", receivedData);
-                  notifyListeners("dataReceived", dataEvent);
-                  lastSentData = receivedData;
-                  lastSentTime = currentTime;
-                }
-              }
-            } else {
-              Thread.sleep(10);
-            }
-          } catch (Exception e) {
-            if (isReading) Log.e(TAG, "Serial read error: " + e.getMessage());
-          }
+    long debounceInterval = 100;
+    startReadLoop(call, session, "Reader", new SerialReactor.Handler() {
+      private String lastSentData;
+      private long lastSentTime;
+
+      @Override
+      public void onData(byte[] data, int len) {
+        String receivedData = bytesToHex(data, len);
+        long currentTime = System.currentTimeMillis();
+
+        if (!receivedData.equals(lastSentData) && (currentTime - lastSentTime >= debounceInterval)) {
+          JSObject dataEvent = sessionEvent(session);
+          dataEvent.put("data", receivedData);
+          bridge.emit("dataReceived", dataEvent);
+          lastSentData = receivedData;
+          lastSentTime = currentTime;
         }
       }
-    }).start();
+    });
   }
 
+  /** Stops the session named by {@code sessionId}, or every session's read loop when none is named */
   @PluginMethod
   public void stopReading(PluginCall call) {
     Log.d(TAG, "stopReading invoked: " + call.getData().toString());
-    isReading = false;
+    String sessionId = call.getString("sessionId");
     JSObject ret = new JSObject();
+    if (sessionId != null) {
+      PortSession session = sessionFor(call);
+      if (session == null) return;
+      session.stopReading(); // also releases a read loop blocked waiting for bytes
+      ret.put("sessionId", session.id);
+    } else {
+      for (PortSession session : ports.all()) session.stopReading();
+    }
     ret.put("message", "Reading stopped");
     notifyListeners("readingStopped", ret);
     call.resolve(ret);
   }
 
+  /**
+   * Batches and filters the high-rate events (dataReceived, serialWriteSuccess,
+   * usbWriteSuccess, commandAcknowledged). With batching on they arrive as one
+   * eventBatch every intervalMs or maxEvents. A suppress list, when given,
+   * replaces the current filters.
+   */
+  @PluginMethod
+  public void setEventBatching(PluginCall call) {
+    boolean enabled = call.getBoolean("enabled", true);
+    int intervalMs = call.getInt("intervalMs", (int) BridgeEmitter.DEFAULT_INTERVAL_MS);
+    int maxEvents = call.getInt("maxEvents", BridgeEmitter.DEFAULT_MAX_EVENTS);
+
+    JSArray suppress = call.getArray("suppress");
+    if (suppress != null) {
+      // Check every entry first, so a bad one leaves the current filters in place
+      for (int i = 0; i < suppress.length(); i++) {
+        JSONObject filter = suppress.optJSONObject(i);
+        if (filter == null || !filter.has("event")) {
+          call.reject("Each suppress entry needs an event name");
+          return;
+        }
+      }
+      bridge.clearFilters();
+      for (int i = 0; i < suppress.length(); i++) {
+        JSONObject filter = suppress.optJSONObject(i);
+        bridge.suppress(filter.optString("event"), filter.has("data") ? filter.optString("data") : null);
+      }
+    }
+    bridge.setBatching(enabled, intervalMs, maxEvents);
+
+    JSObject ret = new JSObject();
+    ret.put("enabled", bridge.isBatching());
+    ret.put("intervalMs", bridge.getIntervalMs());
+    ret.put("maxEvents", bridge.getMaxEvents());
+    call.resolve(ret);
+  }
+
+  /**
+   * Closes the session named by {@code sessionId}. Without one, closes every
+   * session and the NV9 link.
+   */
   @RequiresApi(api = Build.VERSION_CODES.N)
   @PluginMethod
   public void close(PluginCall call) {
     Log.d(TAG, "close() called");
 
-    synchronized (this) {
+    String sessionId = call != null ? call.getString("sessionId") : null;
+    if (sessionId != null) {
+      PortSession session = sessionFor(call);
+      if (session == null) return;
+      closeSession(session);
+      JSObject ret = new JSObject();
+      ret.put("success", true);
+      ret.put("sessionId", session.id);
+      ret.put("message", "Serial connection " + session.id + " closed");
+      call.resolve(ret);
+      return;
+    }
+
+    closeNV9();
+    for (PortSession session : ports.all()) {
+      closeSession(session);
+    }
+    Log.d(TAG, "All connections closed successfully");
+
+    if (call != null) {
+      JSObject ret = new JSObject();
+      ret.put("success", true);
+      ret.put("message", "All serial connections closed");
+      call.resolve(ret);
+    }
+  }
+
+  /** Closes the NV9 validator link: SSP, its polling and its USB port */
+  private void closeNV9() {
+    synchronized (nv9Lock) {
       // Let SSP handle all its internal cleanup (USB + native + polling)
       if (sspDevice != null) {
         try {
@@ -2000,16 +2368,7 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
         sspDevice = null;
       }
 
-      // Extra safety: close ports directly in case SSP missed something
-      if (serialPort != null) {
-        try {
-          serialPort.close();
-        } catch (Exception e) {
-          Log.w(TAG, "Error closing native serialPort");
-        }
-        serialPort = null;
-      }
-
+      // Extra safety: close the port directly in case SSP missed something
       if (usbSerialPort != null) {
         try {
           usbSerialPort.close();
@@ -2021,15 +2380,6 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
       pendingPermissionCall = null;
       pendingUSBDevice = null;
-
-      Log.d(TAG, "All connections closed successfully");
-    }
-
-    if (call != null) {
-      JSObject ret = new JSObject();
-      ret.put("success", true);
-      ret.put("message", "All serial connections closed");
-      call.resolve(ret);
     }
   }
 
@@ -2039,12 +2389,7 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
 
   private byte[] hexStringToByteArray(String s) {
-    int len = s.length();
-    byte[] data = new byte[len / 2];
-    for (int i = 0; i < len; i += 2) {
-      data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) + Character.digit(s.charAt(i + 1), 16));
-    }
-    return data;
+    return Hex.decode(s);
   }
 
   private String bytesToHex(byte[] bytes, int length) {
@@ -2052,11 +2397,11 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       Log.w(TAG, "Invalid bytesToHex input: bytes=" + (bytes == null ? "null" : "empty") + ", length=" + length);
       return "";
     }
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < length; i++) {
-      sb.append(String.format("%02x", bytes[i]));
-    }
-    return sb.toString();
+    return bytesToHex(bytes, 0, length);
+  }
+
+  private String bytesToHex(byte[] bytes, int offset, int length) {
+    return Hex.encode(bytes, offset, length);
   }
 
   private byte calculateXOR(byte[] data, int length) {
@@ -2069,11 +2414,7 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
 
   private String bytesToHex(byte[] bytes) {
-    StringBuilder sb = new StringBuilder();
-    for (byte b : bytes) {
-      sb.append(String.format("%02x", b));
-    }
-    return sb.toString();
+    return Hex.encode(bytes);
   }
 
 
@@ -2187,9 +2528,50 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       default: return 4;    // Minimum length
     }
   }
-  // Add these class variables for ADH814
-  private volatile boolean isProcessingADH814 = false;
-  private volatile int adh814CurrentStatus = 0; // 0=idle, 1=delivering, 2=delivery end
+  /** The ADH814 scheduler callbacks for one session; each session gets its own scheduler */
+  private Adh814Scheduler.Callbacks adh814Callbacks(PortSession session) {
+    return new Adh814Scheduler.Callbacks() {
+      @Override
+      public void send(byte[] command, int attempt) {
+        String cmdHex = bytesToHex(command, command.length);
+        Log.d(TAG, "Sending ADH814 command: " + cmdHex + (attempt > 1 ? " (attempt " + attempt + ")" : ""));
+        session.writeSerial(command).whenComplete((ignored, error) -> {
+          if (error != null) {
+            Log.e(TAG, "Error sending ADH814 command: " + error.getMessage());
+            return;
+          }
+          JSObject writeEvent = sessionEvent(session);
+          writeEvent.put("data", cmdHex);
+          writeEvent.put("command", String.format("%02X", command[1] & 0xFF));
+          bridge.emit("serialWriteSuccess", writeEvent);
+        });
+      }
+
+      @Override
+      public byte[] buildPoll() throws Exception {
+        Log.d(TAG, "Forced POLL because status = " + session.adh814Scheduler.getMotorStatus());
+        return buildADH814Packet("A3", new JSObject());
+      }
+
+      @Override
+      public void onCommandTimeout(PendingCommand pending) {
+        byte[] command = pending.packet;
+        String cmdHex = bytesToHex(command, command.length);
+        Log.w(TAG, "ADH814 command unanswered after " + Adh814Scheduler.MAX_ATTEMPTS + " attempts → dropping it: " + cmdHex);
+        JSObject timeoutEvent = sessionEvent(session);
+        timeoutEvent.put("data", cmdHex);
+        timeoutEvent.put("id", pending.id);
+        timeoutEvent.put("command", String.format("%02X", command[1] & 0xFF));
+        notifyListeners("adh814CommandTimeout", timeoutEvent);
+      }
+
+      @Override
+      public void onRunDropped(PendingCommand command, int motorStatus) {
+        Log.w(TAG, "RUN command blocked by motor status " + motorStatus + " for >"
+          + Adh814Scheduler.RUN_BLOCKED_TIMEOUT_MS + "ms → dropping it");
+      }
+    };
+  }
 
   @PluginMethod
   public void writeADH814(PluginCall call) {
@@ -2199,6 +2581,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       call.reject("Data required");
       return;
     }
+    PortSession session = sessionFor(call);
+    if (session == null) return;
 
     try {
       JSObject jsonData = new JSObject(data);
@@ -2210,198 +2594,66 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       }
 
       byte[] packet = buildADH814Packet(command, params);
+      PendingCommand pending = newPendingCommand(call, packet);
 
-      synchronized (commandQueue) {
-        commandQueue.add(packet);
-        Log.d(TAG, "Queued ADH814 command: " + bytesToHex(packet, packet.length));
-      }
+      session.adh814Scheduler.submit(pending);
+      Log.d(TAG, "Queued ADH814 command on " + session.id + ": " + bytesToHex(packet, packet.length));
 
       // Start processing if not already running
-      if (!isProcessingADH814) {
-        startADH814CommandProcessing();
-      }
+      session.adh814Scheduler.start();
 
-      JSObject ret = new JSObject();
+      JSObject ret = sessionEvent(session);
       ret.put("message", "ADH814 command queued");
       ret.put("data", bytesToHex(packet, packet.length));
+      ret.put("id", pending.id);
       notifyListeners("commandQueued", ret);
-      call.resolve(ret);
+      resolveWrite(call, pending, ret);
     } catch (Exception e) {
       call.reject("Failed to parse data or build ADH814 packet: " + e.getMessage());
     }
   }
 
-  private volatile long lastForcedPollTime = 0;
-  private long lastRunAttemptTime = 0;
-  private void startADH814CommandProcessing() {
-    if (isProcessingADH814) {
-      return;
-    }
+  @PluginMethod
+  public void startReadingADH814(PluginCall call) {
+    Log.d(TAG, "startReadingADH814 invoked: " + call.getData().toString());
+    PortSession session = nativeSessionFor(call);
+    if (session == null) return;
 
-    isProcessingADH814 = true;
-    new Thread(() -> {
-      Log.d(TAG, "ADH814 command processor started");
+    clearInput(session);
 
-      while (isProcessingADH814 && isReading) {
-        synchronized (this) {
-          if (serialPort == null) {
-            Log.w(TAG, "Serial port closed, stopping ADH814 processor");
-            isProcessingADH814 = false;
-            break;
-          }
+    session.reading = true;
+    JSObject ret = sessionEvent(session);
+    ret.put("message", "ADH814 reading started");
+    notifyListeners("readingStarted", ret);
+    call.resolve(ret);
 
-          try {
-            synchronized (commandQueue) {
-              if (!commandQueue.isEmpty()) {
-                byte[] command = commandQueue.peek();
-                if (command != null && command.length >= 2) {
-                  int commandCode = command[1] & 0xFF;
-
-                  // Check if we can send RUN command based on current status
-                  if (commandCode == 0xA5 && adh814CurrentStatus != 0) {
-                    Log.d(TAG, "Cannot send RUN command - motor status: " + adh814CurrentStatus);
-
-                    // Safety: if stuck > 20 seconds → drop it
-                    if (System.currentTimeMillis() - lastRunAttemptTime > 4000) {
-                      Log.w(TAG, "RUN command stuck >5s → dropping it");
-                      commandQueue.poll();           // remove the stuck command
-                      adh814CurrentStatus = 0;       // optimistic reset
-                      lastRunAttemptTime = 0;
-                    } else {
-                      lastRunAttemptTime = System.currentTimeMillis();
-                    }
-
-                    continue;
-                  }
-
-                  // Send the command
-                  String cmdHex = bytesToHex(command, command.length);
-                  Log.d(TAG, "Sending ADH814 command: " + cmdHex);
-                  serialPort.getOutputStream().write(command);
-                  serialPort.getOutputStream().flush();
-
-                  JSObject writeEvent = new JSObject();
-                  writeEvent.put("data", cmdHex);
-                  writeEvent.put("command", String.format("%02X", commandCode));
-                  notifyListeners("serialWriteSuccess", writeEvent);
-
-                  // Wait for response based on command type
-                  if (commandCode == 0xA5) { // RUN command
-                    Thread.sleep(2200); // Wait longer for RUN
-                  } else {
-                    Thread.sleep(300); // Wait for other commands
-                  }
-                }
-              } else {
-                // Queue is empty, send periodic POLL
-                if (adh814CurrentStatus != 0) {
-                  long now = System.currentTimeMillis();
-                  if (now - lastForcedPollTime >= 800) {  // poll every ~800 ms max
-                    try {
-                      byte[] pollCmd = buildADH814Packet("A3", new JSObject());
-                      synchronized (commandQueue) {
-                        commandQueue.add(pollCmd);  // add to the END of queue
-                      }
-                      lastForcedPollTime = now;
-                      Log.d(TAG, "Forced POLL because status = " + adh814CurrentStatus);
-                    } catch (Exception e) {
-                      Log.e(TAG, "Failed to queue forced POLL", e);
-                    }
-                  }
-                }
-              }
-            }
-          } catch (IOException e) {
-            Log.e(TAG, "Error sending ADH814 command: " + e.getMessage());
-          } catch (InterruptedException e) {
-            Log.w(TAG, "ADH814 processor interrupted");
-            break;
-          } catch (Exception e) {
-            Log.e(TAG, "Unexpected error in ADH814 processor: " + e.getMessage());
-          }
-        }
+    startReadLoop(call, session, "ADH814", (data, len) -> {
+      Log.d(TAG, "ADH814 received " + len + " bytes: " + bytesToHex(data, len));
 
-        try {
-          Thread.sleep(50); // Main loop delay
-        } catch (InterruptedException e) {
-          break;
-        }
-      }
+      // Process received data
+      processADH814Data(session, data, len);
 
-      isProcessingADH814 = false;
-      Log.d(TAG, "ADH814 command processor stopped");
-    }).start();
+      // Notify raw data
+      JSObject dataEvent = sessionEvent(session);
+      dataEvent.put("data", bytesToHex(data, len));
+      bridge.emit("dataReceived", dataEvent);
+    });
   }
 
-  @PluginMethod
-  public void startReadingADH814(PluginCall call) {
-    Log.d(TAG, "startReadingADH814 invoked: " + call.getData().toString());
-    if (serialPort == null) {
-      call.reject("No serial connection open");
-      return;
-    }
-
-    // Clear input buffer
+  /** Drops whatever the port buffered before a read loop starts */
+  private void clearInput(PortSession session) {
     try {
-      int available = serialPort.getInputStream().available();
+      int available = session.serialPort.getInputStream().available();
       if (available > 0) {
-        serialPort.getInputStream().skip(available);
+        session.serialPort.getInputStream().skip(available);
         Log.d(TAG, "Cleared " + available + " bytes from input buffer");
       }
     } catch (IOException e) {
       Log.w(TAG, "Failed to clear input buffer: " + e.getMessage());
     }
-
-    isReading = true;
-    JSObject ret = new JSObject();
-    ret.put("message", "ADH814 reading started");
-    notifyListeners("readingStarted", ret);
-    call.resolve(ret);
-
-    // Start reading thread
-    new Thread(() -> {
-      Log.d(TAG, "ADH814 reading thread started");
-      byte[] buffer = new byte[1024];
-      ByteArrayOutputStream packetBuffer = new ByteArrayOutputStream();
-
-      while (isReading) {
-        try {
-          synchronized (this) {
-            if (serialPort == null) {
-              Log.w(TAG, "Serial port closed, stopping ADH814 read thread");
-              break;
-            }
-
-            int available = serialPort.getInputStream().available();
-            if (available > 0) {
-              int len = serialPort.getInputStream().read(buffer, 0, Math.min(available, buffer.length));
-              if (len > 0) {
-                Log.d(TAG, "ADH814 received " + len + " bytes: " + bytesToHex(buffer, len));
-
-                // Process received data
-                processADH814Data(buffer, len);
-
-                // Notify raw data
-                JSObject dataEvent = new JSObject();
-                dataEvent.put("data", bytesToHex(buffer, len));
-                notifyListeners("dataReceived", dataEvent);
-              }
-            }
-          }
-
-          Thread.sleep(10);
-        } catch (Exception e) {
-          if (isReading) {
-            Log.e(TAG, "ADH814 read error: " + e.getMessage());
-          }
-        }
-      }
-
-      Log.d(TAG, "ADH814 reading thread stopped");
-    }).start();
   }
 
-  private void processADH814Data(byte[] data, int length) {
+  private void processADH814Data(PortSession session, byte[] data, int length) {
     if (length < 4) {
       return; // Not enough data for a complete packet
     }
@@ -2409,9 +2661,9 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     try {
       // Try to parse each possible packet starting position
       for (int i = 0; i <= length - 4; i++) {
-        JSObject response = parseADH814Response(data, i, length);
+        JSObject response = parseADH814Response(session, data, i, length);
         if (response != null) {
-          handleADH814Response(response);
+          handleADH814Response(session, response);
           break; // Process one packet at a time
         }
       }
@@ -2420,7 +2672,7 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     }
   }
 
-  private JSObject parseADH814Response(byte[] buffer, int start, int totalLength) {
+  private JSObject parseADH814Response(PortSession session, byte[] buffer, int start, int totalLength) {
     if (totalLength - start < 4) {
       return null;
     }
@@ -2439,15 +2691,14 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     System.arraycopy(buffer, start, packet, 0, packetLength);
 
     // Verify CRC
-    byte[] dataBytes = Arrays.copyOfRange(packet, 0, packetLength - 2);
     int receivedCRC = ((packet[packetLength - 1] & 0xFF) << 8) | (packet[packetLength - 2] & 0xFF);
-    int calculatedCRC = calculateCRCResponse(dataBytes);
+    int calculatedCRC = calculateCRCResponse(packet, 0, packetLength - 2);
 
-    JSObject response = new JSObject();
+    JSObject response = sessionEvent(session);
     response.put("address", address);
     response.put("command", String.format("%02X", command));
     response.put("data", bytesToHex(packet, packetLength));
-    response.put("rawData", bytesToHex(dataBytes, dataBytes.length));
+    response.put("rawData", bytesToHex(packet, 0, packetLength - 2));
 
     if (receivedCRC != calculatedCRC) {
       response.put("crcError", true);
@@ -2455,12 +2706,12 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     }
 
     // Parse response data based on command
-    parseADH814ResponseData(response, packet, packetLength);
+    parseADH814ResponseData(session, response, packet, packetLength);
 
     return response;
   }
 
-  private void parseADH814ResponseData(JSObject response, byte[] packet, int packetLength) {
+  private void parseADH814ResponseData(PortSession session, JSObject response, byte[] packet, int packetLength) {
     int command = Integer.parseInt(response.getString("command"), 16);
 
     switch (command) {
@@ -2478,14 +2729,13 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
           response.put("statusDetails", statusDetails);
 
           // Update current status
-          adh814CurrentStatus = packet[2] & 0xFF;
-          if (adh814CurrentStatus == 2) {
+          int motorStatus = packet[2] & 0xFF;
+          session.adh814Scheduler.motorStatusChanged(motorStatus);
+          if (motorStatus == 2) {
             Log.i(TAG, "Poll shows delivery ended (status=2) → auto-queuing ACK");
             try {
               byte[] ackCmd = buildADH814Packet("A6", new JSObject());
-              synchronized (commandQueue) {
-                commandQueue.add(ackCmd);  // add to end
-              }
+              session.adh814Scheduler.submit(new PendingCommand(ackCmd));  // add to end
             } catch (Exception e) {
               Log.e(TAG, "Failed to auto-queue ACK", e);
             }
@@ -2510,35 +2760,30 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     }
   }
 
-  private void handleADH814Response(JSObject response) {
+  private void handleADH814Response(PortSession session, JSObject response) {
     String command = response.getString("command");
     Log.d(TAG, "ADH814 response - Command: " + command + ", Data: " + response.getString("data"));
 
     switch (command) {
       case "A3": // POLL response
-        handleADH814PollResponse(response);
+        handleADH814PollResponse(session, response);
         break;
       case "A5": // RUN response
-        handleADH814RunResponse(response);
+        handleADH814RunResponse(session, response);
         break;
       case "A6": // ACK response
-        handleADH814AckResponse(response);
+        handleADH814AckResponse(session, response);
         break;
     }
 
     // Notify specific response
     notifyListeners("adh814Response", response);
 
-    // Remove the corresponding command from queue
-    synchronized (commandQueue) {
-      if (!commandQueue.isEmpty()) {
-        commandQueue.poll();
-        Log.d(TAG, "Removed command from queue after response");
-      }
-    }
+    // Completes the in-flight command and lets the scheduler send the next one
+    session.adh814Scheduler.responseReceived(Integer.parseInt(command, 16), Hex.decode(response.getString("data")));
   }
 
-  private void handleADH814PollResponse(JSObject response) {
+  private void handleADH814PollResponse(PortSession session, JSObject response) {
     if (response.has("statusDetails")) {
       JSObject statusDetails = response.getJSObject("statusDetails");
       int status = statusDetails.getInteger("status", 0);
@@ -2552,30 +2797,28 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
         Log.d(TAG, "Motor delivery complete, queuing ACK");
         try {
           byte[] ackCommand = buildADH814Packet("A6", new JSObject());
-          synchronized (commandQueue) {
-            commandQueue.add(ackCommand);
-            Log.d(TAG, "Queued ACK command after delivery complete");
-          }
+          session.adh814Scheduler.submit(new PendingCommand(ackCommand));
+          Log.d(TAG, "Queued ACK command after delivery complete");
         } catch (Exception e) {
           Log.e(TAG, "Failed to queue ACK command: " + e.getMessage());
         }
       }
 
       // Notify status update
-      JSObject statusEvent = new JSObject();
+      JSObject statusEvent = sessionEvent(session);
       statusEvent.put("status", status);
       statusEvent.put("statusDetails", statusDetails);
       notifyListeners("adh814Status", statusEvent);
     }
   }
 
-  private void handleADH814RunResponse(JSObject response) {
+  private void handleADH814RunResponse(PortSession session, JSObject response) {
     int executionStatus = response.getInteger("executionStatus", 0);
     Log.d(TAG, "ADH814 Run response - Execution Status: " + executionStatus);
 
     if (executionStatus == 0) {
       Log.d(TAG, "Motor run command accepted");
-      adh814CurrentStatus = 1; // Set to delivering
+      session.adh814Scheduler.motorStatusChanged(1); // Set to delivering
     } else {
       Log.w(TAG, "Motor run command failed with status: " + executionStatus);
     }
@@ -2583,9 +2826,9 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     notifyListeners("adh814RunResponse", response);
   }
 
-  private void handleADH814AckResponse(JSObject response) {
+  private void handleADH814AckResponse(PortSession session, JSObject response) {
     Log.d(TAG, "ADH814 ACK received");
-    adh814CurrentStatus = 0; // Reset to idle after ACK
+    session.adh814Scheduler.motorStatusChanged(0); // Reset to idle after ACK
     notifyListeners("adh814Ack", response);
   }
 
@@ -2602,35 +2845,19 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     }
   }
 
-  // CRC calculations as provided
+  // CRC calculations as provided (Modbus CRC-16, see Crc16)
   public static int calculateCRCResponse(byte[] data) {
-    int crc = 0xFFFF;
-    for (byte b : data) {
-      crc ^= (b & 0xFF);
-      for (int j = 0; j < 8; j++) {
-        if ((crc & 0x0001) != 0) {
-          crc = (crc >> 1) ^ 0xA001;
-        } else {
-          crc >>= 1;
-        }
-      }
-    }
+    return calculateCRCResponse(data, 0, data.length);
+  }
+
+  /** Modbus CRC of the range with its two bytes swapped */
+  public static int calculateCRCResponse(byte[] data, int offset, int length) {
+    int crc = Crc16.modbus(data, offset, length);
     return ((crc & 0xFF) << 8) | ((crc >> 8) & 0xFF);
   }
 
   public static int calculateCRCRequest(byte[] data) {
-    int crc = 0xFFFF;
-    for (byte b : data) {
-      crc ^= (b & 0xFF);
-      for (int j = 0; j < 8; j++) {
-        if ((crc & 0x0001) != 0) {
-          crc = (crc >> 1) ^ 0xA001;
-        } else {
-          crc >>= 1;
-        }
-      }
-    }
-    return crc;
+    return Crc16.modbus(data, 0, data.length);
   }
   private final Map<String, Integer> expectedResponseLengths = new ConcurrentHashMap<>();
   private volatile boolean isProcessingQueue = false;
@@ -2645,6 +2872,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
 
   // M102
 
+  // Also the re-send interval for an unanswered command (was 50ms post-write sleep + 60ms wait)
+  private static final int MT102_READ_WAIT_MS = 110;
   private final Map<String, Integer> expectedResponseLengthsMT102 = new ConcurrentHashMap<>();
   private volatile boolean isProcessingQueueMT102 = false;
   private volatile CountDownLatch responseLatchMT102 = null;
@@ -2659,6 +2888,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       call.reject("Data required");
       return;
     }
+    PortSession session = sessionFor(call);
+    if (session == null) return;
 
     try {
       JSObject jsonData = new JSObject(data);
@@ -2670,19 +2901,24 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       }
 
       byte[] packet = buildMT102Packet(command, params);
+      PendingCommand pending = newPendingCommand(call, packet);
 
-      synchronized (commandQueue) {
-        commandQueue.add(packet);
-        Log.d(TAG, "Queued MT102 command: " + bytesToHex(packet, packet.length));
-        Log.d(TAG, "Command queue size: " + commandQueue.size());
+      int queueSize;
+      synchronized (session.commandQueue) {
+        session.commandQueue.add(pending);
+        queueSize = session.commandQueue.size();
+        Log.d(TAG, "Queued MT102 command on " + session.id + ": " + bytesToHex(packet, packet.length));
+        Log.d(TAG, "Command queue size: " + queueSize);
       }
+      session.wakeup(); // send it now rather than after the current read wait
 
-      JSObject ret = new JSObject();
+      JSObject ret = sessionEvent(session);
       ret.put("message", "MT102 command queued");
       ret.put("data", bytesToHex(packet, packet.length));
-      ret.put("queueSize", commandQueue.size());
+      ret.put("queueSize", queueSize);
+      ret.put("id", pending.id);
       notifyListeners("commandQueued", ret);
-      call.resolve(ret);
+      resolveWrite(call, pending, ret);
 
     } catch (Exception e) {
       call.reject("Failed to parse data or build MT102 packet: " + e.getMessage());
@@ -2692,24 +2928,13 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
   @PluginMethod
   public void startReadingMT102(PluginCall call) {
     Log.d(TAG, "startReadingMT102 invoked: " + call.getData().toString());
-    if (serialPort == null) {
-      call.reject("No serial connection open");
-      return;
-    }
+    PortSession session = nativeSessionFor(call);
+    if (session == null) return;
 
-    // Clear input buffer
-    try {
-      int available = serialPort.getInputStream().available();
-      if (available > 0) {
-        serialPort.getInputStream().skip(available);
-        Log.d(TAG, "Cleared " + available + " bytes from input buffer");
-      }
-    } catch (IOException e) {
-      Log.w(TAG, "Failed to clear input buffer: " + e.getMessage());
-    }
+    clearInput(session);
 
-    isReading = true;
-    JSObject ret = new JSObject();
+    session.reading = true;
+    JSObject ret = sessionEvent(session);
     ret.put("message", "MT102 reading started");
     notifyListeners("readingStarted", ret);
 
@@ -2723,118 +2948,142 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
       byte[] buffer = new byte[1024];
       ByteArrayOutputStream packetBuffer = new ByteArrayOutputStream();
 
-      while (isReading) {
-        synchronized (this) {
-          if (serialPort == null) {
+      while (session.reading) {
+        SerialPort port = session.serialPort;
+        if (port == null) {
+          Log.w(TAG, "Serial port closed, stopping MT102 thread");
+          break;
+        }
+
+        try {
+          // Process command queue - send next command if available
+          processMT102CommandQueue(session);
+
+          // Wait for incoming data; the timeout lets an unanswered command's re-send come due
+          int len = port.read(buffer, 0, buffer.length, MT102_READ_WAIT_MS);
+          if (len < 0) {
             Log.w(TAG, "Serial port closed, stopping MT102 thread");
             break;
           }
-
-          try {
-            // Process command queue - send next command if available
-            processMT102CommandQueue();
-
-            // Read incoming data
-            int available = serialPort.getInputStream().available();
-            if (available > 0) {
-              int len = serialPort.getInputStream().read(buffer, 0, Math.min(available, buffer.length));
-              if (len > 0) {
-                Log.d(TAG, "MT102 received " + len + " bytes: " + bytesToHex(buffer, len));
-                packetBuffer.write(buffer, 0, len);
-                byte[] accumulated = packetBuffer.toByteArray();
-
-                // Process complete packets (20 bytes each for MT102)
-                int processedBytes = 0;
-                for (int i = 0; i <= accumulated.length - 20; i++) {
-                  byte[] packet = new byte[20];
-                  System.arraycopy(accumulated, i, packet, 0, 20);
-
-                  JSObject response = parseMT102Response(packet);
-                  if (response != null) {
-                    Log.d(TAG, "MT102 Response parsed: " + response.toString());
-                    handleMT102Response(response);
-                    processedBytes = i + 20;
-                  }
-                }
-
-                // Remove processed data from buffer
-                if (processedBytes > 0) {
-                  byte[] newAccumulated = new byte[accumulated.length - processedBytes];
-                  System.arraycopy(accumulated, processedBytes, newAccumulated, 0, newAccumulated.length);
-                  packetBuffer.reset();
-                  if (newAccumulated.length > 0) {
-                    packetBuffer.write(newAccumulated);
-                  }
-                }
+          if (len > 0) {
+            Log.d(TAG, "MT102 received " + len + " bytes: " + bytesToHex(buffer, len));
+            packetBuffer.write(buffer, 0, len);
+            byte[] accumulated = packetBuffer.toByteArray();
+
+            // Process complete, CRC-valid packets (20 bytes each for MT102); skip noise between them
+            int processedBytes = Mt102Frames.scan(accumulated, accumulated.length, (frame, offset) -> {
+              byte[] packet = Arrays.copyOfRange(frame, offset, offset + Mt102Frames.FRAME_LENGTH);
+              JSObject response = parseMT102Response(packet);
+              if (response != null) {
+                response.put("sessionId", session.id);
+                Log.d(TAG, "MT102 Response parsed: " + response.toString());
+                handleMT102Response(session, response, packet);
+              }
+            });
+
+            // Remove processed data from buffer
+            if (processedBytes > 0) {
+              byte[] newAccumulated = new byte[accumulated.length - processedBytes];
+              System.arraycopy(accumulated, processedBytes, newAccumulated, 0, newAccumulated.length);
+              packetBuffer.reset();
+              if (newAccumulated.length > 0) {
+                packetBuffer.write(newAccumulated);
               }
-            }
-          } catch (Exception e) {
-            if (isReading) {
-              Log.e(TAG, "MT102 read error: " + e.getMessage());
-              JSObject errorEvent = new JSObject();
-              errorEvent.put("error", "Read error: " + e.getMessage());
-              notifyListeners("readError", errorEvent);
             }
           }
-        }
-
-        try {
-          Thread.sleep(10);
-        } catch (InterruptedException e) {
-          break;
+        } catch (Exception e) {
+          if (session.reading) {
+            Log.e(TAG, "MT102 read error on " + session.id + ": " + e.getMessage());
+            JSObject errorEvent = sessionEvent(session);
+            errorEvent.put("error", "Read error: " + e.getMessage());
+            notifyListeners("readError", errorEvent);
+          }
         }
       }
 
       Log.d(TAG, "MT102 reading thread stopped");
-    }).start();
+    }, "MT102-" + session.id).start();
   }
 
   // Private helper methods for MT102
-  private void processMT102CommandQueue() {
+  private void processMT102CommandQueue(PortSession session) {
+    Queue<PendingCommand> commandQueue = session.commandQueue;
     synchronized (commandQueue) {
       if (commandQueue.isEmpty()) {
         return;
       }
 
       try {
-        byte[] command = commandQueue.peek();
-        if (command != null && serialPort != null) {
+        // Stop re-sending commands whose caller has given up
+        PendingCommand head;
+        while ((head = commandQueue.peek()) != null && head.isExpired(PendingCommand.now())) {
+          commandQueue.poll();
+          head.expire();
+          Log.w(TAG, "MT102 command " + head.id + " timed out");
+        }
+        if (head == null) {
+          return;
+        }
+
+        PendingCommand sending = head;
+        // The loop runs on every reply chunk; re-send an unanswered head only once
+        // MT102_READ_WAIT_MS has passed. A newly queued head goes out at once.
+        long now = PendingCommand.now();
+        if (sending == session.mt102LastSent && now - session.mt102LastSendTime < MT102_READ_WAIT_MS) {
+          return;
+        }
+        byte[] command = sending.packet;
+        SerialWriter writer = session.serialWriter;
+        // Don't stack re-sends behind a write that hasn't gone out yet
+        if (writer != null && writer.pending() == 0) {
+          session.mt102LastSent = sending;
+          session.mt102LastSendTime = now;
           String cmdHex = bytesToHex(command, command.length);
           Log.d(TAG, "Sending MT102 command: " + cmdHex);
 
-          serialPort.getOutputStream().write(command);
-          serialPort.getOutputStream().flush();
-
-          JSObject writeEvent = new JSObject();
-          writeEvent.put("data", cmdHex);
-          writeEvent.put("queueSize", commandQueue.size() - 1);
-          notifyListeners("serialWriteSuccess", writeEvent);
-
-          Thread.sleep(50);
+          int queueSize = commandQueue.size() - 1;
+          writer.write(command).whenComplete((ignored, error) -> {
+            if (error != null) {
+              Log.e(TAG, "Error sending MT102 command: " + error.getMessage());
+              synchronized (commandQueue) {
+                if (commandQueue.peek() == sending) commandQueue.poll();
+              }
+              sending.fail(new IOException("Failed to send MT102 command", error));
+              return;
+            }
+            JSObject writeEvent = sessionEvent(session);
+            writeEvent.put("data", cmdHex);
+            writeEvent.put("queueSize", queueSize);
+            bridge.emit("serialWriteSuccess", writeEvent);
+          });
         }
       } catch (Exception e) {
         Log.e(TAG, "Error sending MT102 command: " + e.getMessage());
-        commandQueue.poll();
+        PendingCommand failed = commandQueue.poll();
+        if (failed != null) failed.fail(e);
       }
     }
   }
 
-  private void handleMT102Response(JSObject response) {
-    JSObject dataEvent = new JSObject();
+  private void handleMT102Response(PortSession session, JSObject response, byte[] packet) {
+    JSObject dataEvent = sessionEvent(session);
     dataEvent.put("data", response.getString("data"));
     dataEvent.put("command", response.getString("command"));
     dataEvent.put("address", response.getString("address"));
-    notifyListeners("dataReceived", dataEvent);
+    bridge.emit("dataReceived", dataEvent);
 
     notifyListeners("mt102Response", response);
 
+    Queue<PendingCommand> commandQueue = session.commandQueue;
     synchronized (commandQueue) {
-      if (!commandQueue.isEmpty()) {
-        byte[] removedCommand = commandQueue.poll();
+      PendingCommand removed = Mt102Frames.completeHead(commandQueue, packet);
+      if (removed != null) {
+        byte[] removedCommand = removed.packet;
         Log.d(TAG, "Removed command from queue, remaining: " + commandQueue.size());
 
-        JSObject queueEvent = new JSObject();
+        JSObject queueEvent = sessionEvent(session);
         queueEvent.put("queueSize", commandQueue.size());
+        queueEvent.put("id", removed.id);
         queueEvent.put("removedCommand", bytesToHex(removedCommand, removedCommand.length));
         notifyListeners("commandProcessed", queueEvent);
       }
@@ -2944,11 +3193,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     System.arraycopy(paddedData, 0, packet, 2, 16);
 
     // Calculate CRC16
-    byte[] dataForCRC = Arrays.copyOfRange(packet, 0, 18);
-    int crc = calculateM102CRC16(dataForCRC);
-
-    packet[18] = (byte) (crc & 0xFF);
-    packet[19] = (byte) ((crc >> 8) & 0xFF);
+    int crc = Crc16.modbus(packet, 0, 18);
+    Crc16.putLowFirst(crc, packet, 18);
 
     Log.d(TAG, "Built MT102 packet - Address: " + address +
       ", Command: " + String.format("%02X", cmdByte) +
@@ -2965,9 +3211,8 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     }
 
     // Verify CRC
-    byte[] dataForCRC = Arrays.copyOfRange(packet, 0, 18);
-    int calculatedCRC = calculateM102CRC16(dataForCRC);
-    int receivedCRC = ((packet[19] & 0xFF) << 8) | (packet[18] & 0xFF);
+    int calculatedCRC = Crc16.modbus(packet, 0, 18);
+    int receivedCRC = Crc16.getLowFirst(packet, 18);
 
     if (receivedCRC != calculatedCRC) {
       Log.w(TAG, "MT102 CRC mismatch: received 0x" + String.format("%04X", receivedCRC) +
@@ -3055,21 +3300,6 @@ public class SerialConnectionCapacitorPlugin extends Plugin {
     return response;
   }
 
-  private int calculateM102CRC16(byte[] data) {
-    int crc = 0xFFFF;
-    for (byte b : data) {
-      crc ^= (b & 0xFF);
-      for (int j = 0; j < 8; j++) {
-        if ((crc & 0x0001) != 0) {
-          crc = (crc >> 1) ^ 0xA001;
-        } else {
-          crc >>= 1;
-        }
-      }
-    }
-    return crc;
-  }
-
 
   // M102
 }
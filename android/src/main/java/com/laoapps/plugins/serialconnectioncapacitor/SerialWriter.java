@@ -0,0 +1,101 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Single-writer outbound queue for a serial port.
+ *
+ * One thread owns the port's OutputStream; everyone else (JS calls, read loops
+ * replying to POLL, command processors) only enqueues. The read side never takes
+ * a lock the writer needs and the writer never blocks the reader, so a write
+ * waits only for the bytes queued ahead of it.
+ */
+public class SerialWriter {
+
+  private static final class Entry {
+    final byte[] data;
+    final CompletableFuture<Void> done;
+
+    Entry(byte[] data, CompletableFuture<Void> done) {
+      this.data = data;
+      this.done = done;
+    }
+  }
+
+  private static final Entry STOP = new Entry(new byte[0], null);
+
+  private final OutputStream out;
+  private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+  private final Thread thread;
+  private volatile boolean closed = false;
+
+  public SerialWriter(OutputStream out, String name) {
+    this.out = out;
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Queues bytes for the port. The array must not be modified afterwards.
+   *
+   * @return completes once the bytes have been written and flushed
+   */
+  public CompletableFuture<Void> write(byte[] data) {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    if (closed) {
+      done.completeExceptionally(new IOException("Serial writer closed"));
+      return done;
+    }
+    Entry entry = new Entry(data, done);
+    queue.add(entry);
+    if (closed && queue.remove(entry)) {
+      done.completeExceptionally(new IOException("Serial writer closed"));
+    }
+    return done;
+  }
+
+  /** Number of writes waiting for the port */
+  public int pending() {
+    return queue.size();
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        Entry entry = queue.take();
+        if (entry == STOP) break;
+        try {
+          out.write(entry.data);
+          out.flush();
+          entry.done.complete(null);
+        } catch (IOException e) {
+          entry.done.completeExceptionally(e);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    Entry left;
+    while ((left = queue.poll()) != null) {
+      if (left != STOP) left.done.completeExceptionally(new IOException("Serial writer closed"));
+    }
+  }
+
+  /**
+   * Stops the writer thread. Writes already queued are failed rather than sent.
+   */
+  public void close() {
+    if (closed) return;
+    closed = true;
+    Entry left;
+    while ((left = queue.poll()) != null) {
+      left.done.completeExceptionally(new IOException("Serial writer closed"));
+    }
+    queue.add(STOP);
+  }
+}
@@ -0,0 +1,66 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-128 context for one negotiated SSP session key.
+ *
+ * Created once when the key is set. It holds an initialised encrypt and
+ * decrypt {@link Cipher} plus a single {@link SecureRandom} for packet
+ * padding. A POLL therefore costs one block operation instead of a provider
+ * lookup, a key schedule and an RNG seed. Encryption works in place on the
+ * caller's buffer.
+ *
+ * Only {@code SSP.initEncryption} sets a session key, and nothing calls it
+ * yet: the NV9 init runs unencrypted, so no production flow reaches this
+ * class until key exchange is wired into init.
+ *
+ * Not thread-safe: owned by the session's I/O thread.
+ */
+public final class SspCrypto {
+  public static final int BLOCK_SIZE = 16;
+  private static final String TRANSFORMATION = "AES/ECB/NoPadding";
+
+  private final byte[] key;
+  private final Cipher encryptCipher;
+  private final Cipher decryptCipher;
+  private final SecureRandom random = new SecureRandom();
+  private final byte[] paddingScratch = new byte[BLOCK_SIZE];
+
+  public SspCrypto(byte[] key) throws GeneralSecurityException {
+    this.key = key;
+    SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+    encryptCipher = Cipher.getInstance(TRANSFORMATION);
+    encryptCipher.init(Cipher.ENCRYPT_MODE, keySpec);
+    decryptCipher = Cipher.getInstance(TRANSFORMATION);
+    decryptCipher.init(Cipher.DECRYPT_MODE, keySpec);
+  }
+
+  /** Whether this context was built for exactly this key array */
+  public boolean isFor(byte[] key) {
+    return this.key == key;
+  }
+
+  /** Fills {@code length} bytes (less than one block) of {@code dest} with random padding */
+  public void pad(byte[] dest, int offset, int length) {
+    random.nextBytes(paddingScratch);
+    System.arraycopy(paddingScratch, 0, dest, offset, length);
+  }
+
+  /**
+   * Encrypts whole blocks in place.
+   *
+   * @param length a multiple of {@link #BLOCK_SIZE}
+   */
+  public void encrypt(byte[] buffer, int offset, int length) throws GeneralSecurityException {
+    encryptCipher.doFinal(buffer, offset, length, buffer, offset);
+  }
+
+  /** Decrypts whole blocks in place */
+  public void decrypt(byte[] buffer, int offset, int length) throws GeneralSecurityException {
+    decryptCipher.doFinal(buffer, offset, length, buffer, offset);
+  }
+}
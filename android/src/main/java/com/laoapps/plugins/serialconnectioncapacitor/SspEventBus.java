@@ -0,0 +1,262 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import android.util.Log;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.json.JSONObject;
+
+/**
+ * Delivers SSP events to any number of subscribers on a delivery thread of
+ * its own, so a slow listener never holds up the I/O thread.
+ *
+ * - {@link #publish} adds the event to a bounded lock-free queue and returns
+ *   at once.
+ * - A single delivery thread drains the queue in publish order. It starts on
+ *   demand and exits after {@link #IDLE_EXIT_MS} without events.
+ * - Subscribers to {@link #WILDCARD} get every event.
+ *
+ * When the queue is full, the {@link OverflowPolicy} decides what happens.
+ * The default, {@link OverflowPolicy#CALLER_RUNS}, never loses an event:
+ * credits must reach the app even when a listener stalls. A caller can opt
+ * into a dropping policy, and {@link #getDropped()} counts the events lost. {@link #getLate()}
+ * counts events delivered more than the late threshold after they were
+ * published.
+ */
+public class SspEventBus {
+  private static final String TAG = "SspEventBus";
+  public static final String WILDCARD = "*";
+  public static final int DEFAULT_CAPACITY = 256;
+  public static final long DEFAULT_LATE_THRESHOLD_MS = 100;
+  static final long IDLE_EXIT_MS = 30_000;
+
+  /** Receives published events */
+  public interface Listener {
+    void onEvent(String name, JSONObject data);
+  }
+
+  /** Handle for {@link #subscribe}; closing it unsubscribes */
+  public interface Subscription extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  /** What {@link #publish} does when the queue is full */
+  public enum OverflowPolicy {
+    /** Discard the oldest queued event to make room */
+    DROP_OLDEST,
+    /** Discard the event being published */
+    DROP_NEWEST,
+    /** Deliver the event on the publishing thread, ahead of the queue */
+    CALLER_RUNS
+  }
+
+  private static final class Envelope {
+    final String name;
+    final JSONObject data;
+    final long publishedNanos;
+
+    Envelope(String name, JSONObject data, long publishedNanos) {
+      this.name = name;
+      this.data = data;
+      this.publishedNanos = publishedNanos;
+    }
+  }
+
+  private final String threadName;
+  private final int capacity;
+  private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile Thread deliveryThread;
+  private volatile boolean parked;
+  private volatile boolean delivering;
+  private volatile OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+  private volatile long lateThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LATE_THRESHOLD_MS);
+
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong delivered = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong late = new AtomicLong();
+
+  public SspEventBus(String threadName) {
+    this(threadName, DEFAULT_CAPACITY);
+  }
+
+  public SspEventBus(String threadName, int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity < 1");
+    this.threadName = threadName;
+    this.capacity = capacity;
+  }
+
+  public void setOverflowPolicy(OverflowPolicy policy) {
+    this.overflowPolicy = policy;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /** Delivery delay above which an event counts as late */
+  public void setLateThreshold(long ms) {
+    this.lateThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ms));
+  }
+
+  /** Adds {@code listener} for {@code name} (case-insensitive), or for every event with {@link #WILDCARD} */
+  public Subscription subscribe(String name, Listener listener) {
+    String key = name.toUpperCase();
+    List<Listener> list = listeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>());
+    list.add(listener);
+    return () -> list.remove(listener);
+  }
+
+  /** Whether publishing {@code name} would reach anyone; lets callers skip building the event */
+  public boolean hasSubscribers(String name) {
+    return !isEmpty(listeners.get(name.toUpperCase())) || !isEmpty(listeners.get(WILDCARD));
+  }
+
+  private static boolean isEmpty(List<Listener> list) {
+    return list == null || list.isEmpty();
+  }
+
+  /**
+   * Queues {@code data} for delivery to the subscribers of {@code name}. Returns at
+   * once, unless the queue is full and the policy delivers on the caller's thread.
+   */
+  public void publish(String name, JSONObject data) {
+    String key = name.toUpperCase();
+    if (!hasSubscribers(key)) return;
+    published.incrementAndGet();
+    Envelope envelope = new Envelope(key, data, System.nanoTime());
+
+    while (true) {
+      int n = size.get();
+      if (n < capacity) {
+        if (!size.compareAndSet(n, n + 1)) continue;
+        queue.offer(envelope);
+        break;
+      }
+      switch (overflowPolicy) {
+        case DROP_NEWEST:
+          dropped.incrementAndGet();
+          return;
+        case CALLER_RUNS:
+          deliver(envelope);
+          return;
+        default: // DROP_OLDEST
+          if (queue.poll() != null) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+          }
+          // Retry: the freed slot may be taken by another publisher first
+      }
+    }
+    wakeDeliveryThread();
+  }
+
+  private void wakeDeliveryThread() {
+    if (running.compareAndSet(false, true)) {
+      Thread t = new Thread(this::deliveryLoop, threadName);
+      t.setDaemon(true);
+      deliveryThread = t;
+      t.start();
+    } else if (parked) {
+      LockSupport.unpark(deliveryThread);
+    }
+  }
+
+  private void deliveryLoop() {
+    long idleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IDLE_EXIT_MS);
+    while (true) {
+      // Set before the poll, so awaitIdle() never sees an empty queue while an event is in hand
+      delivering = true;
+      Envelope envelope = queue.poll();
+      if (envelope != null) {
+        size.decrementAndGet();
+        deliver(envelope);
+        delivering = false;
+        idleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IDLE_EXIT_MS);
+        continue;
+      }
+      delivering = false;
+
+      long idleNanos = idleDeadline - System.nanoTime();
+      if (idleNanos <= 0) {
+        running.set(false);
+        // A publish between the last poll and here saw running == true; take it over
+        if (queue.isEmpty() || !running.compareAndSet(false, true)) return;
+        continue;
+      }
+      parked = true;
+      if (queue.isEmpty()) {
+        LockSupport.parkNanos(this, idleNanos);
+      }
+      parked = false;
+    }
+  }
+
+  private void deliver(Envelope envelope) {
+    deliverTo(listeners.get(envelope.name), envelope);
+    deliverTo(listeners.get(WILDCARD), envelope);
+    delivered.incrementAndGet();
+    if (System.nanoTime() - envelope.publishedNanos > lateThresholdNanos) {
+      late.incrementAndGet();
+    }
+  }
+
+  private static void deliverTo(List<Listener> list, Envelope envelope) {
+    if (list == null) return;
+    for (Listener listener : list) {
+      try {
+        listener.onEvent(envelope.name, envelope.data);
+      } catch (RuntimeException e) {
+        Log.w(TAG, "SSP event listener for " + envelope.name + " failed", e);
+      }
+    }
+  }
+
+  /**
+   * Waits until every event published so far has been delivered.
+   *
+   * @return false on timeout
+   */
+  public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (size.get() > 0 || delivering) {
+      if (System.nanoTime() >= deadline) return false;
+      Thread.sleep(1);
+    }
+    return true;
+  }
+
+  /** Events waiting for delivery */
+  public int getQueued() {
+    return size.get();
+  }
+
+  public long getPublished() {
+    return published.get();
+  }
+
+  public long getDelivered() {
+    return delivered.get();
+  }
+
+  /** Events lost to the overflow policy */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /** Events delivered after more than the late threshold */
+  public long getLate() {
+    return late.get();
+  }
+}
@@ -0,0 +1,76 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass SSP frame encoder.
+ *
+ * Writes {@code [STX][SEQ][LEN][DATA...][CRC_LO][CRC_HI]} with byte stuffing
+ * (every 0x7F after STX is doubled) while it updates the CRC, so a frame
+ * costs one pass and one copy out of a reusable buffer. Frames for
+ * argument-less commands such as POLL and SYNC depend only on the sequence
+ * byte, so they are built once and shared.
+ *
+ * Not thread-safe: owned by the session's I/O thread.
+ */
+public final class SspFrameEncoder {
+  public static final byte STX = 0x7F;
+  /** Largest stuffed frame: STX plus every other byte doubled */
+  public static final int MAX_FRAME_LENGTH = 1 + 2 * (2 + 255 + 2);
+
+  private final byte[] out = new byte[MAX_FRAME_LENGTH];
+  // Index: command code << 1 | sequence bit; the slave ID part is checked on lookup
+  private final byte[][] templates = new byte[256 * 2][];
+
+  /**
+   * Encodes into {@code dest}, which needs room for {@link #MAX_FRAME_LENGTH} bytes
+   * in the worst case.
+   *
+   * @return frame length
+   */
+  public static int encode(byte seq, byte[] data, int offset, int length, byte[] dest, int destOffset) {
+    if (length > 255) {
+      throw new IllegalArgumentException("SSP payload too long: " + length);
+    }
+    int d = destOffset;
+    dest[d++] = STX;
+    int crc = Crc16.updateSsp(Crc16.SSP_SEED, seq);
+    d = put(dest, d, seq);
+    crc = Crc16.updateSsp(crc, (byte) length);
+    d = put(dest, d, (byte) length);
+    for (int i = offset, end = offset + length; i < end; i++) {
+      byte b = data[i];
+      crc = Crc16.updateSsp(crc, b);
+      d = put(dest, d, b);
+    }
+    d = put(dest, d, (byte) crc);
+    d = put(dest, d, (byte) (crc >>> 8));
+    return d - destOffset;
+  }
+
+  private static int put(byte[] dest, int d, byte b) {
+    dest[d++] = b;
+    if (b == STX) dest[d++] = STX;
+    return d;
+  }
+
+  /** A new array holding the frame for {@code data} */
+  public byte[] frame(byte seq, byte[] data, int offset, int length) {
+    int n = encode(seq, data, offset, length, out, 0);
+    return Arrays.copyOf(out, n);
+  }
+
+  /**
+   * The frame for a command without arguments. The returned array is shared
+   * between calls and must not be modified.
+   */
+  public byte[] template(byte seq, int commandCode) {
+    int index = (commandCode & 0xFF) << 1 | (seq & 0x80) >>> 7;
+    byte[] frame = templates[index];
+    if (frame == null || frame[1] != seq) {
+      frame = frame(seq, new byte[]{(byte) commandCode}, 0, 1);
+      templates[index] = frame;
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,63 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Duration of each phase of an SSP start-up (SYNC, HOST_PROTOCOL_VERSION...),
+ * for the timing breakdown reported with the INITIALIZED event.
+ */
+public class SspInitTimeline {
+
+  /** One finished phase */
+  public static final class Phase {
+    public final String name;
+    public final long durationMs;
+    public final int attempts;
+    public final boolean success;
+
+    Phase(String name, long durationMs, int attempts, boolean success) {
+      this.name = name;
+      this.durationMs = durationMs;
+      this.attempts = attempts;
+      this.success = success;
+    }
+  }
+
+  private final long startNanos = System.nanoTime();
+  private final List<Phase> phases = new ArrayList<>();
+
+  /** Records a phase that began at {@code phaseStartNanos} ({@link System#nanoTime}) and ends now */
+  public synchronized Phase record(String name, long phaseStartNanos, int attempts, boolean success) {
+    Phase phase = new Phase(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStartNanos), attempts, success);
+    phases.add(phase);
+    return phase;
+  }
+
+  public synchronized List<Phase> phases() {
+    return Collections.unmodifiableList(new ArrayList<>(phases));
+  }
+
+  /** Time since the timeline was created */
+  public long elapsedMs() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  /** {@code {totalMs, phases: [{name, ms, attempts, success}]}} */
+  public synchronized JSONObject toJson() throws JSONException {
+    JSONArray list = new JSONArray();
+    for (Phase phase : phases) {
+      list.put(new JSONObject()
+        .put("name", phase.name)
+        .put("ms", phase.durationMs)
+        .put("attempts", phase.attempts)
+        .put("success", phase.success));
+    }
+    return new JSONObject().put("totalMs", elapsedMs()).put("phases", list);
+  }
+}
@@ -0,0 +1,73 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Pre-generated key-exchange material (generator, modulus, host random).
+ *
+ * Finding three 64-bit primes takes a while on slow boards, and used to sit
+ * between a reconnect and the first encrypted command. The pool keeps a few
+ * tuples ready. {@link #take()} returns one at once and refills the pool on a
+ * background thread. Each tuple is handed out only once, so the host random
+ * is never reused across sessions. An empty pool generates inline, as
+ * before.
+ */
+public class SspKeyPool {
+  public static final int DEFAULT_CAPACITY = 2;
+
+  private static final SspKeyPool SHARED = new SspKeyPool(DEFAULT_CAPACITY, SSPUtils::generateKeys);
+
+  private final ArrayBlockingQueue<SSPUtils.Keys> ready;
+  private final Supplier<SSPUtils.Keys> generator;
+  private final AtomicBoolean refilling = new AtomicBoolean();
+  private final ExecutorService refiller = Executors.newSingleThreadExecutor(task -> {
+    Thread t = new Thread(task, "SSP-keys");
+    t.setDaemon(true);
+    t.setPriority(Thread.MIN_PRIORITY);
+    return t;
+  });
+
+  SspKeyPool(int capacity, Supplier<SSPUtils.Keys> generator) {
+    this.ready = new ArrayBlockingQueue<>(capacity);
+    this.generator = generator;
+  }
+
+  /** Pool shared by every SSP connection in the process */
+  public static SspKeyPool shared() {
+    return SHARED;
+  }
+
+  /** Starts filling the pool in the background; for when key exchange runs as part of SSP init */
+  public void prefill() {
+    if (ready.remainingCapacity() == 0 || !refilling.compareAndSet(false, true)) {
+      return;
+    }
+    refiller.execute(() -> {
+      try {
+        while (ready.remainingCapacity() > 0) {
+          if (!ready.offer(generator.get())) break;
+        }
+      } finally {
+        refilling.set(false);
+      }
+      // A take() may have come in after the last offer; keep the pool full
+      if (ready.remainingCapacity() > 0) prefill();
+    });
+  }
+
+  /** A fresh tuple: from the pool if one is ready, generated on the caller's thread otherwise */
+  public SSPUtils.Keys take() {
+    SSPUtils.Keys keys = ready.poll();
+    prefill();
+    return keys != null ? keys : generator.get();
+  }
+
+  /** Tuples ready now */
+  public int available() {
+    return ready.size();
+  }
+}
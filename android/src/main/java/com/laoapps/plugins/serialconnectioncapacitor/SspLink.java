@@ -0,0 +1,115 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request/response exchange with an SSP device.
+ *
+ * Writes a packet, then blocks in the transport's read until the parser
+ * yields a CRC-valid reply, and returns it at once. Reads go into one pooled
+ * buffer, and there is no idle sleep or fixed delay after the reply. The only
+ * wait is the configurable minimum gap between the end of one exchange and
+ * the next write.
+ *
+ * Not thread-safe: owned by the session's I/O thread.
+ */
+public class SspLink {
+  /** Default pause between a reply and the next command */
+  public static final long DEFAULT_MIN_COMMAND_GAP_MS = 20;
+
+  /** Byte-level access to the port */
+  public interface Transport {
+    void write(byte[] data) throws IOException;
+
+    /**
+     * Blocks until at least one byte arrives or {@code timeoutMs} passes.
+     *
+     * @return bytes read; 0 on timeout
+     */
+    int read(byte[] buffer, int timeoutMs) throws IOException;
+  }
+
+  private final byte[] readBuffer = new byte[1024];
+  // Reset whenever an exchange gives up, so a late reply can't complete later
+  private final SSPParser parser = new SSPParser();
+  private byte[] reply;
+  private int expectedSeq = -1; // SEQ/ID byte the reply must echo, -1 to accept any
+  private long staleReplies;
+  private final SSPParser.PacketSink firstPacket = (packet, length) -> {
+    if (reply != null) return;
+    if (expectedSeq >= 0 && (length < 2 || (packet[1] & 0xFF) != expectedSeq)) {
+      staleReplies++; // answer to an earlier command that timed out
+      return;
+    }
+    reply = Arrays.copyOf(packet, length);
+  };
+  private volatile long minCommandGapMs = DEFAULT_MIN_COMMAND_GAP_MS;
+  private long lastExchangeEndNanos = Long.MIN_VALUE;
+  private int lastBytesReceived;
+
+  public void setMinCommandGap(long ms) {
+    this.minCommandGapMs = Math.max(0, ms);
+  }
+
+  public long getMinCommandGap() {
+    return minCommandGapMs;
+  }
+
+  /** Bytes read during the last {@link #exchange}, valid or not */
+  public int lastBytesReceived() {
+    return lastBytesReceived;
+  }
+
+  /** Replies dropped because their SEQ byte did not match the command they arrived for */
+  public long staleReplies() {
+    return staleReplies;
+  }
+
+  /**
+   * Sends {@code packet} and waits for the reply.
+   *
+   * @return the first CRC-valid packet that echoes the command's SEQ/ID byte, or
+   *         null if none arrived within {@code timeoutMs}
+   */
+  public byte[] exchange(Transport transport, byte[] packet, long timeoutMs)
+    throws IOException, InterruptedException {
+    awaitGap();
+    reply = null;
+    lastBytesReceived = 0;
+    expectedSeq = packet.length > 1 && packet[0] == 0x7F ? packet[1] & 0xFF : -1;
+    boolean answered = false;
+    try {
+      transport.write(packet);
+
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      while (true) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) return null;
+        if (Thread.interrupted()) throw new InterruptedException();
+
+        int n = transport.read(readBuffer, (int) Math.min(remainingMs, Integer.MAX_VALUE));
+        if (n <= 0) continue;
+        lastBytesReceived += n;
+        parser.feed(readBuffer, 0, n, firstPacket);
+        if (reply != null) {
+          answered = true;
+          return reply;
+        }
+      }
+    } finally {
+      // Drop a half-received frame; its tail must not answer the next command
+      if (!answered) parser.reset();
+      lastExchangeEndNanos = System.nanoTime();
+      reply = null;
+    }
+  }
+
+  private void awaitGap() throws InterruptedException {
+    long gapMs = minCommandGapMs;
+    if (gapMs <= 0 || lastExchangeEndNanos == Long.MIN_VALUE) return;
+    long waitNanos = lastExchangeEndNanos + TimeUnit.MILLISECONDS.toNanos(gapMs) - System.nanoTime();
+    if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+  }
+}
@@ -0,0 +1,72 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+/**
+ * Decodes the events of a POLL reply into one reused {@link SspPollEvent},
+ * with no maps, boxing or JSON per event.
+ *
+ * Consumes bytes exactly as parseData always has: a channel byte after
+ * READ_NOTE, CREDIT_NOTE, NOTE_STACKED and FRAUD_ATTEMPT; position, 4-byte
+ * value and country code after NOTE_HELD_IN_BEZEL; nothing after the rest.
+ *
+ * Not thread-safe: one decoder per I/O thread.
+ */
+public class SspPollDecoder {
+
+  /** Receives each decoded event */
+  public interface Sink {
+    /** {@code event} is reused for the next one; {@link SspPollEvent#copy()} it to keep it */
+    void onEvent(SspPollEvent event);
+  }
+
+  private final SspPollEvent event = new SspPollEvent();
+
+  /**
+   * Decodes the events in {@code data[offset..offset+length)}: the POLL reply
+   * after its status byte.
+   *
+   * @return number of events delivered
+   */
+  public int decode(byte[] data, int offset, int length, Sink sink) {
+    int end = offset + length;
+    int count = 0;
+    int k = offset;
+    while (k < end) {
+      event.reset(data[k] & 0xFF);
+      switch (event.status()) {
+        case READ_NOTE:
+        case CREDIT_NOTE:
+        case NOTE_STACKED:
+        case FRAUD_ATTEMPT:
+          if (k + 1 < end) {
+            event.setChannel(data[k + 1] & 0xFF);
+            k += 2;
+          } else {
+            k += 1;
+          }
+          break;
+
+        case NOTE_HELD_IN_BEZEL:
+          if (k + 9 < end) {
+            // Value is 4 bytes (little-endian), country code 3 bytes ASCII
+            int value = (data[k + 2] & 0xFF)
+              | (data[k + 3] & 0xFF) << 8
+              | (data[k + 4] & 0xFF) << 16
+              | (data[k + 5] & 0xFF) << 24;
+            int country = (data[k + 6] & 0xFF) << 16 | (data[k + 7] & 0xFF) << 8 | (data[k + 8] & 0xFF);
+            event.setHeldNote(data[k + 1] & 0xFF, value, country);
+            k += 9;
+          } else {
+            k += 1;
+          }
+          break;
+
+        default:
+          k += 1;
+          break;
+      }
+      count++;
+      sink.onEvent(event);
+    }
+    return count;
+  }
+}
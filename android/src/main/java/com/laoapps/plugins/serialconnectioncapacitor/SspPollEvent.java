@@ -0,0 +1,119 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One event from a POLL reply, with primitive fields.
+ *
+ * {@link SspPollDecoder} refills a single instance for every event, so a
+ * listener that keeps an event past its callback must {@link #copy()} it.
+ * {@link #toJson()} builds the JSON form used at the Capacitor boundary.
+ */
+public final class SspPollEvent {
+  /** Value of a field the event does not carry */
+  public static final int NONE = -1;
+
+  private SspStatus status = SspStatus.UNKNOWN;
+  private int code;
+  private int channel = NONE;
+  private int position = NONE;
+  private int value = NONE;
+  private boolean hasValue;
+  // Three ASCII bytes, first in bits 16-23; set along with the value
+  private int countryCode;
+
+  void reset(int code) {
+    this.code = code;
+    this.status = SspStatus.of(code);
+    this.channel = NONE;
+    this.position = NONE;
+    this.value = NONE;
+    this.hasValue = false;
+    this.countryCode = 0;
+  }
+
+  void setChannel(int channel) {
+    this.channel = channel;
+  }
+
+  void setHeldNote(int position, int value, int countryCode) {
+    this.position = position;
+    this.value = value;
+    this.hasValue = true;
+    this.countryCode = countryCode;
+  }
+
+  public SspStatus status() {
+    return status;
+  }
+
+  /** Wire code, also for {@link SspStatus#UNKNOWN} events */
+  public int code() {
+    return code;
+  }
+
+  public String name() {
+    return status.name();
+  }
+
+  /** Note channel, or {@link #NONE} */
+  public int channel() {
+    return channel;
+  }
+
+  /** Escrow position of a held note, or {@link #NONE} */
+  public int position() {
+    return position;
+  }
+
+  /** Value of a held note; only meaningful when {@link #hasValue()} */
+  public int value() {
+    return value;
+  }
+
+  public boolean hasValue() {
+    return hasValue;
+  }
+
+  /** Country code of a held note, or null */
+  public String countryCode() {
+    if (!hasValue) return null;
+    return new String(new char[]{ascii(countryCode >>> 16), ascii(countryCode >>> 8), ascii(countryCode)});
+  }
+
+  /** Decodes like US_ASCII: bytes above 0x7F become U+FFFD */
+  private static char ascii(int b) {
+    b &= 0xFF;
+    return b < 0x80 ? (char) b : '\uFFFD';
+  }
+
+  public SspPollEvent copy() {
+    SspPollEvent copy = new SspPollEvent();
+    copy.status = status;
+    copy.code = code;
+    copy.channel = channel;
+    copy.position = position;
+    copy.value = value;
+    copy.hasValue = hasValue;
+    copy.countryCode = countryCode;
+    return copy;
+  }
+
+  /** {@code {code, name[, channel][, position, value, country_code]}}, as parseData has always reported */
+  public JSONObject toJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("code", code);
+    json.put("name", name());
+    if (channel != NONE) json.put("channel", channel);
+    if (position != NONE) json.put("position", position);
+    if (hasValue) json.put("value", value);
+    if (hasValue) json.put("country_code", countryCode());
+    return json;
+  }
+
+  @Override
+  public String toString() {
+    return name() + "(0x" + Integer.toHexString(code) + (channel != NONE ? ", channel " + channel : "") + ")";
+  }
+}
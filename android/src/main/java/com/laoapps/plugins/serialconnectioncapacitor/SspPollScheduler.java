@@ -0,0 +1,137 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks the delay before the next SSP POLL from what the last one reported.
+ *
+ * - While a note is in flight (read, held in the bezel, stacking...), it polls
+ *   every {@link #FAST_INTERVAL_MS} so each step reaches the app quickly. It
+ *   keeps that rate for {@link #FAST_GRACE_POLLS} polls after the last such event.
+ * - Otherwise it starts at {@link #NORMAL_INTERVAL_MS} and doubles on each
+ *   quiet poll, up to {@link #MAX_INTERVAL_MS}.
+ * - DISABLED jumps straight to the maximum.
+ *
+ * The maximum stays well inside the slave's poll timeout, so an enabled
+ * validator never disables itself for lack of polls.
+ *
+ * Metrics: the current interval, and the event-to-delivery latency. The
+ * latency is bounded by the time since the previous poll answer, because
+ * the event happened at some point after it.
+ */
+public class SspPollScheduler {
+  public static final long FAST_INTERVAL_MS = 50;
+  public static final long NORMAL_INTERVAL_MS = 200;
+  public static final long MAX_INTERVAL_MS = 1000;
+  public static final int FAST_GRACE_POLLS = 5;
+
+  /** Events that mean a note is moving through the validator */
+  static final Set<String> NOTE_IN_FLIGHT = new HashSet<>();
+
+  static {
+    for (SspStatus status : SspStatus.values()) {
+      if (status.noteInFlight) NOTE_IN_FLIGHT.add(status.name());
+    }
+  }
+
+  private long intervalMs = NORMAL_INTERVAL_MS;
+  private int fastPollsLeft = 0;
+  private long lastAnswerAt = -1;
+
+  // Metrics
+  private long polls;
+  private long events;
+  private long lastEventLatencyMs = -1;
+  private long maxEventLatencyMs = -1;
+  private long totalEventLatencyMs;
+
+  /**
+   * Records a POLL answer received at {@code now} (ms) carrying {@code eventNames}.
+   *
+   * @return delay before the next POLL, in ms
+   */
+  public long onPollAnswered(long now, List<String> eventNames) {
+    boolean inFlight = false;
+    boolean disabled = false;
+    for (String name : eventNames) {
+      if (NOTE_IN_FLIGHT.contains(name)) inFlight = true;
+      if ("DISABLED".equals(name)) disabled = true;
+    }
+    return onPollAnswered(now, eventNames.size(), inFlight, disabled);
+  }
+
+  /**
+   * Records a POLL answer carrying {@code eventCount} events, already
+   * classified by the caller.
+   *
+   * @return delay before the next POLL, in ms
+   */
+  public synchronized long onPollAnswered(long now, int eventCount, boolean inFlight, boolean disabled) {
+    polls++;
+    long sincePrevious = lastAnswerAt < 0 ? 0 : now - lastAnswerAt;
+    lastAnswerAt = now;
+
+    if (eventCount > 0) {
+      events += eventCount;
+      lastEventLatencyMs = sincePrevious;
+      maxEventLatencyMs = Math.max(maxEventLatencyMs, sincePrevious);
+      totalEventLatencyMs += sincePrevious * eventCount;
+    }
+
+    if (inFlight) {
+      fastPollsLeft = FAST_GRACE_POLLS;
+      intervalMs = FAST_INTERVAL_MS;
+    } else if (fastPollsLeft > 0) {
+      fastPollsLeft--;
+      intervalMs = FAST_INTERVAL_MS;
+    } else if (disabled) {
+      intervalMs = MAX_INTERVAL_MS;
+    } else if (eventCount > 0) {
+      intervalMs = NORMAL_INTERVAL_MS;
+    } else {
+      // Quiet: back off, starting from the normal rate after a burst
+      intervalMs = intervalMs < NORMAL_INTERVAL_MS ? NORMAL_INTERVAL_MS : Math.min(intervalMs * 2, MAX_INTERVAL_MS);
+    }
+    return intervalMs;
+  }
+
+  /** A failed POLL: retry at the normal rate rather than fast or backed off */
+  public synchronized long onPollFailed() {
+    fastPollsLeft = 0;
+    intervalMs = NORMAL_INTERVAL_MS;
+    return intervalMs;
+  }
+
+  public synchronized void reset() {
+    intervalMs = NORMAL_INTERVAL_MS;
+    fastPollsLeft = 0;
+    lastAnswerAt = -1;
+  }
+
+  public synchronized long getIntervalMs() {
+    return intervalMs;
+  }
+
+  public synchronized long getPolls() {
+    return polls;
+  }
+
+  public synchronized long getEvents() {
+    return events;
+  }
+
+  /** Upper bound on the latency of the most recent event; -1 before any */
+  public synchronized long getLastEventLatencyMs() {
+    return lastEventLatencyMs;
+  }
+
+  public synchronized long getMaxEventLatencyMs() {
+    return maxEventLatencyMs;
+  }
+
+  public synchronized double getAverageEventLatencyMs() {
+    return events == 0 ? -1 : (double) totalEventLatencyMs / events;
+  }
+}
@@ -0,0 +1,138 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single I/O thread that owns an SSP port.
+ *
+ * Every exchange with the device (write a packet, read its reply) runs as a
+ * task on this one thread, so the sequence bit and encryption counter are
+ * only ever touched by it and no shared pool thread sits blocked on a read.
+ * Pending tasks are ordered by priority, then by submission: a command from
+ * JS such as ENABLE or DISABLE runs before a queued POLL even if the POLL was
+ * submitted first. The task in progress is never pre-empted.
+ *
+ * The thread starts on the first submit and again after {@link #close}, so a
+ * closed session can be reused once the port is reopened.
+ */
+public class SspSession {
+  /** Commands issued by the host app */
+  public static final int PRIORITY_COMMAND = 0;
+  /** Background status polling; yields to everything else */
+  public static final int PRIORITY_POLL = 10;
+
+  private final String name;
+  private final PriorityBlockingQueue<Task<?>> queue = new PriorityBlockingQueue<>();
+  private final AtomicLong nextSequence = new AtomicLong();
+  private volatile Thread thread;
+  private volatile Exception closeCause;
+
+  public SspSession(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Queues a task for the I/O thread.
+   *
+   * Called from the I/O thread itself (e.g. by an event listener during a
+   * POLL), the task runs inline instead, since waiting on it would deadlock.
+   *
+   * @param priority lower runs first; see {@link #PRIORITY_COMMAND}, {@link #PRIORITY_POLL}
+   */
+  public <T> CompletableFuture<T> submit(int priority, Callable<T> work) {
+    Task<T> task = new Task<>(priority, nextSequence.getAndIncrement(), work);
+    if (Thread.currentThread() == thread) {
+      task.run();
+      return task.future;
+    }
+    queue.add(task);
+    ensureStarted();
+    return task.future;
+  }
+
+  /** Tasks waiting behind the one in progress */
+  public int pending() {
+    return queue.size();
+  }
+
+  public boolean isIoThread() {
+    return Thread.currentThread() == thread;
+  }
+
+  /**
+   * Stops the I/O thread and fails every queued task with {@code cause}.
+   * The task in progress is interrupted and finishes with whatever it returns.
+   */
+  public void close(Exception cause) {
+    Thread t;
+    synchronized (this) {
+      closeCause = cause;
+      t = thread;
+      thread = null;
+    }
+    if (t != null && t != Thread.currentThread()) {
+      t.interrupt();
+    }
+    Task<?> task;
+    while ((task = queue.poll()) != null) {
+      task.future.completeExceptionally(cause);
+    }
+  }
+
+  private synchronized void ensureStarted() {
+    if (thread != null) return;
+    Thread t = new Thread(this::run, name);
+    t.setDaemon(true);
+    thread = t;
+    t.start();
+  }
+
+  private void run() {
+    Thread self = Thread.currentThread();
+    while (thread == self) {
+      Task<?> task;
+      try {
+        task = queue.take();
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (thread != self) {
+        // Closed while this task was being taken
+        task.future.completeExceptionally(closeCause);
+        break;
+      }
+      task.run();
+    }
+  }
+
+  private static final class Task<T> implements Comparable<Task<?>> {
+    final int priority;
+    final long sequence;
+    final Callable<T> work;
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    Task(int priority, long sequence, Callable<T> work) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.work = work;
+    }
+
+    void run() {
+      if (future.isDone()) return;
+      try {
+        future.complete(work.call());
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public int compareTo(Task<?> other) {
+      if (priority != other.priority) return Integer.compare(priority, other.priority);
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Arrays;
+
+/**
+ * SSP status and poll event codes, looked up through a 256-entry table
+ * instead of a boxed map.
+ */
+public enum SspStatus {
+  OK(0xF0),
+  SLAVE_RESET(0xF1),
+  READ_NOTE(0xEF, true),
+  CREDIT_NOTE(0xEE, true),
+  NOTE_REJECTING(0xED, true),
+  NOTE_REJECTED(0xEC),
+  NOTE_STACKED(0xEB),
+  SAFE_NOTE_JAM(0xEA),
+  UNSAFE_NOTE_JAM(0xE9),
+  DISABLED(0xE8),
+  STACKER_FULL(0xE7),
+  FRAUD_ATTEMPT(0xE6),
+  BAR_CODE_TICKET_VALIDATED(0xE5),
+  CASHBOX_REPLACED(0xE4),
+  CASHBOX_REMOVED(0xE3),
+  NOTE_HELD_IN_BEZEL(0xCE, true),
+  NOTE_STACKING(0xCC, true),
+  CHANNEL_DISABLE(0xB5),
+
+  // Common additional poll events from ITL docs (GA138 / GA973)
+  DISPENSING(0xDA),           // SMART Payout / Hopper
+  DISPENSED(0xD2),
+  JAMMED(0xD5),
+  HALTED(0xD6),
+  FLOATING(0xD7),
+  FLOATED(0xD8),
+  TIME_OUT(0xD9),
+  INCOMPLETE_PAYOUT(0xDC),
+  INCOMPLETE_FLOAT(0xDD),
+  EMPTYING(0xC2),
+  EMPTY(0xC3),
+  NOTE_STORED_IN_PAYOUT(0xDB),
+
+  /** Any code not listed above */
+  UNKNOWN(-1);
+
+  private static final SspStatus[] BY_CODE = new SspStatus[256];
+
+  static {
+    Arrays.fill(BY_CODE, UNKNOWN);
+    for (SspStatus status : values()) {
+      if (status.code >= 0) BY_CODE[status.code] = status;
+    }
+  }
+
+  /** Wire code, or -1 for {@link #UNKNOWN} */
+  public final int code;
+  /** A note is moving through the validator */
+  public final boolean noteInFlight;
+
+  SspStatus(int code) {
+    this(code, false);
+  }
+
+  SspStatus(int code, boolean noteInFlight) {
+    this.code = code;
+    this.noteInFlight = noteInFlight;
+  }
+
+  public static SspStatus of(int code) {
+    return BY_CODE[code & 0xFF];
+  }
+}
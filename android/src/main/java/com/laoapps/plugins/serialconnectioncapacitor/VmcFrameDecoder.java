@@ -0,0 +1,164 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-capacity ring-buffer decoder for the VMC 0xFA 0xFB framing.
+ *
+ * Frame format: [0xFA][0xFB][CMD][LEN][DATA(LEN)][XOR]
+ *
+ * Every byte is written twice (at {@code i} and {@code i + capacity}), so any
+ * window that starts inside the ring is contiguous in the backing array. Frames
+ * are therefore handed to the {@link FrameHandler} as (offset, length) views
+ * without copying. The view is only valid for the duration of the callback.
+ */
+public class VmcFrameDecoder {
+  public static final int HEADER_1 = 0xFA;
+  public static final int HEADER_2 = 0xFB;
+  /** STX(2) + CMD + LEN + XOR */
+  public static final int FRAME_OVERHEAD = 5;
+  /** Largest frame the LEN byte can describe */
+  public static final int MAX_FRAME_LENGTH = 255 + FRAME_OVERHEAD;
+
+  /** Frame kinds recognised by {@link #classify} */
+  public static final int FRAME_DATA = 0;
+  public static final int FRAME_POLL = 1;
+  public static final int FRAME_ACK = 2;
+
+  public static final int CMD_POLL = 0x41;
+  public static final int CMD_ACK = 0x42;
+
+  public interface FrameHandler {
+    void onFrame(byte[] buffer, int offset, int length);
+  }
+
+  private final byte[] ring;
+  private final int capacity;
+  private int head = 0;   // index of the oldest unconsumed byte, always < capacity
+  private int size = 0;   // number of unconsumed bytes
+  private long checksumErrors = 0;
+  private long discardedBytes = 0;
+
+  public VmcFrameDecoder() {
+    this(1024);
+  }
+
+  public VmcFrameDecoder(int capacity) {
+    if (capacity < MAX_FRAME_LENGTH) {
+      throw new IllegalArgumentException("Capacity must be at least " + MAX_FRAME_LENGTH);
+    }
+    this.capacity = capacity;
+    this.ring = new byte[capacity * 2];
+  }
+
+  /**
+   * Appends a chunk from the serial port and emits every complete, checksum-valid
+   * frame it can find.
+   */
+  public void feed(byte[] src, int offset, int length, FrameHandler handler) {
+    while (length > 0) {
+      int n = Math.min(length, capacity - size);
+      int tail = head + size;
+      if (tail >= capacity) tail -= capacity;
+      for (int i = 0; i < n; i++) {
+        byte b = src[offset + i];
+        ring[tail] = b;
+        ring[tail + capacity] = b;
+        if (++tail == capacity) tail = 0;
+      }
+      size += n;
+      offset += n;
+      length -= n;
+      decode(handler);
+    }
+  }
+
+  /**
+   * Same as {@link #feed(byte[], int, int, FrameHandler)}, consuming {@code src}
+   * from its position to its limit. Bytes are bulk-copied straight into the ring,
+   * so a direct buffer filled by {@link android.serialport.SerialPort#receive}
+   * never passes through an intermediate heap array.
+   */
+  public void feed(ByteBuffer src, FrameHandler handler) {
+    while (src.hasRemaining()) {
+      int n = Math.min(src.remaining(), capacity - size);
+      int tail = head + size;
+      if (tail >= capacity) tail -= capacity;
+      // Fill the primary copy in up to two runs, then mirror what was written
+      int first = Math.min(n, capacity - tail);
+      src.get(ring, tail, first);
+      System.arraycopy(ring, tail, ring, tail + capacity, first);
+      if (n > first) {
+        src.get(ring, 0, n - first);
+        System.arraycopy(ring, 0, ring, capacity, n - first);
+      }
+      size += n;
+      decode(handler);
+    }
+  }
+
+  private void decode(FrameHandler handler) {
+    while (size >= FRAME_OVERHEAD) {
+      if ((ring[head] & 0xFF) != HEADER_1 || (ring[head + 1] & 0xFF) != HEADER_2) {
+        skip(1);
+        discardedBytes++;
+        continue;
+      }
+
+      int frameLength = (ring[head + 3] & 0xFF) + FRAME_OVERHEAD;
+      if (frameLength > size) return; // wait for the rest of the frame
+
+      byte xor = 0;
+      for (int i = head, end = head + frameLength - 1; i < end; i++) {
+        xor ^= ring[i];
+      }
+      if (xor != ring[head + frameLength - 1]) {
+        checksumErrors++;
+        discardedBytes++;
+        skip(1);
+        continue;
+      }
+
+      int frameStart = head;
+      skip(frameLength);
+      handler.onFrame(ring, frameStart, frameLength);
+    }
+  }
+
+  private void skip(int n) {
+    head += n;
+    if (head >= capacity) head -= capacity;
+    size -= n;
+  }
+
+  /**
+   * Classifies a complete frame by its command and length bytes, so the read
+   * loop can dispatch without turning the frame into a hex string.
+   */
+  public static int classify(byte[] frame, int offset, int length) {
+    if (length != FRAME_OVERHEAD) return FRAME_DATA;
+    switch (frame[offset + 2] & 0xFF) {
+      case CMD_POLL: return FRAME_POLL;
+      case CMD_ACK: return FRAME_ACK;
+      default: return FRAME_DATA;
+    }
+  }
+
+  /** Drops any partially received frame. */
+  public void reset() {
+    head = 0;
+    size = 0;
+  }
+
+  public int buffered() {
+    return size;
+  }
+
+  public long getChecksumErrors() {
+    return checksumErrors;
+  }
+
+  public long getDiscardedBytes() {
+    return discardedBytes;
+  }
+}
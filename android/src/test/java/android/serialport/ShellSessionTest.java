@@ -0,0 +1,66 @@
+package android.serialport;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ShellSessionTest {
+    private final ShellSession shell = new ShellSession("sh");
+
+    @After
+    public void destroyShell() {
+        shell.destroy();
+    }
+
+    @Test
+    public void commandsShareOneShell() {
+        CommandExecution.CommandResult hi = shell.exec("echo hi", 5000);
+        assertEquals(0, hi.result);
+        assertEquals("hi\n", hi.successMsg);
+        assertEquals("", hi.errorMsg);
+
+        assertEquals(1, shell.exec("false", 5000).result);
+        assertEquals(0, shell.exec("PORT=/dev/ttyS1", 5000).result);
+        assertEquals("/dev/ttyS1\n", shell.exec("echo $PORT", 5000).successMsg);
+        assertEquals(1, shell.getStarts());
+    }
+
+    @Test
+    public void separatesStreamsAndKeepsOutputWithoutNewline() {
+        CommandExecution.CommandResult result = shell.exec("printf abc; printf oops >&2; exit_code=3; (exit $exit_code)", 5000);
+        assertEquals(3, result.result);
+        assertEquals("abc\n", result.successMsg);
+        assertEquals("oops\n", result.errorMsg);
+    }
+
+    @Test
+    public void heavyStderrDoesNotStallTheShell() {
+        // Far more than a pipe buffer; reading stdout first and stderr after used to hang here
+        String spam = "i=0; while [ $i -lt 20000 ]; do echo \"chmod: line $i\" >&2; i=$((i+1)); done; echo done";
+        CommandExecution.CommandResult result = shell.exec(spam, 10000);
+        assertEquals(0, result.result);
+        assertEquals("done\n", result.successMsg);
+        assertTrue(result.errorMsg.endsWith("chmod: line 19999\n"));
+    }
+
+    @Test
+    public void timeoutKillsTheShellAndTheNextCommandStartsAnother() {
+        long start = System.nanoTime();
+        CommandExecution.CommandResult slow = shell.exec("sleep 5", 200);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        assertEquals(-1, slow.result);
+        assertTrue(slow.errorMsg.contains("timed out"));
+        assertFalse(shell.isRunning());
+
+        assertEquals("ok\n", shell.exec("echo ok", 5000).successMsg);
+        assertEquals(2, shell.getStarts());
+    }
+
+    @Test
+    public void exitIsReportedAndRecoveredFrom() {
+        assertEquals(-1, shell.exec("exit 0", 5000).result);
+        assertEquals(0, shell.exec("true", 5000).result);
+        assertEquals(2, shell.getStarts());
+    }
+}
@@ -0,0 +1,258 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+
+public class Adh814SchedulerTest {
+
+  private static final byte[] POLL = {0x01, (byte) 0xA3, 0x00, 0x00};
+  private static final byte[] RUN = {0x01, (byte) 0xA5, 0x01, 0x00, 0x00, 0x00};
+  private static final byte[] ACK = {0x01, (byte) 0xA6, 0x00, 0x00};
+  private static final byte[] TEMP = {0x01, (byte) 0xA4, 0x00, 0x00, 0x00};
+
+  private static class Recorder implements Adh814Scheduler.Callbacks {
+    final List<byte[]> sent = new ArrayList<>();
+    final List<PendingCommand> timedOut = new ArrayList<>();
+    final List<PendingCommand> dropped = new ArrayList<>();
+    int polls = 0;
+
+    @Override
+    public void send(byte[] command, int attempt) {
+      sent.add(command);
+    }
+
+    @Override
+    public byte[] buildPoll() {
+      polls++;
+      return POLL;
+    }
+
+    @Override
+    public void onCommandTimeout(PendingCommand command) {
+      timedOut.add(command);
+    }
+
+    @Override
+    public void onRunDropped(PendingCommand command, int motorStatus) {
+      dropped.add(command);
+    }
+  }
+
+  @Test
+  public void sendsNextCommandAsSoonAsResponseArrives() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    s.enqueue(new PendingCommand(TEMP));
+    s.enqueue(new PendingCommand(ACK));
+
+    assertEquals(1000 + Adh814Scheduler.RESPONSE_TIMEOUT_MS, s.advance(1000));
+    assertSame(TEMP, r.sent.get(0));
+
+    s.onResponse(0xA4, null);
+    s.advance(1005);
+    assertEquals(2, r.sent.size());
+    assertSame(ACK, r.sent.get(1));
+
+    s.onResponse(0xA6, null);
+    assertEquals(Adh814Scheduler.NO_DEADLINE, s.advance(1010));
+    assertFalse(s.hasInFlight());
+  }
+
+  @Test
+  public void unrelatedResponseDoesNotCompleteInFlightCommand() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    s.enqueue(new PendingCommand(RUN));
+    s.enqueue(new PendingCommand(ACK));
+    s.advance(0);
+
+    s.onResponse(0xA3, null);
+    assertEquals(Adh814Scheduler.RUN_RESPONSE_TIMEOUT_MS, s.advance(10));
+    assertEquals(1, r.sent.size());
+    assertTrue(s.hasInFlight());
+  }
+
+  @Test
+  public void resendsOnDeadlineThenGivesUp() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    s.enqueue(new PendingCommand(TEMP));
+    s.enqueue(new PendingCommand(ACK));
+
+    long t = 0;
+    for (int attempt = 1; attempt <= Adh814Scheduler.MAX_ATTEMPTS; attempt++) {
+      t = s.advance(t);
+      assertEquals(attempt, r.sent.size());
+    }
+    s.advance(t);
+
+    assertEquals(1, r.timedOut.size());
+    assertSame(TEMP, r.timedOut.get(0).packet);
+    // The next command goes out in the same step
+    assertSame(ACK, r.sent.get(r.sent.size() - 1));
+  }
+
+  @Test
+  public void runWaitsForIdleMotorAndPollsMeanwhile() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    s.setMotorStatus(1);
+    s.enqueue(new PendingCommand(RUN));
+
+    // Blocked RUN: a forced POLL goes out instead
+    s.advance(0);
+    assertEquals(1, r.polls);
+    assertSame(POLL, r.sent.get(0));
+
+    s.onResponse(0xA3, null);
+    long next = s.advance(50);
+    assertEquals(Adh814Scheduler.FORCED_POLL_INTERVAL_MS, next);
+    assertEquals(1, r.sent.size());
+
+    // Status goes idle → RUN is released immediately
+    s.setMotorStatus(0);
+    s.advance(60);
+    assertSame(RUN, r.sent.get(1));
+    assertTrue(r.dropped.isEmpty());
+  }
+
+  @Test
+  public void blockedRunIsDroppedAfterTimeoutWithOptimisticReset() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    s.setMotorStatus(2);
+    s.enqueue(new PendingCommand(RUN));
+    s.enqueue(new PendingCommand(ACK));
+
+    long t = 0;
+    long droppedAt = -1;
+    while (droppedAt < 0 && t < 10_000) {
+      long now = t;
+      t = s.advance(now);
+      if (!r.dropped.isEmpty()) droppedAt = now;
+      else if (s.hasInFlight()) s.onResponse(0xA3, null); // board answers every POLL
+    }
+
+    assertEquals(Adh814Scheduler.RUN_BLOCKED_TIMEOUT_MS, droppedAt);
+    assertEquals(0, s.getMotorStatus());
+    // Everything sent while blocked was a POLL; the ACK goes out right after the drop
+    assertSame(ACK, r.sent.get(r.sent.size() - 1));
+    for (int i = 0; i < r.sent.size() - 1; i++) assertSame(POLL, r.sent.get(i));
+  }
+
+  @Test
+  public void noForcedPollWhileIdle() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    assertEquals(Adh814Scheduler.NO_DEADLINE, s.advance(0));
+    assertEquals(0, r.polls);
+  }
+
+  @Test
+  public void threadedThroughputIsBoundByResponsesNotFixedDelays() throws Exception {
+    int commands = 20;
+    CountDownLatch done = new CountDownLatch(commands);
+    Adh814Scheduler[] holder = new Adh814Scheduler[1];
+    holder[0] = new Adh814Scheduler(new Recorder() {
+      @Override
+      public void send(byte[] command, int attempt) {
+        // Simulated board answering immediately
+        holder[0].responseReceived(command[1] & 0xFF, command);
+        done.countDown();
+      }
+    });
+    Adh814Scheduler s = holder[0];
+    s.start();
+    long start = System.nanoTime();
+    for (int i = 0; i < commands; i++) s.submit(new PendingCommand(i % 2 == 0 ? RUN : TEMP));
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    s.stop();
+    // The old processor slept 2200ms per RUN and 300ms per other command (25s here)
+    assertTrue("took " + elapsedMs + "ms", elapsedMs < 1000);
+  }
+
+  @Test
+  public void futureCompletesWithResponseFrame() throws Exception {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    PendingCommand temp = new PendingCommand(TEMP, 1000, PendingCommand.ANY_RESPONSE);
+    s.enqueue(temp);
+    s.advance(0);
+
+    byte[] frame = {0x01, (byte) 0xA4, 0x00, 0x19};
+    s.onResponse(0xA4, frame);
+    assertSame(frame, temp.response.get(0, TimeUnit.MILLISECONDS));
+    assertFalse(s.hasInFlight());
+  }
+
+  @Test
+  public void expectedResponseOverridesEcho() {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    PendingCommand run = new PendingCommand(RUN, 0, Adh814Scheduler.CMD_POLL);
+    s.enqueue(run);
+    s.advance(0);
+
+    s.onResponse(0xA5, null);
+    assertTrue(s.hasInFlight());
+    s.onResponse(0xA3, null);
+    assertTrue(run.isDone());
+  }
+
+  @Test
+  public void commandPastItsDeadlineFailsWithTimeout() throws Exception {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    s.setMotorStatus(1);
+    // Held back behind the motor status until its own deadline passes
+    PendingCommand run = PendingCommand.atDeadline(RUN, 500, PendingCommand.ANY_RESPONSE);
+    s.enqueue(run);
+
+    long t = 0;
+    while (!run.isDone() && t < 10_000) {
+      long now = t;
+      t = s.advance(now);
+      if (s.hasInFlight()) s.onResponse(0xA3, null);
+    }
+
+    assertSame(run, r.timedOut.get(0));
+    assertTrue(r.dropped.isEmpty());
+    assertFailsWith(TimeoutException.class, run);
+  }
+
+  @Test
+  public void cancelAllFailsQueuedAndInFlight() throws Exception {
+    Recorder r = new Recorder();
+    Adh814Scheduler s = new Adh814Scheduler(r);
+    PendingCommand temp = new PendingCommand(TEMP);
+    PendingCommand ack = new PendingCommand(ACK);
+    s.enqueue(temp);
+    s.enqueue(ack);
+    s.advance(0);
+
+    s.cancelAll(new IOException("closed"));
+    assertFailsWith(IOException.class, temp);
+    assertFailsWith(IOException.class, ack);
+    assertFalse(s.hasInFlight());
+    assertEquals(0, s.queued());
+  }
+
+  private static void assertFailsWith(Class<? extends Exception> type, PendingCommand command) throws Exception {
+    try {
+      command.response.get(0, TimeUnit.MILLISECONDS);
+      fail("expected " + type.getSimpleName());
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Shared harness for the *Benchmark classes. They compare against the code
+ * each change replaced, print their numbers and assert nothing about timing.
+ * They are skipped unless the build runs with {@code -Dbenchmarks=true}.
+ */
+final class Benchmarks {
+  static final String PROPERTY = "benchmarks";
+
+  // Written by every measurement so the JIT cannot drop the measured work
+  static volatile int blackhole;
+
+  interface Body {
+    int run(int i) throws Exception;
+  }
+
+  private Benchmarks() {
+  }
+
+  /** Call from {@code @Before}; skips the test unless benchmarks are enabled */
+  static void assumeEnabled() {
+    assumeTrue("benchmarks run with -D" + PROPERTY + "=true", Boolean.getBoolean(PROPERTY));
+  }
+
+  /** Best-of-rounds ns per iteration */
+  static double nsPerIteration(int rounds, int iterations, Body body) throws Exception {
+    long best = Long.MAX_VALUE;
+    int sink = 0;
+    for (int r = 0; r < rounds; r++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) sink += body.run(i);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    blackhole = sink;
+    return (double) best / iterations;
+  }
+}
@@ -0,0 +1,207 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class BridgeEmitterTest {
+
+  /** Records what reaches the bridge; {@link #batchSent} fires on every batch */
+  static class RecordingSink implements BridgeEmitter.Sink {
+    final List<String> single = Collections.synchronizedList(new ArrayList<>());
+    final List<List<BridgeEmitter.Entry>> batches = Collections.synchronizedList(new ArrayList<>());
+    final List<Long> dropped = Collections.synchronizedList(new ArrayList<>());
+    volatile CountDownLatch batchSent = new CountDownLatch(1);
+
+    @Override
+    public void emit(String event, JSONObject data) {
+      single.add(event + ":" + data.optString("data"));
+    }
+
+    @Override
+    public void emitBatch(List<BridgeEmitter.Entry> entries, long lost) {
+      batches.add(entries);
+      dropped.add(lost);
+      batchSent.countDown();
+    }
+  }
+
+  private static JSONObject data(String hex) throws Exception {
+    return new JSONObject().put("data", hex);
+  }
+
+  @Test
+  public void directModeSendsEachEvent() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    BridgeEmitter bridge = new BridgeEmitter(sink);
+    bridge.emit("dataReceived", data("01"));
+    bridge.emit("serialWriteSuccess", data("02"));
+    assertEquals(List.of("dataReceived:01", "serialWriteSuccess:02"), sink.single);
+    assertTrue(sink.batches.isEmpty());
+  }
+
+  @Test
+  public void filtersDropByTypeOrByData() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    BridgeEmitter bridge = new BridgeEmitter(sink);
+    bridge.suppress("commandAcknowledged", null);
+    bridge.suppress("serialWriteSuccess", "fa fb 42 00 43");
+
+    bridge.emit("commandAcknowledged", data("00"));
+    bridge.emit("serialWriteSuccess", data("FAFB420043"));
+    bridge.emit("serialWriteSuccess", data("fafb0601"));
+    assertEquals(List.of("serialWriteSuccess:fafb0601"), sink.single);
+
+    bridge.clearFilters();
+    bridge.emit("commandAcknowledged", data("00"));
+    assertEquals(2, sink.single.size());
+  }
+
+  @Test
+  public void batchIsSentOnceMaxEventsAreWaiting() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    BridgeEmitter bridge = new BridgeEmitter(sink);
+    bridge.setBatching(true, 10_000, 3);
+    for (int i = 0; i < 3; i++) bridge.emit("dataReceived", data("0" + i));
+
+    assertTrue(sink.batchSent.await(1, TimeUnit.SECONDS));
+    assertTrue(sink.single.isEmpty());
+    List<BridgeEmitter.Entry> batch = sink.batches.get(0);
+    assertEquals(3, batch.size());
+    assertEquals("02", batch.get(2).data.optString("data"));
+    assertEquals(0L, (long) sink.dropped.get(0));
+  }
+
+  @Test
+  public void batchIsSentAfterTheInterval() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    BridgeEmitter bridge = new BridgeEmitter(sink);
+    bridge.setBatching(true, 20, 100);
+    long start = System.nanoTime();
+    bridge.emit("dataReceived", data("01"));
+    bridge.emit("dataReceived", data("02"));
+
+    assertTrue(sink.batchSent.await(1, TimeUnit.SECONDS));
+    long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("batch after " + waitedMs + " ms", waitedMs >= 15);
+    assertEquals(2, sink.batches.get(0).size());
+    assertEquals(0, bridge.pending());
+  }
+
+  @Test
+  public void overflowDropsOldestAndReportsIt() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    sink.batchSent = new CountDownLatch(2);
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    // Holds the flush thread inside the first batch so the ring fills up behind it
+    BridgeEmitter bridge = new BridgeEmitter(new BridgeEmitter.Sink() {
+      @Override
+      public void emit(String event, JSONObject data) {
+      }
+
+      @Override
+      public void emitBatch(List<BridgeEmitter.Entry> entries, long lost) {
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        sink.emitBatch(entries, lost);
+      }
+    });
+    bridge.setBatching(true, 10_000, 1);
+    bridge.emit("dataReceived", data("0"));
+    assertTrue(entered.await(1, TimeUnit.SECONDS));
+    for (int i = 1; i <= BridgeEmitter.RING_CAPACITY + 5; i++) {
+      bridge.emit("dataReceived", data(Integer.toString(i)));
+    }
+    assertEquals(BridgeEmitter.RING_CAPACITY, bridge.pending());
+    release.countDown();
+
+    assertTrue(sink.batchSent.await(1, TimeUnit.SECONDS));
+    List<BridgeEmitter.Entry> second = sink.batches.get(1);
+    assertEquals(BridgeEmitter.RING_CAPACITY, second.size());
+    assertEquals("6", second.get(0).data.optString("data"));
+    assertEquals(5L, (long) sink.dropped.get(1));
+  }
+
+  @Test
+  public void disablingBatchingFlushesWhatIsBuffered() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    BridgeEmitter bridge = new BridgeEmitter(sink);
+    bridge.setBatching(true, 10_000, 100);
+    bridge.emit("dataReceived", data("01"));
+    assertEquals(1, bridge.pending());
+
+    bridge.setBatching(false, 10_000, 100);
+    assertEquals(1, sink.batches.size());
+    bridge.emit("dataReceived", data("02"));
+    assertEquals(List.of("dataReceived:02"), sink.single);
+  }
+
+  @Test
+  public void disablingWaitsForTheRunningBatchAndStopsTheFlusher() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    // Holds the flush thread inside the first batch while batching is turned off
+    BridgeEmitter bridge = new BridgeEmitter(new BridgeEmitter.Sink() {
+      @Override
+      public void emit(String event, JSONObject data) {
+        sink.emit(event, data);
+      }
+
+      @Override
+      public void emitBatch(List<BridgeEmitter.Entry> entries, long lost) {
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        sink.emitBatch(entries, lost);
+      }
+    });
+    int flushThreadsBefore = flushThreads();
+    bridge.setBatching(true, 10_000, 1);
+    bridge.emit("dataReceived", data("01"));
+    assertTrue(entered.await(1, TimeUnit.SECONDS));
+    bridge.emit("dataReceived", data("02"));
+
+    JSONObject third = data("03");
+    Thread disabler = new Thread(() -> {
+      bridge.setBatching(false, 10_000, 1);
+      bridge.emit("dataReceived", third);
+    });
+    disabler.start();
+    Thread.sleep(50);
+    assertTrue("disable must wait for the running batch", disabler.isAlive());
+    release.countDown();
+    disabler.join(1000);
+
+    assertEquals(2, sink.batches.size());
+    assertEquals("01", sink.batches.get(0).get(0).data.optString("data"));
+    assertEquals("02", sink.batches.get(1).get(0).data.optString("data"));
+    assertEquals(List.of("dataReceived:03"), sink.single);
+
+    long deadline = System.currentTimeMillis() + 1000;
+    while (flushThreads() > flushThreadsBefore && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    assertEquals(flushThreadsBefore, flushThreads());
+  }
+
+  private static int flushThreads() {
+    int n = 0;
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().equals("bridge-batch") && t.isAlive()) n++;
+    }
+    return n;
+  }
+}
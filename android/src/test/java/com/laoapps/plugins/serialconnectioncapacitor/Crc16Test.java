@@ -0,0 +1,111 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class Crc16Test {
+
+  private static final int MAX_LENGTH = 512;
+
+  /** The bit-by-bit SSPUtils.crc16 loop this class replaced */
+  private static int bitwiseSsp(byte[] data, int offset, int length) {
+    int crc = 0xFFFF;
+    for (int i = offset; i < offset + length; i++) {
+      crc ^= (data[i] & 0xFF) << 8;
+      for (int j = 0; j < 8; j++) {
+        if ((crc & 0x8000) != 0) {
+          crc = ((crc << 1) & 0xFFFF) ^ 0x8005;
+        } else {
+          crc = (crc << 1) & 0xFFFF;
+        }
+      }
+    }
+    return crc;
+  }
+
+  /** The bit-by-bit calculateCRCRequest / calculateCRCResponse / calculateM102CRC16 loop */
+  private static int bitwiseModbus(byte[] data, int offset, int length) {
+    int crc = 0xFFFF;
+    for (int i = offset; i < offset + length; i++) {
+      crc ^= (data[i] & 0xFF);
+      for (int j = 0; j < 8; j++) {
+        if ((crc & 0x0001) != 0) {
+          crc = (crc >> 1) ^ 0xA001;
+        } else {
+          crc >>= 1;
+        }
+      }
+    }
+    return crc;
+  }
+
+  private static byte[] randomBytes(Random random, int length) {
+    byte[] data = new byte[length];
+    random.nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void matchesBitwiseForEveryLength() {
+    Random random = new Random(7);
+    for (int length = 0; length <= MAX_LENGTH; length++) {
+      byte[] data = randomBytes(random, length + 8);
+      int offset = random.nextInt(9);
+      if (offset + length > data.length) offset = data.length - length;
+
+      assertEquals("ssp len=" + length, bitwiseSsp(data, offset, length), Crc16.ssp(data, offset, length));
+      assertEquals("modbus len=" + length, bitwiseModbus(data, offset, length), Crc16.modbus(data, offset, length));
+    }
+  }
+
+  @Test
+  public void sspUtilsWrapperMatchesBitwise() {
+    Random random = new Random(11);
+    for (int length = 0; length <= MAX_LENGTH; length++) {
+      byte[] data = randomBytes(random, length);
+      int ssp = bitwiseSsp(data, 0, length);
+      assertArrayEquals(new byte[]{(byte) ssp, (byte) (ssp >> 8)}, SSPUtils.crc16(data));
+    }
+  }
+
+  @Test
+  public void incrementalUpdateMatchesOneShot() {
+    Random random = new Random(3);
+    for (int length = 0; length <= MAX_LENGTH; length++) {
+      byte[] data = randomBytes(random, length);
+      int ssp = Crc16.SSP_SEED;
+      int modbus = Crc16.MODBUS_SEED;
+      int pos = 0;
+      while (pos < length) {
+        if (random.nextBoolean()) {
+          ssp = Crc16.updateSsp(ssp, data[pos]);
+          modbus = Crc16.updateModbus(modbus, data[pos]);
+          pos++;
+        } else {
+          int n = Math.min(1 + random.nextInt(32), length - pos);
+          ssp = Crc16.updateSsp(ssp, data, pos, n);
+          modbus = Crc16.updateModbus(modbus, data, pos, n);
+          pos += n;
+        }
+      }
+      assertEquals(bitwiseSsp(data, 0, length), ssp);
+      assertEquals(bitwiseModbus(data, 0, length), modbus);
+    }
+  }
+
+  @Test
+  public void knownVectors() {
+    // SSP sync command body [SEQ=0x80][LEN=0x01][0x11] → 7F 80 01 11 65 82 on the wire
+    byte[] sync = {(byte) 0x80, 0x01, 0x11};
+    byte[] crc = new byte[2];
+    Crc16.putLowFirst(Crc16.ssp(sync, 0, sync.length), crc, 0);
+    assertArrayEquals(new byte[]{0x65, (byte) 0x82}, crc);
+
+    // Modbus reference check value for "123456789"
+    byte[] check = "123456789".getBytes();
+    assertEquals(0x4B37, Crc16.modbus(check, 0, check.length));
+    assertEquals(0x4B37, Crc16.getLowFirst(new byte[]{0x37, 0x4B}, 0));
+  }
+}
@@ -0,0 +1,48 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Rough microbenchmark of {@link Hex} against the String.format / Character.digit
+ * code it replaced. Results go to stdout; see {@link Benchmarks}.
+ */
+public class HexBenchmark {
+  private static final int ROUNDS = 10;
+  private static final int ITERATIONS = 20_000;
+
+  private static byte[] oldDecode(String s) {
+    int len = s.length();
+    byte[] data = new byte[len / 2];
+    for (int i = 0; i < len; i += 2) {
+      data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4) + Character.digit(s.charAt(i + 1), 16));
+    }
+    return data;
+  }
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void encodeAndDecodeAgainstStringFormat() throws Exception {
+    // A typical VMC status chunk / SSP poll response
+    byte[] chunk = new byte[64];
+    new Random(1).nextBytes(chunk);
+    String hex = Hex.encode(chunk);
+    char[] scratch = new char[chunk.length * 2];
+
+    double oldEncode = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> HexTest.formatHex(chunk, 0, chunk.length).length());
+    double newEncode = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> Hex.encode(chunk, 0, chunk.length).length());
+    double newEncodeInto = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> Hex.encode(chunk, 0, chunk.length, scratch, 0));
+    double oldDecodeNs = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> oldDecode(hex)[i & 63]);
+    double newDecodeNs = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> Hex.decode(hex)[i & 63]);
+
+    System.out.printf("hex encode 64B: String.format %.0f ns, Hex.encode %.0f ns (%.1fx), into char[] %.0f ns%n",
+      oldEncode, newEncode, oldEncode / newEncode, newEncodeInto);
+    System.out.printf("hex decode 64B: Character.digit %.0f ns, Hex.decode %.0f ns (%.1fx)%n",
+      oldDecodeNs, newDecodeNs, oldDecodeNs / newDecodeNs);
+  }
+}
@@ -0,0 +1,85 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class HexTest {
+
+  /** The String.format loop every bytesToHex copy used before */
+  static String formatHex(byte[] bytes, int offset, int length) {
+    StringBuilder sb = new StringBuilder(length * 2);
+    for (int i = offset; i < offset + length; i++) {
+      sb.append(String.format("%02x", bytes[i]));
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void encodesEveryByteLikeStringFormat() {
+    byte[] all = new byte[256];
+    for (int i = 0; i < 256; i++) all[i] = (byte) i;
+
+    assertEquals(formatHex(all, 0, all.length), Hex.encode(all));
+    assertEquals(formatHex(all, 10, 20), Hex.encode(all, 10, 20));
+    assertEquals(formatHex(all, 0, all.length).toUpperCase(), Hex.dump(all).replace(" ", ""));
+    assertEquals("", Hex.encode(new byte[0]));
+  }
+
+  @Test
+  public void encodesIntoCallerBuffers() {
+    byte[] frame = {(byte) 0xFA, (byte) 0xFB, 0x41, 0x00, 0x40};
+    char[] dest = new char[12];
+    dest[0] = '[';
+    assertEquals(10, Hex.encode(frame, 0, frame.length, dest, 1));
+    dest[11] = ']';
+    assertEquals("[fafb410040]", new String(dest));
+
+    StringBuilder sb = new StringBuilder("rx=");
+    Hex.appendTo(sb, frame, 2, 2);
+    assertEquals("rx=4100", sb.toString());
+  }
+
+  @Test
+  public void dumpIsSpaceSeparatedWithoutTrailingSpace() {
+    assertEquals("7F 80 01 11", Hex.dump(new byte[]{0x7F, (byte) 0x80, 0x01, 0x11}));
+    assertEquals("", Hex.dump(null));
+    assertEquals("", Hex.dump(new byte[0]));
+  }
+
+  @Test
+  public void decodeRoundTripsBothCasesAndDumps() {
+    Random random = new Random(5);
+    for (int length = 0; length < 300; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+      assertArrayEquals(data, Hex.decode(Hex.encode(data)));
+      assertArrayEquals(data, Hex.decode(Hex.encode(data).toUpperCase()));
+      assertArrayEquals(data, Hex.decode(Hex.dump(data)));
+    }
+    assertArrayEquals(new byte[]{0x01, 0x23}, Hex.decode(new StringBuilder("0123")));
+  }
+
+  @Test
+  public void decodeIntoOffset() {
+    byte[] dest = new byte[4];
+    assertEquals(2, Hex.decode("abCD", dest, 1));
+    assertArrayEquals(new byte[]{0, (byte) 0xAB, (byte) 0xCD, 0}, dest);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsNonHex() {
+    Hex.decode("0g");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsOddDigitCount() {
+    Hex.decode("abc");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeRejectsNonAscii() {
+    Hex.decode("0٠");
+  }
+}
@@ -0,0 +1,107 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import org.junit.Test;
+
+public class Mt102FramesTest {
+
+  private static byte[] frame(int cmd, int... data) {
+    byte[] f = new byte[Mt102Frames.FRAME_LENGTH];
+    f[0] = 0x01;
+    f[1] = (byte) cmd;
+    for (int i = 0; i < data.length; i++) f[2 + i] = (byte) data[i];
+    Crc16.putLowFirst(Crc16.modbus(f, 0, 18), f, 18);
+    return f;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    int length = 0;
+    for (byte[] part : parts) length += part.length;
+    byte[] out = new byte[length];
+    int at = 0;
+    for (byte[] part : parts) {
+      System.arraycopy(part, 0, out, at, part.length);
+      at += part.length;
+    }
+    return out;
+  }
+
+  private static List<byte[]> scanAll(byte[] chunk, int[] consumed) {
+    List<byte[]> frames = new ArrayList<>();
+    consumed[0] = Mt102Frames.scan(chunk, chunk.length, (buffer, offset) ->
+      frames.add(Arrays.copyOfRange(buffer, offset, offset + Mt102Frames.FRAME_LENGTH)));
+    return frames;
+  }
+
+  @Test
+  public void partialFrameIsLeftForTheNextChunk() {
+    byte[] poll = frame(0x03, 0x00, 0x05);
+    byte[] chunk = concat(poll, Arrays.copyOf(frame(0x05), 5));
+    int[] consumed = new int[1];
+
+    List<byte[]> frames = scanAll(chunk, consumed);
+
+    assertEquals(1, frames.size());
+    assertArrayEquals(poll, frames.get(0));
+    assertEquals(20, consumed[0]);
+  }
+
+  @Test
+  public void overlappingWindowsAreNotCountedAsFrames() {
+    byte[] chunk = concat(frame(0x03), new byte[]{0x01, 0x03, 0x00, 0x00, 0x00});
+    int[] consumed = new int[1];
+
+    assertEquals(1, scanAll(chunk, consumed).size());
+    assertEquals(20, consumed[0]);
+  }
+
+  @Test
+  public void corruptFrameIsSkippedAndTheNextOneFound() {
+    byte[] corrupt = frame(0x05, 0x01);
+    corrupt[5] ^= 0x40;
+    byte[] good = frame(0x04, 0x00);
+    int[] consumed = new int[1];
+
+    List<byte[]> frames = scanAll(concat(new byte[]{0x7E, 0x7E}, corrupt, good), consumed);
+
+    assertEquals(1, frames.size());
+    assertArrayEquals(good, frames.get(0));
+    assertEquals(42, consumed[0]);
+  }
+
+  @Test
+  public void headIsCompletedOnlyByItsOwnCommandByte() {
+    Queue<PendingCommand> queue = new ArrayDeque<>();
+    PendingCommand run = new PendingCommand(frame(0x05, 0x0A));
+    PendingCommand poll = new PendingCommand(frame(0x03));
+    queue.add(run);
+    queue.add(poll);
+
+    assertNull(Mt102Frames.completeHead(queue, frame(0x03, 0x01)));
+    assertFalse(run.isDone());
+    assertEquals(2, queue.size());
+
+    byte[] reply = frame(0x05, 0x00);
+    assertSame(run, Mt102Frames.completeHead(queue, reply));
+    assertArrayEquals(reply, run.response.getNow(null));
+    assertSame(poll, queue.peek());
+    assertFalse(poll.isDone());
+  }
+
+  @Test
+  public void expectCommandOverridesTheEchoedCommand() {
+    Queue<PendingCommand> queue = new ArrayDeque<>();
+    PendingCommand run = new PendingCommand(frame(0x05, 0x0A), 0, 0x03);
+    queue.add(run);
+
+    assertNull(Mt102Frames.completeHead(queue, frame(0x05, 0x00)));
+    assertSame(run, Mt102Frames.completeHead(queue, frame(0x03, 0x02)));
+    assertTrue(queue.isEmpty());
+  }
+}
@@ -0,0 +1,141 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.Test;
+
+public class PortRegistryTest {
+
+  private static final Function<PortSession, Adh814Scheduler.Callbacks> NO_ADH814 = session -> new Adh814Scheduler.Callbacks() {
+    @Override
+    public void send(byte[] command, int attempt) {
+    }
+
+    @Override
+    public byte[] buildPoll() {
+      return new byte[0];
+    }
+
+    @Override
+    public void onCommandTimeout(PendingCommand command) {
+    }
+
+    @Override
+    public void onRunDropped(PendingCommand command, int motorStatus) {
+    }
+  };
+
+  @Test
+  public void callsWithoutSessionIdGetTheNewestOpenSession() {
+    PortRegistry ports = new PortRegistry();
+    assertNull(ports.resolve(null));
+    PortSession vmc = ports.open("/dev/ttyS1", PortSession.NATIVE, NO_ADH814);
+    PortSession lift = ports.open("/dev/ttyS3", PortSession.NATIVE, NO_ADH814);
+
+    assertNotEquals(vmc.id, lift.id);
+    assertSame(lift, ports.resolve(null));
+    assertSame(vmc, ports.resolve(vmc.id));
+    assertNull(ports.resolve("native-99"));
+    assertSame(vmc, ports.findByPort("/dev/ttyS1"));
+
+    ports.remove(lift.id);
+    assertSame(vmc, ports.resolve(null));
+    assertNull(ports.findByPort("/dev/ttyS3"));
+    assertEquals(1, ports.size());
+  }
+
+  @Test
+  public void concurrentOpensGetDistinctIds() throws Exception {
+    PortRegistry ports = new PortRegistry();
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      Set<Future<PortSession>> opened = new HashSet<>();
+      for (int i = 0; i < 64; i++) {
+        String port = "/dev/ttyS" + i;
+        opened.add(pool.submit(() -> ports.open(port, PortSession.NATIVE, NO_ADH814)));
+      }
+      Set<String> ids = new HashSet<>();
+      for (Future<PortSession> session : opened) ids.add(session.get().id);
+      assertEquals(64, ids.size());
+      assertEquals(64, ports.size());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void sessionsDoNotShareTheirQueueLock() throws Exception {
+    PortRegistry ports = new PortRegistry();
+    PortSession vmc = ports.open("/dev/ttyS1", PortSession.NATIVE, NO_ADH814);
+    PortSession mt102 = ports.open("/dev/ttyS2", PortSession.NATIVE, NO_ADH814);
+
+    // A busy VMC loop holds its queue lock; the other session must not notice
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread vmcLoop = new Thread(() -> {
+      synchronized (vmc.commandQueue) {
+        held.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    vmcLoop.start();
+    assertTrue(held.await(1, TimeUnit.SECONDS));
+
+    ExecutorService other = Executors.newSingleThreadExecutor();
+    try {
+      Future<Byte> packNo = other.submit(() -> {
+        mt102.resetVmc("test");
+        synchronized (mt102.commandQueue) {
+          mt102.commandQueue.add(new PendingCommand(new byte[]{0x01}));
+        }
+        return mt102.nextPackNo();
+      });
+      assertEquals(1, (byte) packNo.get(1, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      vmcLoop.join();
+      other.shutdownNow();
+    }
+
+    // Packet numbers are per session too
+    assertEquals(1, vmc.nextPackNo());
+    assertEquals(2, mt102.nextPackNo());
+  }
+
+  @Test
+  public void closingOneSessionFailsOnlyItsCommands() throws Exception {
+    PortRegistry ports = new PortRegistry();
+    PortSession a = ports.open("/dev/ttyS1", PortSession.NATIVE, NO_ADH814);
+    PortSession b = ports.open("/dev/ttyS2", PortSession.NATIVE, NO_ADH814);
+    PendingCommand onA = new PendingCommand(new byte[]{0x01}, 10_000, PendingCommand.ANY_RESPONSE);
+    PendingCommand onB = new PendingCommand(new byte[]{0x02}, 10_000, PendingCommand.ANY_RESPONSE);
+    a.commandQueue.add(onA);
+    b.commandQueue.add(onB);
+
+    ports.remove(a.id);
+    a.close();
+
+    try {
+      onA.response.get(1, TimeUnit.SECONDS);
+      fail("command on the closed session should fail");
+    } catch (ExecutionException expected) {
+      assertEquals("Connection closed", expected.getCause().getMessage());
+    }
+    assertFalse(onB.isDone());
+    assertSame(b, ports.resolve(null));
+    assertTrue(a.writeSerial(new byte[]{0x03}).isCompletedExceptionally());
+  }
+}
@@ -0,0 +1,113 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class SSPParserTest {
+
+  private static final SspFrameEncoder ENCODER = new SspFrameEncoder();
+
+  private static byte[] frame(int seq, int... data) {
+    byte[] bytes = new byte[data.length];
+    for (int i = 0; i < data.length; i++) bytes[i] = (byte) data[i];
+    return ENCODER.frame((byte) seq, bytes, 0, bytes.length);
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    int n = 0;
+    for (byte[] p : parts) n += p.length;
+    byte[] out = new byte[n];
+    int pos = 0;
+    for (byte[] p : parts) {
+      System.arraycopy(p, 0, out, pos, p.length);
+      pos += p.length;
+    }
+    return out;
+  }
+
+  @Test
+  public void frameSplitAcrossFeedsCompletesOnLastByte() {
+    byte[] wire = frame(0x80, 0xF0, 0x7F, 0xEF, 0x7F);
+    SSPParser parser = new SSPParser();
+    List<byte[]> got = new ArrayList<>();
+    for (int i = 0; i < wire.length; i++) {
+      int n = parser.feed(wire, i, 1, (p, len) -> got.add(Arrays.copyOf(p, len)));
+      assertEquals(i == wire.length - 1 ? 1 : 0, n);
+    }
+    assertEquals(1, got.size());
+    assertArrayEquals(new byte[]{0x7F, (byte) 0x80, 0x04, (byte) 0xF0, 0x7F, (byte) 0xEF, 0x7F},
+      Arrays.copyOf(got.get(0), 7));
+    assertFalse(parser.hasPartialPacket());
+  }
+
+  @Test
+  public void sinkSeesViewOfOneReusedBuffer() {
+    byte[] wire = concat(frame(0x80, 0xF0), frame(0x00, 0xF0, 0x01));
+    List<byte[]> buffers = new ArrayList<>();
+    int n = new SSPParser().feed(wire, 0, wire.length, (p, len) -> buffers.add(p));
+    assertEquals(2, n);
+    assertSame(buffers.get(0), buffers.get(1));
+  }
+
+  @Test
+  public void badCrcIsDroppedAndParsingContinues() {
+    byte[] bad = frame(0x80, 0xF0, 0x11);
+    bad[bad.length - 1] ^= 0x01;
+    byte[] good = frame(0x00, 0xF0, 0x22);
+    List<byte[]> got = new SSPParser().parse(concat(bad, good));
+    assertEquals(1, got.size());
+    assertEquals(0x22, got.get(0)[4]);
+  }
+
+  @Test
+  public void loneStxResyncsOnTruncatedFrame() {
+    byte[] first = frame(0x80, 0xF0, 0x01, 0x02, 0x03);
+    byte[] truncated = Arrays.copyOf(first, 5);
+    byte[] next = frame(0x00, 0xF0, 0x44);
+
+    SSPParser parser = new SSPParser();
+    // The truncated frame is left over from a timed-out command
+    assertTrue(parser.parse(truncated).isEmpty());
+    assertTrue(parser.hasPartialPacket());
+
+    List<byte[]> got = parser.parse(next);
+    assertEquals(1, got.size());
+    assertEquals(0x44, got.get(0)[4]);
+  }
+
+  @Test
+  public void randomStreamsYieldEveryFrameRegardlessOfChunking() {
+    Random random = new Random(13);
+    for (int round = 0; round < 200; round++) {
+      List<byte[]> expected = new ArrayList<>();
+      byte[] wire = new byte[0];
+      for (int f = 0; f < 5; f++) {
+        byte[] data = new byte[1 + random.nextInt(40)];
+        random.nextBytes(data);
+        byte[] framed = ENCODER.frame((byte) 0x80, data, 0, data.length);
+        expected.add(data);
+        wire = concat(wire, framed);
+      }
+
+      SSPParser parser = new SSPParser();
+      List<byte[]> got = new ArrayList<>();
+      int pos = 0;
+      while (pos < wire.length) {
+        int n = Math.min(1 + random.nextInt(16), wire.length - pos);
+        got.addAll(parser.parse(wire, pos, n));
+        pos += n;
+      }
+
+      assertEquals(expected.size(), got.size());
+      for (int i = 0; i < expected.size(); i++) {
+        byte[] data = expected.get(i);
+        assertArrayEquals(data, Arrays.copyOfRange(got.get(i), 3, 3 + data.length));
+      }
+    }
+  }
+}
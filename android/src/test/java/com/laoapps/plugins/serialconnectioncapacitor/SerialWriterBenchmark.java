@@ -0,0 +1,92 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Write latency through {@link SerialWriter} against writing under the lock a
+ * busy read loop holds while it parses, as the plugin did before. Results go
+ * to stdout; see {@link Benchmarks}.
+ */
+public class SerialWriterBenchmark {
+  private static final int ROUNDS = 200;
+  private static final long PARSE_MS = 20;
+  private static final byte[] ACK = {(byte) 0xFA, (byte) 0xFB, 0x42, 0x00, 0x43};
+  private static final byte[] COMMAND = {0x01, 0x02, 0x03};
+
+  private interface Write {
+    void write(byte[] data) throws Exception;
+  }
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void writeLatencyWhileTheReadLoopParses() throws Exception {
+    Object readLock = new Object();
+
+    // ~1ms per write, like a short frame at 9600 baud
+    SerialWriterTest.SlowStream locked = new SerialWriterTest.SlowStream(TimeUnit.MILLISECONDS.toNanos(1));
+    long[] lockedUs = measure(readLock, data -> {
+      synchronized (readLock) {
+        locked.write(data, 0, data.length);
+      }
+    });
+
+    SerialWriterTest.SlowStream queued = new SerialWriterTest.SlowStream(TimeUnit.MILLISECONDS.toNanos(1));
+    SerialWriter writer = new SerialWriter(queued, "bench-writer");
+    long[] writerUs;
+    try {
+      writerUs = measure(readLock, data -> writer.write(data).get(1, TimeUnit.SECONDS));
+    } finally {
+      writer.close();
+    }
+
+    System.out.printf("Write latency with a %dms parse under the read lock: shared lock p50 %dus p99 %dus,"
+        + " SerialWriter p50 %dus p99 %dus%n",
+      PARSE_MS, lockedUs[ROUNDS / 2], lockedUs[ROUNDS * 99 / 100],
+      writerUs[ROUNDS / 2], writerUs[ROUNDS * 99 / 100]);
+  }
+
+  /** Sorted latencies of {@code write(COMMAND)} while a read loop holds {@code readLock} and replies with ACKs */
+  private static long[] measure(Object readLock, Write write) throws Exception {
+    AtomicBoolean running = new AtomicBoolean(true);
+    CountDownLatch readerStarted = new CountDownLatch(1);
+    Thread reader = new Thread(() -> {
+      readerStarted.countDown();
+      try {
+        while (running.get()) {
+          synchronized (readLock) {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PARSE_MS);
+            while (System.nanoTime() < until) {
+              Thread.onSpinWait();
+            }
+            write.write(ACK);
+          }
+        }
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    reader.start();
+    readerStarted.await();
+
+    long[] latencyUs = new long[ROUNDS];
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      write.write(COMMAND);
+      latencyUs[i] = (System.nanoTime() - start) / 1000;
+      Thread.sleep(1);
+    }
+    running.set(false);
+    reader.join();
+    Arrays.sort(latencyUs);
+    return latencyUs;
+  }
+}
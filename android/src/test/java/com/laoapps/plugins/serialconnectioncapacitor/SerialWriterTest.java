@@ -0,0 +1,130 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SerialWriterTest {
+
+  /** Stands in for a UART: each write takes roughly as long as the bytes need on the wire */
+  static class SlowStream extends OutputStream {
+    final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    final long nanosPerWrite;
+
+    SlowStream(long nanosPerWrite) {
+      this.nanosPerWrite = nanosPerWrite;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+      written.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      long until = System.nanoTime() + nanosPerWrite;
+      while (System.nanoTime() < until) {
+        Thread.onSpinWait();
+      }
+      written.write(b, off, len);
+    }
+  }
+
+  @Test
+  public void writesInOrder() throws Exception {
+    SlowStream out = new SlowStream(0);
+    SerialWriter writer = new SerialWriter(out, "test-writer");
+    CompletableFuture<Void> last = null;
+    for (int i = 0; i < 100; i++) {
+      last = writer.write(new byte[]{(byte) i});
+    }
+    last.get(1, TimeUnit.SECONDS);
+    writer.close();
+
+    byte[] bytes = out.written.toByteArray();
+    assertEquals(100, bytes.length);
+    for (int i = 0; i < bytes.length; i++) assertEquals((byte) i, bytes[i]);
+  }
+
+  @Test
+  public void writesRunOnTheWriterThread() throws Exception {
+    List<String> writers = Collections.synchronizedList(new ArrayList<>());
+    OutputStream out = new OutputStream() {
+      @Override
+      public void write(int b) {
+        writers.add(Thread.currentThread().getName());
+      }
+    };
+    SerialWriter writer = new SerialWriter(out, "test-writer");
+    writer.write(new byte[]{1}).get(1, TimeUnit.SECONDS);
+    Thread other = new Thread(() -> writer.write(new byte[]{2}), "other-caller");
+    other.start();
+    other.join();
+    writer.write(new byte[]{3}).get(1, TimeUnit.SECONDS);
+    writer.close();
+
+    assertEquals(List.of("test-writer", "test-writer", "test-writer"), writers);
+  }
+
+  @Test
+  public void closeFailsQueuedAndLaterWrites() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    OutputStream blocked = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+    };
+    SerialWriter writer = new SerialWriter(blocked, "test-writer");
+    CompletableFuture<Void> inFlight = writer.write(new byte[]{1});
+    CompletableFuture<Void> queued = writer.write(new byte[]{2});
+    // Let the writer thread pick up the first entry
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (writer.pending() > 1 && System.nanoTime() < deadline) Thread.sleep(1);
+
+    writer.close();
+    assertFailed(queued);
+    assertFailed(writer.write(new byte[]{3}));
+
+    release.countDown();
+    inFlight.get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void reportsStreamErrors() throws Exception {
+    OutputStream broken = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("EIO");
+      }
+    };
+    SerialWriter writer = new SerialWriter(broken, "test-writer");
+    assertFailed(writer.write(new byte[]{1}));
+    // The writer keeps serving after a failed write
+    assertFailed(writer.write(new byte[]{2}));
+    writer.close();
+  }
+
+  private static void assertFailed(CompletableFuture<Void> future) throws Exception {
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      fail("write should have failed");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSP device stand-in for {@link SspLink} tests. Each write is answered with
+ * the bytes the {@link Responder} returns for it, {@code latencyMs} later, in
+ * chunks of at most {@code chunkSize} bytes. A blocking read sleeps until the
+ * reply is due or the timeout passes.
+ */
+class SimulatedSspTransport implements SspLink.Transport {
+
+  /** Produces the device's reply to one write */
+  interface Responder {
+    byte[] reply(byte[] written) throws Exception;
+  }
+
+  private final Responder responder;
+  private final long latencyMs;
+  private final int chunkSize;
+  final ArrayDeque<Long> writeTimes = new ArrayDeque<>();
+  private byte[] reply = new byte[0];
+  private long readyAt = Long.MAX_VALUE;
+  private int sent;
+
+  SimulatedSspTransport(Responder responder, long latencyMs) {
+    this(responder, latencyMs, Integer.MAX_VALUE);
+  }
+
+  SimulatedSspTransport(Responder responder, long latencyMs, int chunkSize) {
+    this.responder = responder;
+    this.latencyMs = latencyMs;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public void write(byte[] data) throws IOException {
+    long now = System.nanoTime();
+    writeTimes.add(now);
+    try {
+      reply = responder.reply(data);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+    readyAt = now + TimeUnit.MILLISECONDS.toNanos(latencyMs);
+    sent = 0;
+  }
+
+  /** Non-blocking, like the bytesAvailable() check the old SSP loop polled */
+  int available() {
+    return System.nanoTime() >= readyAt ? reply.length - sent : 0;
+  }
+
+  int readNow(byte[] buffer) {
+    int n = Math.min(Math.min(chunkSize, buffer.length), available());
+    System.arraycopy(reply, sent, buffer, 0, n);
+    sent += n;
+    return n;
+  }
+
+  @Override
+  public int read(byte[] buffer, int timeoutMs) throws IOException {
+    long waitNanos = Math.min(readyAt - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+    }
+    return readNow(buffer);
+  }
+}
@@ -0,0 +1,46 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.security.SecureRandom;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Per-packet cost of encrypting an SSP POLL with {@link SspCrypto} against
+ * the old path (new SecureRandom for the padding, Cipher.getInstance and
+ * init per call). Results go to stdout; see {@link Benchmarks}.
+ */
+public class SspCryptoBenchmark {
+  private static final int ROUNDS = 5;
+  private static final int ITERATIONS = 2_000;
+
+  /** POLL plaintext: [LEN][eCOUNT x4][0x07] + 8 bytes padding + [CRC x2] */
+  private static final int PLAIN_LENGTH = 16;
+  private static final int PADDING = 8;
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void cachedContextAgainstPerCallCipher() throws Exception {
+    SspCrypto crypto = new SspCrypto(SspCryptoTest.KEY);
+    byte[] buffer = new byte[PLAIN_LENGTH];
+
+    double oldNs = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> {
+      byte[] padding = new byte[PADDING];
+      new SecureRandom().nextBytes(padding);
+      byte[] plain = new byte[PLAIN_LENGTH];
+      System.arraycopy(padding, 0, plain, 6, PADDING);
+      return SSPUtils.encrypt(SspCryptoTest.KEY, plain)[0];
+    });
+    double newNs = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> {
+      crypto.pad(buffer, 6, PADDING);
+      crypto.encrypt(buffer, 0, PLAIN_LENGTH);
+      return buffer[0];
+    });
+
+    System.out.printf("SSP packet encrypt: per-call Cipher + SecureRandom %.0f ns, SspCrypto %.0f ns (%.1fx)%n",
+      oldNs, newNs, oldNs / newNs);
+  }
+}
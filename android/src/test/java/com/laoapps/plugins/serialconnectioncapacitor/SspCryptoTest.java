@@ -0,0 +1,59 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SspCryptoTest {
+
+  static final byte[] KEY = {
+    0x01, 0x23, 0x45, 0x67, 0x01, 0x23, 0x45, 0x67,
+    0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, (byte) 0x88
+  };
+
+  @Test
+  public void inPlaceMatchesOneShotCipher() throws Exception {
+    SspCrypto crypto = new SspCrypto(KEY);
+    Random random = new Random(5);
+    for (int blocks = 1; blocks <= 8; blocks++) {
+      byte[] plain = new byte[blocks * SspCrypto.BLOCK_SIZE];
+      random.nextBytes(plain);
+
+      byte[] buffer = new byte[plain.length + 3];
+      System.arraycopy(plain, 0, buffer, 3, plain.length);
+      crypto.encrypt(buffer, 3, plain.length);
+      assertArrayEquals(SSPUtils.encrypt(KEY, plain), Arrays.copyOfRange(buffer, 3, buffer.length));
+
+      crypto.decrypt(buffer, 3, plain.length);
+      assertArrayEquals(plain, Arrays.copyOfRange(buffer, 3, buffer.length));
+    }
+  }
+
+  @Test
+  public void encryptedPacketCarriesCommandCountAndCrc() throws Exception {
+    SSP ssp = new SSP();
+    ssp.encryptKey = KEY;
+    ssp.eCount = 5;
+
+    for (int i = 0; i < 3; i++) {
+      byte[] packet = ssp.getPacket("POLL", new JSONObject());
+      List<byte[]> frames = new SSPParser().parse(packet);
+      assertEquals(1, frames.size());
+      byte[] frame = frames.get(0);
+
+      int length = frame[2] & 0xFF;
+      assertEquals(0x7E, frame[3]);
+      byte[] plain = SSPUtils.decrypt(KEY, Arrays.copyOfRange(frame, 4, 3 + length));
+      assertEquals(0, plain.length % SspCrypto.BLOCK_SIZE);
+      assertEquals(1, plain[0]);                       // LEN
+      assertEquals(5 + i, plain[1] | plain[2] << 8);   // eCOUNT, little-endian
+      assertEquals(0x07, plain[5]);                    // POLL
+      assertEquals(Crc16.ssp(plain, 0, plain.length - 2), Crc16.getLowFirst(plain, plain.length - 2));
+    }
+    assertEquals(8, ssp.eCount);
+  }
+}
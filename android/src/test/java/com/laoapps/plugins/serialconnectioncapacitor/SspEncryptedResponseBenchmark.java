@@ -0,0 +1,53 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * POLL round trip with eSSP encryption against plaintext, both talking to a
+ * simulated slave. Results go to stdout; see {@link Benchmarks}.
+ */
+public class SspEncryptedResponseBenchmark {
+  private static final int POLLS = 30;
+  private static final long LATENCY_MS = 2;
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void encryptedPollAgainstPlaintext() throws Exception {
+    SimulatedSspTransport device =
+      new SimulatedSspTransport(new SspEncryptedResponseTest.SimulatedSlave(SspCryptoTest.KEY), LATENCY_MS);
+    SspCrypto crypto = new SspCrypto(SspCryptoTest.KEY);
+
+    SSP plain = new SSP();
+    SspLink plainLink = new SspLink();
+    plainLink.setMinCommandGap(0);
+    long start = System.nanoTime();
+    for (int i = 0; i < POLLS; i++) {
+      byte[] reply = plainLink.exchange(device, plain.getPacket("POLL", new JSONObject()), 1000);
+      assertNotNull(SSPUtils.extractPacketData(reply, (SspCrypto) null, 0, false));
+    }
+    double plainMs = (System.nanoTime() - start) / 1e6 / POLLS;
+
+    SSP encrypted = new SSP();
+    encrypted.encryptKey = SspCryptoTest.KEY;
+    SspLink encryptedLink = new SspLink();
+    encryptedLink.setMinCommandGap(0);
+    start = System.nanoTime();
+    for (int i = 0; i < POLLS; i++) {
+      int count = encrypted.eCount;
+      byte[] reply = encryptedLink.exchange(device, encrypted.getPacket("POLL", new JSONObject()), 1000);
+      assertNotNull(SSPUtils.extractPacketData(reply, crypto, count, false));
+    }
+    double encryptedMs = (System.nanoTime() - start) / 1e6 / POLLS;
+
+    System.out.printf("POLL round trip on simulated slave (%dms latency): plaintext %.2f ms, encrypted %.2f ms%n",
+      LATENCY_MS, plainMs, encryptedMs);
+  }
+}
@@ -0,0 +1,144 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SspEncryptedResponseTest {
+
+  /** POLL reply: OK, READ_NOTE on channel 2, CREDIT_NOTE on channel 2 */
+  private static final byte[] POLL_REPLY = {(byte) 0xF0, (byte) 0xEF, 0x02, (byte) 0xEE, 0x02};
+
+  /**
+   * eSSP slave: answers each frame with {@link #POLL_REPLY}, encrypted with the
+   * request's eCount when the request was encrypted.
+   */
+  static class SimulatedSlave implements SimulatedSspTransport.Responder {
+    private final SspCrypto crypto;
+    private final SspFrameEncoder encoder = new SspFrameEncoder();
+    int lastCount = -1;
+
+    SimulatedSlave(byte[] key) throws Exception {
+      this.crypto = new SspCrypto(key);
+    }
+
+    @Override
+    public byte[] reply(byte[] data) throws IOException {
+      List<byte[]> frames = new SSPParser().parse(data);
+      if (frames.size() != 1) throw new IOException("Slave got " + frames.size() + " frames");
+      byte[] request = frames.get(0);
+      byte seq = request[1];
+      int length = request[2] & 0xFF;
+
+      byte[] payload = POLL_REPLY;
+      if (request[3] == 0x7E) {
+        try {
+          byte[] plain = Arrays.copyOfRange(request, 4, 3 + length);
+          crypto.decrypt(plain, 0, plain.length);
+          lastCount = (plain[1] & 0xFF) | (plain[2] & 0xFF) << 8 | (plain[3] & 0xFF) << 16 | (plain[4] & 0xFF) << 24;
+          payload = encrypt(POLL_REPLY, lastCount);
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+      return encoder.frame(seq, payload, 0, payload.length);
+    }
+
+    byte[] encrypt(byte[] data, int count) throws Exception {
+      int plainLength = 1 + 4 + data.length + 2;
+      int padded = (plainLength + SspCrypto.BLOCK_SIZE - 1) / SspCrypto.BLOCK_SIZE * SspCrypto.BLOCK_SIZE;
+      byte[] out = new byte[1 + padded];
+      out[0] = 0x7E;
+      out[1] = (byte) data.length;
+      out[2] = (byte) count;
+      out[3] = (byte) (count >>> 8);
+      out[4] = (byte) (count >>> 16);
+      out[5] = (byte) (count >>> 24);
+      System.arraycopy(data, 0, out, 6, data.length);
+      crypto.pad(out, 6 + data.length, padded - plainLength);
+      Crc16.putLowFirst(Crc16.ssp(out, 1, padded - 2), out, padded - 1);
+      crypto.encrypt(out, 1, padded);
+      return out;
+    }
+  }
+
+  private static SSP encryptedSession(int eCount) {
+    SSP ssp = new SSP();
+    ssp.encryptKey = SspCryptoTest.KEY;
+    ssp.eCount = eCount;
+    return ssp;
+  }
+
+  @Test
+  public void encryptedPollDecodesToEvents() throws Exception {
+    SSP ssp = encryptedSession(41);
+    SimulatedSlave slave = new SimulatedSlave(SspCryptoTest.KEY);
+    SimulatedSspTransport device = new SimulatedSspTransport(slave, 0);
+    SspLink link = new SspLink();
+
+    int sentCount = ssp.eCount;
+    byte[] reply = link.exchange(device, ssp.getPacket("POLL", new JSONObject()), 1000);
+    assertEquals(sentCount, slave.lastCount);
+
+    byte[] data = SSPUtils.extractPacketData(reply, new SspCrypto(SspCryptoTest.KEY), sentCount, false);
+    assertArrayEquals(POLL_REPLY, data);
+
+    JSONObject result = ssp.parseData(data, "POLL");
+    assertTrue(result.getBoolean("success"));
+    JSONArray events = result.getJSONObject("info").getJSONArray("events");
+    assertEquals("READ_NOTE", events.getJSONObject(0).getString("name"));
+    assertEquals("CREDIT_NOTE", events.getJSONObject(1).getString("name"));
+    assertEquals(2, events.getJSONObject(1).getInt("channel"));
+  }
+
+  @Test
+  public void keyOverloadDecryptsToo() throws Exception {
+    SimulatedSlave slave = new SimulatedSlave(SspCryptoTest.KEY);
+    SimulatedSspTransport device = new SimulatedSspTransport(slave, 0);
+    SSP ssp = encryptedSession(7);
+    byte[] reply = new SspLink().exchange(device, ssp.getPacket("POLL", new JSONObject()), 1000);
+    assertArrayEquals(POLL_REPLY, SSPUtils.extractPacketData(reply, SspCryptoTest.KEY, 7, false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void staleCountIsRejected() throws Exception {
+    SimulatedSlave slave = new SimulatedSlave(SspCryptoTest.KEY);
+    SimulatedSspTransport device = new SimulatedSspTransport(slave, 0);
+    SSP ssp = encryptedSession(7);
+    byte[] reply = new SspLink().exchange(device, ssp.getPacket("POLL", new JSONObject()), 1000);
+    SSPUtils.extractPacketData(reply, new SspCrypto(SspCryptoTest.KEY), 6, false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void corruptCiphertextFailsInnerCrc() throws Exception {
+    SimulatedSlave slave = new SimulatedSlave(SspCryptoTest.KEY);
+    byte[] payload = slave.encrypt(POLL_REPLY, 3);
+    payload[5] ^= 0x10;
+    byte[] frame = new SSPParser().parse(new SspFrameEncoder().frame((byte) 0x80, payload, 0, payload.length)).get(0);
+    SSPUtils.extractPacketData(frame, new SspCrypto(SspCryptoTest.KEY), 3, false);
+  }
+
+  @Test
+  public void consecutiveEncryptedPollsDecodeFirstTime() throws Exception {
+    SimulatedSlave slave = new SimulatedSlave(SspCryptoTest.KEY);
+    SimulatedSspTransport device = new SimulatedSspTransport(slave, 0);
+    SspCrypto crypto = new SspCrypto(SspCryptoTest.KEY);
+    SSP encrypted = encryptedSession(0);
+    SspLink link = new SspLink();
+    link.setMinCommandGap(0);
+
+    for (int i = 0; i < 30; i++) {
+      int count = encrypted.eCount;
+      byte[] reply = link.exchange(device, encrypted.getPacket("POLL", new JSONObject()), 1000);
+      assertEquals(count, slave.lastCount);
+      // Every reply decodes first time: no fallback heuristics, no retries
+      assertArrayEquals(POLL_REPLY, SSPUtils.extractPacketData(reply, crypto, count, false));
+    }
+    assertEquals(30, encrypted.eCount);
+  }
+}
@@ -0,0 +1,165 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SspEventBusTest {
+
+  private static JSONObject data(int n) throws Exception {
+    return new JSONObject().put("n", n);
+  }
+
+  @Test
+  public void everySubscriberAndWildcardGetsEventsInOrder() throws Exception {
+    SspEventBus bus = new SspEventBus("test-events");
+    List<String> a = Collections.synchronizedList(new ArrayList<>());
+    List<String> b = Collections.synchronizedList(new ArrayList<>());
+    List<String> all = Collections.synchronizedList(new ArrayList<>());
+    bus.subscribe("READ_NOTE", (name, data) -> a.add(name + data.optInt("n")));
+    bus.subscribe("read_note", (name, data) -> b.add(name + data.optInt("n")));
+    bus.subscribe(SspEventBus.WILDCARD, (name, data) -> all.add(name + data.optInt("n")));
+
+    bus.publish("READ_NOTE", data(1));
+    bus.publish("CREDIT_NOTE", data(2));
+    bus.publish("READ_NOTE", data(3));
+    assertTrue(bus.awaitIdle(1000));
+
+    assertEquals(List.of("READ_NOTE1", "READ_NOTE3"), a);
+    assertEquals(a, b);
+    assertEquals(List.of("READ_NOTE1", "CREDIT_NOTE2", "READ_NOTE3"), all);
+    assertEquals(3, bus.getDelivered());
+  }
+
+  @Test
+  public void slowListenerDoesNotBlockPublisher() throws Exception {
+    SspEventBus bus = new SspEventBus("test-events");
+    CountDownLatch release = new CountDownLatch(1);
+    bus.subscribe("POLL", (name, data) -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++) bus.publish("POLL", data(i));
+    long publishMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue("publish took " + publishMs + " ms", publishMs < 100);
+
+    release.countDown();
+    assertTrue(bus.awaitIdle(1000));
+    assertEquals(10, bus.getDelivered());
+  }
+
+  @Test
+  public void unsubscribedAndUnheardEventsAreSkipped() throws Exception {
+    SspEventBus bus = new SspEventBus("test-events");
+    List<Integer> got = Collections.synchronizedList(new ArrayList<>());
+    SspEventBus.Subscription subscription = bus.subscribe("ENABLED", (name, data) -> got.add(data.optInt("n")));
+    assertTrue(bus.hasSubscribers("enabled"));
+    assertFalse(bus.hasSubscribers("DISABLED"));
+
+    bus.publish("ENABLED", data(1));
+    assertTrue(bus.awaitIdle(1000));
+    subscription.close();
+    bus.publish("ENABLED", data(2));
+    assertTrue(bus.awaitIdle(1000));
+
+    assertEquals(List.of(1), got);
+    assertEquals(1, bus.getPublished());
+  }
+
+  private static SspEventBus stalledBus(int capacity, SspEventBus.OverflowPolicy policy, CountDownLatch release,
+                                        List<Integer> got) throws Exception {
+    SspEventBus bus = new SspEventBus("test-events", capacity);
+    bus.setOverflowPolicy(policy);
+    CountDownLatch stalled = new CountDownLatch(1);
+    bus.subscribe("E", (name, data) -> {
+      got.add(data.optInt("n"));
+      stalled.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    // Event 0 is in the listener, so the queue itself is empty
+    bus.publish("E", data(0));
+    assertTrue(stalled.await(1, TimeUnit.SECONDS));
+    return bus;
+  }
+
+  @Test
+  public void dropOldestKeepsTheNewestEvents() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> got = Collections.synchronizedList(new ArrayList<>());
+    SspEventBus bus = stalledBus(2, SspEventBus.OverflowPolicy.DROP_OLDEST, release, got);
+    for (int i = 1; i <= 5; i++) bus.publish("E", data(i));
+    assertEquals(3, bus.getDropped());
+
+    release.countDown();
+    assertTrue(bus.awaitIdle(1000));
+    assertEquals(List.of(0, 4, 5), got);
+  }
+
+  @Test
+  public void dropNewestKeepsTheOldestEvents() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> got = Collections.synchronizedList(new ArrayList<>());
+    SspEventBus bus = stalledBus(2, SspEventBus.OverflowPolicy.DROP_NEWEST, release, got);
+    for (int i = 1; i <= 5; i++) bus.publish("E", data(i));
+    assertEquals(3, bus.getDropped());
+
+    release.countDown();
+    assertTrue(bus.awaitIdle(1000));
+    assertEquals(List.of(0, 1, 2), got);
+  }
+
+  @Test
+  public void defaultPolicyLosesNoEvents() throws Exception {
+    SspEventBus bus = new SspEventBus("test-events", 2);
+    assertEquals(SspEventBus.OverflowPolicy.CALLER_RUNS, bus.getOverflowPolicy());
+    Set<Integer> got = Collections.synchronizedSet(new HashSet<>());
+    bus.subscribe("E", (name, data) -> {
+      got.add(data.optInt("n"));
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    for (int i = 0; i < 20; i++) bus.publish("E", data(i));
+    assertTrue(bus.awaitIdle(1000));
+    assertEquals(0, bus.getDropped());
+    assertEquals(20, got.size());
+  }
+
+  @Test
+  public void slowDeliveryCountsAsLate() throws Exception {
+    SspEventBus bus = new SspEventBus("test-events");
+    bus.setLateThreshold(20);
+    bus.subscribe("E", (name, data) -> {
+      try {
+        Thread.sleep(30);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    bus.publish("E", data(1));
+    bus.publish("E", data(2)); // Waits behind the first listener call
+    assertTrue(bus.awaitIdle(1000));
+    assertEquals(2, bus.getDelivered());
+    assertTrue(bus.getLate() >= 1);
+  }
+}
@@ -0,0 +1,116 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SspFrameEncoderTest {
+
+  /** The stream-based framing SSP.getPacket used before */
+  private static byte[] legacyFrame(byte seq, byte[] packetData) throws Exception {
+    ByteArrayOutputStream packetCore = new ByteArrayOutputStream();
+    packetCore.write(seq);
+    packetCore.write(packetData.length);
+    packetCore.write(packetData);
+    byte[] core = packetCore.toByteArray();
+    byte[] crc = SSPUtils.crc16(core);
+    ByteArrayOutputStream fullPacket = new ByteArrayOutputStream();
+    fullPacket.write(0x7F);
+    fullPacket.write(core);
+    fullPacket.write(crc);
+    return SSPUtils.stuffBuffer(fullPacket.toByteArray());
+  }
+
+  /** The unencrypted SSP.getPacket body before the encoder */
+  private static byte[] legacyPacket(byte seq, int code, byte[] argBytes) throws Exception {
+    ByteArrayOutputStream dataStream = new ByteArrayOutputStream();
+    dataStream.write(code);
+    if (argBytes != null && argBytes.length > 0) {
+      dataStream.write(argBytes);
+    }
+    return legacyFrame(seq, dataStream.toByteArray());
+  }
+
+  /** The ByteBuffer chain SSPUtils.getPacket used before */
+  private static byte[] legacyUtilsPacket(byte seq, int code, byte[] argBytes) {
+    byte[] data = ByteBuffer.allocate(1 + argBytes.length).put((byte) code).put(argBytes).array();
+    byte[] crcPacket = ByteBuffer.allocate(2 + data.length).put(seq).put((byte) data.length).put(data).array();
+    byte[] crc = SSPUtils.crc16(crcPacket);
+    byte[] packet = ByteBuffer.allocate(crcPacket.length + crc.length).put(crcPacket).put(crc).array();
+    return ByteBuffer.allocate(1 + packet.length).put((byte) 0x7F).put(SSPUtils.stuffBuffer(packet)).array();
+  }
+
+  /** One args object that satisfies every command taking arguments */
+  private static JSONObject allArgs() throws Exception {
+    return new JSONObject()
+      .put("key", "1234567890123")
+      .put("channels", new JSONArray("[1,0,1,1,0,0,1]"))
+      .put("version", 6)
+      .put("denomination", 500)
+      .put("country", "EUR")
+      .put("routeToCashbox", true);
+  }
+
+  @Test
+  public void matchesLegacyPacketForEveryCommand() throws Exception {
+    JSONObject args = allArgs();
+    for (Map.Entry<String, SSPUtils.CommandInfo> entry : SSPUtils.commands.entrySet()) {
+      String command = entry.getKey();
+      int code = entry.getValue().code;
+      SSP ssp = new SSP();
+      byte[] argBytes = ssp.argsToByte(command, args);
+
+      // First call uses SEQ 0x80, the second the toggled bit (SYNC resets to 0x80)
+      assertArrayEquals(command, legacyPacket((byte) 0x80, code, argBytes), ssp.getPacket(command, args));
+      byte second = command.equals("SYNC") ? (byte) 0x80 : 0x00;
+      assertArrayEquals(command, legacyPacket(second, code, argBytes), ssp.getPacket(command, args));
+      // Templates are reused, not rebuilt with a stale sequence
+      assertArrayEquals(command, legacyPacket((byte) 0x80, code, argBytes), ssp.getPacket(command, args));
+    }
+  }
+
+  @Test
+  public void utilsPacketMatchesLegacyForEveryCommand() throws Exception {
+    JSONObject args = allArgs();
+    for (Map.Entry<String, SSPUtils.CommandInfo> entry : SSPUtils.commands.entrySet()) {
+      String command = entry.getKey();
+      byte[] argBytes = new SSP().argsToByte(command, args);
+      for (byte seq : new byte[]{(byte) 0x80, 0x00}) {
+        assertArrayEquals(command, legacyUtilsPacket(seq, entry.getValue().code, argBytes),
+          SSPUtils.getPacket(command, argBytes, seq, null, 0));
+      }
+    }
+  }
+
+  @Test
+  public void framingMatchesLegacyForAnyPayload() throws Exception {
+    SspFrameEncoder encoder = new SspFrameEncoder();
+    Random random = new Random(9);
+    for (int length = 0; length <= 255; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+      // Make stuffing common
+      for (int i = 0; i < length; i += 3) data[i] = 0x7F;
+      for (byte seq : new byte[]{(byte) 0x80, 0x00, 0x7F}) {
+        assertArrayEquals("len=" + length, legacyFrame(seq, data), encoder.frame(seq, data, 0, length));
+      }
+    }
+  }
+
+  @Test
+  public void parserAcceptsEncodedFrames() {
+    SspFrameEncoder encoder = new SspFrameEncoder();
+    byte[] data = {(byte) 0xF0, 0x7F, 0x7F, 0x01};
+    byte[] frame = encoder.frame((byte) 0x80, data, 0, data.length);
+    byte[] parsed = new SSPParser().parse(frame).get(0);
+    assertArrayEquals(new byte[]{0x7F, (byte) 0x80, 0x04, (byte) 0xF0, 0x7F, 0x7F, 0x01},
+      Arrays.copyOf(parsed, 7));
+  }
+}
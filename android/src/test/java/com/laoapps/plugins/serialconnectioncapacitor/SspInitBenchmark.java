@@ -0,0 +1,39 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * NV9 init time on a simulated device, with the per-phase breakdown the
+ * INITIALIZED event carries; the target is under one second. Results go to
+ * stdout; see {@link Benchmarks}.
+ */
+public class SspInitBenchmark {
+  private static final long LATENCY_MS = 5;
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void initTime() throws Exception {
+    SSP ssp = new SSP();
+    ssp.setTransport(new SimulatedSspTransport(new SspInitTest.SimulatedNv9(), LATENCY_MS));
+
+    long start = System.nanoTime();
+    ssp.initSSP().get(5, TimeUnit.SECONDS);
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(ssp.isEnabled());
+
+    StringBuilder phases = new StringBuilder();
+    for (SspInitTimeline.Phase phase : ssp.getLastInitTimeline().phases()) {
+      phases.append(' ').append(phase.name).append('=').append(phase.durationMs).append("ms");
+    }
+    System.out.println("NV9 init on simulated device (" + LATENCY_MS + "ms latency): " + elapsedMs
+      + " ms (target < 1000 ms);" + phases);
+  }
+}
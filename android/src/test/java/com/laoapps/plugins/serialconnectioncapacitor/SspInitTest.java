@@ -0,0 +1,130 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SspInitTest {
+
+  private static final String[] PHASES = {
+    "SYNC", "HOST_PROTOCOL_VERSION", "GET_SERIAL_NUMBER", "DISPLAY_ON", "SETUP_REQUEST", "SET_CHANNEL_INHIBITS", "ENABLE"};
+
+  /**
+   * NV9 stand-in answering each command by code. Commands listed in
+   * {@link #rejectFirst} get COMMAND_CANNOT_BE_PROCESSED that many times before OK.
+   */
+  static class SimulatedNv9 implements SimulatedSspTransport.Responder {
+    private final SspFrameEncoder encoder = new SspFrameEncoder();
+    final Map<Integer, Integer> rejectFirst = new HashMap<>();
+
+    private static int code(String command) {
+      return SSPUtils.commands.get(command).code;
+    }
+
+    @Override
+    public byte[] reply(byte[] data) throws IOException {
+      List<byte[]> frames = new SSPParser().parse(data);
+      if (frames.size() != 1) throw new IOException("Device got " + frames.size() + " frames");
+      byte[] request = frames.get(0);
+      int code = request[3] & 0xFF;
+
+      byte[] payload;
+      Integer rejects = rejectFirst.get(code);
+      if (rejects != null && rejects > 0) {
+        rejectFirst.put(code, rejects - 1);
+        payload = new byte[]{(byte) 0xF5};
+      } else if (code == code("GET_SERIAL_NUMBER")) {
+        payload = new byte[]{(byte) 0xF0, 0x00, 0x12, 0x34, 0x56};
+      } else if (code == code("SETUP_REQUEST")) {
+        // Validator, firmware 0384, EUR, multiplier 1, 3 channels (5, 10, 20), security, real multiplier, protocol 5
+        payload = new byte[]{(byte) 0xF0, 0x00, '0', '3', '8', '4', 'E', 'U', 'R', 0x01, 0x00, 0x00, 0x03,
+          5, 10, 20, 2, 2, 2, 0x64, 0x00, 0x00, 0x05};
+      } else {
+        payload = new byte[]{(byte) 0xF0};
+      }
+      return encoder.frame(request[1], payload, 0, payload.length);
+    }
+  }
+
+  private static SSP simulated(SimulatedNv9 device, AtomicReference<JSONObject> initialized) {
+    SSP ssp = new SSP();
+    ssp.setTransport(new SimulatedSspTransport(device, 1));
+    ssp.on("INITIALIZED", initialized::set);
+    return ssp;
+  }
+
+  @Test
+  public void initRecordsEveryPhaseOnce() throws Exception {
+    AtomicReference<JSONObject> initialized = new AtomicReference<>();
+    SSP ssp = simulated(new SimulatedNv9(), initialized);
+
+    ssp.initSSP().get(5, TimeUnit.SECONDS);
+    assertTrue(ssp.isEnabled());
+
+    List<SspInitTimeline.Phase> recorded = ssp.getLastInitTimeline().phases();
+    assertEquals(PHASES.length, recorded.size());
+    for (int i = 0; i < PHASES.length; i++) {
+      assertEquals(PHASES[i], recorded.get(i).name);
+      assertEquals(1, recorded.get(i).attempts);
+      assertTrue(recorded.get(i).success);
+    }
+
+    assertTrue(ssp.getEventBus().awaitIdle(1000));
+    JSONObject event = initialized.get();
+    assertTrue(event.getBoolean("success"));
+    JSONArray phases = event.getJSONObject("timing").getJSONArray("phases");
+    assertEquals(PHASES.length, phases.length());
+    for (int i = 0; i < PHASES.length; i++) {
+      JSONObject phase = phases.getJSONObject(i);
+      assertEquals(PHASES[i], phase.getString("name"));
+      assertTrue(phase.getBoolean("success"));
+      assertEquals(1, phase.getInt("attempts"));
+    }
+  }
+
+  @Test
+  public void rejectedStepIsRetriedPromptly() throws Exception {
+    SimulatedNv9 device = new SimulatedNv9();
+    device.rejectFirst.put(SSPUtils.commands.get("SETUP_REQUEST").code, 2);
+    SSP ssp = simulated(device, new AtomicReference<>());
+
+    ssp.initSSP().get(5, TimeUnit.SECONDS);
+
+    SspInitTimeline.Phase setup = ssp.getLastInitTimeline().phases().get(4);
+    assertEquals("SETUP_REQUEST", setup.name);
+    assertEquals(3, setup.attempts);
+    assertTrue(setup.durationMs < 2 * SSP.INIT_RETRY_DELAY_MS + 500);
+  }
+
+  @Test
+  public void requiredStepFailureReportsTimingSoFar() throws Exception {
+    SimulatedNv9 device = new SimulatedNv9();
+    device.rejectFirst.put(SSPUtils.commands.get("SET_CHANNEL_INHIBITS").code, 10);
+    AtomicReference<JSONObject> initialized = new AtomicReference<>();
+    SSP ssp = simulated(device, initialized);
+
+    try {
+      ssp.initSSP().get(5, TimeUnit.SECONDS);
+      fail("init should fail");
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause().getMessage().contains("SET_CHANNEL_INHIBITS"));
+    }
+    assertTrue(ssp.getEventBus().awaitIdle(1000));
+    JSONObject event = initialized.get();
+    assertFalse(event.getBoolean("success"));
+    JSONArray phases = event.getJSONObject("timing").getJSONArray("phases");
+    JSONObject last = phases.getJSONObject(phases.length() - 1);
+    assertEquals("SET_CHANNEL_INHIBITS", last.getString("name"));
+    assertFalse(last.getBoolean("success"));
+    assertEquals(3, last.getInt("attempts"));
+  }
+}
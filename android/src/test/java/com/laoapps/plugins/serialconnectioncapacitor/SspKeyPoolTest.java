@@ -0,0 +1,86 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SspKeyPoolTest {
+
+  private static void awaitAvailable(SspKeyPool pool, int n) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (pool.available() < n) {
+      assertTrue("pool never reached " + n, System.nanoTime() < deadline);
+      Thread.sleep(5);
+    }
+  }
+
+  @Test
+  public void pooledKeysAreConsistent() throws Exception {
+    SspKeyPool pool = new SspKeyPool(2, SSPUtils::generateKeys);
+    pool.prefill();
+    awaitAvailable(pool, 2);
+
+    SSPUtils.Keys a = pool.take();
+    SSPUtils.Keys b = pool.take();
+    assertTrue(a.generator.compareTo(a.modulus) > 0);
+    assertEquals(a.generator.modPow(a.hostRandom, a.modulus), a.hostInter);
+    assertNotEquals(a.hostRandom, b.hostRandom);
+  }
+
+  @Test
+  public void takeRefillsInBackground() throws Exception {
+    AtomicInteger generated = new AtomicInteger();
+    SspKeyPool pool = new SspKeyPool(2, () -> {
+      generated.incrementAndGet();
+      return SSPUtils.generateKeys();
+    });
+    pool.prefill();
+    awaitAvailable(pool, 2);
+
+    pool.take();
+    awaitAvailable(pool, 2);
+    assertEquals(3, generated.get());
+  }
+
+  @Test
+  public void emptyPoolGeneratesOnCallerThread() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Thread caller = Thread.currentThread();
+    AtomicInteger inline = new AtomicInteger();
+    SspKeyPool pool = new SspKeyPool(1, () -> {
+      if (Thread.currentThread() == caller) {
+        inline.incrementAndGet();
+      } else {
+        try {
+          release.await(); // Background refill stalls, as on a slow board
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return SSPUtils.generateKeys();
+    });
+
+    assertNotNull(pool.take());
+    assertEquals(1, inline.get());
+    release.countDown();
+  }
+
+  @Test
+  public void takeFromFilledPoolDoesNotGenerateOnCaller() throws Exception {
+    Thread caller = Thread.currentThread();
+    AtomicInteger inline = new AtomicInteger();
+    SspKeyPool pool = new SspKeyPool(2, () -> {
+      if (Thread.currentThread() == caller) inline.incrementAndGet();
+      return SSPUtils.generateKeys();
+    });
+    pool.prefill();
+    awaitAvailable(pool, 2);
+
+    assertNotNull(pool.take());
+    assertNotNull(pool.take());
+    assertEquals(0, inline.get());
+  }
+}
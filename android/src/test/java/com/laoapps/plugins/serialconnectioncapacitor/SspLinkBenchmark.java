@@ -0,0 +1,72 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round-trip time of {@link SspLink} against the response loop SSP.command
+ * used before (bytesAvailable + 10ms idle sleep + 100ms post-delay), both
+ * talking to a simulated NV9. Results go to stdout; see {@link Benchmarks}.
+ */
+public class SspLinkBenchmark {
+  private static final int EXCHANGES = 20;
+  private static final long DEVICE_LATENCY_MS = 3;
+  private static final byte[] POLL = {0x7F, (byte) 0x80, 0x01, 0x07, 0x12, 0x02};
+
+  /** The old SSP.command read loop, minus logging */
+  private static byte[] oldExchange(SimulatedSspTransport device, byte[] packet) throws Exception {
+    SSPParser localParser = new SSPParser();
+    device.write(packet);
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    long start = System.currentTimeMillis();
+    List<byte[]> packets = new ArrayList<>();
+    while (System.currentTimeMillis() - start < 10000) {
+      int avail = device.available();
+      if (avail > 0) {
+        byte[] chunk = new byte[avail];
+        int len = device.readNow(chunk);
+        response.write(chunk, 0, len);
+        packets = localParser.parse(chunk);
+        if (!packets.isEmpty()) break;
+      } else {
+        Thread.sleep(10);
+      }
+    }
+    Thread.sleep(100);
+    return packets.isEmpty() ? null : packets.get(0);
+  }
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void pollRoundTripAgainstTheOldLoop() throws Exception {
+    byte[] reply = SspLinkTest.reply(0x80, 0xF0, 0xEF, 0x01);
+    SimulatedSspTransport device = new SimulatedSspTransport(data -> reply, DEVICE_LATENCY_MS, 16);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < EXCHANGES; i++) assertNotNull(oldExchange(device, POLL));
+    double oldMs = (System.nanoTime() - start) / 1e6 / EXCHANGES;
+
+    SspLink link = new SspLink();
+    start = System.nanoTime();
+    for (int i = 0; i < EXCHANGES; i++) assertNotNull(link.exchange(device, POLL, 10000));
+    double newMs = (System.nanoTime() - start) / 1e6 / EXCHANGES;
+
+    link.setMinCommandGap(0);
+    start = System.nanoTime();
+    for (int i = 0; i < EXCHANGES; i++) assertNotNull(link.exchange(device, POLL, 10000));
+    double noGapMs = (System.nanoTime() - start) / 1e6 / EXCHANGES;
+
+    System.out.printf("SSP round trip, device latency %dms: old loop %.1f ms, SspLink %.1f ms (%dms gap), %.1f ms (no gap)%n",
+      DEVICE_LATENCY_MS, oldMs, newMs, SspLink.DEFAULT_MIN_COMMAND_GAP_MS, noGapMs);
+  }
+}
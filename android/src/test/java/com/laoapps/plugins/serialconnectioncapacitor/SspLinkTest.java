@@ -0,0 +1,134 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SspLinkTest {
+
+  /** Stuffed reply frame: [7F][SEQ][LEN][DATA...][CRC] */
+  static byte[] reply(int seq, int... data) {
+    byte[] frame = new byte[data.length + 5];
+    frame[0] = 0x7F;
+    frame[1] = (byte) seq;
+    frame[2] = (byte) data.length;
+    for (int i = 0; i < data.length; i++) frame[3 + i] = (byte) data[i];
+    Crc16.putLowFirst(Crc16.ssp(frame, 1, data.length + 2), frame, data.length + 3);
+    return SSPUtils.stuffBuffer(frame);
+  }
+
+  @Test
+  public void returnsFirstValidPacketAcrossChunks() throws Exception {
+    byte[] expected = reply(0x80, 0xF0, 0xEF, 0x7F, 0x01);
+    // Line noise before the frame must be skipped
+    byte[] noisy = new byte[expected.length + 2];
+    noisy[0] = 0x12;
+    noisy[1] = 0x34;
+    System.arraycopy(expected, 0, noisy, 2, expected.length);
+    SimulatedSspTransport device = new SimulatedSspTransport(data -> noisy, 0, 3);
+
+    SspLink link = new SspLink();
+    byte[] packet = link.exchange(device, new byte[]{0x7F, (byte) 0x80, 0x01, 0x07, 0x12, 0x02}, 1000);
+
+    // Parser un-stuffs: 7F 7F in the data comes back as a single 7F
+    assertArrayEquals(new byte[]{0x7F, (byte) 0x80, 0x04, (byte) 0xF0, (byte) 0xEF, 0x7F, 0x01},
+      Arrays.copyOf(packet, 7));
+    assertEquals(noisy.length, link.lastBytesReceived());
+  }
+
+  @Test
+  public void timesOutWithNullWhenNothingValidArrives() throws Exception {
+    byte[] corrupt = reply(0x80, 0xF0);
+    corrupt[corrupt.length - 1] ^= 0x55;
+    SimulatedSspTransport device = new SimulatedSspTransport(data -> corrupt, 0, 64);
+
+    SspLink link = new SspLink();
+    assertNull(link.exchange(device, new byte[]{0x00}, 50));
+    assertEquals(corrupt.length, link.lastBytesReceived());
+  }
+
+  @Test
+  public void keepsMinimumGapBetweenCommands() throws Exception {
+    byte[] ok = reply(0x80, 0xF0);
+    SimulatedSspTransport device = new SimulatedSspTransport(data -> ok, 0, 64);
+    SspLink link = new SspLink();
+    link.setMinCommandGap(30);
+
+    assertNotNull(link.exchange(device, new byte[]{0x00}, 1000));
+    assertNotNull(link.exchange(device, new byte[]{0x00}, 1000));
+
+    long gapMs = TimeUnit.NANOSECONDS.toMillis(device.writeTimes.getLast() - device.writeTimes.getFirst());
+    assertTrue("gap " + gapMs + "ms", gapMs >= 30);
+  }
+
+  /** Hands out scripted chunks per write; an empty chunk is a read that times out */
+  static class ScriptedDevice implements SspLink.Transport {
+    final ArrayDeque<ArrayDeque<byte[]>> replies = new ArrayDeque<>();
+    private ArrayDeque<byte[]> current = new ArrayDeque<>();
+
+    ScriptedDevice answer(byte[]... chunks) {
+      replies.add(new ArrayDeque<>(Arrays.asList(chunks)));
+      return this;
+    }
+
+    @Override
+    public void write(byte[] data) {
+      current = replies.isEmpty() ? new ArrayDeque<>() : replies.poll();
+    }
+
+    @Override
+    public int read(byte[] buffer, int timeoutMs) throws IOException {
+      byte[] chunk = current.poll();
+      if (chunk == null || chunk.length == 0) {
+        try {
+          Thread.sleep(timeoutMs);
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        return 0;
+      }
+      System.arraycopy(chunk, 0, buffer, 0, chunk.length);
+      return chunk.length;
+    }
+  }
+
+  @Test
+  public void lateSplitReplyDoesNotAnswerTheNextCommand() throws Exception {
+    byte[] late = reply(0x80, 0xF0, 0x11);
+    byte[] head = Arrays.copyOf(late, 3);
+    byte[] tail = Arrays.copyOfRange(late, 3, late.length);
+    byte[] fresh = reply(0x00, 0xF0, 0x22);
+    ScriptedDevice device = new ScriptedDevice()
+      .answer(head)         // first command: only half its reply before the timeout
+      .answer(tail, fresh); // second command: the rest of the old reply, then its own
+    SspLink link = new SspLink();
+    link.setMinCommandGap(0);
+
+    assertNull(link.exchange(device, new byte[]{0x7F, (byte) 0x80, 0x01, 0x07, 0x12, 0x02}, 30));
+    byte[] packet = link.exchange(device, new byte[]{0x7F, 0x00, 0x01, 0x07, 0x00, 0x00}, 1000);
+
+    assertNotNull(packet);
+    assertEquals(0x00, packet[1]);
+    assertEquals(0x22, packet[4]);
+  }
+
+  @Test
+  public void lateWholeReplyWithTheOldSeqIsDropped() throws Exception {
+    ScriptedDevice device = new ScriptedDevice()
+      .answer()
+      .answer(reply(0x80, 0xF0, 0x11), reply(0x00, 0xF0, 0x22));
+    SspLink link = new SspLink();
+    link.setMinCommandGap(0);
+
+    assertNull(link.exchange(device, new byte[]{0x7F, (byte) 0x80, 0x01, 0x07, 0x12, 0x02}, 30));
+    byte[] packet = link.exchange(device, new byte[]{0x7F, 0x00, 0x01, 0x07, 0x00, 0x00}, 1000);
+
+    assertEquals(0x22, packet[4]);
+    assertEquals(1, link.staleReplies());
+  }
+}
@@ -0,0 +1,40 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Decoding a busy POLL reply: the JSON loop parseData used to run for every
+ * poll, against the typed decoder. Results go to stdout; see {@link Benchmarks}.
+ */
+public class SspPollDecoderBenchmark {
+
+  private static final int ROUNDS = 5;
+  private static final int ITERATIONS = 100_000;
+
+  @Before
+  public void onlyWhenEnabled() {
+    Benchmarks.assumeEnabled();
+  }
+
+  @Test
+  public void typedDecoderAgainstJsonLoop() throws Exception {
+    byte[] data = SspPollDecoderTest.BUSY_POLL;
+    byte[] dataSub = Arrays.copyOfRange(data, 1, data.length);
+    SspPollDecoder decoder = new SspPollDecoder();
+    int[] channels = new int[1];
+    SspPollDecoder.Sink counter = event -> channels[0] += event.channel();
+
+    double legacyNs = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS, i -> {
+      JSONArray events = SspPollDecoderTest.legacyEvents(dataSub);
+      return events.length();
+    });
+    double typedNs = Benchmarks.nsPerIteration(ROUNDS, ITERATIONS,
+      i -> decoder.decode(data, 1, data.length - 1, counter) + channels[0]);
+
+    System.out.printf("5-event POLL decode: JSON %.0f ns, typed %.0f ns (%.1fx)%n",
+      legacyNs, typedNs, legacyNs / typedNs);
+  }
+}
@@ -0,0 +1,152 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SspPollDecoderTest {
+
+  /** Typical busy POLL: OK, READ_NOTE 2, NOTE_STACKING, CREDIT_NOTE 2, NOTE_STACKED 2, DISABLED */
+  static final byte[] BUSY_POLL = {(byte) 0xF0, (byte) 0xEF, 0x02, (byte) 0xCC, (byte) 0xEE, 0x02, (byte) 0xEB, 0x02, (byte) 0xE8};
+
+  /** The event loop parseData used before the typed decoder, minus its logging */
+  static JSONArray legacyEvents(byte[] dataSub) throws JSONException {
+    JSONArray events = new JSONArray();
+    int k = 0;
+    while (k < dataSub.length) {
+      int code = dataSub[k] & 0xFF;
+      String eventName = SSPUtils.statusDesc.getOrDefault(code, "UNKNOWN");
+      JSONObject event = new JSONObject();
+      event.put("code", code);
+      event.put("name", eventName);
+      switch (eventName) {
+        case "READ_NOTE":
+        case "CREDIT_NOTE":
+        case "NOTE_STACKED":
+        case "FRAUD_ATTEMPT":
+        case "NOTE_CLEARED_FROM_FRONT":
+        case "NOTE_CLEARED_TO_CASHBOX":
+          if (k + 1 < dataSub.length) {
+            event.put("channel", dataSub[k + 1] & 0xFF);
+            k += 2;
+          } else {
+            k += 1;
+          }
+          break;
+        case "NOTE_HELD_IN_BEZEL":
+          if (k + 9 < dataSub.length) {
+            event.put("position", dataSub[k + 1] & 0xFF);
+            int value = ((dataSub[k + 2] & 0xFF) |
+              ((dataSub[k + 3] & 0xFF) << 8) |
+              ((dataSub[k + 4] & 0xFF) << 16) |
+              ((dataSub[k + 5] & 0xFF) << 24));
+            event.put("value", value);
+            event.put("country_code", new String(dataSub, k + 6, 3, StandardCharsets.US_ASCII));
+            k += 9;
+          } else {
+            k += 1;
+          }
+          break;
+        default:
+          k += 1;
+          break;
+      }
+      events.put(event);
+    }
+    return events;
+  }
+
+  private static void assertSameJson(JSONObject expected, JSONObject actual) throws JSONException {
+    assertEquals(expected.length(), actual.length());
+    for (Iterator<String> keys = expected.keys(); keys.hasNext(); ) {
+      String key = keys.next();
+      assertEquals(key, expected.get(key), actual.get(key));
+    }
+  }
+
+  private static List<SspPollEvent> decode(byte[] data, int offset) {
+    List<SspPollEvent> events = new ArrayList<>();
+    new SspPollDecoder().decode(data, offset, data.length - offset, e -> events.add(e.copy()));
+    return events;
+  }
+
+  @Test
+  public void busyPollDecodesToTypedEvents() {
+    List<SspPollEvent> events = decode(BUSY_POLL, 1);
+    assertEquals(5, events.size());
+    assertEquals(SspStatus.READ_NOTE, events.get(0).status());
+    assertEquals(2, events.get(0).channel());
+    assertEquals(SspStatus.NOTE_STACKING, events.get(1).status());
+    assertEquals(SspPollEvent.NONE, events.get(1).channel());
+    assertEquals(SspStatus.CREDIT_NOTE, events.get(2).status());
+    assertEquals(SspStatus.DISABLED, events.get(4).status());
+  }
+
+  @Test
+  public void heldNoteCarriesValueAndCountry() {
+    byte[] data = {(byte) 0xCE, 0x01, 0x10, 0x27, 0x00, 0x00, 'L', 'A', 'K', (byte) 0xE8};
+    SspPollEvent held = decode(data, 0).get(0);
+    assertEquals(SspStatus.NOTE_HELD_IN_BEZEL, held.status());
+    assertEquals(1, held.position());
+    assertEquals(10000, held.value());
+    assertEquals("LAK", held.countryCode());
+  }
+
+  @Test
+  public void unknownCodesKeepTheirWireCode() throws Exception {
+    SspPollEvent event = decode(new byte[]{0x42}, 0).get(0);
+    assertEquals(SspStatus.UNKNOWN, event.status());
+    assertEquals(0x42, event.code());
+    assertEquals(0x42, event.toJson().getInt("code"));
+  }
+
+  @Test
+  public void jsonMatchesLegacyParserOnRandomPolls() throws Exception {
+    Random random = new Random(18);
+    int[] codes = {0xEF, 0xEE, 0xED, 0xEC, 0xEB, 0xE8, 0xE6, 0xCE, 0xCC, 0xB5, 0x42};
+    for (int round = 0; round < 500; round++) {
+      byte[] data = new byte[random.nextInt(24)];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = random.nextBoolean() ? (byte) codes[random.nextInt(codes.length)] : (byte) random.nextInt(256);
+      }
+      JSONArray expected = legacyEvents(data);
+      List<SspPollEvent> actual = decode(data, 0);
+      assertEquals(expected.length(), actual.size());
+      for (int i = 0; i < actual.size(); i++) {
+        assertSameJson(expected.getJSONObject(i), actual.get(i).toJson());
+      }
+    }
+  }
+
+  @Test
+  public void parseDataFeedsTypedAndJsonListeners() throws Exception {
+    SSP ssp = new SSP();
+    List<SspStatus> typed = new ArrayList<>();
+    List<JSONObject> credits = new ArrayList<>();
+    ssp.onPollEvent(e -> typed.add(e.status()));
+    ssp.on("CREDIT_NOTE", credits::add);
+
+    JSONObject result = ssp.parseData(BUSY_POLL, "POLL");
+
+    assertEquals(5, result.getJSONObject("info").getJSONArray("events").length());
+    assertEquals(SspStatus.READ_NOTE, typed.get(0));
+    assertEquals(5, typed.size());
+    assertTrue(ssp.getEventBus().awaitIdle(1000));
+    assertEquals(1, credits.size());
+    assertEquals(2, credits.get(0).getInt("channel"));
+  }
+
+  @Test
+  public void rejectCodesUseTable() {
+    assertEquals("CHANNEL_INHIBITED", SSPUtils.rejectInfo(0x06).name);
+    assertEquals("UNKNOWN", SSPUtils.rejectInfo(0xFE).name);
+  }
+}
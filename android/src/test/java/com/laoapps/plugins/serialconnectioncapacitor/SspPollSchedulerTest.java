@@ -0,0 +1,75 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class SspPollSchedulerTest {
+
+  private static final List<String> NONE = Collections.emptyList();
+
+  @Test
+  public void quietPollsBackOffToTheMaximum() {
+    SspPollScheduler scheduler = new SspPollScheduler();
+    long now = 0;
+    long interval = SspPollScheduler.NORMAL_INTERVAL_MS;
+    for (int i = 0; i < 10; i++) {
+      now += interval;
+      long next = scheduler.onPollAnswered(now, NONE);
+      assertTrue(next >= interval);
+      interval = next;
+    }
+    assertEquals(SspPollScheduler.MAX_INTERVAL_MS, interval);
+    assertEquals(SspPollScheduler.MAX_INTERVAL_MS, scheduler.getIntervalMs());
+  }
+
+  @Test
+  public void noteInFlightPollsFastThenGraceThenNormal() {
+    SspPollScheduler scheduler = new SspPollScheduler();
+    scheduler.onPollAnswered(0, NONE);
+    scheduler.onPollAnswered(200, NONE);
+    assertEquals(SspPollScheduler.FAST_INTERVAL_MS, scheduler.onPollAnswered(600, Arrays.asList("READ_NOTE")));
+
+    long now = 600;
+    for (int i = 0; i < SspPollScheduler.FAST_GRACE_POLLS; i++) {
+      now += SspPollScheduler.FAST_INTERVAL_MS;
+      assertEquals(SspPollScheduler.FAST_INTERVAL_MS, scheduler.onPollAnswered(now, NONE));
+    }
+    assertEquals(SspPollScheduler.NORMAL_INTERVAL_MS, scheduler.onPollAnswered(now + 50, NONE));
+  }
+
+  @Test
+  public void disabledGoesStraightToTheMaximum() {
+    SspPollScheduler scheduler = new SspPollScheduler();
+    assertEquals(SspPollScheduler.MAX_INTERVAL_MS, scheduler.onPollAnswered(0, Arrays.asList("DISABLED")));
+    // A note read while disabled still wins
+    assertEquals(SspPollScheduler.FAST_INTERVAL_MS,
+      scheduler.onPollAnswered(1000, Arrays.asList("DISABLED", "NOTE_HELD_IN_BEZEL")));
+  }
+
+  @Test
+  public void failedPollRetriesAtNormalRate() {
+    SspPollScheduler scheduler = new SspPollScheduler();
+    scheduler.onPollAnswered(0, Arrays.asList("NOTE_STACKING"));
+    assertEquals(SspPollScheduler.NORMAL_INTERVAL_MS, scheduler.onPollFailed());
+    assertEquals(SspPollScheduler.MAX_INTERVAL_MS, scheduler.onPollAnswered(100, Arrays.asList("DISABLED")));
+  }
+
+  @Test
+  public void eventLatencyIsBoundedByTimeSincePreviousAnswer() {
+    SspPollScheduler scheduler = new SspPollScheduler();
+    assertEquals(-1, scheduler.getLastEventLatencyMs());
+    scheduler.onPollAnswered(1000, NONE);
+    scheduler.onPollAnswered(1400, Arrays.asList("READ_NOTE"));
+    scheduler.onPollAnswered(1450, Arrays.asList("NOTE_STACKING", "CREDIT_NOTE"));
+
+    assertEquals(3, scheduler.getPolls());
+    assertEquals(3, scheduler.getEvents());
+    assertEquals(50, scheduler.getLastEventLatencyMs());
+    assertEquals(400, scheduler.getMaxEventLatencyMs());
+    assertEquals((400 + 50 * 2) / 3.0, scheduler.getAverageEventLatencyMs(), 1e-9);
+  }
+}
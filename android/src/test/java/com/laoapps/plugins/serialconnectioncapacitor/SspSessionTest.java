@@ -0,0 +1,114 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class SspSessionTest {
+
+  private final SspSession session = new SspSession("SspSessionTest");
+
+  @After
+  public void tearDown() {
+    session.close(new IOException("test done"));
+  }
+
+  /** Occupies the I/O thread until {@code release} counts down */
+  private CompletableFuture<Void> block(CountDownLatch started, CountDownLatch release) {
+    return session.submit(SspSession.PRIORITY_COMMAND, () -> {
+      started.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return null;
+    });
+  }
+
+  @Test
+  public void commandsJumpAheadOfQueuedPolls() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    block(started, release);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    List<String> order = new CopyOnWriteArrayList<>();
+    CompletableFuture<String> poll = session.submit(SspSession.PRIORITY_POLL, () -> {
+      order.add("POLL");
+      return "POLL";
+    });
+    session.submit(SspSession.PRIORITY_COMMAND, () -> order.add("ENABLE"));
+    session.submit(SspSession.PRIORITY_COMMAND, () -> order.add("PAYOUT"));
+    assertEquals(3, session.pending());
+
+    release.countDown();
+    assertEquals("POLL", poll.get(5, TimeUnit.SECONDS));
+    // Same priority keeps submission order
+    assertEquals(Arrays.asList("ENABLE", "PAYOUT", "POLL"), order);
+  }
+
+  @Test
+  public void everyTaskRunsOnTheSameThread() throws Exception {
+    List<Thread> threads = new CopyOnWriteArrayList<>();
+    CompletableFuture<?> last = null;
+    for (int i = 0; i < 50; i++) {
+      last = session.submit(i % 2 == 0 ? SspSession.PRIORITY_POLL : SspSession.PRIORITY_COMMAND,
+        () -> threads.add(Thread.currentThread()));
+    }
+    last.get(5, TimeUnit.SECONDS);
+    while (threads.size() < 50) Thread.sleep(1);
+
+    for (Thread t : threads) assertSame(threads.get(0), t);
+    assertNotSame(Thread.currentThread(), threads.get(0));
+  }
+
+  @Test
+  public void failureCompletesOnlyThatFuture() throws Exception {
+    CompletableFuture<Object> failing = session.submit(SspSession.PRIORITY_COMMAND, () -> {
+      throw new IllegalStateException("no reply");
+    });
+    CompletableFuture<Integer> next = session.submit(SspSession.PRIORITY_COMMAND, () -> 42);
+
+    try {
+      failing.get(5, TimeUnit.SECONDS);
+      fail("expected failure");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertEquals(Integer.valueOf(42), next.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void submitFromIoThreadRunsInline() throws Exception {
+    CompletableFuture<Integer> outer = session.submit(SspSession.PRIORITY_POLL, () ->
+      // e.g. an event listener issuing a command while a POLL is parsed
+      session.submit(SspSession.PRIORITY_COMMAND, () -> 7).get(1, TimeUnit.SECONDS));
+    assertEquals(Integer.valueOf(7), outer.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void closeFailsQueuedTasksAndSessionRestarts() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    block(started, release);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    CompletableFuture<String> queued = session.submit(SspSession.PRIORITY_POLL, () -> "POLL");
+
+    IOException closed = new IOException("closed");
+    session.close(closed);
+    try {
+      queued.get(5, TimeUnit.SECONDS);
+      fail("expected failure");
+    } catch (ExecutionException e) {
+      assertSame(closed, e.getCause());
+    }
+
+    assertEquals("again", session.submit(SspSession.PRIORITY_COMMAND, () -> "again").get(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,202 @@
+package com.laoapps.plugins.serialconnectioncapacitor;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class VmcFrameDecoderTest {
+
+  private static final byte[] POLL = frame(0x41);
+  private static final byte[] ACK = frame(0x42);
+
+  private static byte[] frame(int cmd, int... data) {
+    byte[] f = new byte[data.length + VmcFrameDecoder.FRAME_OVERHEAD];
+    f[0] = (byte) 0xFA;
+    f[1] = (byte) 0xFB;
+    f[2] = (byte) cmd;
+    f[3] = (byte) data.length;
+    for (int i = 0; i < data.length; i++) f[4 + i] = (byte) data[i];
+    byte xor = 0;
+    for (int i = 0; i < f.length - 1; i++) xor ^= f[i];
+    f[f.length - 1] = xor;
+    return f;
+  }
+
+  private static class Collector implements VmcFrameDecoder.FrameHandler {
+    final List<byte[]> frames = new ArrayList<>();
+
+    @Override
+    public void onFrame(byte[] buffer, int offset, int length) {
+      frames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+    }
+  }
+
+  @Test
+  public void decodesPollAndAckConstants() {
+    assertArrayEquals(new byte[]{(byte) 0xFA, (byte) 0xFB, 0x41, 0x00, 0x40}, POLL);
+    assertArrayEquals(new byte[]{(byte) 0xFA, (byte) 0xFB, 0x42, 0x00, 0x43}, ACK);
+  }
+
+  @Test
+  public void emitsFramesFromSingleChunk() {
+    VmcFrameDecoder decoder = new VmcFrameDecoder();
+    Collector c = new Collector();
+    byte[] status = frame(0x11, 0x01, 0x02, 0x03);
+    byte[] chunk = concat(POLL, status, ACK);
+
+    decoder.feed(chunk, 0, chunk.length, c);
+
+    assertEquals(3, c.frames.size());
+    assertArrayEquals(POLL, c.frames.get(0));
+    assertArrayEquals(status, c.frames.get(1));
+    assertArrayEquals(ACK, c.frames.get(2));
+    assertEquals(0, decoder.buffered());
+  }
+
+  @Test
+  public void reassemblesFramesSplitOneByteAtATime() {
+    VmcFrameDecoder decoder = new VmcFrameDecoder();
+    Collector c = new Collector();
+    byte[] dispense = frame(0x06, 0x05, 0x01, 0x00, 0x00, 0x0A);
+    byte[] stream = concat(dispense, POLL);
+
+    for (int i = 0; i < stream.length; i++) {
+      decoder.feed(stream, i, 1, c);
+    }
+
+    assertEquals(2, c.frames.size());
+    assertArrayEquals(dispense, c.frames.get(0));
+    assertArrayEquals(POLL, c.frames.get(1));
+  }
+
+  @Test
+  public void skipsGarbagePrefixAndBadChecksums() {
+    VmcFrameDecoder decoder = new VmcFrameDecoder();
+    Collector c = new Collector();
+    byte[] corrupt = frame(0x41);
+    corrupt[4] ^= 0x01;
+    byte[] stream = concat(new byte[]{0x00, 0x13, (byte) 0xFA, 0x37, (byte) 0xFB}, corrupt, POLL);
+
+    decoder.feed(stream, 0, stream.length, c);
+
+    assertEquals(1, c.frames.size());
+    assertArrayEquals(POLL, c.frames.get(0));
+    assertEquals(1, decoder.getChecksumErrors());
+  }
+
+  @Test
+  public void framesWrappingTheRingAreContiguous() {
+    VmcFrameDecoder decoder = new VmcFrameDecoder(VmcFrameDecoder.MAX_FRAME_LENGTH);
+    Collector c = new Collector();
+    int[] payload = new int[200];
+    for (int i = 0; i < payload.length; i++) payload[i] = i;
+    byte[] big = frame(0x11, payload);
+
+    // Push the read position close to the end of the ring before the big frame.
+    for (int i = 0; i < 50; i++) {
+      decoder.feed(POLL, 0, POLL.length, c);
+    }
+    decoder.feed(big, 0, big.length, c);
+
+    assertEquals(51, c.frames.size());
+    assertArrayEquals(big, c.frames.get(50));
+  }
+
+  @Test
+  public void randomFragmentationMatchesWholeStream() {
+    Random random = new Random(42);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    List<byte[]> expected = new ArrayList<>();
+    for (int n = 0; n < 500; n++) {
+      if (random.nextInt(5) == 0) {
+        stream.write(random.nextInt(0xFA)); // noise that can never start a frame
+      }
+      int[] data = new int[random.nextInt(12)];
+      for (int i = 0; i < data.length; i++) data[i] = random.nextInt(256);
+      byte[] f = frame(random.nextInt(256), data);
+      expected.add(f);
+      stream.write(f, 0, f.length);
+    }
+    byte[] bytes = stream.toByteArray();
+
+    VmcFrameDecoder decoder = new VmcFrameDecoder(300);
+    Collector c = new Collector();
+    int pos = 0;
+    while (pos < bytes.length) {
+      int len = Math.min(1 + random.nextInt(64), bytes.length - pos);
+      decoder.feed(bytes, pos, len, c);
+      pos += len;
+    }
+
+    assertEquals(expected.size(), c.frames.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertArrayEquals(expected.get(i), c.frames.get(i));
+    }
+  }
+
+  @Test
+  public void directBufferFeedMatchesArrayFeed() {
+    Random random = new Random(7);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    for (int n = 0; n < 300; n++) {
+      int[] data = new int[random.nextInt(40)];
+      for (int i = 0; i < data.length; i++) data[i] = random.nextInt(256);
+      byte[] f = frame(random.nextInt(256), data);
+      stream.write(f, 0, f.length);
+    }
+    byte[] bytes = stream.toByteArray();
+
+    // Smallest ring, so chunks regularly wrap around its end
+    VmcFrameDecoder fromArray = new VmcFrameDecoder(VmcFrameDecoder.MAX_FRAME_LENGTH);
+    VmcFrameDecoder fromBuffer = new VmcFrameDecoder(VmcFrameDecoder.MAX_FRAME_LENGTH);
+    Collector expected = new Collector();
+    Collector actual = new Collector();
+    ByteBuffer rx = ByteBuffer.allocateDirect(128);
+    int pos = 0;
+    while (pos < bytes.length) {
+      int len = Math.min(1 + random.nextInt(rx.capacity()), bytes.length - pos);
+      fromArray.feed(bytes, pos, len, expected);
+      rx.clear();
+      rx.put(bytes, pos, len).flip();
+      fromBuffer.feed(rx, actual);
+      assertFalse(rx.hasRemaining());
+      pos += len;
+    }
+
+    assertEquals(300, actual.frames.size());
+    for (int i = 0; i < expected.frames.size(); i++) {
+      assertArrayEquals(expected.frames.get(i), actual.frames.get(i));
+    }
+    assertEquals(fromArray.buffered(), fromBuffer.buffered());
+  }
+
+  @Test
+  public void classifiesByCommandAndLength() {
+    assertEquals(VmcFrameDecoder.FRAME_POLL, VmcFrameDecoder.classify(POLL, 0, POLL.length));
+    assertEquals(VmcFrameDecoder.FRAME_ACK, VmcFrameDecoder.classify(ACK, 0, ACK.length));
+    byte[] pollWithData = frame(0x41, 0x01);
+    assertEquals(VmcFrameDecoder.FRAME_DATA, VmcFrameDecoder.classify(pollWithData, 0, pollWithData.length));
+    byte[] status = frame(0x11, 0x01);
+    assertEquals(VmcFrameDecoder.FRAME_DATA, VmcFrameDecoder.classify(status, 0, status.length));
+
+    byte[] shifted = concat(new byte[]{0x00, 0x00}, ACK);
+    assertEquals(VmcFrameDecoder.FRAME_ACK, VmcFrameDecoder.classify(shifted, 2, ACK.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsCapacitySmallerThanLargestFrame() {
+    new VmcFrameDecoder(VmcFrameDecoder.MAX_FRAME_LENGTH - 1);
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] p : parts) out.write(p, 0, p.length);
+    return out.toByteArray();
+  }
+}
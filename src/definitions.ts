@@ -18,6 +18,26 @@ export interface SerialPortOptions {
   parity?: string; // 'none'
   bufferSize?: number; // 0
   flags?: number; // 0
+  /**
+   * Native serial only: once bytes start arriving, keep collecting them until the
+   * line has been idle this many milliseconds before handing them to the read loop.
+   * 0 (default) delivers bytes as soon as they arrive.
+   */
+  interByteTimeout?: number;
+  /**
+   * Native serial only: size in bytes of an off-heap receive buffer owned by the
+   * port. When set, a VMC read loop on its own thread decodes frames straight
+   * from it. 0 (default) reads into a Java array.
+   */
+  receiveBufferSize?: number;
+  /**
+   * Native serial only: `low-latency` hands bytes over as they arrive, discards
+   * stale input on open, waits for each write to leave the UART and sets a USB
+   * adapter's latency timer to 1ms. `throughput` collects bursts until the line
+   * has been idle 10ms. `default` (the default) leaves the port as opened.
+   * An explicit `interByteTimeout` overrides the profile's.
+   */
+  latencyProfile?: 'default' | 'low-latency' | 'throughput';
   /**
    * Enable NV9 mode for SSP protocol
    */
@@ -28,6 +48,17 @@ export interface SerialPortOptions {
   autoConnectUSB?: boolean;
 }
 
+/**
+ * Latency settings in effect on a native port, as returned by `openSerial`.
+ */
+export interface SerialLatencySettings {
+  profile: 'default' | 'low-latency' | 'throughput';
+  interByteTimeout: number;
+  drainAfterWrite: boolean;
+  /** USB adapter latency timer in ms, -1 if the port has none */
+  usbLatencyTimer: number;
+}
+
 /**
  * Options for NV9 SSP commands
  */
@@ -41,15 +72,99 @@ export interface NV9CommandOptions {
    */
   args?: string;
 }
+/**
+ * Picks the port a call acts on.
+ */
+export interface SessionOptions {
+  /**
+   * Session returned by `openSerial` or `openUsbSerial`. Defaults to the most
+   * recently opened port that is still open.
+   */
+  sessionId?: string;
+}
+/**
+ * Options for the native-port read loops.
+ */
+export interface ReadingOptions extends SessionOptions {
+  /**
+   * Read on the shared reactor: one poll loop for every port started this way,
+   * with decoding on a small worker pool, instead of a thread per port.
+   * Defaults to false. MT102 always reads on its own thread, which also paces
+   * its command re-sends.
+   */
+  reactor?: boolean;
+}
+/**
+ * An open port, as listed by `listSessions`.
+ */
+export interface PortSessionInfo {
+  sessionId: string;
+  portName: string;
+  connectionType: 'native' | 'usb';
+  reading: boolean;
+}
 /**
  * Options for writing to a serial port.
  */
-export interface SerialPortWriteOptions {
+export interface SerialPortWriteOptions extends SessionOptions {
   /**
    * Command to send to the serial port (hex string or text).
    */
   data: string;
 }
+/**
+ * Options for writing a queued device command (VMC, MT102, ADH814).
+ */
+export interface DeviceCommandOptions extends SerialPortWriteOptions {
+  /**
+   * Resolve with the device's response instead of as soon as the command is queued.
+   * The result then carries `id`, `data` (request hex) and `response` (response frame hex).
+   */
+  awaitResponse?: boolean;
+  /**
+   * Milliseconds to wait for the response before rejecting with code `TIMEOUT`.
+   * Defaults to 10000 when `awaitResponse` is set; otherwise the command never expires.
+   */
+  timeout?: number;
+  /**
+   * Command byte (hex, e.g. "A3") of the frame that answers this command.
+   * Defaults to the protocol's usual reply: the ACK for VMC, the echoed command for ADH814 and MT102.
+   */
+  expectCommand?: string;
+}
+/**
+ * Options for batching and filtering the high-rate events
+ * (`dataReceived`, `serialWriteSuccess`, `usbWriteSuccess`, `commandAcknowledged`).
+ */
+export interface EventBatchingOptions {
+  /**
+   * Deliver those events as one `eventBatch` instead of one by one. Defaults to true.
+   */
+  enabled?: boolean;
+  /**
+   * Longest time in milliseconds an event waits before its batch is sent. Defaults to 50.
+   */
+  intervalMs?: number;
+  /**
+   * Send the batch early once this many events are waiting. Defaults to 64.
+   */
+  maxEvents?: number;
+  /**
+   * Events to drop before they reach JS, e.g. `{ event: 'serialWriteSuccess', data: 'fafb420043' }`
+   * for the VMC ACK echo. Without `data` every event of that type is dropped.
+   * When given, replaces the current filters; an empty list clears them.
+   */
+  suppress?: { event: string; data?: string }[];
+}
+/**
+ * Payload of the `eventBatch` event.
+ */
+export interface EventBatchData {
+  events: { event: SerialPortEventTypes; data: any; timestamp: number }[];
+  count: number;
+  /** Events lost because the buffer overflowed since the previous batch */
+  dropped: number;
+}
 /**
  * NV9 Event types from SSP protocol
  */
@@ -72,6 +187,7 @@ export type NV9EventType =
   | 'NOTE_CLEARED_TO_CASHBOX' // Note to cashbox
   | 'CHANNEL_DISABLE'     // Channel disabled
   | 'nv9Ready'            // NV9 initialized and ready
+  | 'nv9InitTiming'       // Startup timing breakdown
   | 'nv9Error';           // NV9 error
 
 /**
@@ -94,6 +210,18 @@ export interface NV9EventData {
    * Timestamp of the event
    */
   timestamp?: number;
+  /**
+   * nv9InitTiming: whether the init sequence succeeded
+   */
+  success?: boolean;
+  /**
+   * nv9InitTiming: total init time in ms
+   */
+  totalMs?: number;
+  /**
+   * nv9InitTiming: duration of each init phase, in order
+   */
+  phases?: { name: string; ms: number; attempts: number; success: boolean }[];
 }
 
 /**
@@ -148,6 +276,8 @@ export interface SerialPortEventData {
   message?: string;
   data?: any;
   error?: string;
+  /** Port session the event came from */
+  sessionId?: string;
 }
 
 /**
@@ -166,6 +296,8 @@ export type SerialPortEventTypes =
   | 'commandAcknowledged'
   | 'commandQueued'
   | 'adh814Response'
+  | 'adh814CommandTimeout' // ADH814 command unanswered after retries
+  | 'eventBatch'         // Batched events, see setEventBatching
   | 'nv9Event'           // NV9 events
   | 'usbDeviceEvent';     // USB device events
 
@@ -186,16 +318,19 @@ export interface SerialPortPlugin {
   listUSBDevices(): Promise<{ devices: string; count: number }>;
 
   /**
-   * Opens a serial port connection.
+   * Opens a serial port connection. Each port gets its own session, so several
+   * boards can run at once; reopening a port replaces its session.
    * @param options Connection options including port path and baud rate.
    */
   openSerial(options: SerialPortOptions): Promise<{ 
     success: boolean; 
     message: string; 
+    sessionId: string;
     portName: string; 
     baudRate: number; 
     connectionType: string;
     isNV9?: boolean;
+    latency?: SerialLatencySettings;
   }>;
 
   /**
@@ -210,11 +345,16 @@ export interface SerialPortPlugin {
   }>;
 
   /**
-   * Opens a USB serial port connection.
+   * Opens a USB serial port connection. The result carries its `sessionId`.
    * @param options Connection options including port path and baud rate.
    */
   openUsbSerial(options: SerialPortOptions): Promise<any>;
 
+  /**
+   * Lists the open port sessions, oldest first.
+   */
+  listSessions(): Promise<{ sessions: PortSessionInfo[] }>;
+
   /**
    * Sends an NV9 SSP command to the USB device
    * @param options NV9 command options
@@ -268,25 +408,25 @@ export interface SerialPortPlugin {
    * Writes data to the serial port.
    * @param options Write options containing the command to send.
    */
-  write(options: { data: string }): Promise<any>;
+  write(options: SerialPortWriteOptions): Promise<any>;
 
   /**
    * Writes data to the serial port for VMC.
    * @param options Write options containing the command to send.
    */
-  writeVMC(options: { data: string }): Promise<any>;
+  writeVMC(options: DeviceCommandOptions): Promise<any>;
   
   /**
    * Writes data to the serial port for VMC.
    * @param options Write options containing the command to send.
    */
-  writeMT102(options: { data: string }): Promise<any>;
+  writeMT102(options: DeviceCommandOptions): Promise<any>;
 
   /**
    * Writes data to the serial port for ADH814.
    * @param options Write options containing the command to send.
    */
-  writeADH814(options: { data: string }): Promise<any>;
+  writeADH814(options: DeviceCommandOptions): Promise<any>;
 
   /**
    * Writes data to the serial port for ESSP.
@@ -298,25 +438,26 @@ export interface SerialPortPlugin {
    * Starts reading data from the serial port.
    * @returns Promise that resolves when reading starts.
    */
-  startReading(): Promise<any>;
+  startReading(options?: ReadingOptions): Promise<any>;
 
   /**
    * Starts reading data from the serial port for VMC.
+   * @param options Set `debug` to log every POLL/ACK frame to logcat.
    * @returns Promise that resolves when reading starts.
    */
-  startReadingVMC(): Promise<any>;
+  startReadingVMC(options?: ReadingOptions & { debug?: boolean }): Promise<any>;
   
   /**
    * Starts reading data from the serial port for MT102.
    * @returns Promise that resolves when reading starts.
    */
-  startReadingMT102(): Promise<any>;
+  startReadingMT102(options?: SessionOptions): Promise<any>;
    
   /**
    * Starts reading data from the serial port for ADH814.
    * @returns Promise that resolves when reading starts.
    */
-  startReadingADH814(): Promise<any>;
+  startReadingADH814(options?: ReadingOptions): Promise<any>;
 
   /**
    * Starts reading ESSP data from the serial port.
@@ -325,10 +466,16 @@ export interface SerialPortPlugin {
   startReadingEssp(): Promise<any>;
 
   /**
-   * Stops reading data from the serial port.
+   * Stops reading data from the serial port; from every port when no `sessionId` is given.
    * @returns Promise that resolves when reading stops.
    */
-  stopReading(): Promise<any>;
+  stopReading(options?: SessionOptions): Promise<any>;
+
+  /**
+   * Batches and filters the high-rate events. Batching is off until this is called.
+   * @returns Promise resolving with the settings now in effect.
+   */
+  setEventBatching(options: EventBatchingOptions): Promise<{ enabled: boolean; intervalMs: number; maxEvents: number }>;
 
   /**
    * Stops NV9 polling
@@ -336,9 +483,9 @@ export interface SerialPortPlugin {
   stopNV9Polling(): Promise<{ success: boolean; message: string }>;
 
   /**
-   * Closes the serial port connection.
+   * Closes the session's port; every port and the NV9 link when no `sessionId` is given.
    */
-  close(): Promise<{ success: boolean; message: string }>;
+  close(options?: SessionOptions): Promise<{ success: boolean; message: string; sessionId?: string }>;
 
   // ADH814 Methods (keep your existing ones)
   requestID(options: { address: number }): Promise<any>;
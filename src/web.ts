@@ -3,8 +3,13 @@ import {
   SerialPortPlugin, 
   SerialPortOptions, 
   SerialPortWriteOptions, 
+  DeviceCommandOptions,
+  EventBatchingOptions,
   SerialPortEventTypes,
-  NV9CommandOptions
+  NV9CommandOptions,
+  PortSessionInfo,
+  ReadingOptions,
+  SessionOptions
 } from './definitions';
 
 export class SerialConnectionCapacitorWeb extends WebPlugin implements SerialPortPlugin {
@@ -68,6 +73,10 @@ export class SerialConnectionCapacitorWeb extends WebPlugin implements SerialPor
     throw new Error('openSerial is not supported on the web platform.');
   }
 
+  async listSessions(): Promise<{ sessions: PortSessionInfo[] }> {
+    throw new Error('listSessions is not supported on the web platform.');
+  }
+
   async openSerialEssp(_options: SerialPortOptions): Promise<any> {
     console.log('openSerialEssp', _options);
     throw new Error('openSerialEssp is not supported on the web platform.');
@@ -78,17 +87,17 @@ export class SerialConnectionCapacitorWeb extends WebPlugin implements SerialPor
     throw new Error('write is not supported on the web platform.');
   }
 
-  async writeVMC(_options: SerialPortWriteOptions): Promise<any> {
+  async writeVMC(_options: DeviceCommandOptions): Promise<any> {
     console.log('writeVMC', _options);
     throw new Error('writeVMC is not supported on the web platform.');
   }
   
-  async writeMT102(_options: SerialPortWriteOptions): Promise<any> {
+  async writeMT102(_options: DeviceCommandOptions): Promise<any> {
     console.log('writeMT102', _options);
     throw new Error('writeMT102 is not supported on the web platform.');
   }
 
-  async writeADH814(_options: SerialPortWriteOptions): Promise<any> {
+  async writeADH814(_options: DeviceCommandOptions): Promise<any> {
     console.log('writeADH814', _options);
     throw new Error('writeADH814 is not supported on the web platform.');
   }
@@ -103,33 +112,37 @@ export class SerialConnectionCapacitorWeb extends WebPlugin implements SerialPor
     throw new Error('startReadingEssp is not supported on the web platform.');
   }
 
-  async startReading(): Promise<any> {
-    console.log('startReading');
+  async startReading(_options?: ReadingOptions): Promise<any> {
+    console.log('startReading', _options);
     throw new Error('startReading is not supported on the web platform.');
   }
 
-  async startReadingVMC(): Promise<any> {
-    console.log('startReadingVMC');
+  async startReadingVMC(_options?: ReadingOptions & { debug?: boolean }): Promise<any> {
+    console.log('startReadingVMC', _options);
     throw new Error('startReadingVMC is not supported on the web platform.');
   }
   
-  async startReadingMT102(): Promise<any> {
-    console.log('startReadingMT102');
+  async startReadingMT102(_options?: SessionOptions): Promise<any> {
+    console.log('startReadingMT102', _options);
     throw new Error('startReadingMT102 is not supported on the web platform.');
   }
 
-  async startReadingADH814(): Promise<any> {
-    console.log('startReadingADH814');
+  async startReadingADH814(_options?: ReadingOptions): Promise<any> {
+    console.log('startReadingADH814', _options);
     throw new Error('startReadingADH814 is not supported on the web platform.');
   }
 
-  async stopReading(): Promise<any> {
-    console.log('stopReading');
+  async stopReading(_options?: SessionOptions): Promise<any> {
+    console.log('stopReading', _options);
     throw new Error('stopReading is not supported on the web platform.');
   }
 
-  async close(): Promise<{ success: boolean; message: string }> {
-    console.log('close');
+  async setEventBatching(_options: EventBatchingOptions): Promise<{ enabled: boolean; intervalMs: number; maxEvents: number }> {
+    throw new Error('setEventBatching is not supported on the web platform.');
+  }
+
+  async close(_options?: SessionOptions): Promise<{ success: boolean; message: string; sessionId?: string }> {
+    console.log('close', _options);
     throw new Error('close is not supported on the web platform.');
   }
 